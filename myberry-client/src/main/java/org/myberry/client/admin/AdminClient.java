@@ -52,4 +52,16 @@ public interface AdminClient {
 
   SendResult queryClusterList(long timeout)
       throws RemotingException, InterruptedException, MyberryServerException;
+
+  SendResult snapshotStore(String storePath)
+      throws RemotingException, InterruptedException, MyberryServerException;
+
+  SendResult snapshotStore(String storePath, long timeout)
+      throws RemotingException, InterruptedException, MyberryServerException;
+
+  SendResult removeComponent(String key)
+      throws RemotingException, InterruptedException, MyberryServerException;
+
+  SendResult removeComponent(String key, long timeout)
+      throws RemotingException, InterruptedException, MyberryServerException;
 }
@@ -33,6 +33,7 @@ import org.myberry.common.ProduceMode;
 import org.myberry.common.protocol.body.admin.CRComponentData;
 import org.myberry.common.protocol.body.admin.ComponentKeyData;
 import org.myberry.common.protocol.body.admin.NSComponentData;
+import org.myberry.common.protocol.body.admin.StoreSnapshotData;
 import org.myberry.remoting.exception.RemotingException;
 
 /** This class is the entry point for applications intending to manage component. */
@@ -205,6 +206,79 @@ public class DefaultAdminClient extends AbstractMyberryClient implements AdminCl
     return this.defaultAdminClientImpl.queryClusterList(password, timeout);
   }
 
+  /**
+   * Copy the store of the maintainer at this point in time, a new node can be started with the
+   * copy as its store path.
+   *
+   * @param storePath store path of the copy on the server, a dir under the store is chosen if it
+   *     is empty.
+   * @return {@link SendResult} instance to inform senders details of the deliverable, say the
+   *     snapshot with its copy time and size, {@link SendStatus} indicating status, etc.
+   * @throws RemotingException if there is any network-tier error.
+   * @throws MyberryServerException if there is any error with broker.
+   * @throws InterruptedException if the sending thread is interrupted.
+   */
+  @Override
+  public SendResult snapshotStore(String storePath)
+      throws RemotingException, InterruptedException, MyberryServerException {
+    return this.defaultAdminClientImpl.snapshotStore(
+        new StoreSnapshotData(storePath).encode(), password);
+  }
+
+  /**
+   * Same to {@link #snapshotStore(String)} with send timeout specified in addition.
+   *
+   * @param storePath store path of the copy on the server.
+   * @param timeout send timeout.
+   * @return {@link SendResult} instance to inform senders details of the deliverable, say the
+   *     snapshot with its copy time and size, {@link SendStatus} indicating status, etc.
+   * @throws RemotingException if there is any network-tier error.
+   * @throws MyberryServerException if there is any error with broker.
+   * @throws InterruptedException if the sending thread is interrupted.
+   */
+  @Override
+  public SendResult snapshotStore(String storePath, long timeout)
+      throws RemotingException, InterruptedException, MyberryServerException {
+    return this.defaultAdminClientImpl.snapshotStore(
+        new StoreSnapshotData(storePath).encode(), password, timeout);
+  }
+
+  /**
+   * Remove component by key. Pulls of the key fail from then on, and its record is dropped from
+   * the store by the next compaction.
+   *
+   * @param key component key.
+   * @return {@link SendResult} instance to inform senders details of the deliverable, say key of
+   *     the component, {@link SendStatus} indicating component status, etc.
+   * @throws RemotingException if there is any network-tier error.
+   * @throws MyberryServerException if there is any error with broker.
+   * @throws InterruptedException if the sending thread is interrupted.
+   */
+  @Override
+  public SendResult removeComponent(String key)
+      throws RemotingException, InterruptedException, MyberryServerException {
+    return this.defaultAdminClientImpl.removeComponent(
+        new ComponentKeyData(key).encode(), password);
+  }
+
+  /**
+   * Same to {@link #removeComponent(String)} with send timeout specified in addition.
+   *
+   * @param key component key.
+   * @param timeout send timeout.
+   * @return {@link SendResult} instance to inform senders details of the deliverable, say key of
+   *     the component, {@link SendStatus} indicating component status, etc.
+   * @throws RemotingException if there is any network-tier error.
+   * @throws MyberryServerException if there is any error with broker.
+   * @throws InterruptedException if the sending thread is interrupted.
+   */
+  @Override
+  public SendResult removeComponent(String key, long timeout)
+      throws RemotingException, InterruptedException, MyberryServerException {
+    return this.defaultAdminClientImpl.removeComponent(
+        new ComponentKeyData(key).encode(), password, timeout);
+  }
+
   public String getPassword() {
     return password;
   }
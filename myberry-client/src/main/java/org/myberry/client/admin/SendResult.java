@@ -26,6 +26,7 @@ package org.myberry.client.admin;
 import java.lang.reflect.Field;
 import org.myberry.common.Component;
 import org.myberry.common.protocol.body.admin.ClusterListData;
+import org.myberry.common.protocol.body.admin.StoreSnapshotData;
 
 public class SendResult {
 
@@ -38,6 +39,8 @@ public class SendResult {
 
   private ClusterListData clusterList;
 
+  private StoreSnapshotData snapshot;
+
   public SendResult(SendStatus sendStatus) {
     this.sendStatus = sendStatus;
   }
@@ -95,6 +98,14 @@ public class SendResult {
     this.clusterList = clusterList;
   }
 
+  public StoreSnapshotData getSnapshot() {
+    return snapshot;
+  }
+
+  public void setSnapshot(StoreSnapshotData snapshot) {
+    this.snapshot = snapshot;
+  }
+
   @Override
   public String toString() {
     Class<?> clz = this.getClass();
@@ -23,7 +23,8 @@
 */
 package org.myberry.client.impl;
 
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.List;
 import org.myberry.client.admin.SendCallback;
 import org.myberry.client.admin.SendResult;
 import org.myberry.client.admin.SendStatus;
@@ -35,7 +36,6 @@ import org.myberry.client.user.PullResult;
 import org.myberry.client.user.PullStatus;
 import org.myberry.common.ProduceMode;
 import org.myberry.common.codec.LightCodec;
-import org.myberry.common.codec.util.Maps;
 import org.myberry.common.monitor.MonitorCode;
 import org.myberry.common.protocol.RequestCode;
 import org.myberry.common.protocol.ResponseCode;
@@ -44,8 +44,12 @@ import org.myberry.common.protocol.body.admin.CRComponentData;
 import org.myberry.common.protocol.body.admin.ClusterListData;
 import org.myberry.common.protocol.body.admin.ComponentSizeData;
 import org.myberry.common.protocol.body.admin.NSComponentData;
+import org.myberry.common.protocol.body.admin.StoreSnapshotData;
+import org.myberry.common.protocol.body.user.CRPullBatchResultData;
 import org.myberry.common.protocol.body.user.CRPullResultData;
 import org.myberry.common.protocol.body.user.NSPullResultData;
+import org.myberry.common.protocol.body.user.PullIdMultiResultData;
+import org.myberry.common.protocol.body.user.PullIdMultiResultData.PullIdEntryResult;
 import org.myberry.common.protocol.header.admin.ManageComponentResponseHeader;
 import org.myberry.common.protocol.header.user.PullIdBackRequestHeader;
 import org.myberry.remoting.CommandCustomHeader;
@@ -83,25 +87,26 @@ public class MyberryClientAPIImpl {
 
   public PullResult pull( //
       final String addr, //
+      final int requestCode, //
       final CommandCustomHeader requestHeader, //
-      final HashMap<String, String> attachments, //
+      final byte[] body, //
       final long timeoutMillis, //
       final CommunicationMode communicationMode //
       ) throws RemotingException, InterruptedException, MyberryServerException {
-    return pull(addr, requestHeader, attachments, timeoutMillis, communicationMode, null);
+    return pull(addr, requestCode, requestHeader, body, timeoutMillis, communicationMode, null);
   }
 
   public PullResult pull( //
       final String addr, //
+      final int requestCode, //
       final CommandCustomHeader requestHeader, //
-      final HashMap<String, String> attachments, //
+      final byte[] body, //
       final long timeoutMillis, //
       final CommunicationMode communicationMode, //
       final PullCallback pullCallback //
       ) throws RemotingException, InterruptedException, MyberryServerException {
-    RemotingCommand request =
-        RemotingCommand.createRequestCommand(RequestCode.PULL_ID, requestHeader);
-    request.setBody(Maps.serialize(attachments));
+    RemotingCommand request = RemotingCommand.createRequestCommand(requestCode, requestHeader);
+    request.setBody(body);
     switch (communicationMode) {
       case ONEWAY:
         this.remotingClient.invokeOneway(addr, request, timeoutMillis);
@@ -125,7 +130,7 @@ public class MyberryClientAPIImpl {
       ) throws RemotingException, InterruptedException, MyberryServerException {
     RemotingCommand response = this.remotingClient.invokeSync(addr, request, timeoutMillis);
     assert response != null;
-    return this.processPullResponse(response);
+    return this.processPullResponse(request.getCode(), response);
   }
 
   private void pullAsync( //
@@ -146,7 +151,7 @@ public class MyberryClientAPIImpl {
             try {
               pullResult =
                   MyberryClientAPIImpl.this.processPullResponse(
-                      responseFuture.getResponseCommand());
+                      request.getCode(), responseFuture.getResponseCommand());
             } catch (Throwable e) {
               pullCallback.onException(e);
             }
@@ -155,7 +160,7 @@ public class MyberryClientAPIImpl {
         });
   }
 
-  private PullResult processPullResponse(final RemotingCommand response)
+  private PullResult processPullResponse(final int requestCode, final RemotingCommand response)
       throws MyberryServerException, RemotingCommandException {
     PullStatus pullStatus = PullStatus.KEY_NOT_EXISTED;
     switch (response.getCode()) {
@@ -174,7 +179,18 @@ public class MyberryClientAPIImpl {
 
     switch (pullStatus) {
       case PULL_OK:
-        if (ProduceMode.CR.getProduceCode() == responseHeader.getProduceCode()) {
+        if (RequestCode.PULL_ID_MULTI == requestCode) {
+          PullIdMultiResultData pullIdMultiResultData =
+              LightCodec.toObj(response.getBody(), PullIdMultiResultData.class);
+          PullResult pullResult = new PullResult(pullStatus, responseHeader.getKey());
+          pullResult.setResults(this.toPullResults(pullIdMultiResultData));
+          return pullResult;
+        } else if (RequestCode.PULL_ID_BATCH == requestCode) {
+          CRPullBatchResultData crPullBatchResultData =
+              LightCodec.toObj(response.getBody(), CRPullBatchResultData.class);
+          return new PullResult(
+              pullStatus, responseHeader.getKey(), crPullBatchResultData.getNewIds());
+        } else if (ProduceMode.CR.getProduceCode() == responseHeader.getProduceCode()) {
           CRPullResultData crPullResultData =
               LightCodec.toObj(response.getBody(), CRPullResultData.class);
           return new PullResult(pullStatus, responseHeader.getKey(), crPullResultData.getNewId());
@@ -193,6 +209,35 @@ public class MyberryClientAPIImpl {
     }
   }
 
+  private List<PullResult> toPullResults(final PullIdMultiResultData pullIdMultiResultData) {
+    List<PullResult> pullResults = new ArrayList<>(pullIdMultiResultData.getResults().size());
+    for (PullIdEntryResult entryResult : pullIdMultiResultData.getResults()) {
+      PullResult pullResult;
+      if (ResponseCode.SUCCESS != entryResult.getRespCode()) {
+        pullResult =
+            new PullResult(
+                ResponseCode.KEY_NOT_EXISTED == entryResult.getRespCode()
+                    ? PullStatus.KEY_NOT_EXISTED
+                    : PullStatus.PULL_FAILED,
+                entryResult.getKey());
+        pullResult.setRemark(entryResult.getRemark());
+      } else if (ProduceMode.NS.getProduceCode() == entryResult.getProduceCode()) {
+        pullResult =
+            new PullResult(
+                PullStatus.PULL_OK,
+                entryResult.getKey(),
+                entryResult.getStart(),
+                entryResult.getEnd(),
+                entryResult.getSynergyId());
+      } else {
+        pullResult =
+            new PullResult(PullStatus.PULL_OK, entryResult.getKey(), entryResult.getNewIds());
+      }
+      pullResults.add(pullResult);
+    }
+    return pullResults;
+  }
+
   public SendResult createComponent( //
       final int code, //
       final String addr, //
@@ -268,6 +313,58 @@ public class MyberryClientAPIImpl {
     return this.sendKernelImpl(code, addr, request, timeoutMillis, communicationMode, sendCallback);
   }
 
+  public SendResult snapshotStore( //
+      final int code, //
+      final String addr, //
+      byte[] storeSnapshotData, //
+      final CommandCustomHeader requstHeader, //
+      final long timeoutMillis, //
+      final CommunicationMode communicationMode //
+      ) throws RemotingException, InterruptedException, MyberryServerException {
+    return this.snapshotStore(
+        code, addr, storeSnapshotData, requstHeader, timeoutMillis, communicationMode, null);
+  }
+
+  public SendResult snapshotStore( //
+      final int code, //
+      final String addr, //
+      byte[] storeSnapshotData, //
+      final CommandCustomHeader requstHeader, //
+      final long timeoutMillis, //
+      final CommunicationMode communicationMode, //
+      final SendCallback sendCallback //
+      ) throws RemotingException, InterruptedException, MyberryServerException {
+    RemotingCommand request = RemotingCommand.createRequestCommand(code, requstHeader);
+    request.setBody(storeSnapshotData);
+    return this.sendKernelImpl(code, addr, request, timeoutMillis, communicationMode, sendCallback);
+  }
+
+  public SendResult removeComponent( //
+      final int code, //
+      final String addr, //
+      byte[] key, //
+      final CommandCustomHeader requstHeader, //
+      final long timeoutMillis, //
+      final CommunicationMode communicationMode //
+      ) throws RemotingException, InterruptedException, MyberryServerException {
+    return this.removeComponent(
+        code, addr, key, requstHeader, timeoutMillis, communicationMode, null);
+  }
+
+  public SendResult removeComponent( //
+      final int code, //
+      final String addr, //
+      byte[] key, //
+      final CommandCustomHeader requstHeader, //
+      final long timeoutMillis, //
+      final CommunicationMode communicationMode, //
+      final SendCallback sendCallback //
+      ) throws RemotingException, InterruptedException, MyberryServerException {
+    RemotingCommand request = RemotingCommand.createRequestCommand(code, requstHeader);
+    request.setBody(key);
+    return this.sendKernelImpl(code, addr, request, timeoutMillis, communicationMode, sendCallback);
+  }
+
   public SendResult queryClusterList( //
       final int code, //
       final String addr, //
@@ -399,6 +496,7 @@ public class MyberryClientAPIImpl {
           SendResult sendResult = new SendResult(sendStatus);
           switch (code) {
             case RequestCode.CREATE_COMPONENT:
+            case RequestCode.REMOVE_COMPONENT:
               ManageComponentResponseHeader createResponseHeader =
                   (ManageComponentResponseHeader)
                       response.decodeCommandCustomHeader(ManageComponentResponseHeader.class);
@@ -428,6 +526,9 @@ public class MyberryClientAPIImpl {
               ClusterListData clusterListData = LightCodec.toObj(body, ClusterListData.class);
               sendResult.setClusterList(clusterListData);
               return sendResult;
+            case RequestCode.SNAPSHOT_STORE:
+              sendResult.setSnapshot(LightCodec.toObj(body, StoreSnapshotData.class));
+              return sendResult;
             default:
               assert false;
               break;
@@ -260,6 +260,117 @@ public class DefaultAdminClientImpl extends AbstractClientImpl {
     return sendResult;
   }
 
+  public SendResult snapshotStore(byte[] storeSnapshotData, String password)
+      throws RemotingException, InterruptedException, MyberryServerException {
+    return this.snapshotStore(storeSnapshotData, password, defaultAdminClient.getSendMsgTimeout());
+  }
+
+  public SendResult snapshotStore(byte[] storeSnapshotData, String password, long timeout)
+      throws RemotingException, InterruptedException, MyberryServerException {
+    return this.snapshotStoreImpl(
+        storeSnapshotData, password, CommunicationMode.SYNC, null, timeout);
+  }
+
+  private SendResult snapshotStoreImpl(
+      byte[] storeSnapshotData, //
+      String password, //
+      final CommunicationMode communicationMode, //
+      final SendCallback sendCallback, //
+      final long timeout //
+      ) throws RemotingException, InterruptedException, MyberryServerException {
+    ManageComponentRequestHeader manageComponentRequestHeader =
+        this.createAdminRequestHeader(password, "");
+
+    SendResult sendResult = null;
+    switch (communicationMode) {
+      case ASYNC:
+        sendResult =
+            this.getMyberryClientFactory()
+                .getMyberryClientAPIImpl()
+                .snapshotStore(
+                    RequestCode.SNAPSHOT_STORE,
+                    defaultAdminClient.getDefaultRouter().getMaintainerAddr(),
+                    storeSnapshotData,
+                    manageComponentRequestHeader,
+                    timeout,
+                    communicationMode,
+                    sendCallback);
+        break;
+      case ONEWAY:
+      case SYNC:
+        sendResult =
+            this.getMyberryClientFactory()
+                .getMyberryClientAPIImpl()
+                .snapshotStore(
+                    RequestCode.SNAPSHOT_STORE,
+                    defaultAdminClient.getDefaultRouter().getMaintainerAddr(),
+                    storeSnapshotData,
+                    manageComponentRequestHeader,
+                    timeout,
+                    communicationMode);
+        break;
+      default:
+        assert false;
+        break;
+    }
+    return sendResult;
+  }
+
+  public SendResult removeComponent(byte[] key, String password)
+      throws RemotingException, InterruptedException, MyberryServerException {
+    return this.removeComponent(key, password, defaultAdminClient.getSendMsgTimeout());
+  }
+
+  public SendResult removeComponent(byte[] key, String password, long timeout)
+      throws RemotingException, InterruptedException, MyberryServerException {
+    return this.removeComponentImpl(key, password, CommunicationMode.SYNC, null, timeout);
+  }
+
+  private SendResult removeComponentImpl(
+      byte[] key, //
+      String password, //
+      final CommunicationMode communicationMode, //
+      final SendCallback sendCallback, //
+      final long timeout //
+      ) throws RemotingException, InterruptedException, MyberryServerException {
+    ManageComponentRequestHeader manageComponentRequestHeader =
+        this.createAdminRequestHeader(password, "");
+
+    SendResult sendResult = null;
+    switch (communicationMode) {
+      case ASYNC:
+        sendResult =
+            this.getMyberryClientFactory()
+                .getMyberryClientAPIImpl()
+                .removeComponent(
+                    RequestCode.REMOVE_COMPONENT,
+                    defaultAdminClient.getDefaultRouter().getMaintainerAddr(),
+                    key,
+                    manageComponentRequestHeader,
+                    timeout,
+                    communicationMode,
+                    sendCallback);
+        break;
+      case ONEWAY:
+      case SYNC:
+        sendResult =
+            this.getMyberryClientFactory()
+                .getMyberryClientAPIImpl()
+                .removeComponent(
+                    RequestCode.REMOVE_COMPONENT,
+                    defaultAdminClient.getDefaultRouter().getMaintainerAddr(),
+                    key,
+                    manageComponentRequestHeader,
+                    timeout,
+                    communicationMode);
+        break;
+      default:
+        assert false;
+        break;
+    }
+    return sendResult;
+  }
+
   private ManageComponentRequestHeader createAdminRequestHeader(
       String password, String produceMode) {
     ManageComponentRequestHeader manageComponentRequestHeader = new ManageComponentRequestHeader();
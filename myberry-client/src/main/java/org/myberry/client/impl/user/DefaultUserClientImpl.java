@@ -23,8 +23,12 @@
 */
 package org.myberry.client.impl.user;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadPoolExecutor;
@@ -34,10 +38,18 @@ import org.myberry.client.exception.MyberryServerException;
 import org.myberry.client.impl.AbstractClientImpl;
 import org.myberry.client.impl.CommunicationMode;
 import org.myberry.client.impl.user.support.DefaultUserInvoker;
+import org.myberry.client.impl.user.support.IdPrefetchQueue;
+import org.myberry.client.impl.user.support.SegmentBuffer;
 import org.myberry.client.user.DefaultUserClient;
 import org.myberry.client.user.PullCallback;
+import org.myberry.client.user.PullEntry;
 import org.myberry.client.user.PullResult;
 import org.myberry.common.ThreadFactoryImpl;
+import org.myberry.common.codec.LightCodec;
+import org.myberry.common.codec.util.Maps;
+import org.myberry.common.protocol.RequestCode;
+import org.myberry.common.protocol.body.user.PullIdMultiRequestData;
+import org.myberry.common.protocol.body.user.PullIdMultiRequestData.PullIdEntry;
 import org.myberry.common.protocol.header.user.PullIdBackRequestHeader;
 import org.myberry.remoting.exception.RemotingException;
 
@@ -49,6 +61,11 @@ public class DefaultUserClientImpl extends AbstractClientImpl {
 
   private ExecutorService asyncSenderExecutor;
 
+  private final ConcurrentMap<String /* key */, SegmentBuffer> segmentBufferTable =
+      new ConcurrentHashMap<>();
+  private final ConcurrentMap<String /* key */, IdPrefetchQueue> prefetchQueueTable =
+      new ConcurrentHashMap<>();
+
   public DefaultUserClientImpl(final DefaultUserClient defaultUserClient) {
     super(defaultUserClient);
     this.defaultUserClient = defaultUserClient;
@@ -85,9 +102,45 @@ public class DefaultUserClientImpl extends AbstractClientImpl {
     this.asyncSenderExecutor = asyncSenderExecutor;
   }
 
+  public long nextId(String key, int timeType)
+      throws RemotingException, InterruptedException, MyberryServerException,
+          MyberryClientException {
+    SegmentBuffer segmentBuffer = segmentBufferTable.get(key);
+    if (segmentBuffer == null) {
+      segmentBuffer = new SegmentBuffer(key, timeType, this);
+      SegmentBuffer prev = segmentBufferTable.putIfAbsent(key, segmentBuffer);
+      if (prev != null) {
+        segmentBuffer = prev;
+      }
+    }
+    return segmentBuffer.nextId();
+  }
+
+  public SegmentBuffer getSegmentBuffer(String key) {
+    return segmentBufferTable.get(key);
+  }
+
+  public void enablePrefetch(String key, int timeType) {
+    prefetchQueueTable.putIfAbsent(key, new IdPrefetchQueue(key, timeType, this));
+  }
+
+  public void disablePrefetch(String key) {
+    prefetchQueueTable.remove(key);
+  }
+
+  public IdPrefetchQueue getPrefetchQueue(String key) {
+    return prefetchQueueTable.get(key);
+  }
+
   public PullResult pull(String key, HashMap<String, String> attachments)
       throws RemotingException, InterruptedException, MyberryServerException,
           MyberryClientException {
+    if (attachments == null || attachments.isEmpty()) {
+      IdPrefetchQueue prefetchQueue = prefetchQueueTable.get(key);
+      if (prefetchQueue != null) {
+        return prefetchQueue.pull();
+      }
+    }
     return this.pull(key, attachments, defaultUserClient.getPullMsgTimeout());
   }
 
@@ -142,14 +195,16 @@ public class DefaultUserClientImpl extends AbstractClientImpl {
           MyberryClientException {
     PullIdBackRequestHeader pullIdBackRequestHeader = new PullIdBackRequestHeader();
     pullIdBackRequestHeader.setKey(key);
+    byte[] body = Maps.serialize(attachments);
 
     PullResult pullResult = null;
     switch (communicationMode) {
       case ASYNC:
         pullResult =
             defaultUserInvoker.pull(
+                RequestCode.PULL_ID,
                 pullIdBackRequestHeader,
-                attachments,
+                body,
                 timeout,
                 timesRetry,
                 communicationMode,
@@ -159,7 +214,12 @@ public class DefaultUserClientImpl extends AbstractClientImpl {
       case SYNC:
         pullResult =
             defaultUserInvoker.pull(
-                pullIdBackRequestHeader, attachments, timeout, timesRetry, communicationMode);
+                RequestCode.PULL_ID,
+                pullIdBackRequestHeader,
+                body,
+                timeout,
+                timesRetry,
+                communicationMode);
         break;
       default:
         assert false;
@@ -237,14 +297,16 @@ public class DefaultUserClientImpl extends AbstractClientImpl {
           MyberryClientException {
     PullIdBackRequestHeader pullIdBackRequestHeader = new PullIdBackRequestHeader();
     pullIdBackRequestHeader.setKey(key);
+    byte[] body = Maps.serialize(attachments);
 
     PullResult pullResult = null;
     switch (communicationMode) {
       case ASYNC:
         pullResult =
             defaultUserInvoker.pull(
+                RequestCode.PULL_ID,
                 pullIdBackRequestHeader,
-                attachments,
+                body,
                 sessionKey,
                 timeout,
                 timesRetry,
@@ -255,8 +317,9 @@ public class DefaultUserClientImpl extends AbstractClientImpl {
       case SYNC:
         pullResult =
             defaultUserInvoker.pull(
+                RequestCode.PULL_ID,
                 pullIdBackRequestHeader,
-                attachments,
+                body,
                 sessionKey,
                 timeout,
                 timesRetry,
@@ -268,4 +331,210 @@ public class DefaultUserClientImpl extends AbstractClientImpl {
     }
     return pullResult;
   }
+
+  public PullResult pullBatch(String key, int count, HashMap<String, String> attachments)
+      throws RemotingException, InterruptedException, MyberryServerException,
+          MyberryClientException {
+    return this.pullBatch(key, count, attachments, defaultUserClient.getPullMsgTimeout());
+  }
+
+  public PullResult pullBatch(
+      String key, int count, HashMap<String, String> attachments, long timeout)
+      throws RemotingException, InterruptedException, MyberryServerException,
+          MyberryClientException {
+    return this.pullBatch(key, count, attachments, timeout, 0);
+  }
+
+  public PullResult pullBatch(
+      String key, int count, HashMap<String, String> attachments, long timeout, int timesRetry)
+      throws RemotingException, InterruptedException, MyberryServerException,
+          MyberryClientException {
+    return this.pullBatchImpl(
+        key, count, attachments, CommunicationMode.SYNC, null, timeout, timesRetry);
+  }
+
+  public void pullBatch(
+      String key, int count, HashMap<String, String> attachments, PullCallback pullCallback)
+      throws RemotingException, InterruptedException, MyberryServerException,
+          MyberryClientException {
+    this.pullBatch(key, count, attachments, pullCallback, defaultUserClient.getPullMsgTimeout());
+  }
+
+  public void pullBatch(
+      String key,
+      int count,
+      HashMap<String, String> attachments,
+      PullCallback pullCallback,
+      long timeout)
+      throws RemotingException, InterruptedException, MyberryServerException,
+          MyberryClientException {
+    this.pullBatch(key, count, attachments, pullCallback, timeout, 0);
+  }
+
+  public void pullBatch(
+      String key,
+      int count,
+      HashMap<String, String> attachments,
+      PullCallback pullCallback,
+      long timeout,
+      int timesRetry)
+      throws RemotingException, InterruptedException, MyberryServerException,
+          MyberryClientException {
+    this.pullBatchImpl(
+        key, count, attachments, CommunicationMode.ASYNC, pullCallback, timeout, timesRetry);
+  }
+
+  private PullResult pullBatchImpl( //
+      String key, //
+      int count, //
+      HashMap<String, String> attachments, //
+      final CommunicationMode communicationMode, //
+      final PullCallback pullCallback, //
+      final long timeout, //
+      final int timesRetry //
+      )
+      throws RemotingException, InterruptedException, MyberryServerException,
+          MyberryClientException {
+    if (count < 1) {
+      throw new MyberryClientException("count < 1");
+    }
+
+    PullIdBackRequestHeader pullIdBackRequestHeader = new PullIdBackRequestHeader();
+    pullIdBackRequestHeader.setKey(key);
+    pullIdBackRequestHeader.setCount(count);
+    byte[] body = Maps.serialize(attachments);
+
+    PullResult pullResult = null;
+    switch (communicationMode) {
+      case ASYNC:
+        pullResult =
+            defaultUserInvoker.pull(
+                RequestCode.PULL_ID_BATCH,
+                pullIdBackRequestHeader,
+                body,
+                timeout,
+                timesRetry,
+                communicationMode,
+                pullCallback);
+        break;
+      case ONEWAY:
+      case SYNC:
+        pullResult =
+            defaultUserInvoker.pull(
+                RequestCode.PULL_ID_BATCH,
+                pullIdBackRequestHeader,
+                body,
+                timeout,
+                timesRetry,
+                communicationMode);
+        break;
+      default:
+        assert false;
+        break;
+    }
+    return pullResult;
+  }
+
+  public PullResult pullMulti(List<PullEntry> entries)
+      throws RemotingException, InterruptedException, MyberryServerException,
+          MyberryClientException {
+    return this.pullMulti(entries, defaultUserClient.getPullMsgTimeout());
+  }
+
+  public PullResult pullMulti(List<PullEntry> entries, long timeout)
+      throws RemotingException, InterruptedException, MyberryServerException,
+          MyberryClientException {
+    return this.pullMulti(entries, timeout, 0);
+  }
+
+  public PullResult pullMulti(List<PullEntry> entries, long timeout, int timesRetry)
+      throws RemotingException, InterruptedException, MyberryServerException,
+          MyberryClientException {
+    return this.pullMultiImpl(entries, CommunicationMode.SYNC, null, timeout, timesRetry);
+  }
+
+  public void pullMulti(List<PullEntry> entries, PullCallback pullCallback)
+      throws RemotingException, InterruptedException, MyberryServerException,
+          MyberryClientException {
+    this.pullMulti(entries, pullCallback, defaultUserClient.getPullMsgTimeout());
+  }
+
+  public void pullMulti(List<PullEntry> entries, PullCallback pullCallback, long timeout)
+      throws RemotingException, InterruptedException, MyberryServerException,
+          MyberryClientException {
+    this.pullMulti(entries, pullCallback, timeout, 0);
+  }
+
+  public void pullMulti(
+      List<PullEntry> entries, PullCallback pullCallback, long timeout, int timesRetry)
+      throws RemotingException, InterruptedException, MyberryServerException,
+          MyberryClientException {
+    this.pullMultiImpl(entries, CommunicationMode.ASYNC, pullCallback, timeout, timesRetry);
+  }
+
+  private PullResult pullMultiImpl( //
+      List<PullEntry> entries, //
+      final CommunicationMode communicationMode, //
+      final PullCallback pullCallback, //
+      final long timeout, //
+      final int timesRetry //
+      )
+      throws RemotingException, InterruptedException, MyberryServerException,
+          MyberryClientException {
+    if (entries == null || entries.isEmpty()) {
+      throw new MyberryClientException("entries is empty");
+    }
+
+    StringBuilder keys = new StringBuilder();
+    List<PullIdEntry> pullIdEntries = new ArrayList<>(entries.size());
+    for (PullEntry entry : entries) {
+      if (keys.length() > 0) {
+        keys.append(',');
+      }
+      keys.append(entry.getKey());
+
+      PullIdEntry pullIdEntry = new PullIdEntry();
+      pullIdEntry.setKey(entry.getKey());
+      pullIdEntry.setCount(entry.getCount());
+      pullIdEntry.putAttachments(entry.getAttachments());
+      pullIdEntries.add(pullIdEntry);
+    }
+    PullIdMultiRequestData pullIdMultiRequestData = new PullIdMultiRequestData();
+    pullIdMultiRequestData.setEntries(pullIdEntries);
+
+    // the keys of the entries only name the request in the response and in errors
+    PullIdBackRequestHeader pullIdBackRequestHeader = new PullIdBackRequestHeader();
+    pullIdBackRequestHeader.setKey(keys.toString());
+    byte[] body = LightCodec.toBytes(pullIdMultiRequestData);
+
+    PullResult pullResult = null;
+    switch (communicationMode) {
+      case ASYNC:
+        pullResult =
+            defaultUserInvoker.pull(
+                RequestCode.PULL_ID_MULTI,
+                pullIdBackRequestHeader,
+                body,
+                timeout,
+                timesRetry,
+                communicationMode,
+                pullCallback);
+        break;
+      case ONEWAY:
+      case SYNC:
+        pullResult =
+            defaultUserInvoker.pull(
+                RequestCode.PULL_ID_MULTI,
+                pullIdBackRequestHeader,
+                body,
+                timeout,
+                timesRetry,
+                communicationMode);
+        break;
+      default:
+        assert false;
+        break;
+    }
+    return pullResult;
+  }
 }
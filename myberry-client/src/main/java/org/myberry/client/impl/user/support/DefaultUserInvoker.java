@@ -52,8 +52,9 @@ public class DefaultUserInvoker {
   }
 
   public PullResult pull( //
+      final int requestCode, //
       final CommandCustomHeader requestHeader, //
-      final HashMap<String, String> attachments, //
+      final byte[] body, //
       final long timeoutMillis, //
       final int timesRetry, //
       final CommunicationMode communicationMode //
@@ -63,16 +64,18 @@ public class DefaultUserInvoker {
     return this.autoSelect(timesRetry)
         .doInvoke(
             defaultUserClientImpl,
+            requestCode,
             requestHeader,
-            attachments,
+            body,
             timeoutMillis,
             timesRetry,
             communicationMode);
   }
 
   public PullResult pull( //
+      final int requestCode, //
       final CommandCustomHeader requestHeader, //
-      final HashMap<String, String> attachments, //
+      final byte[] body, //
       final long timeoutMillis, //
       final int timesRetry, //
       final CommunicationMode communicationMode, //
@@ -83,8 +86,9 @@ public class DefaultUserInvoker {
     this.autoSelect(timesRetry)
         .doInvoke(
             defaultUserClientImpl,
+            requestCode,
             requestHeader,
-            attachments,
+            body,
             timeoutMillis,
             timesRetry,
             communicationMode,
@@ -93,8 +97,9 @@ public class DefaultUserInvoker {
   }
 
   public PullResult pull( //
+      final int requestCode, //
       final CommandCustomHeader requestHeader, //
-      final HashMap<String, String> attachments, //
+      final byte[] body, //
       final String sessionKey, //
       final long timeoutMillis, //
       final int timesRetry, //
@@ -105,8 +110,9 @@ public class DefaultUserInvoker {
     return this.autoSelect(timesRetry)
         .doInvoke(
             defaultUserClientImpl,
+            requestCode,
             requestHeader,
-            attachments,
+            body,
             sessionKey,
             timeoutMillis,
             timesRetry,
@@ -114,8 +120,9 @@ public class DefaultUserInvoker {
   }
 
   public PullResult pull( //
+      final int requestCode, //
       final CommandCustomHeader requestHeader, //
-      final HashMap<String, String> attachments, //
+      final byte[] body, //
       final String sessionKey, //
       final long timeoutMillis, //
       final int timesRetry, //
@@ -127,8 +134,9 @@ public class DefaultUserInvoker {
     this.autoSelect(timesRetry)
         .doInvoke(
             defaultUserClientImpl,
+            requestCode,
             requestHeader,
-            attachments,
+            body,
             sessionKey,
             timeoutMillis,
             timesRetry,
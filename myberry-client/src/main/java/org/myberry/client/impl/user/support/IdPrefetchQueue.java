@@ -0,0 +1,261 @@
+/*
+* MIT License
+*
+* Copyright (c) 2020 gaoyang
+*
+* Permission is hereby granted, free of charge, to any person obtaining a copy
+* of this software and associated documentation files (the "Software"), to deal
+* in the Software without restriction, including without limitation the rights
+* to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+* copies of the Software, and to permit persons to whom the Software is
+* furnished to do so, subject to the following conditions:
+
+* The above copyright notice and this permission notice shall be included in all
+* copies or substantial portions of the Software.
+
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+* IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+* AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+* LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+* OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+* SOFTWARE.
+*/
+package org.myberry.client.impl.user.support;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import org.myberry.client.exception.MyberryClientException;
+import org.myberry.client.exception.MyberryServerException;
+import org.myberry.client.impl.user.DefaultUserClientImpl;
+import org.myberry.client.user.DefaultUserClient;
+import org.myberry.client.user.PullCallback;
+import org.myberry.client.user.PullResult;
+import org.myberry.client.user.PullStatus;
+import org.myberry.common.constant.LoggerName;
+import org.myberry.common.strategy.StrategyDate;
+import org.myberry.remoting.exception.RemotingException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Queue of the CR ids of a key pulled ahead by batch pulls. A pull takes an id out of the queue,
+ * the queue is refilled up to its depth in the background once it falls below the low-water mark.
+ * When the expression of the key has a time placeholder, the ids pulled before a rollover of its
+ * time are discarded at the rollover.
+ */
+public class IdPrefetchQueue {
+
+  private static final Logger log = LoggerFactory.getLogger(LoggerName.CLIENT_LOGGER_NAME);
+
+  private final String key;
+  // StrategyDate of the time placeholder of the key
+  private final int timeType;
+  private final DefaultUserClientImpl defaultUserClientImpl;
+
+  private final Queue<Batch> batches = new ConcurrentLinkedQueue<>();
+  // ids left in the batches, approximate while batches are taken from
+  private final AtomicInteger size = new AtomicInteger();
+  private final AtomicBoolean refilling = new AtomicBoolean(false);
+  private final Lock refillLock = new ReentrantLock();
+  private final Condition refilled = refillLock.newCondition();
+
+  private final LongAdder refillCount = new LongAdder();
+  private final LongAdder missCount = new LongAdder();
+  private final LongAdder discardCount = new LongAdder();
+
+  public IdPrefetchQueue(
+      final String key, final int timeType, final DefaultUserClientImpl defaultUserClientImpl) {
+    this.key = key;
+    this.timeType = timeType;
+    this.defaultUserClientImpl = defaultUserClientImpl;
+  }
+
+  /**
+   * Take the next prefetched id. When the queue is empty it waits up to prefetchMaxWaitMills for a
+   * refill, then pulls the id from the server.
+   */
+  public PullResult pull()
+      throws RemotingException, InterruptedException, MyberryServerException,
+          MyberryClientException {
+    String newId = this.poll();
+    if (newId == null) {
+      long nanos =
+          TimeUnit.MILLISECONDS.toNanos(
+              defaultUserClientImpl.getDefaultUserClient().getPrefetchMaxWaitMills());
+      refillLock.lock();
+      try {
+        while ((newId = this.poll()) == null && refilling.get() && nanos > 0) {
+          nanos = refilled.awaitNanos(nanos);
+        }
+      } finally {
+        refillLock.unlock();
+      }
+    }
+    if (newId != null) {
+      return new PullResult(PullStatus.PULL_OK, key, newId);
+    }
+
+    missCount.increment();
+    return defaultUserClientImpl.pull(
+        key, null, defaultUserClientImpl.getDefaultUserClient().getPullMsgTimeout());
+  }
+
+  private String poll() {
+    try {
+      long now = System.currentTimeMillis();
+      for (; ; ) {
+        Batch batch = batches.peek();
+        if (batch == null) {
+          return null;
+        }
+        if (now >= batch.expireTime) {
+          int discarded = batch.discard();
+          size.addAndGet(-discarded);
+          discardCount.add(discarded);
+          batches.remove(batch);
+          continue;
+        }
+        int index = batch.cursor.getAndIncrement();
+        if (index < batch.newIds.size()) {
+          size.decrementAndGet();
+          return batch.newIds.get(index);
+        }
+        batches.remove(batch);
+      }
+    } finally {
+      this.refill();
+    }
+  }
+
+  private void refill() {
+    DefaultUserClient defaultUserClient = defaultUserClientImpl.getDefaultUserClient();
+    int depth = defaultUserClient.getPrefetchQueueDepth();
+    int current = size.get();
+    if (current >= depth * defaultUserClient.getPrefetchLowWaterPercent() / 100
+        || !refilling.compareAndSet(false, true)) {
+      return;
+    }
+    refillCount.increment();
+    // taken before the request, so the ids rendered before the rollover are never kept past it
+    final long expireTime =
+        nextRolloverTime(
+            timeType, System.currentTimeMillis(), defaultUserClient.getRolloverZoneId());
+    // a deeper queue is topped up by the next refills, the low-water mark is checked per poll
+    int count = Math.min(defaultUserClient.getPrefetchMaxBatchSize(), Math.max(1, depth - current));
+    try {
+      defaultUserClientImpl.pullBatch(
+          key,
+          count,
+          null,
+          new PullCallback() {
+
+            @Override
+            public void onSuccess(PullResult pullResult) {
+              if (PullStatus.PULL_OK != pullResult.getPullStatus()
+                  || pullResult.getNewIds() == null) {
+                this.onException(
+                    new MyberryClientException("refill of key: " + key + " failed, " + pullResult));
+                return;
+              }
+              batches.add(new Batch(pullResult.getNewIds(), expireTime));
+              size.addAndGet(pullResult.getNewIds().size());
+              IdPrefetchQueue.this.refillDone();
+            }
+
+            @Override
+            public void onException(Throwable e) {
+              log.warn("refill prefetch queue of key: {} failed: {}", key, e.getMessage());
+              IdPrefetchQueue.this.refillDone();
+            }
+          });
+    } catch (Exception e) {
+      log.warn("refill prefetch queue of key: {} failed: {}", key, e.getMessage());
+      this.refillDone();
+    }
+  }
+
+  private void refillDone() {
+    refilling.set(false);
+    refillLock.lock();
+    try {
+      refilled.signalAll();
+    } finally {
+      refillLock.unlock();
+    }
+  }
+
+  /**
+   * Epoch millis of the next rollover of the time bucket of type after time, at the midnight of
+   * the zone of the servers.
+   */
+  static long nextRolloverTime(int timeType, long time, ZoneId zoneId) {
+    LocalDate date = Instant.ofEpochMilli(time).atZone(zoneId).toLocalDate();
+    LocalDate end;
+    switch (timeType) {
+      case StrategyDate.TIME_DAY:
+        end = date.plusDays(1);
+        break;
+      case StrategyDate.TIME_MONTH:
+        end = date.withDayOfMonth(1).plusMonths(1);
+        break;
+      case StrategyDate.TIME_YEAR:
+        end = date.withDayOfYear(1).plusYears(1);
+        break;
+      default:
+        return Long.MAX_VALUE;
+    }
+    return end.atStartOfDay(zoneId).toInstant().toEpochMilli();
+  }
+
+  public String getKey() {
+    return key;
+  }
+
+  public int size() {
+    return Math.max(0, size.get());
+  }
+
+  /** Number of batch pulls sent to refill the queue. */
+  public long getRefillCount() {
+    return refillCount.sum();
+  }
+
+  /** Number of pulls which found the queue empty and pulled from the server. */
+  public long getMissCount() {
+    return missCount.sum();
+  }
+
+  /** Number of ids discarded at a rollover of the time placeholder. */
+  public long getDiscardCount() {
+    return discardCount.sum();
+  }
+
+  static class Batch {
+
+    private final List<String> newIds;
+    private final long expireTime;
+    final AtomicInteger cursor = new AtomicInteger();
+
+    Batch(List<String> newIds, long expireTime) {
+      this.newIds = newIds;
+      this.expireTime = expireTime;
+    }
+
+    /** Close this batch to takers, returns the number of ids not taken. */
+    int discard() {
+      return Math.max(0, newIds.size() - cursor.getAndSet(newIds.size()));
+    }
+  }
+}
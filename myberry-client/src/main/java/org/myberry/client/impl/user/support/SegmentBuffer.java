@@ -0,0 +1,232 @@
+/*
+* MIT License
+*
+* Copyright (c) 2020 gaoyang
+*
+* Permission is hereby granted, free of charge, to any person obtaining a copy
+* of this software and associated documentation files (the "Software"), to deal
+* in the Software without restriction, including without limitation the rights
+* to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+* copies of the Software, and to permit persons to whom the Software is
+* furnished to do so, subject to the following conditions:
+
+* The above copyright notice and this permission notice shall be included in all
+* copies or substantial portions of the Software.
+
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+* IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+* AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+* LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+* OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+* SOFTWARE.
+*/
+package org.myberry.client.impl.user.support;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import org.myberry.client.exception.MyberryClientException;
+import org.myberry.client.exception.MyberryServerException;
+import org.myberry.client.impl.user.DefaultUserClientImpl;
+import org.myberry.client.user.PullCallback;
+import org.myberry.client.user.PullResult;
+import org.myberry.client.user.PullStatus;
+import org.myberry.common.constant.LoggerName;
+import org.myberry.remoting.exception.RemotingException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Double buffer of the NS segments of a key. Ids are handed out of the current segment by an
+ * atomic cursor, the next segment is pulled in the background once the current one is consumed up
+ * to the prefetch percent, so a handout only waits for the server when the prefetch falls behind.
+ * When the key is reset by a time type, both segments are dropped at the rollover of the time, the
+ * server starts the key over then.
+ */
+public class SegmentBuffer {
+
+  private static final Logger log = LoggerFactory.getLogger(LoggerName.CLIENT_LOGGER_NAME);
+
+  private final String key;
+  // StrategyDate of the reset type of the key
+  private final int timeType;
+  private final DefaultUserClientImpl defaultUserClientImpl;
+
+  private volatile Segment current;
+  private volatile Segment next;
+  private final AtomicBoolean prefetching = new AtomicBoolean(false);
+  // taken only to switch segments
+  private final Lock switchLock = new ReentrantLock();
+
+  private final LongAdder prefetchCount = new LongAdder();
+  private final LongAdder prefetchMissCount = new LongAdder();
+  private final LongAdder prefetchFailureCount = new LongAdder();
+
+  public SegmentBuffer(
+      final String key, final int timeType, final DefaultUserClientImpl defaultUserClientImpl) {
+    this.key = key;
+    this.timeType = timeType;
+    this.defaultUserClientImpl = defaultUserClientImpl;
+  }
+
+  public long nextId()
+      throws RemotingException, InterruptedException, MyberryServerException,
+          MyberryClientException {
+    for (; ; ) {
+      Segment segment = current;
+      if (segment != null && !segment.isExpired()) {
+        long id = segment.cursor.getAndIncrement();
+        if (id <= segment.end) {
+          // every later handout retries a prefetch that failed
+          if (id >= segment.prefetchAt && next == null) {
+            this.prefetch();
+          }
+          return id;
+        }
+      }
+      this.switchSegment(segment);
+    }
+  }
+
+  /**
+   * Replace the exhausted or expired segment by the prefetched one, or pull one if there is none
+   * yet or it is expired too.
+   */
+  private void switchSegment(Segment exhausted)
+      throws RemotingException, InterruptedException, MyberryServerException,
+          MyberryClientException {
+    switchLock.lock();
+    try {
+      if (current != exhausted) {
+        return;
+      }
+      Segment segment = next;
+      next = null;
+      if (segment != null && segment.isExpired()) {
+        segment = null;
+      }
+      if (segment == null) {
+        if (exhausted != null && !exhausted.isExpired()) {
+          prefetchMissCount.increment();
+        }
+        // taken before the request, so the ids rendered before the rollover are never kept past it
+        long expireTime = this.nextRolloverTime();
+        segment =
+            this.toSegment(
+                defaultUserClientImpl.pull(
+                    key, null, defaultUserClientImpl.getDefaultUserClient().getPullMsgTimeout()),
+                expireTime);
+      }
+      current = segment;
+    } finally {
+      switchLock.unlock();
+    }
+  }
+
+  private void prefetch() {
+    if (next != null || !prefetching.compareAndSet(false, true)) {
+      return;
+    }
+    prefetchCount.increment();
+    final long expireTime = this.nextRolloverTime();
+    try {
+      defaultUserClientImpl.pull(
+          key,
+          null,
+          new PullCallback() {
+
+            @Override
+            public void onSuccess(PullResult pullResult) {
+              try {
+                next = SegmentBuffer.this.toSegment(pullResult, expireTime);
+              } catch (MyberryClientException e) {
+                this.onException(e);
+                return;
+              }
+              prefetching.set(false);
+            }
+
+            @Override
+            public void onException(Throwable e) {
+              prefetchFailureCount.increment();
+              prefetching.set(false);
+              log.warn("prefetch segment of key: {} failed: {}", key, e.getMessage());
+            }
+          });
+    } catch (Exception e) {
+      prefetchFailureCount.increment();
+      prefetching.set(false);
+      log.warn("prefetch segment of key: {} failed: {}", key, e.getMessage());
+    }
+  }
+
+  private long nextRolloverTime() {
+    return IdPrefetchQueue.nextRolloverTime(
+        timeType,
+        System.currentTimeMillis(),
+        defaultUserClientImpl.getDefaultUserClient().getRolloverZoneId());
+  }
+
+  private Segment toSegment(PullResult pullResult, long expireTime)
+      throws MyberryClientException {
+    if (pullResult == null || PullStatus.PULL_OK != pullResult.getPullStatus()) {
+      throw new MyberryClientException(
+          "pull segment of key: " + key + " failed, " + pullResult);
+    }
+    if (pullResult.getStart() == null || pullResult.getEnd() == null) {
+      throw new MyberryClientException("key: " + key + " is not a key of NS mode");
+    }
+    return new Segment(
+        pullResult.getStart(),
+        pullResult.getEnd(),
+        defaultUserClientImpl.getDefaultUserClient().getSegmentPrefetchPercent(),
+        expireTime);
+  }
+
+  public String getKey() {
+    return key;
+  }
+
+  public int getTimeType() {
+    return timeType;
+  }
+
+  /** Number of segments pulled in the background. */
+  public long getPrefetchCount() {
+    return prefetchCount.sum();
+  }
+
+  /** Number of times a segment ran out before the next one was prefetched. */
+  public long getPrefetchMissCount() {
+    return prefetchMissCount.sum();
+  }
+
+  public long getPrefetchFailureCount() {
+    return prefetchFailureCount.sum();
+  }
+
+  static class Segment {
+
+    final long end;
+    // the handouts from this id on start the prefetch of the next segment
+    final long prefetchAt;
+    // the rollover of the reset type, Long.MAX_VALUE if the key is never reset
+    final long expireTime;
+    final AtomicLong cursor;
+
+    Segment(long start, long end, int prefetchPercent, long expireTime) {
+      this.end = end;
+      this.prefetchAt = start + (end - start + 1) * prefetchPercent / 100;
+      this.expireTime = expireTime;
+      this.cursor = new AtomicLong(start);
+    }
+
+    // the clock is read only for a key reset by a time type
+    boolean isExpired() {
+      return expireTime != Long.MAX_VALUE && System.currentTimeMillis() >= expireTime;
+    }
+  }
+}
@@ -23,7 +23,6 @@
 */
 package org.myberry.client.support;
 
-import java.util.HashMap;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
 import org.myberry.client.exception.MyberryClientException;
@@ -53,8 +52,9 @@ public abstract class AbstractInvoker {
 
   public abstract PullResult doInvoke(
       final DefaultUserClientImpl defaultUserClientImpl, //
+      final int requestCode, //
       final CommandCustomHeader requestHeader, //
-      final HashMap<String, String> attachments, //
+      final byte[] body, //
       final long timeoutMillis, //
       final int timesRetry, //
       final CommunicationMode communicationMode //
@@ -62,8 +62,9 @@ public abstract class AbstractInvoker {
 
   public abstract void doInvoke(
       final DefaultUserClientImpl defaultUserClientImpl, //
+      final int requestCode, //
       final CommandCustomHeader requestHeader, //
-      final HashMap<String, String> attachments, //
+      final byte[] body, //
       final long timeoutMillis, //
       final int timesRetry, //
       final CommunicationMode communicationMode,
@@ -72,8 +73,9 @@ public abstract class AbstractInvoker {
 
   public abstract PullResult doInvoke(
       final DefaultUserClientImpl defaultUserClientImpl, //
+      final int requestCode, //
       final CommandCustomHeader requestHeader, //
-      final HashMap<String, String> attachments, //
+      final byte[] body, //
       final String sessionKey, //
       final long timeoutMillis, //
       final int timesRetry, //
@@ -82,8 +84,9 @@ public abstract class AbstractInvoker {
 
   public abstract void doInvoke(
       final DefaultUserClientImpl defaultUserClientImpl, //
+      final int requestCode, //
       final CommandCustomHeader requestHeader, //
-      final HashMap<String, String> attachments, //
+      final byte[] body, //
       final String sessionKey, //
       final long timeoutMillis, //
       final int timesRetry, //
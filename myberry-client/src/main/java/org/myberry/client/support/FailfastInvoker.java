@@ -23,7 +23,6 @@
 */
 package org.myberry.client.support;
 
-import java.util.HashMap;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.RejectedExecutionException;
@@ -59,8 +58,9 @@ public class FailfastInvoker extends AbstractInvoker {
   @Override
   public PullResult doInvoke(
       final DefaultUserClientImpl defaultUserClientImpl, //
+      final int requestCode, //
       final CommandCustomHeader requestHeader, //
-      final HashMap<String, String> attachments,
+      final byte[] body,
       final long timeoutMillis, //
       final int timesRetry, //
       final CommunicationMode communicationMode //
@@ -72,7 +72,7 @@ public class FailfastInvoker extends AbstractInvoker {
       return defaultUserClientImpl
           .getMyberryClientFactory()
           .getMyberryClientAPIImpl()
-          .pull(addr, requestHeader, attachments, timeoutMillis, communicationMode);
+          .pull(addr, requestCode, requestHeader, body, timeoutMillis, communicationMode);
     } catch (RemotingException e) {
       throw new RemotingException(
           String.format(
@@ -91,8 +91,9 @@ public class FailfastInvoker extends AbstractInvoker {
   @Override
   public void doInvoke(
       final DefaultUserClientImpl defaultUserClientImpl, //
+      final int requestCode, //
       final CommandCustomHeader requestHeader, //
-      final HashMap<String, String> attachments,
+      final byte[] body,
       final long timeoutMillis, //
       final int timesRetry, //
       final CommunicationMode communicationMode, //
@@ -116,8 +117,9 @@ public class FailfastInvoker extends AbstractInvoker {
                       .getMyberryClientAPIImpl()
                       .pull(
                           addr,
+                          requestCode,
                           requestHeader,
-                          attachments,
+                          body,
                           timeoutMillis - costTime,
                           communicationMode,
                           pullCallback);
@@ -147,8 +149,9 @@ public class FailfastInvoker extends AbstractInvoker {
   @Override
   public PullResult doInvoke(
       DefaultUserClientImpl defaultUserClientImpl, //
+      int requestCode, //
       CommandCustomHeader requestHeader, //
-      HashMap<String, String> attachments, //
+      byte[] body, //
       String sessionKey, //
       long timeoutMillis, //
       int timesRetry, //
@@ -161,7 +164,7 @@ public class FailfastInvoker extends AbstractInvoker {
       return defaultUserClientImpl
           .getMyberryClientFactory()
           .getMyberryClientAPIImpl()
-          .pull(addr, requestHeader, attachments, timeoutMillis, communicationMode);
+          .pull(addr, requestCode, requestHeader, body, timeoutMillis, communicationMode);
     } catch (RemotingException e) {
       throw new RemotingException(
           String.format(
@@ -180,8 +183,9 @@ public class FailfastInvoker extends AbstractInvoker {
   @Override
   public void doInvoke(
       DefaultUserClientImpl defaultUserClientImpl, //
+      int requestCode, //
       CommandCustomHeader requestHeader, //
-      HashMap<String, String> attachments, //
+      byte[] body, //
       String sessionKey, //
       long timeoutMillis, //
       int timesRetry, //
@@ -206,8 +210,9 @@ public class FailfastInvoker extends AbstractInvoker {
                       .getMyberryClientAPIImpl()
                       .pull(
                           addr,
+                          requestCode,
                           requestHeader,
-                          attachments,
+                          body,
                           timeoutMillis - costTime,
                           communicationMode,
                           pullCallback);
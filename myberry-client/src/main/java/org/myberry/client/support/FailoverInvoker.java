@@ -24,7 +24,6 @@
 package org.myberry.client.support;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.RejectedExecutionException;
@@ -64,16 +63,18 @@ public class FailoverInvoker extends AbstractInvoker {
   @Override
   public PullResult doInvoke(
       final DefaultUserClientImpl defaultUserClientImpl,
+      final int requestCode,
       final CommandCustomHeader requestHeader,
-      final HashMap<String, String> attachments,
+      final byte[] body,
       final long timeoutMillis,
       final int timesRetry,
       final CommunicationMode communicationMode)
       throws RemotingException, InterruptedException, MyberryServerException {
     return retryInvoke(
         defaultUserClientImpl,
+        requestCode,
         requestHeader,
-        attachments,
+        body,
         timeoutMillis,
         timesRetry,
         communicationMode);
@@ -82,8 +83,9 @@ public class FailoverInvoker extends AbstractInvoker {
   @Override
   public void doInvoke(
       final DefaultUserClientImpl defaultUserClientImpl,
+      final int requestCode,
       final CommandCustomHeader requestHeader,
-      final HashMap<String, String> attachments,
+      final byte[] body,
       final long timeoutMillis,
       final int timesRetry,
       final CommunicationMode communicationMode,
@@ -100,8 +102,9 @@ public class FailoverInvoker extends AbstractInvoker {
                 try {
                   retryInvoke(
                       defaultUserClientImpl,
+                      requestCode,
                       requestHeader,
-                      attachments,
+                      body,
                       timeoutMillis,
                       timesRetry,
                       communicationMode,
@@ -200,16 +203,18 @@ public class FailoverInvoker extends AbstractInvoker {
 
   private PullResult retryInvoke(
       final DefaultUserClientImpl defaultUserClientImpl,
+      final int requestCode,
       final CommandCustomHeader requestHeader,
-      final HashMap<String, String> attachments,
+      final byte[] body,
       final long timeoutMillis,
       final int timesRetry,
       final CommunicationMode communicationMode)
       throws RemotingException {
     return retryInvoke(
         defaultUserClientImpl,
+        requestCode,
         requestHeader,
-        attachments,
+        body,
         timeoutMillis,
         timesRetry,
         communicationMode,
@@ -219,8 +224,9 @@ public class FailoverInvoker extends AbstractInvoker {
 
   private PullResult retryInvoke(
       final DefaultUserClientImpl defaultUserClientImpl,
+      final int requestCode,
       final CommandCustomHeader requestHeader,
-      final HashMap<String, String> attachments,
+      final byte[] body,
       final long timeoutMillis,
       final int timesRetry,
       final CommunicationMode communicationMode,
@@ -265,8 +271,9 @@ public class FailoverInvoker extends AbstractInvoker {
                 .getMyberryClientAPIImpl()
                 .pull(
                     addr,
+                    requestCode,
                     requestHeader,
-                    attachments,
+                    body,
                     times == 0
                         ? (timeoutMillis - scheduleThreadTime - costTime)
                         : (timeoutMillis - costTime),
@@ -279,7 +286,13 @@ public class FailoverInvoker extends AbstractInvoker {
             return defaultUserClientImpl
                 .getMyberryClientFactory()
                 .getMyberryClientAPIImpl()
-                .pull(addr, requestHeader, attachments, timeoutMillis - costTime, communicationMode);
+                .pull(
+                    addr,
+                    requestCode,
+                    requestHeader,
+                    body,
+                    timeoutMillis - costTime,
+                    communicationMode);
           default:
             break;
         }
@@ -303,8 +316,9 @@ public class FailoverInvoker extends AbstractInvoker {
   @Override
   public PullResult doInvoke(
       final DefaultUserClientImpl defaultUserClientImpl,
+      final int requestCode,
       final CommandCustomHeader requestHeader,
-      final HashMap<String, String> attachments,
+      final byte[] body,
       final String sessionKey,
       final long timeoutMillis,
       final int timesRetry,
@@ -312,8 +326,9 @@ public class FailoverInvoker extends AbstractInvoker {
       throws RemotingException, InterruptedException, MyberryServerException {
     return retryInvoke(
         defaultUserClientImpl,
+        requestCode,
         requestHeader,
-        attachments,
+        body,
         sessionKey,
         timeoutMillis,
         timesRetry,
@@ -323,8 +338,9 @@ public class FailoverInvoker extends AbstractInvoker {
   @Override
   public void doInvoke(
       final DefaultUserClientImpl defaultUserClientImpl,
+      final int requestCode,
       final CommandCustomHeader requestHeader,
-      final HashMap<String, String> attachments,
+      final byte[] body,
       final String sessionKey,
       final long timeoutMillis,
       final int timesRetry,
@@ -342,8 +358,9 @@ public class FailoverInvoker extends AbstractInvoker {
                 try {
                   retryInvoke(
                       defaultUserClientImpl,
+                      requestCode,
                       requestHeader,
-                      attachments,
+                      body,
                       sessionKey,
                       timeoutMillis,
                       timesRetry,
@@ -450,8 +467,9 @@ public class FailoverInvoker extends AbstractInvoker {
 
   private PullResult retryInvoke(
       final DefaultUserClientImpl defaultUserClientImpl,
+      final int requestCode,
       final CommandCustomHeader requestHeader,
-      final HashMap<String, String> attachments,
+      final byte[] body,
       final String sessionKey,
       final long timeoutMillis,
       final int timesRetry,
@@ -459,8 +477,9 @@ public class FailoverInvoker extends AbstractInvoker {
       throws RemotingException {
     return retryInvoke(
         defaultUserClientImpl,
+        requestCode,
         requestHeader,
-        attachments,
+        body,
         sessionKey,
         timeoutMillis,
         timesRetry,
@@ -471,8 +490,9 @@ public class FailoverInvoker extends AbstractInvoker {
 
   private PullResult retryInvoke(
       final DefaultUserClientImpl defaultUserClientImpl,
+      final int requestCode,
       final CommandCustomHeader requestHeader,
-      final HashMap<String, String> attachments,
+      final byte[] body,
       final String sessionKey,
       final long timeoutMillis,
       final int timesRetry,
@@ -518,8 +538,9 @@ public class FailoverInvoker extends AbstractInvoker {
                 .getMyberryClientAPIImpl()
                 .pull(
                     addr,
+                    requestCode,
                     requestHeader,
-                    attachments,
+                    body,
                     times == 0
                         ? (timeoutMillis - scheduleThreadTime - costTime)
                         : (timeoutMillis - costTime),
@@ -532,7 +553,13 @@ public class FailoverInvoker extends AbstractInvoker {
             return defaultUserClientImpl
                 .getMyberryClientFactory()
                 .getMyberryClientAPIImpl()
-                .pull(addr, requestHeader, attachments, timeoutMillis - costTime, communicationMode);
+                .pull(
+                    addr,
+                    requestCode,
+                    requestHeader,
+                    body,
+                    timeoutMillis - costTime,
+                    communicationMode);
           default:
             break;
         }
@@ -23,12 +23,17 @@
  */
 package org.myberry.client.user;
 
+import java.time.ZoneId;
 import java.util.HashMap;
+import java.util.List;
 import java.util.concurrent.ExecutorService;
 import org.myberry.client.AbstractMyberryClient;
 import org.myberry.client.exception.MyberryClientException;
 import org.myberry.client.exception.MyberryServerException;
 import org.myberry.client.impl.user.DefaultUserClientImpl;
+import org.myberry.client.impl.user.support.IdPrefetchQueue;
+import org.myberry.client.impl.user.support.SegmentBuffer;
+import org.myberry.common.strategy.StrategyDate;
 import org.myberry.remoting.exception.RemotingException;
 import org.myberry.remoting.netty.NettyRemotingClient;
 
@@ -39,6 +44,27 @@ public class DefaultUserClient extends AbstractMyberryClient implements UserClie
   private String clientGroup;
   /** Timeout for pulling messages. */
   private int pullMsgTimeout = 3000;
+  /**
+   * Percent of an NS segment handed out by {@link #nextId(String)} before the next segment is
+   * prefetched, 100 turns the prefetch off.
+   */
+  private int segmentPrefetchPercent = 20;
+  /** Most CR ids of a key kept by the queue of {@link #enablePrefetch(String)}. */
+  private int prefetchQueueDepth = 1000;
+  /**
+   * Most ids of one batch pull refilling the queue, a deeper queue is refilled by several pulls.
+   * Keep it within maxPullBatchSize of the server, which rejects larger batches.
+   */
+  private int prefetchMaxBatchSize = 10000;
+  /** Percent of the queue depth below which the queue is refilled in the background. */
+  private int prefetchLowWaterPercent = 50;
+  /** Time a pull waits for the refill of an empty queue before it pulls from the server. */
+  private long prefetchMaxWaitMills = 100;
+  /**
+   * Zone of the clock of the servers. The cached ids of a key with a time type are dropped at the
+   * midnight of this zone, when the servers roll the time over, so it must be the zone they run in.
+   */
+  private ZoneId rolloverZoneId = ZoneId.systemDefault();
 
   /** Default constructor. */
   public DefaultUserClient() {
@@ -588,6 +614,465 @@ public class DefaultUserClient extends AbstractMyberryClient implements UserClie
     defaultUserClientImpl.pull(key, attachments, pullCallback, sessionKey, timeout, timesRetry);
   }
 
+  /**
+   * Use weighted round-robin load balance to pull a batch of ids of CR mode in synchronous mode.
+   * The ids are taken from the key with one request, so bulk pullers do not pay a round trip per
+   * id.
+   *
+   * @param key required.
+   * @param count number of ids, at most {@code maxPullBatchSize} of the server, a count out of
+   *     range fails with {@code ResponseCode.COUNT_OUT_OF_RANGE}.
+   * @return {@link PullResult} instance whose {@link PullResult#getNewIds()} holds the ids in
+   *     order, the same as {@link #pull(java.lang.String)} otherwise.
+   * @throws RemotingException if there is any network-tier error.
+   * @throws MyberryServerException if there is any error with server.
+   * @throws InterruptedException if the pulling thread is interrupted.
+   * @throws MyberryClientException if there is any error with client.
+   */
+  @Override
+  public PullResult pullBatch(String key, int count)
+      throws RemotingException, InterruptedException, MyberryServerException,
+          MyberryClientException {
+    return this.pullBatch(key, count, (HashMap<String, String>) null);
+  }
+
+  /**
+   * Same to {@link #pullBatch(java.lang.String, int)} with attachments specified in addition.
+   *
+   * @param key required.
+   * @param count number of ids.
+   * @param attachments non-required.
+   * @return {@link PullResult} instance whose {@link PullResult#getNewIds()} holds the ids in
+   *     order, the same as {@link #pull(java.lang.String)} otherwise.
+   * @throws RemotingException if there is any network-tier error.
+   * @throws MyberryServerException if there is any error with server.
+   * @throws InterruptedException if the pulling thread is interrupted.
+   * @throws MyberryClientException if there is any error with client.
+   */
+  @Override
+  public PullResult pullBatch(String key, int count, HashMap<String, String> attachments)
+      throws RemotingException, InterruptedException, MyberryServerException,
+          MyberryClientException {
+    return defaultUserClientImpl.pullBatch(key, count, attachments);
+  }
+
+  /**
+   * Same to {@link #pullBatch(java.lang.String, int)} with pull timeout specified in addition.
+   *
+   * @param key required.
+   * @param count number of ids.
+   * @param timeout pull timeout.
+   * @return {@link PullResult} instance whose {@link PullResult#getNewIds()} holds the ids in
+   *     order, the same as {@link #pull(java.lang.String)} otherwise.
+   * @throws RemotingException if there is any network-tier error.
+   * @throws MyberryServerException if there is any error with server.
+   * @throws InterruptedException if the pulling thread is interrupted.
+   * @throws MyberryClientException if there is any error with client.
+   */
+  @Override
+  public PullResult pullBatch(String key, int count, long timeout)
+      throws RemotingException, InterruptedException, MyberryServerException,
+          MyberryClientException {
+    return this.pullBatch(key, count, (HashMap<String, String>) null, timeout);
+  }
+
+  /**
+   * Same to {@link #pullBatch(java.lang.String, int, HashMap)} with pull timeout specified in
+   * addition.
+   *
+   * @param key required.
+   * @param count number of ids.
+   * @param attachments non-required.
+   * @param timeout pull timeout.
+   * @return {@link PullResult} instance whose {@link PullResult#getNewIds()} holds the ids in
+   *     order, the same as {@link #pull(java.lang.String)} otherwise.
+   * @throws RemotingException if there is any network-tier error.
+   * @throws MyberryServerException if there is any error with server.
+   * @throws InterruptedException if the pulling thread is interrupted.
+   * @throws MyberryClientException if there is any error with client.
+   */
+  @Override
+  public PullResult pullBatch(
+      String key, int count, HashMap<String, String> attachments, long timeout)
+      throws RemotingException, InterruptedException, MyberryServerException,
+          MyberryClientException {
+    return defaultUserClientImpl.pullBatch(key, count, attachments, timeout);
+  }
+
+  /**
+   * Same to {@link #pullBatch(java.lang.String, int, long)} with retry times specified in
+   * addition.
+   *
+   * @param key required.
+   * @param count number of ids.
+   * @param timeout timeout in each time.
+   * @param timesRetry number of retries after request failed.
+   * @return {@link PullResult} instance whose {@link PullResult#getNewIds()} holds the ids in
+   *     order, the same as {@link #pull(java.lang.String)} otherwise.
+   * @throws RemotingException if there is any network-tier error.
+   * @throws MyberryServerException if there is any error with server.
+   * @throws InterruptedException if the pulling thread is interrupted.
+   * @throws MyberryClientException if there is any error with client.
+   */
+  @Override
+  public PullResult pullBatch(String key, int count, long timeout, int timesRetry)
+      throws RemotingException, InterruptedException, MyberryServerException,
+          MyberryClientException {
+    return this.pullBatch(key, count, (HashMap<String, String>) null, timeout, timesRetry);
+  }
+
+  /**
+   * Same to {@link #pullBatch(java.lang.String, int, HashMap, long)} with retry times specified
+   * in addition.
+   *
+   * @param key required.
+   * @param count number of ids.
+   * @param attachments non-required.
+   * @param timeout timeout in each time.
+   * @param timesRetry number of retries after request failed.
+   * @return {@link PullResult} instance whose {@link PullResult#getNewIds()} holds the ids in
+   *     order, the same as {@link #pull(java.lang.String)} otherwise.
+   * @throws RemotingException if there is any network-tier error.
+   * @throws MyberryServerException if there is any error with server.
+   * @throws InterruptedException if the pulling thread is interrupted.
+   * @throws MyberryClientException if there is any error with client.
+   */
+  @Override
+  public PullResult pullBatch(
+      String key, int count, HashMap<String, String> attachments, long timeout, int timesRetry)
+      throws RemotingException, InterruptedException, MyberryServerException,
+          MyberryClientException {
+    return defaultUserClientImpl.pullBatch(key, count, attachments, timeout, timesRetry);
+  }
+
+  /**
+   * Use weighted round-robin load balance to pull a batch of ids of CR mode in asynchronously
+   * mode. This method returns immediately. On pulling completion, <code>pullCallback</code> will be
+   * executed.
+   *
+   * @param key required.
+   * @param count number of ids.
+   * @param pullCallback Callback to execute on pulling completed, either successful or
+   *     unsuccessful.
+   * @throws RemotingException if there is any network-tier error.
+   * @throws MyberryServerException if there is any error with server.
+   * @throws InterruptedException if the pulling thread is interrupted.
+   * @throws MyberryClientException if there is any error with client.
+   */
+  @Override
+  public void pullBatch(String key, int count, PullCallback pullCallback)
+      throws RemotingException, InterruptedException, MyberryServerException,
+          MyberryClientException {
+    this.pullBatch(key, count, null, pullCallback);
+  }
+
+  /**
+   * Same to {@link #pullBatch(java.lang.String, int, PullCallback)} with attachments specified in
+   * addition.
+   *
+   * @param key required.
+   * @param count number of ids.
+   * @param attachments non-required.
+   * @param pullCallback Callback to execute on pulling completed, either successful or
+   *     unsuccessful.
+   * @throws RemotingException if there is any network-tier error.
+   * @throws MyberryServerException if there is any error with server.
+   * @throws InterruptedException if the pulling thread is interrupted.
+   * @throws MyberryClientException if there is any error with client.
+   */
+  @Override
+  public void pullBatch(
+      String key, int count, HashMap<String, String> attachments, PullCallback pullCallback)
+      throws RemotingException, InterruptedException, MyberryServerException,
+          MyberryClientException {
+    defaultUserClientImpl.pullBatch(key, count, attachments, pullCallback);
+  }
+
+  /**
+   * Same to {@link #pullBatch(java.lang.String, int, PullCallback)} with pull timeout specified in
+   * addition.
+   *
+   * @param key required.
+   * @param count number of ids.
+   * @param pullCallback Callback to execute on pulling completed, either successful or
+   *     unsuccessful.
+   * @param timeout pull timeout.
+   * @throws RemotingException if there is any network-tier error.
+   * @throws MyberryServerException if there is any error with server.
+   * @throws InterruptedException if the pulling thread is interrupted.
+   * @throws MyberryClientException if there is any error with client.
+   */
+  @Override
+  public void pullBatch(String key, int count, PullCallback pullCallback, long timeout)
+      throws RemotingException, InterruptedException, MyberryServerException,
+          MyberryClientException {
+    this.pullBatch(key, count, null, pullCallback, timeout);
+  }
+
+  /**
+   * Same to {@link #pullBatch(java.lang.String, int, HashMap, PullCallback)} with pull timeout
+   * specified in addition.
+   *
+   * @param key required.
+   * @param count number of ids.
+   * @param attachments non-required.
+   * @param pullCallback Callback to execute on pulling completed, either successful or
+   *     unsuccessful.
+   * @param timeout pull timeout.
+   * @throws RemotingException if there is any network-tier error.
+   * @throws MyberryServerException if there is any error with server.
+   * @throws InterruptedException if the pulling thread is interrupted.
+   * @throws MyberryClientException if there is any error with client.
+   */
+  @Override
+  public void pullBatch(
+      String key,
+      int count,
+      HashMap<String, String> attachments,
+      PullCallback pullCallback,
+      long timeout)
+      throws RemotingException, InterruptedException, MyberryServerException,
+          MyberryClientException {
+    defaultUserClientImpl.pullBatch(key, count, attachments, pullCallback, timeout);
+  }
+
+  /**
+   * Same to {@link #pullBatch(java.lang.String, int, PullCallback, long)} with retry times
+   * specified in addition.
+   *
+   * @param key required.
+   * @param count number of ids.
+   * @param pullCallback Callback to execute on pulling completed, either successful or
+   *     unsuccessful.
+   * @param timeout timeout in each time.
+   * @param timesRetry number of retries after request failed.
+   * @throws RemotingException if there is any network-tier error.
+   * @throws MyberryServerException if there is any error with server.
+   * @throws InterruptedException if the pulling thread is interrupted.
+   * @throws MyberryClientException if there is any error with client.
+   */
+  @Override
+  public void pullBatch(
+      String key, int count, PullCallback pullCallback, long timeout, int timesRetry)
+      throws RemotingException, InterruptedException, MyberryServerException,
+          MyberryClientException {
+    this.pullBatch(key, count, null, pullCallback, timeout, timesRetry);
+  }
+
+  /**
+   * Same to {@link #pullBatch(java.lang.String, int, HashMap, PullCallback, long)} with retry
+   * times specified in addition.
+   *
+   * @param key required.
+   * @param count number of ids.
+   * @param attachments non-required.
+   * @param pullCallback Callback to execute on pulling completed, either successful or
+   *     unsuccessful.
+   * @param timeout timeout in each time.
+   * @param timesRetry number of retries after request failed.
+   * @throws RemotingException if there is any network-tier error.
+   * @throws MyberryServerException if there is any error with server.
+   * @throws InterruptedException if the pulling thread is interrupted.
+   * @throws MyberryClientException if there is any error with client.
+   */
+  @Override
+  public void pullBatch(
+      String key,
+      int count,
+      HashMap<String, String> attachments,
+      PullCallback pullCallback,
+      long timeout,
+      int timesRetry)
+      throws RemotingException, InterruptedException, MyberryServerException,
+          MyberryClientException {
+    defaultUserClientImpl.pullBatch(key, count, attachments, pullCallback, timeout, timesRetry);
+  }
+
+  /**
+   * Use weighted round-robin load balance to pull ids of several keys in synchronous mode with
+   * one request. The server pulls the entries one after another.
+   *
+   * @param entries required, the key, number of ids and attachments of each pull.
+   * @return {@link PullResult} instance whose {@link PullResult#getResults()} holds a result for
+   *     each entry in order. An entry which failed does not fail the others.
+   * @throws RemotingException if there is any network-tier error.
+   * @throws MyberryServerException if there is any error with server.
+   * @throws InterruptedException if the pulling thread is interrupted.
+   * @throws MyberryClientException if there is any error with client.
+   */
+  @Override
+  public PullResult pullMulti(List<PullEntry> entries)
+      throws RemotingException, InterruptedException, MyberryServerException,
+          MyberryClientException {
+    return defaultUserClientImpl.pullMulti(entries);
+  }
+
+  /**
+   * Same to {@link #pullMulti(List)} with pull timeout specified in addition.
+   *
+   * @param entries required.
+   * @param timeout pull timeout.
+   * @return {@link PullResult} instance whose {@link PullResult#getResults()} holds a result for
+   *     each entry in order. An entry which failed does not fail the others.
+   * @throws RemotingException if there is any network-tier error.
+   * @throws MyberryServerException if there is any error with server.
+   * @throws InterruptedException if the pulling thread is interrupted.
+   * @throws MyberryClientException if there is any error with client.
+   */
+  @Override
+  public PullResult pullMulti(List<PullEntry> entries, long timeout)
+      throws RemotingException, InterruptedException, MyberryServerException,
+          MyberryClientException {
+    return defaultUserClientImpl.pullMulti(entries, timeout);
+  }
+
+  /**
+   * Same to {@link #pullMulti(List, long)} with retry times specified in addition.
+   *
+   * @param entries required.
+   * @param timeout timeout in each time.
+   * @param timesRetry number of retries after request failed.
+   * @return {@link PullResult} instance whose {@link PullResult#getResults()} holds a result for
+   *     each entry in order. An entry which failed does not fail the others.
+   * @throws RemotingException if there is any network-tier error.
+   * @throws MyberryServerException if there is any error with server.
+   * @throws InterruptedException if the pulling thread is interrupted.
+   * @throws MyberryClientException if there is any error with client.
+   */
+  @Override
+  public PullResult pullMulti(List<PullEntry> entries, long timeout, int timesRetry)
+      throws RemotingException, InterruptedException, MyberryServerException,
+          MyberryClientException {
+    return defaultUserClientImpl.pullMulti(entries, timeout, timesRetry);
+  }
+
+  /**
+   * Use weighted round-robin load balance to pull ids of several keys in asynchronously mode with
+   * one request. This method returns immediately. On pulling completion, <code>pullCallback</code>
+   * will be executed.
+   *
+   * @param entries required.
+   * @param pullCallback Callback to execute on pulling completed, either successful or
+   *     unsuccessful.
+   * @throws RemotingException if there is any network-tier error.
+   * @throws MyberryServerException if there is any error with server.
+   * @throws InterruptedException if the pulling thread is interrupted.
+   * @throws MyberryClientException if there is any error with client.
+   */
+  @Override
+  public void pullMulti(List<PullEntry> entries, PullCallback pullCallback)
+      throws RemotingException, InterruptedException, MyberryServerException,
+          MyberryClientException {
+    defaultUserClientImpl.pullMulti(entries, pullCallback);
+  }
+
+  /**
+   * Same to {@link #pullMulti(List, PullCallback)} with pull timeout specified in addition.
+   *
+   * @param entries required.
+   * @param pullCallback Callback to execute on pulling completed, either successful or
+   *     unsuccessful.
+   * @param timeout pull timeout.
+   * @throws RemotingException if there is any network-tier error.
+   * @throws MyberryServerException if there is any error with server.
+   * @throws InterruptedException if the pulling thread is interrupted.
+   * @throws MyberryClientException if there is any error with client.
+   */
+  @Override
+  public void pullMulti(List<PullEntry> entries, PullCallback pullCallback, long timeout)
+      throws RemotingException, InterruptedException, MyberryServerException,
+          MyberryClientException {
+    defaultUserClientImpl.pullMulti(entries, pullCallback, timeout);
+  }
+
+  /**
+   * Same to {@link #pullMulti(List, PullCallback, long)} with retry times specified in addition.
+   *
+   * @param entries required.
+   * @param pullCallback Callback to execute on pulling completed, either successful or
+   *     unsuccessful.
+   * @param timeout timeout in each time.
+   * @param timesRetry number of retries after request failed.
+   * @throws RemotingException if there is any network-tier error.
+   * @throws MyberryServerException if there is any error with server.
+   * @throws InterruptedException if the pulling thread is interrupted.
+   * @throws MyberryClientException if there is any error with client.
+   */
+  @Override
+  public void pullMulti(
+      List<PullEntry> entries, PullCallback pullCallback, long timeout, int timesRetry)
+      throws RemotingException, InterruptedException, MyberryServerException,
+          MyberryClientException {
+    defaultUserClientImpl.pullMulti(entries, pullCallback, timeout, timesRetry);
+  }
+
+  /**
+   * Take the next id of a key of NS mode from the segment cached by this client. The segments are
+   * pulled with {@link #pull(java.lang.String)}, the next one in the background once {@link
+   * #getSegmentPrefetchPercent()} percent of the current one is handed out, so most calls return
+   * without a round trip.
+   *
+   * @param key required, a key of NS mode.
+   * @return the next id of the cached segment.
+   * @throws RemotingException if there is any network-tier error.
+   * @throws MyberryServerException if there is any error with server.
+   * @throws InterruptedException if the pulling thread is interrupted.
+   * @throws MyberryClientException if the key is missing or not of NS mode.
+   */
+  @Override
+  public long nextId(String key)
+      throws RemotingException, InterruptedException, MyberryServerException,
+          MyberryClientException {
+    return this.nextId(key, StrategyDate.NON_TIME);
+  }
+
+  /**
+   * Same to {@link #nextId(String)} for a key reset by a time type, the cached segments are dropped
+   * when the time rolls over. The first call of a key fixes its time type.
+   *
+   * @param key required, a key of NS mode.
+   * @param timeType {@link StrategyDate#TIME_DAY}, {@link StrategyDate#TIME_MONTH} or {@link
+   *     StrategyDate#TIME_YEAR} of the reset type of the key.
+   * @return the next id of the cached segment.
+   * @throws RemotingException if there is any network-tier error.
+   * @throws MyberryServerException if there is any error with server.
+   * @throws InterruptedException if the pulling thread is interrupted.
+   * @throws MyberryClientException if the key is missing or not of NS mode.
+   */
+  @Override
+  public long nextId(String key, int timeType)
+      throws RemotingException, InterruptedException, MyberryServerException,
+          MyberryClientException {
+    return defaultUserClientImpl.nextId(key, timeType);
+  }
+
+  /**
+   * Serve {@link #pull(java.lang.String)} of a key of CR mode from a queue of ids pulled ahead by
+   * batch pulls. Only pulls without attachments are served from the queue.
+   *
+   * @param key required, a key of CR mode.
+   */
+  public void enablePrefetch(String key) {
+    this.enablePrefetch(key, StrategyDate.NON_TIME);
+  }
+
+  /**
+   * Same to {@link #enablePrefetch(String)} for a key whose expression has a time placeholder, the
+   * queued ids are discarded when the time rolls over.
+   *
+   * @param key required, a key of CR mode.
+   * @param timeType {@link StrategyDate#TIME_DAY}, {@link StrategyDate#TIME_MONTH} or {@link
+   *     StrategyDate#TIME_YEAR} of the time placeholder of the key.
+   */
+  public void enablePrefetch(String key, int timeType) {
+    defaultUserClientImpl.enablePrefetch(key, timeType);
+  }
+
+  /** Pull the key from the server again, the queued ids are dropped. */
+  public void disablePrefetch(String key) {
+    defaultUserClientImpl.disablePrefetch(key);
+  }
+
   /**
    * Sets an Executor to be used for executing callback methods. If the Executor is not set, {@link
    * NettyRemotingClient#publicExecutor} will be used.
@@ -624,6 +1109,81 @@ public class DefaultUserClient extends AbstractMyberryClient implements UserClie
     this.pullMsgTimeout = pullMsgTimeout;
   }
 
+  public int getSegmentPrefetchPercent() {
+    return segmentPrefetchPercent;
+  }
+
+  public void setSegmentPrefetchPercent(int segmentPrefetchPercent) {
+    this.segmentPrefetchPercent = Math.max(0, Math.min(100, segmentPrefetchPercent));
+  }
+
+  public int getPrefetchQueueDepth() {
+    return prefetchQueueDepth;
+  }
+
+  public void setPrefetchQueueDepth(int prefetchQueueDepth) {
+    this.prefetchQueueDepth = Math.max(1, prefetchQueueDepth);
+  }
+
+  public int getPrefetchMaxBatchSize() {
+    return prefetchMaxBatchSize;
+  }
+
+  public void setPrefetchMaxBatchSize(int prefetchMaxBatchSize) {
+    this.prefetchMaxBatchSize = Math.max(1, prefetchMaxBatchSize);
+  }
+
+  public int getPrefetchLowWaterPercent() {
+    return prefetchLowWaterPercent;
+  }
+
+  public void setPrefetchLowWaterPercent(int prefetchLowWaterPercent) {
+    this.prefetchLowWaterPercent = Math.max(1, Math.min(100, prefetchLowWaterPercent));
+  }
+
+  public long getPrefetchMaxWaitMills() {
+    return prefetchMaxWaitMills;
+  }
+
+  public void setPrefetchMaxWaitMills(long prefetchMaxWaitMills) {
+    this.prefetchMaxWaitMills = prefetchMaxWaitMills;
+  }
+
+  public ZoneId getRolloverZoneId() {
+    return rolloverZoneId;
+  }
+
+  public void setRolloverZoneId(ZoneId rolloverZoneId) {
+    this.rolloverZoneId = rolloverZoneId;
+  }
+
+  /** Number of pulls of the key which found the prefetch queue empty. */
+  public long getPrefetchMissCount(String key) {
+    IdPrefetchQueue prefetchQueue = defaultUserClientImpl.getPrefetchQueue(key);
+    return prefetchQueue == null ? 0 : prefetchQueue.getMissCount();
+  }
+
+  /** Number of prefetched ids of the key discarded at a rollover of its time placeholder. */
+  public long getPrefetchDiscardCount(String key) {
+    IdPrefetchQueue prefetchQueue = defaultUserClientImpl.getPrefetchQueue(key);
+    return prefetchQueue == null ? 0 : prefetchQueue.getDiscardCount();
+  }
+
+  /** Number of NS segments of the key prefetched by {@link #nextId(String)}. */
+  public long getSegmentPrefetchCount(String key) {
+    SegmentBuffer segmentBuffer = defaultUserClientImpl.getSegmentBuffer(key);
+    return segmentBuffer == null ? 0 : segmentBuffer.getPrefetchCount();
+  }
+
+  /**
+   * Number of times {@link #nextId(String)} of the key waited for a pull because the segment ran
+   * out before the next one was prefetched.
+   */
+  public long getSegmentPrefetchMissCount(String key) {
+    SegmentBuffer segmentBuffer = defaultUserClientImpl.getSegmentBuffer(key);
+    return segmentBuffer == null ? 0 : segmentBuffer.getPrefetchMissCount();
+  }
+
   @Override
   public String getClientGroup() {
     return clientGroup == null ? DefaultUserClient.class.getSimpleName() : clientGroup;
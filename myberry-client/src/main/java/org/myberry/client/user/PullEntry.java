@@ -0,0 +1,65 @@
+/*
+* MIT License
+*
+* Copyright (c) 2020 gaoyang
+*
+* Permission is hereby granted, free of charge, to any person obtaining a copy
+* of this software and associated documentation files (the "Software"), to deal
+* in the Software without restriction, including without limitation the rights
+* to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+* copies of the Software, and to permit persons to whom the Software is
+* furnished to do so, subject to the following conditions:
+
+* The above copyright notice and this permission notice shall be included in all
+* copies or substantial portions of the Software.
+
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+* IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+* AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+* LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+* OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+* SOFTWARE.
+*/
+package org.myberry.client.user;
+
+import java.util.HashMap;
+
+/** An entry of a multi-key pull. */
+public class PullEntry {
+
+  private final String key;
+  private final int count;
+  private final HashMap<String, String> attachments;
+
+  public PullEntry(String key) {
+    this(key, 1, null);
+  }
+
+  public PullEntry(String key, int count) {
+    this(key, count, null);
+  }
+
+  /**
+   * @param key required.
+   * @param count number of ids, an entry of more than one id is a batch pull of CR mode.
+   * @param attachments non-required.
+   */
+  public PullEntry(String key, int count, HashMap<String, String> attachments) {
+    this.key = key;
+    this.count = count;
+    this.attachments = attachments;
+  }
+
+  public String getKey() {
+    return key;
+  }
+
+  public int getCount() {
+    return count;
+  }
+
+  public HashMap<String, String> getAttachments() {
+    return attachments;
+  }
+}
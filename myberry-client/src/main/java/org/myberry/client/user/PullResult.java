@@ -24,6 +24,7 @@
 package org.myberry.client.user;
 
 import java.lang.reflect.Field;
+import java.util.List;
 
 public class PullResult {
 
@@ -32,11 +33,14 @@ public class PullResult {
   private String remark;
 
   private String newId;
+  private List<String> newIds;
 
   private Integer start;
   private Integer end;
   private Integer synergyId;
 
+  private List<PullResult> results;
+
   public PullResult(PullStatus pullStatus, String key) {
     this.pullStatus = pullStatus;
     this.key = key;
@@ -48,6 +52,12 @@ public class PullResult {
     this.newId = newId;
   }
 
+  public PullResult(PullStatus pullStatus, String key, List<String> newIds) {
+    this.pullStatus = pullStatus;
+    this.key = key;
+    this.newIds = newIds;
+  }
+
   public PullResult(
       PullStatus pullStatus, String key, Integer start, Integer end, Integer synergyId) {
     this.pullStatus = pullStatus;
@@ -89,6 +99,15 @@ public class PullResult {
     this.newId = newId;
   }
 
+  /** IDs of a batch pull or of a CR entry of a multi-key pull. */
+  public List<String> getNewIds() {
+    return newIds;
+  }
+
+  public void setNewIds(List<String> newIds) {
+    this.newIds = newIds;
+  }
+
   public Integer getStart() {
     return start;
   }
@@ -113,6 +132,15 @@ public class PullResult {
     this.synergyId = synergyId;
   }
 
+  /** Results of a multi-key pull, in the order of its entries. */
+  public List<PullResult> getResults() {
+    return results;
+  }
+
+  public void setResults(List<PullResult> results) {
+    this.results = results;
+  }
+
   @Override
   public String toString() {
     Class<?> clz = this.getClass();
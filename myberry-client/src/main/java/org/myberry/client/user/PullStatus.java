@@ -25,5 +25,7 @@ package org.myberry.client.user;
 
 public enum PullStatus {
   PULL_OK,
-  KEY_NOT_EXISTED
+  KEY_NOT_EXISTED,
+  /** An entry of a multi-key pull failed, the remark tells why. */
+  PULL_FAILED
 }
@@ -24,6 +24,7 @@
 package org.myberry.client.user;
 
 import java.util.HashMap;
+import java.util.List;
 import org.myberry.client.exception.MyberryClientException;
 import org.myberry.client.exception.MyberryServerException;
 import org.myberry.remoting.exception.RemotingException;
@@ -148,4 +149,97 @@ public interface UserClient {
       int timesRetry)
       throws RemotingException, InterruptedException, MyberryServerException,
           MyberryClientException;
+
+  PullResult pullBatch(String key, int count)
+      throws RemotingException, InterruptedException, MyberryServerException,
+          MyberryClientException;
+
+  PullResult pullBatch(String key, int count, HashMap<String, String> attachments)
+      throws RemotingException, InterruptedException, MyberryServerException,
+          MyberryClientException;
+
+  PullResult pullBatch(String key, int count, long timeout)
+      throws RemotingException, InterruptedException, MyberryServerException,
+          MyberryClientException;
+
+  PullResult pullBatch(String key, int count, HashMap<String, String> attachments, long timeout)
+      throws RemotingException, InterruptedException, MyberryServerException,
+          MyberryClientException;
+
+  PullResult pullBatch(String key, int count, long timeout, int timesRetry)
+      throws RemotingException, InterruptedException, MyberryServerException,
+          MyberryClientException;
+
+  PullResult pullBatch(
+      String key, int count, HashMap<String, String> attachments, long timeout, int timesRetry)
+      throws RemotingException, InterruptedException, MyberryServerException,
+          MyberryClientException;
+
+  void pullBatch(String key, int count, PullCallback pullCallback)
+      throws RemotingException, InterruptedException, MyberryServerException,
+          MyberryClientException;
+
+  void pullBatch(
+      String key, int count, HashMap<String, String> attachments, PullCallback pullCallback)
+      throws RemotingException, InterruptedException, MyberryServerException,
+          MyberryClientException;
+
+  void pullBatch(String key, int count, PullCallback pullCallback, long timeout)
+      throws RemotingException, InterruptedException, MyberryServerException,
+          MyberryClientException;
+
+  void pullBatch(
+      String key,
+      int count,
+      HashMap<String, String> attachments,
+      PullCallback pullCallback,
+      long timeout)
+      throws RemotingException, InterruptedException, MyberryServerException,
+          MyberryClientException;
+
+  void pullBatch(String key, int count, PullCallback pullCallback, long timeout, int timesRetry)
+      throws RemotingException, InterruptedException, MyberryServerException,
+          MyberryClientException;
+
+  void pullBatch(
+      String key,
+      int count,
+      HashMap<String, String> attachments,
+      PullCallback pullCallback,
+      long timeout,
+      int timesRetry)
+      throws RemotingException, InterruptedException, MyberryServerException,
+          MyberryClientException;
+
+  PullResult pullMulti(List<PullEntry> entries)
+      throws RemotingException, InterruptedException, MyberryServerException,
+          MyberryClientException;
+
+  PullResult pullMulti(List<PullEntry> entries, long timeout)
+      throws RemotingException, InterruptedException, MyberryServerException,
+          MyberryClientException;
+
+  PullResult pullMulti(List<PullEntry> entries, long timeout, int timesRetry)
+      throws RemotingException, InterruptedException, MyberryServerException,
+          MyberryClientException;
+
+  void pullMulti(List<PullEntry> entries, PullCallback pullCallback)
+      throws RemotingException, InterruptedException, MyberryServerException,
+          MyberryClientException;
+
+  void pullMulti(List<PullEntry> entries, PullCallback pullCallback, long timeout)
+      throws RemotingException, InterruptedException, MyberryServerException,
+          MyberryClientException;
+
+  void pullMulti(List<PullEntry> entries, PullCallback pullCallback, long timeout, int timesRetry)
+      throws RemotingException, InterruptedException, MyberryServerException,
+          MyberryClientException;
+
+  long nextId(String key)
+      throws RemotingException, InterruptedException, MyberryServerException,
+          MyberryClientException;
+
+  long nextId(String key, int timeType)
+      throws RemotingException, InterruptedException, MyberryServerException,
+          MyberryClientException;
 }
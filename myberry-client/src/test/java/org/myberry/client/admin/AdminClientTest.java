@@ -113,6 +113,20 @@ public class AdminClientTest {
     assertEquals(3, clusters.size());
   }
 
+  @Test
+  public void removeComponent()
+      throws RemotingException, InterruptedException, MyberryServerException {
+    CRComponentData cr = new CRComponentData();
+    cr.setKey("key3");
+    cr.setExpression("[r #incr(0)]");
+    defaultAdminClient.createComponent(cr);
+
+    SendResult sendResult = defaultAdminClient.removeComponent("key3");
+    assertEquals(SendStatus.SEND_OK, sendResult.getSendStatus());
+    sendResult = defaultAdminClient.removeComponent("key3");
+    assertEquals(SendStatus.KEY_NOT_EXISTED, sendResult.getSendStatus());
+  }
+
   @AfterClass
   public static void close() {
     defaultAdminClient.shutdown();
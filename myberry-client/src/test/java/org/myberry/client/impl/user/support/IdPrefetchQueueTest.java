@@ -0,0 +1,130 @@
+/*
+* MIT License
+*
+* Copyright (c) 2020 gaoyang
+*
+* Permission is hereby granted, free of charge, to any person obtaining a copy
+* of this software and associated documentation files (the "Software"), to deal
+* in the Software without restriction, including without limitation the rights
+* to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+* copies of the Software, and to permit persons to whom the Software is
+* furnished to do so, subject to the following conditions:
+
+* The above copyright notice and this permission notice shall be included in all
+* copies or substantial portions of the Software.
+
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+* IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+* AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+* LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+* OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+* SOFTWARE.
+*/
+package org.myberry.client.impl.user.support;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Test;
+import org.myberry.client.impl.user.DefaultUserClientImpl;
+import org.myberry.client.user.DefaultUserClient;
+import org.myberry.client.user.PullCallback;
+import org.myberry.client.user.PullResult;
+import org.myberry.client.user.PullStatus;
+import org.myberry.common.strategy.StrategyDate;
+
+public class IdPrefetchQueueTest {
+
+  private static final ZoneId ZONE_ID = ZoneId.of("Asia/Shanghai");
+
+  @Test
+  public void testNextRolloverTime() {
+    long time = toMillis(LocalDateTime.of(2020, 12, 31, 23, 59, 59));
+    Assert.assertEquals(
+        toMillis(LocalDateTime.of(2021, 1, 1, 0, 0)),
+        IdPrefetchQueue.nextRolloverTime(StrategyDate.TIME_DAY, time, ZONE_ID));
+    Assert.assertEquals(
+        toMillis(LocalDateTime.of(2021, 1, 1, 0, 0)),
+        IdPrefetchQueue.nextRolloverTime(StrategyDate.TIME_MONTH, time, ZONE_ID));
+    Assert.assertEquals(
+        toMillis(LocalDateTime.of(2021, 1, 1, 0, 0)),
+        IdPrefetchQueue.nextRolloverTime(StrategyDate.TIME_YEAR, time, ZONE_ID));
+
+    // the midnight itself belongs to the new day
+    time = toMillis(LocalDateTime.of(2020, 2, 29, 0, 0));
+    Assert.assertEquals(
+        toMillis(LocalDateTime.of(2020, 3, 1, 0, 0)),
+        IdPrefetchQueue.nextRolloverTime(StrategyDate.TIME_DAY, time, ZONE_ID));
+    Assert.assertEquals(
+        toMillis(LocalDateTime.of(2020, 3, 1, 0, 0)),
+        IdPrefetchQueue.nextRolloverTime(StrategyDate.TIME_MONTH, time, ZONE_ID));
+    Assert.assertEquals(
+        toMillis(LocalDateTime.of(2021, 1, 1, 0, 0)),
+        IdPrefetchQueue.nextRolloverTime(StrategyDate.TIME_YEAR, time, ZONE_ID));
+    Assert.assertEquals(
+        Long.MAX_VALUE, IdPrefetchQueue.nextRolloverTime(StrategyDate.NON_TIME, time, ZONE_ID));
+
+    // the same instant is still the previous day in UTC
+    Assert.assertEquals(
+        LocalDateTime.of(2020, 2, 29, 0, 0).atZone(ZoneId.of("UTC")).toInstant().toEpochMilli(),
+        IdPrefetchQueue.nextRolloverTime(StrategyDate.TIME_DAY, time, ZoneId.of("UTC")));
+  }
+
+  @Test
+  public void testBatchDiscard() {
+    IdPrefetchQueue.Batch batch =
+        new IdPrefetchQueue.Batch(Arrays.asList("a", "b", "c"), Long.MAX_VALUE);
+    Assert.assertEquals(0, batch.cursor.getAndIncrement());
+    Assert.assertEquals(2, batch.discard());
+    // closed to the takers, the ids are counted once
+    Assert.assertTrue(batch.cursor.getAndIncrement() >= 3);
+    Assert.assertEquals(0, batch.discard());
+  }
+
+  @Test
+  public void testRefillInBatches() throws Exception {
+    StubUserClientImpl stub = new StubUserClientImpl();
+    stub.getDefaultUserClient().setPrefetchQueueDepth(25000);
+    stub.getDefaultUserClient().setPrefetchMaxBatchSize(10000);
+    IdPrefetchQueue prefetchQueue = new IdPrefetchQueue("key", StrategyDate.NON_TIME, stub);
+
+    Assert.assertEquals("0", prefetchQueue.pull().getNewId());
+    Assert.assertEquals("1", prefetchQueue.pull().getNewId());
+    // the queue below the low-water mark is topped up by pulls within the batch limit
+    Assert.assertEquals(Arrays.asList(10000, 10000), stub.counts);
+    Assert.assertEquals(2, prefetchQueue.getRefillCount());
+    Assert.assertEquals(0, prefetchQueue.getMissCount());
+    Assert.assertEquals(19998, prefetchQueue.size());
+  }
+
+  private static long toMillis(LocalDateTime localDateTime) {
+    return localDateTime.atZone(ZONE_ID).toInstant().toEpochMilli();
+  }
+
+  /** Completes the batch pulls at once with consecutive ids. */
+  private static class StubUserClientImpl extends DefaultUserClientImpl {
+
+    private final List<Integer> counts = new ArrayList<>();
+    private int next;
+
+    StubUserClientImpl() {
+      super(new DefaultUserClient());
+    }
+
+    @Override
+    public void pullBatch(
+        String key, int count, HashMap<String, String> attachments, PullCallback pullCallback) {
+      counts.add(count);
+      List<String> newIds = new ArrayList<>(count);
+      for (int i = 0; i < count; i++) {
+        newIds.add(String.valueOf(next++));
+      }
+      pullCallback.onSuccess(new PullResult(PullStatus.PULL_OK, key, newIds));
+    }
+  }
+}
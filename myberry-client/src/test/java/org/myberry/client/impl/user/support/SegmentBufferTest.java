@@ -0,0 +1,177 @@
+/*
+* MIT License
+*
+* Copyright (c) 2020 gaoyang
+*
+* Permission is hereby granted, free of charge, to any person obtaining a copy
+* of this software and associated documentation files (the "Software"), to deal
+* in the Software without restriction, including without limitation the rights
+* to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+* copies of the Software, and to permit persons to whom the Software is
+* furnished to do so, subject to the following conditions:
+
+* The above copyright notice and this permission notice shall be included in all
+* copies or substantial portions of the Software.
+
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+* IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+* AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+* LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+* OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+* SOFTWARE.
+*/
+package org.myberry.client.impl.user.support;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.junit.Assert;
+import org.junit.Test;
+import org.myberry.client.exception.MyberryClientException;
+import org.myberry.client.impl.user.DefaultUserClientImpl;
+import org.myberry.client.user.DefaultUserClient;
+import org.myberry.client.user.PullCallback;
+import org.myberry.client.user.PullResult;
+import org.myberry.client.user.PullStatus;
+import org.myberry.common.strategy.StrategyDate;
+
+public class SegmentBufferTest {
+
+  private static final int SEGMENT_SIZE = 100;
+
+  @Test
+  public void testSegmentHandout() throws InterruptedException {
+    SegmentBuffer.Segment segment = new SegmentBuffer.Segment(0, 999, 20, Long.MAX_VALUE);
+    Assert.assertEquals(200, segment.prefetchAt);
+    Assert.assertFalse(segment.isExpired());
+
+    Set<Long> ids = ConcurrentHashMap.newKeySet();
+    List<Thread> threads = new ArrayList<>();
+    for (int i = 0; i < 4; i++) {
+      Thread thread =
+          new Thread(
+              () -> {
+                long id;
+                while ((id = segment.cursor.getAndIncrement()) <= segment.end) {
+                  Assert.assertTrue(ids.add(id));
+                }
+              });
+      threads.add(thread);
+      thread.start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    Assert.assertEquals(1000, ids.size());
+
+    Assert.assertTrue(
+        new SegmentBuffer.Segment(0, 9, 20, System.currentTimeMillis() - 1).isExpired());
+  }
+
+  @Test
+  public void testSwitchToPrefetched() throws Exception {
+    StubUserClientImpl stub = new StubUserClientImpl();
+    SegmentBuffer segmentBuffer = new SegmentBuffer("key", StrategyDate.NON_TIME, stub);
+
+    for (long i = 0; i < 20; i++) {
+      Assert.assertEquals(i, segmentBuffer.nextId());
+    }
+    Assert.assertEquals(0, segmentBuffer.getPrefetchCount());
+    // the handout of the prefetch percent starts one prefetch, the later ones find it in flight
+    for (long i = 20; i < SEGMENT_SIZE; i++) {
+      Assert.assertEquals(i, segmentBuffer.nextId());
+    }
+    Assert.assertEquals(1, segmentBuffer.getPrefetchCount());
+    Assert.assertEquals(1, stub.callbacks.size());
+
+    stub.completePrefetch();
+    Assert.assertEquals(SEGMENT_SIZE, segmentBuffer.nextId());
+    Assert.assertEquals(1, stub.syncPulls);
+    Assert.assertEquals(0, segmentBuffer.getPrefetchMissCount());
+  }
+
+  @Test
+  public void testRetryFailedPrefetch() throws Exception {
+    StubUserClientImpl stub = new StubUserClientImpl();
+    SegmentBuffer segmentBuffer = new SegmentBuffer("key", StrategyDate.NON_TIME, stub);
+
+    for (long i = 0; i <= 20; i++) {
+      segmentBuffer.nextId();
+    }
+    stub.failPrefetch();
+    Assert.assertEquals(1, segmentBuffer.getPrefetchFailureCount());
+
+    // a later handout than the prefetch percent retries
+    segmentBuffer.nextId();
+    Assert.assertEquals(2, segmentBuffer.getPrefetchCount());
+    stub.completePrefetch();
+    for (long i = 22; i < SEGMENT_SIZE; i++) {
+      segmentBuffer.nextId();
+    }
+    Assert.assertEquals(SEGMENT_SIZE, segmentBuffer.nextId());
+    Assert.assertEquals(0, segmentBuffer.getPrefetchMissCount());
+  }
+
+  @Test
+  public void testMissWithoutPrefetch() throws Exception {
+    StubUserClientImpl stub = new StubUserClientImpl();
+    SegmentBuffer segmentBuffer = new SegmentBuffer("key", StrategyDate.NON_TIME, stub);
+
+    for (long i = 0; i < SEGMENT_SIZE; i++) {
+      segmentBuffer.nextId();
+    }
+    // the prefetch is still in flight, the exhausted segment waits for a pull
+    Assert.assertEquals(SEGMENT_SIZE, segmentBuffer.nextId());
+    Assert.assertEquals(2, stub.syncPulls);
+    Assert.assertEquals(1, segmentBuffer.getPrefetchMissCount());
+
+    // the late prefetch is handed out after the pulled segment
+    stub.completePrefetch();
+    for (long i = SEGMENT_SIZE + 1; i < SEGMENT_SIZE * 2; i++) {
+      segmentBuffer.nextId();
+    }
+    Assert.assertEquals(SEGMENT_SIZE * 2, segmentBuffer.nextId());
+    Assert.assertEquals(2, stub.syncPulls);
+  }
+
+  /** Hands out the segments of SEGMENT_SIZE ids in order, the prefetches complete on demand. */
+  private static class StubUserClientImpl extends DefaultUserClientImpl {
+
+    private final List<PullCallback> callbacks = new ArrayList<>();
+    private int start;
+    private int syncPulls;
+
+    StubUserClientImpl() {
+      super(new DefaultUserClient());
+    }
+
+    @Override
+    public PullResult pull(String key, HashMap<String, String> attachments, long timeout) {
+      syncPulls++;
+      return this.nextSegment(key);
+    }
+
+    @Override
+    public void pull(String key, HashMap<String, String> attachments, PullCallback pullCallback) {
+      callbacks.add(pullCallback);
+    }
+
+    void completePrefetch() {
+      callbacks.remove(0).onSuccess(this.nextSegment("key"));
+    }
+
+    void failPrefetch() {
+      callbacks.remove(0).onException(new MyberryClientException("timeout"));
+    }
+
+    private PullResult nextSegment(String key) {
+      PullResult pullResult =
+          new PullResult(PullStatus.PULL_OK, key, start, start + SEGMENT_SIZE - 1, 0);
+      start += SEGMENT_SIZE;
+      return pullResult;
+    }
+  }
+}
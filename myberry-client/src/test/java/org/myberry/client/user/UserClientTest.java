@@ -25,7 +25,9 @@ package org.myberry.client.user;
 
 import static org.junit.Assert.assertNotNull;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import org.junit.AfterClass;
 import org.junit.BeforeClass;
 import org.junit.Ignore;
@@ -90,6 +92,47 @@ public class UserClientTest {
     System.out.println("Total time: " + (System.currentTimeMillis() - start));
   }
 
+  @Test
+  public void getSyncBatchForCR() throws Exception {
+    HashMap<String, String> map = new HashMap<>();
+    map.put("hello", "AAA");
+    PullResult pull = defaultUserClient.pullBatch("key1", 100, map);
+    System.out.println("SyncBatch: " + pull);
+    assertNotNull(pull.getNewIds());
+  }
+
+  @Test
+  public void getSyncMultiForCR() throws Exception {
+    List<PullEntry> entries = new ArrayList<>();
+    entries.add(new PullEntry("key1"));
+    entries.add(new PullEntry("key2", 10));
+    PullResult pull = defaultUserClient.pullMulti(entries);
+    System.out.println("SyncMulti: " + pull);
+    assertNotNull(pull.getResults());
+  }
+
+  @Test
+  public void nextIdForNS() throws Exception {
+    long start = System.currentTimeMillis();
+    for (int i = 0; i < 100000; i++) {
+      defaultUserClient.nextId("key2");
+    }
+    System.out.println("Total time: " + (System.currentTimeMillis() - start));
+    System.out.println("Prefetch misses: " + defaultUserClient.getSegmentPrefetchMissCount("key2"));
+  }
+
+  @Test
+  public void getSyncPrefetchForCR() throws Exception {
+    defaultUserClient.enablePrefetch("key1");
+    long start = System.currentTimeMillis();
+    for (int i = 0; i < 10000; i++) {
+      assertNotNull(defaultUserClient.pull("key1").getNewId());
+    }
+    System.out.println("Total time: " + (System.currentTimeMillis() - start));
+    System.out.println("Prefetch misses: " + defaultUserClient.getPrefetchMissCount("key1"));
+    defaultUserClient.disablePrefetch("key1");
+  }
+
   @Test
   public void getSyncWithSessionKeyForCR() throws Exception {
     HashMap<String, String> map = new HashMap<>();
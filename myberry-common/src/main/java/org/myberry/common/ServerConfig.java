@@ -38,6 +38,10 @@ public class ServerConfig {
       System.getProperty(MixAll.MYBERRY_ADDR_PROPERTY, System.getenv(MixAll.MYBERRY_ADDR_ENV));
 
   private int weight = 1;
+  // bytes of records per sync message, a learner asks for the next chunk once it applied one
+  private int syncChunkSize = 1024 * 1024;
+  // most IDs a client can pull with one PULL_ID_BATCH request
+  private int maxPullBatchSize = 10000;
 
   private String password = "foobared";
   private int userManageThreadPoolNums = 16 + Runtime.getRuntime().availableProcessors() * 2;
@@ -79,6 +83,22 @@ public class ServerConfig {
     this.weight = weight;
   }
 
+  public int getSyncChunkSize() {
+    return syncChunkSize;
+  }
+
+  public void setSyncChunkSize(int syncChunkSize) {
+    this.syncChunkSize = syncChunkSize;
+  }
+
+  public int getMaxPullBatchSize() {
+    return maxPullBatchSize;
+  }
+
+  public void setMaxPullBatchSize(int maxPullBatchSize) {
+    this.maxPullBatchSize = maxPullBatchSize;
+  }
+
   public String getPassword() {
     return password;
   }
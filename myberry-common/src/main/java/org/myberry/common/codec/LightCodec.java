@@ -73,6 +73,52 @@ public class LightCodec {
     return inOutStream.getWrittenBuffer();
   }
 
+  /**
+   * Serialize a MessageLite which has only one string field, taking the string as UTF-8 bytes. The
+   * output is the same as {@link #toBytes(MessageLite)} of that MessageLite, without building the
+   * string.
+   *
+   * @param serialNo the ordinal of the string field
+   * @param utf8 the UTF-8 encoded string
+   * @return
+   */
+  public static byte[] toBytes(int serialNo, byte[] utf8) {
+    InOutStream inOutStream = new InOutStream();
+    putMagic(inOutStream);
+
+    putRootMessageLiteTag(inOutStream);
+    inOutStream.markMessageLiteLength();
+    inOutStream.putTag(serialNo, FieldType.STRING.id());
+    inOutStream.putString(utf8);
+    inOutStream.putMessageLiteLength();
+
+    return inOutStream.getWrittenBuffer();
+  }
+
+  /**
+   * Serialize a MessageLite which has only one string list field, taking the strings as UTF-8
+   * bytes. The output is the same as {@link #toBytes(MessageLite)} of that MessageLite.
+   *
+   * @param serialNo the ordinal of the string list field
+   * @param utf8s the UTF-8 encoded strings
+   * @return
+   */
+  public static byte[] toBytes(int serialNo, List<byte[]> utf8s) {
+    InOutStream inOutStream = new InOutStream();
+    putMagic(inOutStream);
+
+    putRootMessageLiteTag(inOutStream);
+    inOutStream.markMessageLiteLength();
+    inOutStream.putTag(serialNo, FieldType.STRING_LIST.id());
+    inOutStream.putListSize(utf8s.size());
+    for (byte[] utf8 : utf8s) {
+      inOutStream.putString(utf8);
+    }
+    inOutStream.putMessageLiteLength();
+
+    return inOutStream.getWrittenBuffer();
+  }
+
   public static <T> T toObj(byte[] src, Class<T> clz) {
     if (null == src || src.length == 0 || null == clz) {
       return null;
@@ -172,7 +172,16 @@ public final class InOutStream {
    * @return
    */
   public InOutStream putString(String output) {
-    byte[] stringByte = InOutStream.write(output);
+    return putString(InOutStream.write(output));
+  }
+
+  /**
+   * Put a string which is already encoded as UTF-8.
+   *
+   * @param stringByte
+   * @return
+   */
+  public InOutStream putString(byte[] stringByte) {
     elasticBuffer.putInt(stringByte.length);
     elasticBuffer.putArray(stringByte);
     return this;
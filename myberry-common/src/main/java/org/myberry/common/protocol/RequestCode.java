@@ -31,6 +31,10 @@ public class RequestCode {
 
   public static final int HEART_BEAT = 12;
 
+  public static final int PULL_ID_BATCH = 13;
+
+  public static final int PULL_ID_MULTI = 14;
+
   public static final int CREATE_COMPONENT = 20;
 
   public static final int QUERY_COMPONENT_SIZE = 21;
@@ -38,4 +42,8 @@ public class RequestCode {
   public static final int QUERY_COMPONENT_BY_KEY = 22;
 
   public static final int QUERY_CLUSTER_LIST = 23;
+
+  public static final int SNAPSHOT_STORE = 24;
+
+  public static final int REMOVE_COMPONENT = 25;
 }
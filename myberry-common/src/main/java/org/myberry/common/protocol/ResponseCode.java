@@ -36,4 +36,7 @@ public class ResponseCode extends RemotingSysResponseCode {
   public static final int PASSWORD_ERROR = 13;
 
   public static final int DIFF_PRODUCE_MODE = 14;
+
+  /** The count of a batch or multi-key pull is out of range, the client has to change it. */
+  public static final int COUNT_OUT_OF_RANGE = 15;
 }
@@ -48,6 +48,10 @@ public class NSComponentData implements MessageLite, Component {
   @SerialField(ordinal = 4)
   private int code;
 
+  // step size of the last pulled segment, differs from stepSize when the step adapts
+  @SerialField(ordinal = 5)
+  private int effectiveStepSize;
+
   public String getKey() {
     return key;
   }
@@ -88,6 +92,14 @@ public class NSComponentData implements MessageLite, Component {
     this.code = code;
   }
 
+  public int getEffectiveStepSize() {
+    return effectiveStepSize;
+  }
+
+  public void setEffectiveStepSize(int effectiveStepSize) {
+    this.effectiveStepSize = effectiveStepSize;
+  }
+
   @Override
   public byte[] encode() {
     return LightCodec.toBytes(this);
@@ -0,0 +1,55 @@
+/*
+* MIT License
+*
+* Copyright (c) 2020 gaoyang
+*
+* Permission is hereby granted, free of charge, to any person obtaining a copy
+* of this software and associated documentation files (the "Software"), to deal
+* in the Software without restriction, including without limitation the rights
+* to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+* copies of the Software, and to permit persons to whom the Software is
+* furnished to do so, subject to the following conditions:
+
+* The above copyright notice and this permission notice shall be included in all
+* copies or substantial portions of the Software.
+
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+* IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+* AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+* LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+* OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+* SOFTWARE.
+*/
+package org.myberry.common.protocol.body.user;
+
+import java.util.List;
+import org.myberry.common.codec.LightCodec;
+import org.myberry.common.codec.MessageLite;
+import org.myberry.common.codec.annotation.SerialField;
+
+public class CRPullBatchResultData implements MessageLite {
+
+  private static final int NEW_IDS_SERIAL_NO = 0;
+
+  @SerialField(ordinal = NEW_IDS_SERIAL_NO)
+  private List<String> newIds;
+
+  /**
+   * Encode the body from IDs which are already UTF-8 encoded.
+   *
+   * @param newIds the UTF-8 encoded IDs
+   * @return the same bytes as {@link LightCodec#toBytes(MessageLite)} of the body
+   */
+  public static byte[] encode(List<byte[]> newIds) {
+    return LightCodec.toBytes(NEW_IDS_SERIAL_NO, newIds);
+  }
+
+  public List<String> getNewIds() {
+    return newIds;
+  }
+
+  public void setNewIds(List<String> newIds) {
+    this.newIds = newIds;
+  }
+}
@@ -23,14 +23,27 @@
 */
 package org.myberry.common.protocol.body.user;
 
+import org.myberry.common.codec.LightCodec;
 import org.myberry.common.codec.MessageLite;
 import org.myberry.common.codec.annotation.SerialField;
 
 public class CRPullResultData implements MessageLite {
 
-  @SerialField(ordinal = 0)
+  private static final int NEW_ID_SERIAL_NO = 0;
+
+  @SerialField(ordinal = NEW_ID_SERIAL_NO)
   private String newId;
 
+  /**
+   * Encode the body from an ID which is already UTF-8 encoded.
+   *
+   * @param newId the UTF-8 encoded ID
+   * @return the same bytes as {@link LightCodec#toBytes(MessageLite)} of the body
+   */
+  public static byte[] encode(byte[] newId) {
+    return LightCodec.toBytes(NEW_ID_SERIAL_NO, newId);
+  }
+
   public String getNewId() {
     return newId;
   }
@@ -0,0 +1,120 @@
+/*
+* MIT License
+*
+* Copyright (c) 2020 gaoyang
+*
+* Permission is hereby granted, free of charge, to any person obtaining a copy
+* of this software and associated documentation files (the "Software"), to deal
+* in the Software without restriction, including without limitation the rights
+* to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+* copies of the Software, and to permit persons to whom the Software is
+* furnished to do so, subject to the following conditions:
+
+* The above copyright notice and this permission notice shall be included in all
+* copies or substantial portions of the Software.
+
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+* IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+* AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+* LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+* OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+* SOFTWARE.
+*/
+package org.myberry.common.protocol.body.user;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.myberry.common.codec.MessageLite;
+import org.myberry.common.codec.annotation.SerialField;
+
+public class PullIdMultiRequestData implements MessageLite {
+
+  @SerialField(ordinal = 0)
+  private List<PullIdEntry> entries;
+
+  public List<PullIdEntry> getEntries() {
+    return entries;
+  }
+
+  public void setEntries(List<PullIdEntry> entries) {
+    this.entries = entries;
+  }
+
+  public static class PullIdEntry implements MessageLite {
+
+    @SerialField(ordinal = 0)
+    private String key;
+
+    /** Number of IDs, a count below 2 pulls like a single pull. */
+    @SerialField(ordinal = 1)
+    private int count;
+
+    @SerialField(ordinal = 2)
+    private List<String> attachmentKeys;
+
+    @SerialField(ordinal = 3)
+    private List<String> attachmentValues;
+
+    public String getKey() {
+      return key;
+    }
+
+    public void setKey(String key) {
+      this.key = key;
+    }
+
+    public int getCount() {
+      return count;
+    }
+
+    public void setCount(int count) {
+      this.count = count;
+    }
+
+    public List<String> getAttachmentKeys() {
+      return attachmentKeys;
+    }
+
+    public void setAttachmentKeys(List<String> attachmentKeys) {
+      this.attachmentKeys = attachmentKeys;
+    }
+
+    public List<String> getAttachmentValues() {
+      return attachmentValues;
+    }
+
+    public void setAttachmentValues(List<String> attachmentValues) {
+      this.attachmentValues = attachmentValues;
+    }
+
+    /** Put the attachments as a key list and a value list of the same order. */
+    public void putAttachments(Map<String, String> attachments) {
+      if (attachments == null || attachments.isEmpty()) {
+        return;
+      }
+      attachmentKeys = new ArrayList<>(attachments.size());
+      attachmentValues = new ArrayList<>(attachments.size());
+      for (Map.Entry<String, String> entry : attachments.entrySet()) {
+        if (entry.getKey() != null && entry.getValue() != null) {
+          attachmentKeys.add(entry.getKey());
+          attachmentValues.add(entry.getValue());
+        }
+      }
+    }
+
+    /** @return the attachments, null if there are none */
+    public Map<String, String> toAttachments() {
+      if (attachmentKeys == null || attachmentKeys.isEmpty()) {
+        return null;
+      }
+      Map<String, String> attachments = new HashMap<>(attachmentKeys.size() * 2);
+      for (int i = 0; i < attachmentKeys.size(); i++) {
+        attachments.put(attachmentKeys.get(i), attachmentValues.get(i));
+      }
+      return attachments;
+    }
+  }
+}
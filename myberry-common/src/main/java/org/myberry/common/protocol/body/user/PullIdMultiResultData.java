@@ -0,0 +1,134 @@
+/*
+* MIT License
+*
+* Copyright (c) 2020 gaoyang
+*
+* Permission is hereby granted, free of charge, to any person obtaining a copy
+* of this software and associated documentation files (the "Software"), to deal
+* in the Software without restriction, including without limitation the rights
+* to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+* copies of the Software, and to permit persons to whom the Software is
+* furnished to do so, subject to the following conditions:
+
+* The above copyright notice and this permission notice shall be included in all
+* copies or substantial portions of the Software.
+
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+* IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+* AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+* LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+* OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+* SOFTWARE.
+*/
+package org.myberry.common.protocol.body.user;
+
+import java.util.List;
+import org.myberry.common.codec.MessageLite;
+import org.myberry.common.codec.annotation.SerialField;
+
+public class PullIdMultiResultData implements MessageLite {
+
+  /** Results in the order of the entries of the request. */
+  @SerialField(ordinal = 0)
+  private List<PullIdEntryResult> results;
+
+  public List<PullIdEntryResult> getResults() {
+    return results;
+  }
+
+  public void setResults(List<PullIdEntryResult> results) {
+    this.results = results;
+  }
+
+  public static class PullIdEntryResult implements MessageLite {
+
+    @SerialField(ordinal = 0)
+    private String key;
+
+    @SerialField(ordinal = 1)
+    private int respCode;
+
+    @SerialField(ordinal = 2)
+    private String remark;
+
+    @SerialField(ordinal = 3)
+    private int produceCode;
+
+    @SerialField(ordinal = 4)
+    private List<String> newIds;
+
+    @SerialField(ordinal = 5)
+    private int start;
+
+    @SerialField(ordinal = 6)
+    private int end;
+
+    @SerialField(ordinal = 7)
+    private int synergyId;
+
+    public String getKey() {
+      return key;
+    }
+
+    public void setKey(String key) {
+      this.key = key;
+    }
+
+    public int getRespCode() {
+      return respCode;
+    }
+
+    public void setRespCode(int respCode) {
+      this.respCode = respCode;
+    }
+
+    public String getRemark() {
+      return remark;
+    }
+
+    public void setRemark(String remark) {
+      this.remark = remark;
+    }
+
+    public int getProduceCode() {
+      return produceCode;
+    }
+
+    public void setProduceCode(int produceCode) {
+      this.produceCode = produceCode;
+    }
+
+    public List<String> getNewIds() {
+      return newIds;
+    }
+
+    public void setNewIds(List<String> newIds) {
+      this.newIds = newIds;
+    }
+
+    public int getStart() {
+      return start;
+    }
+
+    public void setStart(int start) {
+      this.start = start;
+    }
+
+    public int getEnd() {
+      return end;
+    }
+
+    public void setEnd(int end) {
+      this.end = end;
+    }
+
+    public int getSynergyId() {
+      return synergyId;
+    }
+
+    public void setSynergyId(int synergyId) {
+      this.synergyId = synergyId;
+    }
+  }
+}
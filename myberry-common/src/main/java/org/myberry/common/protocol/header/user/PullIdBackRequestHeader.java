@@ -33,6 +33,9 @@ public class PullIdBackRequestHeader implements CommandCustomHeader {
 
   private int produceCode;
 
+  // number of IDs of a PULL_ID_BATCH request
+  private int count;
+
   @Override
   public void checkFields() throws RemotingCommandException {}
 
@@ -51,4 +54,12 @@ public class PullIdBackRequestHeader implements CommandCustomHeader {
   public void setProduceCode(int produceCode) {
     this.produceCode = produceCode;
   }
+
+  public int getCount() {
+    return count;
+  }
+
+  public void setCount(int count) {
+    this.count = count;
+  }
 }
@@ -22,11 +22,17 @@ package org.myberry.common.codec;
 
 import java.io.UnsupportedEncodingException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import org.junit.Assert;
 import org.junit.BeforeClass;
 import org.junit.Test;
 import org.myberry.common.codec.util.NullObjects;
+import org.myberry.common.protocol.body.user.CRPullBatchResultData;
+import org.myberry.common.protocol.body.user.CRPullResultData;
+import org.myberry.common.protocol.body.user.PullIdMultiRequestData;
+import org.myberry.common.protocol.body.user.PullIdMultiRequestData.PullIdEntry;
 
 public class LightCodecTest {
 
@@ -157,6 +163,64 @@ public class LightCodecTest {
         obj.getInnnerObjs().get(1).getOrder().get(1));
   }
 
+  @Test
+  public void testStringBytes() throws UnsupportedEncodingException {
+    CRPullResultData crPullResultData = new CRPullResultData();
+    crPullResultData.setNewId("中文 English 123");
+
+    byte[] bytes = CRPullResultData.encode(crPullResultData.getNewId().getBytes("UTF-8"));
+    Assert.assertArrayEquals(LightCodec.toBytes(crPullResultData), bytes);
+    Assert.assertEquals(
+        crPullResultData.getNewId(), LightCodec.toObj(bytes, CRPullResultData.class).getNewId());
+  }
+
+  @Test
+  public void testStringListBytes() throws UnsupportedEncodingException {
+    CRPullBatchResultData crPullBatchResultData = new CRPullBatchResultData();
+    List<String> newIds = new ArrayList<>();
+    newIds.add("中文 1");
+    newIds.add("English 2");
+    newIds.add("3");
+    crPullBatchResultData.setNewIds(newIds);
+
+    List<byte[]> utf8s = new ArrayList<>();
+    for (String newId : newIds) {
+      utf8s.add(newId.getBytes("UTF-8"));
+    }
+    byte[] bytes = CRPullBatchResultData.encode(utf8s);
+    Assert.assertArrayEquals(LightCodec.toBytes(crPullBatchResultData), bytes);
+    Assert.assertEquals(newIds, LightCodec.toObj(bytes, CRPullBatchResultData.class).getNewIds());
+  }
+
+  @Test
+  public void testPullIdMulti() {
+    Map<String, String> attachments = new HashMap<>();
+    attachments.put("tenant", "a");
+    attachments.put("region", "b");
+
+    PullIdEntry order = new PullIdEntry();
+    order.setKey("order");
+    order.setCount(10);
+    order.putAttachments(attachments);
+    PullIdEntry payment = new PullIdEntry();
+    payment.setKey("payment");
+
+    List<PullIdEntry> entries = new ArrayList<>();
+    entries.add(order);
+    entries.add(payment);
+    PullIdMultiRequestData pullIdMultiRequestData = new PullIdMultiRequestData();
+    pullIdMultiRequestData.setEntries(entries);
+
+    PullIdMultiRequestData obj =
+        LightCodec.toObj(LightCodec.toBytes(pullIdMultiRequestData), PullIdMultiRequestData.class);
+    Assert.assertEquals(2, obj.getEntries().size());
+    Assert.assertEquals("order", obj.getEntries().get(0).getKey());
+    Assert.assertEquals(10, obj.getEntries().get(0).getCount());
+    Assert.assertEquals(attachments, obj.getEntries().get(0).toAttachments());
+    Assert.assertEquals("payment", obj.getEntries().get(1).getKey());
+    Assert.assertNull(obj.getEntries().get(1).toAttachments());
+  }
+
   @Test
   public void testNullDefault() {
     byte[] bytes = LightCodec.toBytes(testNullObject);
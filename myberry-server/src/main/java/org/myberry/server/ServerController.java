@@ -46,8 +46,8 @@ import org.myberry.server.processor.UserRequestProcessor;
 import org.myberry.server.quarum.Quorum;
 import org.myberry.server.quarum.QuorumPeer;
 import org.myberry.server.routeinfo.RouteInfoManager;
-import org.myberry.store.DefaultMyberryStore;
 import org.myberry.store.MyberryStore;
+import org.myberry.store.MyberryStoreFactory;
 import org.myberry.store.config.StoreConfig;
 
 public class ServerController {
@@ -90,7 +90,7 @@ public class ServerController {
   public boolean initialize() {
     boolean result = true;
     try {
-      this.myberryStore = new DefaultMyberryStore(storeConfig);
+      this.myberryStore = MyberryStoreFactory.create(storeConfig);
       initPlugins(storeConfig.getProduceMode());
 
       if (ProduceMode.CR.getProduceName().equals(storeConfig.getProduceMode())) {
@@ -156,6 +156,16 @@ public class ServerController {
         userRequestProcessor, //
         userManageExecutor //
         );
+    this.remotingServer.registerProcessor( //
+        RequestCode.PULL_ID_BATCH, //
+        userRequestProcessor, //
+        userManageExecutor //
+        );
+    this.remotingServer.registerProcessor( //
+        RequestCode.PULL_ID_MULTI, //
+        userRequestProcessor, //
+        userManageExecutor //
+        );
 
     /** ClientManageProcessor */
     ClientManageProcessor clientManageProcessor = new ClientManageProcessor(this);
@@ -25,6 +25,7 @@ package org.myberry.server.expression;
 
 import java.util.ArrayList;
 import java.util.List;
+import org.myberry.common.expression.impl.ExpressionParser;
 import org.myberry.server.expression.converter.Converter;
 import org.myberry.server.expression.impl.BufferStructObject;
 import org.myberry.server.expression.impl.PlaceholderObject;
@@ -42,19 +43,37 @@ public class ExpressionConverterFactory {
     converters.clear();
   }
 
+  /**
+   * Compile an expression into a render plan which can be cached and shared between threads.
+   *
+   * @param expression the component expression, e.g. "[#time(day) 2 3 #sid(0) #incr(0)]"
+   * @return the compiled render plan
+   */
+  public BufferStructObject compile(String expression) {
+    return doConvert(expression, ExpressionParser.split(expression.trim()));
+  }
+
   public BufferStructObject doConvert(String[] placeholders) {
-    BufferStructObject bufferStructObject = new BufferStructObject(placeholders.length);
+    return doConvert(null, placeholders);
+  }
+
+  private BufferStructObject doConvert(String expression, String[] placeholders) {
+    PlaceholderObject[] placeholderObjects = new PlaceholderObject[placeholders.length];
 
     for (int i = 0; i < placeholders.length; i++) {
       for (int j = 0; j < converters.size(); j++) {
         PlaceholderObject placeholderObject = converters.get(j).doConvert(placeholders[i]);
         if (placeholderObject != null) {
-          bufferStructObject.getPlaceholderObjects()[i] = placeholderObject;
+          placeholderObjects[i] = placeholderObject;
           break;
         }
       }
+
+      if (placeholderObjects[i] == null) {
+        throw new IllegalArgumentException("unsupported placeholder: " + placeholders[i]);
+      }
     }
 
-    return bufferStructObject;
+    return new BufferStructObject(expression, placeholderObjects);
   }
 }
@@ -54,4 +54,12 @@ public class RandomHandler implements PlaceholderHandler {
       return stringBuilder.toString();
     }
   }
+
+  public int getLength() {
+    return length;
+  }
+
+  public int getRandMax() {
+    return randMax;
+  }
 }
@@ -49,4 +49,8 @@ public class SidHandler implements PlaceholderHandler {
       return value.substring(value.length() - index - 1, value.length() - index);
     }
   }
+
+  public int getIndex() {
+    return index;
+  }
 }
@@ -23,10 +23,9 @@
  */
 package org.myberry.server.expression.handler;
 
-import java.time.Instant;
-import java.time.ZoneId;
-import java.time.format.DateTimeFormatter;
 import org.myberry.common.expression.parser.TimeParser;
+import org.myberry.common.strategy.StrategyDate;
+import org.myberry.server.util.CalendarClock;
 
 public class TimeHandler implements PlaceholderHandler {
 
@@ -34,35 +33,36 @@ public class TimeHandler implements PlaceholderHandler {
   public static final String MONTH_PATTERN = "yyyyMM";
   public static final String YEAR_PATTERN = "yyyy";
 
-  private DateTimeFormatter format;
+  private int type;
 
   @Override
   public void handle(String placeholder) {
     switch (placeholder) {
       case TimeParser.TIME_DAY:
-        this.format = DateTimeFormatter.ofPattern(DAY_PATTERN);
+        this.type = StrategyDate.TIME_DAY;
         break;
 
       case TimeParser.TIME_MONTH:
-        this.format = DateTimeFormatter.ofPattern(MONTH_PATTERN);
+        this.type = StrategyDate.TIME_MONTH;
         break;
 
       case TimeParser.TIME_YEAR:
-        this.format = DateTimeFormatter.ofPattern(YEAR_PATTERN);
+        this.type = StrategyDate.TIME_YEAR;
         break;
 
       default:
-        this.format = DateTimeFormatter.ofPattern(DAY_PATTERN);
+        this.type = StrategyDate.TIME_DAY;
         break;
     }
   }
 
   @Override
   public String get(String value) {
-    long now = System.currentTimeMillis();
-    return Instant.ofEpochMilli(now)
-        .atZone(ZoneId.of(ZoneId.systemDefault().getId()))
-        .toLocalDateTime()
-        .format(format);
+    return CalendarClock.getInstance().format(type, System.currentTimeMillis());
+  }
+
+  /** Time strategy of {@link StrategyDate}. */
+  public int getType() {
+    return type;
   }
 }
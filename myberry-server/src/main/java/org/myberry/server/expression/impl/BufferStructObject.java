@@ -24,47 +24,57 @@
 package org.myberry.server.expression.impl;
 
 import java.util.Map;
-import org.myberry.server.expression.handler.DynamicHandler;
-import org.myberry.server.expression.handler.IncrHandler;
-import org.myberry.server.expression.handler.SidHandler;
-import org.myberry.store.CRComponent;
 
+/**
+ * The compiled render plan of a CR expression. Handlers are immutable after conversion, so one
+ * instance is built per key and shared by all pulling threads.
+ */
 public class BufferStructObject {
 
+  private final String expression;
   private final PlaceholderObject[] placeholderObjects;
-  private int sid;
+  private final IdRenderer idRenderer;
 
-  public BufferStructObject(int length) {
-    this.placeholderObjects = new PlaceholderObject[length];
+  public BufferStructObject(String expression, PlaceholderObject[] placeholderObjects) {
+    this.expression = expression;
+    this.placeholderObjects = placeholderObjects;
+    this.idRenderer = new IdRenderer(placeholderObjects);
   }
 
   public PlaceholderObject[] getPlaceholderObjects() {
     return placeholderObjects;
   }
 
-  public void setSid(int sid) {
-    this.sid = sid;
+  public String getExpression() {
+    return expression;
   }
 
-  public String getResult(CRComponent crComponent, Map<String, String> attachments) {
-    StringBuilder result = new StringBuilder(placeholderObjects.length);
-    for (PlaceholderObject placeholderObject : placeholderObjects) {
-      if (placeholderObject.getPlaceholderHandler() instanceof IncrHandler) {
-        result.append(
-            placeholderObject
-                .getPlaceholderHandler()
-                .get(String.valueOf(crComponent.getIncrNumber())));
-      } else if (placeholderObject.getPlaceholderHandler() instanceof SidHandler) {
-        result.append(placeholderObject.getPlaceholderHandler().get(String.valueOf(sid)));
-      } else if (placeholderObject.getPlaceholderHandler() instanceof DynamicHandler) {
-        if (attachments != null
-            && attachments.get(placeholderObject.getPlaceholderHandler().get(null)) != null) {
-          result.append(attachments.get(placeholderObject.getPlaceholderHandler().get(null)));
-        }
-      } else {
-        result.append(placeholderObject.getPlaceholderHandler().get(null));
-      }
-    }
-    return result.toString();
+  /**
+   * Whether this plan was compiled from the given expression.
+   *
+   * @param expression the current expression of the component
+   * @return true if the plan is still valid for the component
+   */
+  public boolean isCompiledFrom(String expression) {
+    return this.expression != null && this.expression.equals(expression);
+  }
+
+  /**
+   * Get the time strategy of the expression, which decides when the counter is reset.
+   *
+   * @return {@link org.myberry.common.strategy.StrategyDate}
+   */
+  public int getTimeType() {
+    return idRenderer.getTimeType();
+  }
+
+  public String getResult(
+      int sid, long incrNumber, long timestamp, Map<String, String> attachments) {
+    return idRenderer.render(sid, incrNumber, timestamp, attachments);
+  }
+
+  public byte[] getResultBytes(
+      int sid, long incrNumber, long timestamp, Map<String, String> attachments) {
+    return idRenderer.renderBytes(sid, incrNumber, timestamp, attachments);
   }
 }
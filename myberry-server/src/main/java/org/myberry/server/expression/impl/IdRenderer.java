@@ -0,0 +1,316 @@
+/*
+* MIT License
+*
+* Copyright (c) 2020 gaoyang
+*
+* Permission is hereby granted, free of charge, to any person obtaining a copy
+* of this software and associated documentation files (the "Software"), to deal
+* in the Software without restriction, including without limitation the rights
+* to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+* copies of the Software, and to permit persons to whom the Software is
+* furnished to do so, subject to the following conditions:
+
+* The above copyright notice and this permission notice shall be included in all
+* copies or substantial portions of the Software.
+
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+* IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+* AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+* LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+* OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+* SOFTWARE.
+*/
+package org.myberry.server.expression.impl;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import org.myberry.common.strategy.StrategyDate;
+import org.myberry.server.expression.handler.DynamicHandler;
+import org.myberry.server.expression.handler.IncrHandler;
+import org.myberry.server.expression.handler.LetterHandler;
+import org.myberry.server.expression.handler.NumberHandler;
+import org.myberry.server.expression.handler.PlaceholderHandler;
+import org.myberry.server.expression.handler.RandomHandler;
+import org.myberry.server.expression.handler.SidHandler;
+import org.myberry.server.expression.handler.TimeHandler;
+import org.myberry.server.util.CalendarClock;
+
+/**
+ * Renders an ID into a reusable per-thread byte buffer. Consecutive letters and numbers are merged
+ * into precomputed literal segments, digits of the counter and sid are extracted arithmetically and
+ * random numbers are zero padded in place, so nothing but the returned value is allocated.
+ */
+public class IdRenderer {
+
+  private static final int INITIAL_BUFFER_SIZE = 64;
+
+  private static final ThreadLocal<byte[]> BUFFER = new ThreadLocal<>();
+
+  private static final long[] POW10 = new long[19];
+
+  static {
+    POW10[0] = 1;
+    for (int i = 1; i < POW10.length; i++) {
+      POW10[i] = POW10[i - 1] * 10;
+    }
+  }
+
+  private static final int LITERAL = 0;
+  private static final int INCR = 1;
+  private static final int SID = 2;
+  private static final int RANDOM = 3;
+  private static final int DYNAMIC = 4;
+  private static final int TIME = 5;
+  private static final int OTHER = 6;
+
+  private final Segment[] segments;
+  private final int timeType;
+
+  public IdRenderer(final PlaceholderObject[] placeholderObjects) {
+    List<Segment> list = new ArrayList<>(placeholderObjects.length);
+    StringBuilder literal = new StringBuilder();
+    int timeType = StrategyDate.NON_TIME;
+    for (PlaceholderObject placeholderObject : placeholderObjects) {
+      PlaceholderHandler handler = placeholderObject.getPlaceholderHandler();
+      if (handler instanceof LetterHandler || handler instanceof NumberHandler) {
+        literal.append(handler.get(null));
+        continue;
+      }
+
+      if (literal.length() > 0) {
+        list.add(Segment.literal(literal.toString()));
+        literal.setLength(0);
+      }
+
+      if (handler instanceof IncrHandler) {
+        list.add(Segment.digit(INCR, ((IncrHandler) handler).getIndex()));
+      } else if (handler instanceof SidHandler) {
+        list.add(Segment.digit(SID, ((SidHandler) handler).getIndex()));
+      } else if (handler instanceof RandomHandler) {
+        RandomHandler randomHandler = (RandomHandler) handler;
+        list.add(Segment.random(randomHandler.getLength(), randomHandler.getRandMax()));
+      } else if (handler instanceof DynamicHandler) {
+        list.add(Segment.dynamic(handler));
+      } else if (handler instanceof TimeHandler) {
+        int type = ((TimeHandler) handler).getType();
+        // the finest unit resets the counter, day before month before year
+        if (timeType == StrategyDate.NON_TIME || type < timeType) {
+          timeType = type;
+        }
+        list.add(Segment.time(type));
+      } else {
+        list.add(Segment.other(handler));
+      }
+    }
+    if (literal.length() > 0) {
+      list.add(Segment.literal(literal.toString()));
+    }
+
+    this.segments = list.toArray(new Segment[0]);
+    this.timeType = timeType;
+  }
+
+  /**
+   * Get the time strategy of the expression.
+   *
+   * @return {@link StrategyDate#NON_TIME} if the expression has no time placeholder
+   */
+  public int getTimeType() {
+    return timeType;
+  }
+
+  /**
+   * Render the ID as a string.
+   *
+   * @param sid the server id
+   * @param incrNumber the counter of the component
+   * @param timestamp epoch millis which time placeholders are rendered with
+   * @param attachments values of the dynamic placeholders, nullable
+   * @return the ID
+   */
+  public String render(
+      int sid, long incrNumber, long timestamp, Map<String, String> attachments) {
+    int length = renderToBuffer(sid, incrNumber, timestamp, attachments);
+    return new String(BUFFER.get(), 0, length, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Render the ID as UTF-8 bytes, without building an intermediate string.
+   *
+   * @param sid the server id
+   * @param incrNumber the counter of the component
+   * @param timestamp epoch millis which time placeholders are rendered with
+   * @param attachments values of the dynamic placeholders, nullable
+   * @return the UTF-8 encoded ID
+   */
+  public byte[] renderBytes(
+      int sid, long incrNumber, long timestamp, Map<String, String> attachments) {
+    int length = renderToBuffer(sid, incrNumber, timestamp, attachments);
+    return Arrays.copyOf(BUFFER.get(), length);
+  }
+
+  private int renderToBuffer(
+      int sid, long incrNumber, long timestamp, Map<String, String> attachments) {
+    byte[] buffer = BUFFER.get();
+    if (buffer == null) {
+      buffer = new byte[INITIAL_BUFFER_SIZE];
+      BUFFER.set(buffer);
+    }
+
+    int position = 0;
+    for (Segment segment : segments) {
+      switch (segment.type) {
+        case LITERAL:
+          buffer = ensureCapacity(buffer, position, segment.literal.length);
+          System.arraycopy(segment.literal, 0, buffer, position, segment.literal.length);
+          position += segment.literal.length;
+          break;
+        case INCR:
+          buffer = ensureCapacity(buffer, position, 1);
+          buffer[position++] = digit(incrNumber, segment.divisor);
+          break;
+        case SID:
+          buffer = ensureCapacity(buffer, position, 1);
+          buffer[position++] = digit(sid, segment.divisor);
+          break;
+        case RANDOM:
+          buffer = ensureCapacity(buffer, position, segment.width);
+          int random = ThreadLocalRandom.current().nextInt(segment.bound);
+          for (int i = position + segment.width - 1; i >= position; i--) {
+            buffer[i] = (byte) ('0' + random % 10);
+            random /= 10;
+          }
+          position += segment.width;
+          break;
+        case TIME:
+          byte[] time =
+              CalendarClock.getInstance()
+                  .getBucket(segment.timeType, timestamp)
+                  .getFormattedBytes();
+          buffer = ensureCapacity(buffer, position, time.length);
+          System.arraycopy(time, 0, buffer, position, time.length);
+          position += time.length;
+          break;
+        case DYNAMIC:
+          String value = attachments == null ? null : attachments.get(segment.name);
+          if (value != null) {
+            buffer = ensureCapacity(buffer, position, value.length() * 3);
+            position = writeUtf8(value, buffer, position);
+          }
+          break;
+        default:
+          String str = segment.handler.get(null);
+          buffer = ensureCapacity(buffer, position, str.length() * 3);
+          position = writeUtf8(str, buffer, position);
+          break;
+      }
+    }
+    return position;
+  }
+
+  private static byte digit(long value, long divisor) {
+    if (divisor == 0) {
+      return '0';
+    }
+    return (byte) ('0' + (value / divisor) % 10);
+  }
+
+  private static byte[] ensureCapacity(byte[] buffer, int position, int required) {
+    if (buffer.length - position >= required) {
+      return buffer;
+    }
+
+    byte[] expanded = Arrays.copyOf(buffer, Math.max(buffer.length << 1, position + required));
+    BUFFER.set(expanded);
+    return expanded;
+  }
+
+  private static int writeUtf8(String str, byte[] buffer, int position) {
+    for (int i = 0; i < str.length(); i++) {
+      char c = str.charAt(i);
+      if (c < 0x80) {
+        buffer[position++] = (byte) c;
+      } else if (c < 0x800) {
+        buffer[position++] = (byte) (0xc0 | (c >> 6));
+        buffer[position++] = (byte) (0x80 | (c & 0x3f));
+      } else if (Character.isHighSurrogate(c)
+          && i + 1 < str.length()
+          && Character.isLowSurrogate(str.charAt(i + 1))) {
+        int codePoint = Character.toCodePoint(c, str.charAt(++i));
+        buffer[position++] = (byte) (0xf0 | (codePoint >> 18));
+        buffer[position++] = (byte) (0x80 | ((codePoint >> 12) & 0x3f));
+        buffer[position++] = (byte) (0x80 | ((codePoint >> 6) & 0x3f));
+        buffer[position++] = (byte) (0x80 | (codePoint & 0x3f));
+      } else if (Character.isSurrogate(c)) {
+        buffer[position++] = '?';
+      } else {
+        buffer[position++] = (byte) (0xe0 | (c >> 12));
+        buffer[position++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+        buffer[position++] = (byte) (0x80 | (c & 0x3f));
+      }
+    }
+    return position;
+  }
+
+  private static class Segment {
+
+    private final int type;
+    private final byte[] literal;
+    private final long divisor;
+    private final int width;
+    private final int bound;
+    private final int timeType;
+    private final String name;
+    private final PlaceholderHandler handler;
+
+    private Segment(
+        int type,
+        byte[] literal,
+        long divisor,
+        int width,
+        int bound,
+        int timeType,
+        String name,
+        PlaceholderHandler handler) {
+      this.type = type;
+      this.literal = literal;
+      this.divisor = divisor;
+      this.width = width;
+      this.bound = bound;
+      this.timeType = timeType;
+      this.name = name;
+      this.handler = handler;
+    }
+
+    static Segment literal(String literal) {
+      return new Segment(
+          LITERAL, literal.getBytes(StandardCharsets.UTF_8), 0, 0, 0, 0, null, null);
+    }
+
+    static Segment digit(int type, int index) {
+      long divisor = index < POW10.length ? POW10[index] : 0;
+      return new Segment(type, null, divisor, 0, 0, 0, null, null);
+    }
+
+    static Segment random(int width, int bound) {
+      return new Segment(RANDOM, null, 0, width, bound, 0, null, null);
+    }
+
+    static Segment time(int timeType) {
+      return new Segment(TIME, null, 0, 0, 0, timeType, null, null);
+    }
+
+    static Segment dynamic(PlaceholderHandler handler) {
+      return new Segment(DYNAMIC, null, 0, 0, 0, 0, handler.get(null), null);
+    }
+
+    static Segment other(PlaceholderHandler handler) {
+      return new Segment(OTHER, null, 0, 0, 0, 0, null, handler);
+    }
+  }
+}
@@ -23,25 +23,26 @@
 */
 package org.myberry.server.impl;
 
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 import org.myberry.common.ProduceMode;
-import org.myberry.common.expression.impl.ExpressionParser;
 import org.myberry.common.protocol.ResponseCode;
 import org.myberry.common.protocol.body.admin.CRComponentData;
-import org.myberry.common.strategy.StrategyDate;
 import org.myberry.remoting.common.RemotingHelper;
 import org.myberry.remoting.protocol.RemotingSysResponseCode;
 import org.myberry.server.expression.ConverterManager;
 import org.myberry.server.expression.ExpressionConverterFactory;
 import org.myberry.server.expression.impl.BufferStructObject;
-import org.myberry.server.util.DateUtils;
+import org.myberry.server.util.CalendarClock;
 import org.myberry.store.AbstractComponent;
 import org.myberry.store.CRComponent;
 import org.myberry.store.MyberryStore;
@@ -62,6 +63,7 @@ public class CRService extends MyberryService {
       buffertMap = new ConcurrentHashMap<>();
   private final ConverterManager converterManager;
   private final ExpressionConverterFactory expressionConverterFactory;
+  private final CalendarClock calendarClock = CalendarClock.getInstance();
 
   private final Lock lock = new ReentrantLock();
 
@@ -72,49 +74,173 @@ public class CRService extends MyberryService {
   }
 
   @Override
-  public PullIdResult getNewId(String key, Map<String, String> attachments) {
-    if (!myberryStore.isExistKey(key)) {
+  public PullIdResult reserveNewId(String key, Map<String, String> attachments) {
+    CRComponent crc = (CRComponent) myberryStore.getComponent(key);
+    if (crc == null) {
       log.warn("invalid key: {}", key);
       return new PullIdResult(ResponseCode.KEY_NOT_EXISTED, emptyString());
     }
-
-    CRComponent crc = (CRComponent) myberryStore.getComponentMap().get(key);
-    crc.getLock().lock();
     try {
+      BufferStructObject bufferStructObject = getBufferStructObject(crc);
+
       long beginLockTimestamp = this.getSystemClock().now();
       myberryStore.setBeginTimeInLock(beginLockTimestamp);
 
-      if (isReset(crc)) {
-        crc.resetIncrNumber();
-      }
-      crc.setUpdateTime(System.currentTimeMillis());
-      crc.incrementAndGet();
+      CRComponent.Counter counter =
+          incrementAndGet(
+              crc,
+              bufferStructObject.getTimeType(),
+              beginLockTimestamp,
+              this.getReservationSize(),
+              1);
+      write(crc, counter);
 
-      myberryStore.updateBufferLong(
-          (int) crc.getPhyOffset() + CRComponent.updateTimeHeader, crc.getUpdateTime());
-      myberryStore.updateBufferLong(
-          (int) crc.getPhyOffset() + CRComponent.incrNumberHeader, crc.getIncrNumber());
       myberryStore.incrMbid();
-      if (this.isAlwaysFlush()) {
-        myberryStore.save();
-      }
 
-      BufferStructObject bufferStructObject =
-          expressionConverterFactory.doConvert(ExpressionParser.split(crc.getExpression()));
-      bufferStructObject.setSid(myberryStore.getMySidFromDisk());
+      byte[] newId =
+          bufferStructObject.getResultBytes(
+              myberryStore.getMySidFromDisk(),
+              counter.getIncrNumber(),
+              counter.getUpdateTime(),
+              attachments);
 
       myberryStore.setBeginTimeInLock(0);
+      PullIdResult result =
+          new PullIdResult(ResponseCode.SUCCESS, ProduceMode.CR.getProduceCode(), newId);
+      result.setReservation(
+          new Reservation(
+              key,
+              crc.getPhyOffset(),
+              counter.getSequence(),
+              crc.getWrittenSequence().get(),
+              crc.getFlushedSequence()));
+      return result;
+    } catch (Exception e) {
+      myberryStore.setBeginTimeInLock(0);
+      log.error("reserveNewId() error: ", e.getMessage());
       return new PullIdResult(
-          ResponseCode.SUCCESS,
-          ProduceMode.CR.getProduceCode(),
-          bufferStructObject.getResult(crc, attachments));
+          RemotingSysResponseCode.SYSTEM_ERROR, RemotingHelper.exceptionSimpleDesc(e));
+    }
+  }
+
+  /**
+   * Pull {@code count} IDs of the key with one increment of the counter, the IDs share the update
+   * time of the counter and are rendered in the order of their numbers.
+   */
+  @Override
+  public PullIdResult reserveNewIds(String key, int count, Map<String, String> attachments) {
+    CRComponent crc = (CRComponent) myberryStore.getComponent(key);
+    if (crc == null) {
+      log.warn("invalid key: {}", key);
+      return new PullIdResult(ResponseCode.KEY_NOT_EXISTED, emptyString());
+    }
+    try {
+      BufferStructObject bufferStructObject = getBufferStructObject(crc);
+
+      long beginLockTimestamp = this.getSystemClock().now();
+      myberryStore.setBeginTimeInLock(beginLockTimestamp);
+
+      CRComponent.Counter counter =
+          incrementAndGet(
+              crc,
+              bufferStructObject.getTimeType(),
+              beginLockTimestamp,
+              this.getReservationSize(),
+              count);
+      write(crc, counter);
+
+      myberryStore.incrMbid();
+
+      int mySid = myberryStore.getMySidFromDisk();
+      List<byte[]> newIds = new ArrayList<>(count);
+      for (long incrNumber = counter.getIncrNumber() - count + 1;
+          incrNumber <= counter.getIncrNumber();
+          incrNumber++) {
+        newIds.add(
+            bufferStructObject.getResultBytes(
+                mySid, incrNumber, counter.getUpdateTime(), attachments));
+      }
+
+      myberryStore.setBeginTimeInLock(0);
+      PullIdResult result =
+          new PullIdResult(ResponseCode.SUCCESS, ProduceMode.CR.getProduceCode(), newIds);
+      result.setReservation(
+          new Reservation(
+              key,
+              crc.getPhyOffset(),
+              counter.getSequence(),
+              crc.getWrittenSequence().get(),
+              crc.getFlushedSequence()));
+      return result;
     } catch (Exception e) {
       myberryStore.setBeginTimeInLock(0);
-      log.error("getNewId() error: ", e.getMessage());
+      log.error("reserveNewIds() error: ", e.getMessage());
       return new PullIdResult(
           RemotingSysResponseCode.SYSTEM_ERROR, RemotingHelper.exceptionSimpleDesc(e));
+    }
+  }
+
+  /**
+   * Increment the counter of the component by {@code count} with CAS, resetting it first when the
+   * last update is before the current day, month or year. A caller whose timestamp is behind the
+   * counter takes the update time of the counter, so the returned counter is always rendered in its
+   * own bucket. A reset or a number past the reserved one opens a new reservation of {@code
+   * reservationSize} beyond the numbers of this caller.
+   *
+   * @return the counter this caller owns, the numbers of the caller end at its incrNumber
+   */
+  private CRComponent.Counter incrementAndGet(
+      CRComponent crc, int timeType, long now, int reservationSize, int count) {
+    for (; ; ) {
+      CRComponent.Counter current = crc.getCounter();
+      long updateTime = Math.max(now, current.getUpdateTime());
+      boolean reset = isReset(current.getUpdateTime(), timeType, updateTime);
+      long incrNumber = reset ? count : current.getIncrNumber() + count;
+
+      CRComponent.Counter next;
+      if (reset || incrNumber > current.getReservedNumber()) {
+        next =
+            new CRComponent.Counter(
+                updateTime,
+                incrNumber,
+                incrNumber + reservationSize - 1,
+                current.getSequence() + 1);
+      } else {
+        next =
+            new CRComponent.Counter(
+                updateTime, incrNumber, current.getReservedNumber(), current.getSequence());
+      }
+
+      if (crc.compareAndSetCounter(current, next)) {
+        return next;
+      }
+    }
+  }
+
+  /**
+   * Write the reservation of the counter to the mapped buffer before its ID is returned. Callers
+   * whose reservation is already written return at once, the others write the latest counter so the
+   * buffer never goes back to an older reservation.
+   */
+  private void write(CRComponent crc, CRComponent.Counter counter) {
+    AtomicLong writtenSequence = crc.getWrittenSequence();
+    if (writtenSequence.get() >= counter.getSequence()) {
+      return;
+    }
+
+    crc.getWriteLock().lock();
+    try {
+      if (writtenSequence.get() < counter.getSequence()) {
+        CRComponent.Counter latest = crc.getCounter();
+        long offset = crc.getPhyOffset();
+        myberryStore.updateBufferLong(
+            offset + CRComponent.updateTimeHeader, latest.getUpdateTime());
+        myberryStore.updateBufferLong(
+            offset + CRComponent.incrNumberHeader, latest.getReservedNumber());
+        writtenSequence.set(latest.getSequence());
+      }
     } finally {
-      crc.getLock().unlock();
+      crc.getWriteLock().unlock();
     }
   }
 
@@ -127,7 +253,6 @@ public class CRService extends MyberryService {
       CRComponent crc = new CRComponent();
       crc.setCreateTime(currentTime);
       crc.setUpdateTime(currentTime);
-      crc.setPhyOffset(myberryStore.getLastOffset());
       crc.setStatus(ComponentStatus.OPEN.getStatus());
 
       for (int i = 0; i < obj.length; i++) {
@@ -142,8 +267,6 @@ public class CRService extends MyberryService {
         }
       }
 
-      String[] exp = ExpressionParser.split(crc.getExpression().trim());
-
       if (myberryStore.isWriteFull(
           CRComponent.FIXED_FIELD_SIZE + crc.getKeyLength() + crc.getExpressionLength())) {
         return new AdminManageResult(ResponseCode.DISK_FULL);
@@ -152,9 +275,7 @@ public class CRService extends MyberryService {
       }
       myberryStore.addComponent(crc);
 
-      BufferStructObject bufferStructObject = expressionConverterFactory.doConvert(exp);
-      bufferStructObject.setSid(myberryStore.getMySidFromDisk());
-      buffertMap.put(crc.getKey(), bufferStructObject);
+      buffertMap.put(crc.getKey(), expressionConverterFactory.compile(crc.getExpression()));
 
       log.info(
           "{} ++> add key: {}, expression: {} success.",
@@ -172,13 +293,12 @@ public class CRService extends MyberryService {
 
   @Override
   public AdminManageResult queryComponentByKey(String key) {
-    if (!myberryStore.isExistKey(key)) {
+    CRComponent crc = (CRComponent) myberryStore.getComponent(key);
+    if (crc == null) {
       log.warn("invalid key: {}", key);
       return new AdminManageResult(ResponseCode.KEY_NOT_EXISTED);
     }
 
-    CRComponent crc = (CRComponent) myberryStore.getComponentMap().get(key);
-
     CRComponentData crcd = new CRComponentData();
     crcd.setKey(key);
     crcd.setExpression(crc.getExpression());
@@ -196,6 +316,7 @@ public class CRService extends MyberryService {
   @Override
   public void shutdown() {
     super.shutdown();
+    buffertMap.clear();
     converterManager.unRegisterDefaultConverter();
   }
 
@@ -205,28 +326,51 @@ public class CRService extends MyberryService {
     while (iterator.hasNext()) {
       Entry<String, AbstractComponent> next = iterator.next();
       CRComponent crc = (CRComponent) next.getValue();
-      BufferStructObject bufferStructObject =
-          expressionConverterFactory.doConvert(ExpressionParser.split(crc.getExpression()));
-      bufferStructObject.setSid(myberryStore.getMySidFromDisk());
-      buffertMap.put(next.getKey(), bufferStructObject);
+      buffertMap.put(next.getKey(), expressionConverterFactory.compile(crc.getExpression()));
     }
   }
 
-  public boolean isReset(CRComponent crComponent) {
-    int type = DateUtils.isIncludeTime(crComponent.getExpression());
-    if (type == StrategyDate.NON_TIME) {
-      return false;
+  /**
+   * Get the compiled render plan of the component. Components synchronized from the leader are
+   * not created through {@link #addComponent(Object...)}, and a component record may be replaced,
+   * so a missing or stale plan is compiled again here.
+   */
+  private BufferStructObject getBufferStructObject(CRComponent crc) {
+    BufferStructObject bufferStructObject = buffertMap.get(crc.getKey());
+    if (bufferStructObject == null || !bufferStructObject.isCompiledFrom(crc.getExpression())) {
+      bufferStructObject = expressionConverterFactory.compile(crc.getExpression());
+      buffertMap.put(crc.getKey(), bufferStructObject);
     }
+    return bufferStructObject;
+  }
 
-    long currentTimeMillis = System.currentTimeMillis();
-    long updateTime = crComponent.getUpdateTime();
-    if (currentTimeMillis > updateTime
-        && !DateUtils.convertTime(type, currentTimeMillis)
-            .equals(DateUtils.convertTime(type, updateTime))) {
-      return true;
-    } else {
-      return false;
-    }
+  /**
+   * Drop the compiled render plan of the key, it will be compiled again on the next pull.
+   *
+   * @param key component key
+   */
+  public void invalidateBufferStructObject(String key) {
+    buffertMap.remove(key);
+  }
+
+  @Override
+  public AdminManageResult removeComponent(String key) {
+    AdminManageResult result = super.removeComponent(key);
+    this.invalidateBufferStructObject(key);
+    return result;
+  }
+
+  /**
+   * Whether the counter has to be reset, the ID is rendered with the same timestamp so that the
+   * reset and the time placeholder always agree on the bucket.
+   *
+   * @param updateTime the last update time of the counter
+   * @param timeType time strategy of the expression
+   * @param now the timestamp of this pull
+   * @return true if the last update is before the current day, month or year
+   */
+  public boolean isReset(long updateTime, int timeType, long now) {
+    return calendarClock.isReset(timeType, now, updateTime);
   }
 
   @Override
@@ -25,7 +25,9 @@ package org.myberry.server.impl;
 
 public enum ComponentStatus {
   CLOSED(0),
-  OPEN(1);
+  OPEN(1),
+  // same as AbstractComponent.STATUS_DELETED
+  DELETED(2);
 
   private int status;
 
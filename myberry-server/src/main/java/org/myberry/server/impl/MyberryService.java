@@ -23,23 +23,72 @@
 */
 package org.myberry.server.impl;
 
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 import org.myberry.common.Component;
 import org.myberry.common.SystemClock;
+import org.myberry.common.protocol.ResponseCode;
+import org.myberry.remoting.protocol.RemotingSysResponseCode;
 import org.myberry.store.MyberryStore;
+import org.myberry.store.common.LoggerName;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 public abstract class MyberryService {
 
-  public abstract PullIdResult getNewId(String key, Map<String, String> attachments);
+  private static final Logger log = LoggerFactory.getLogger(LoggerName.STORE_LOGGER_NAME);
+
+  public PullIdResult getNewId(String key, Map<String, String> attachments) {
+    PullIdResult result = this.reserveNewId(key, attachments);
+    this.flush(Collections.singletonList(result));
+    return result;
+  }
+
+  /**
+   * Pull {@code count} IDs of the key with one request. Only CR mode supports it, a pull of NS mode
+   * already returns a segment of IDs.
+   */
+  public PullIdResult getNewIds(String key, int count, Map<String, String> attachments) {
+    PullIdResult result = this.reserveNewIds(key, count, attachments);
+    this.flush(Collections.singletonList(result));
+    return result;
+  }
+
+  /**
+   * Pull an ID without waiting for the flush of its reservation, see {@link #flush(List)}. A pull
+   * of several keys reserves all of them before it waits for one flush.
+   */
+  public abstract PullIdResult reserveNewId(String key, Map<String, String> attachments);
+
+  /** Pull {@code count} IDs without waiting for the flush, see {@link #flush(List)}. */
+  public PullIdResult reserveNewIds(String key, int count, Map<String, String> attachments) {
+    return new PullIdResult(
+        ResponseCode.DIFF_PRODUCE_MODE, "Batch pull is not supported by " + getServiceName());
+  }
 
   public abstract AdminManageResult addComponent(Object... obj);
 
   public int queryComponentSize() {
-    return myberryStore.getComponentMap().size();
+    return myberryStore.getComponentCount();
   }
 
   public abstract AdminManageResult queryComponentByKey(String key);
 
+  /**
+   * Remove the component of the key. Pulls of the key fail from now on, its records are removed
+   * from the learners by the sync and dropped from the store by a compaction.
+   */
+  public AdminManageResult removeComponent(String key) {
+    if (!myberryStore.removeComponent(key)) {
+      log.warn("invalid key: {}", key);
+      return new AdminManageResult(ResponseCode.KEY_NOT_EXISTED);
+    }
+    log.info("{} --> remove key: {} success.", this.getServiceName(), key);
+    return new AdminManageResult(ResponseCode.SUCCESS);
+  }
+
   public abstract String getServiceName();
 
   private final SystemClock systemClock = SystemClock.getInstance();
@@ -53,8 +102,48 @@ public abstract class MyberryService {
 
   public void shutdown() {}
 
-  public boolean isAlwaysFlush() {
-    return myberryStore.getStoreConfig().isAlwaysFlush();
+  public int getReservationSize() {
+    return Math.max(1, myberryStore.getStoreConfig().getReservationSize());
+  }
+
+  /**
+   * Wait for one flush of the store covering the reservations of the pulls, the pulls whose
+   * reservation a flush already covered do not wait. If the sync flush timed out, the pulls it had
+   * to cover fail.
+   */
+  public void flush(List<PullIdResult> results) {
+    Reservation pending = null;
+    for (PullIdResult result : results) {
+      Reservation reservation = result.getReservation();
+      if (reservation != null && !reservation.isFlushed()) {
+        pending = reservation;
+        break;
+      }
+    }
+    if (pending == null) {
+      return;
+    }
+
+    // one commit of the store covers the reservations of all keys
+    if (myberryStore.flush(pending.offset)) {
+      for (PullIdResult result : results) {
+        Reservation reservation = result.getReservation();
+        if (reservation != null) {
+          reservation.flushedSequence.accumulateAndGet(reservation.writtenSequence, Math::max);
+        }
+      }
+      return;
+    }
+    for (PullIdResult result : results) {
+      Reservation reservation = result.getReservation();
+      if (reservation != null && !reservation.isFlushed()) {
+        log.warn("flush disk timeout, key: {}", reservation.key);
+        result.setRespCode(RemotingSysResponseCode.SYSTEM_ERROR);
+        result.setRemark("flush disk timeout");
+        result.setNewId(null);
+        result.setNewIds(null);
+      }
+    }
   }
 
   public SystemClock getSystemClock() {
@@ -64,4 +153,38 @@ public abstract class MyberryService {
   public String emptyString() {
     return "";
   }
+
+  /** Reservation of a pull which has to be flushed before its IDs are returned. */
+  static final class Reservation {
+
+    private final String key;
+    private final long offset;
+    private final long sequence;
+    private final long writtenSequence;
+    private final AtomicLong flushedSequence;
+
+    /**
+     * @param key key of the component
+     * @param offset offset of the component
+     * @param sequence reservation sequence of the pull
+     * @param writtenSequence latest reservation sequence written to the store
+     * @param flushedSequence latest reservation sequence flushed
+     */
+    Reservation(
+        String key,
+        long offset,
+        long sequence,
+        long writtenSequence,
+        AtomicLong flushedSequence) {
+      this.key = key;
+      this.offset = offset;
+      this.sequence = sequence;
+      this.writtenSequence = writtenSequence;
+      this.flushedSequence = flushedSequence;
+    }
+
+    boolean isFlushed() {
+      return flushedSequence.get() >= sequence;
+    }
+  }
 }
@@ -30,10 +30,9 @@ import java.util.concurrent.locks.ReentrantLock;
 import org.myberry.common.ProduceMode;
 import org.myberry.common.protocol.ResponseCode;
 import org.myberry.common.protocol.body.admin.NSComponentData;
-import org.myberry.common.strategy.StrategyDate;
 import org.myberry.remoting.common.RemotingHelper;
 import org.myberry.remoting.protocol.RemotingSysResponseCode;
-import org.myberry.server.util.DateUtils;
+import org.myberry.server.util.CalendarClock;
 import org.myberry.store.MyberryStore;
 import org.myberry.store.NSComponent;
 import org.myberry.store.common.LoggerName;
@@ -46,60 +45,81 @@ public class NSService extends MyberryService {
   private static final Logger log = LoggerFactory.getLogger(LoggerName.STORE_LOGGER_NAME);
 
   private final Lock lock = new ReentrantLock();
+  private final CalendarClock calendarClock = CalendarClock.getInstance();
 
   public NSService(final MyberryStore myberryStore) {
     super(myberryStore);
   }
 
   @Override
-  public PullIdResult getNewId(String key, Map<String, String> attachments) {
-    if (!myberryStore.isExistKey(key)) {
+  public PullIdResult reserveNewId(String key, Map<String, String> attachments) {
+    NSComponent nsc = (NSComponent) myberryStore.getComponent(key);
+    if (nsc == null) {
       log.warn("invalid key: {}", key);
       return new PullIdResult(ResponseCode.KEY_NOT_EXISTED, emptyString());
     }
-
-    NSComponent nsc = (NSComponent) myberryStore.getComponentMap().get(key);
+    int start;
+    int end;
+    long sequence;
     nsc.getLock().lock();
     try {
       long beginLockTimestamp = this.getSystemClock().now();
       myberryStore.setBeginTimeInLock(beginLockTimestamp);
 
-      if (isReset(nsc)) {
+      boolean reset = isReset(nsc, beginLockTimestamp);
+      if (reset) {
         nsc.resetCurrentValue();
       }
 
-      int start = nsc.getCurrentValue();
+      start = nsc.getCurrentValue();
+      int stepSize = adaptStepSize(nsc, beginLockTimestamp);
 
       nsc.setUpdateTime(beginLockTimestamp);
       nsc.incrementMbid();
-      nsc.setCurrentValue(nsc.getCurrentValue() + nsc.getStepSize());
-
-      myberryStore.updateBufferLong(
-          (int) nsc.getPhyOffset() + NSComponent.updateTimeHeader, nsc.getUpdateTime());
-      myberryStore.updateBufferLong(
-          (int) nsc.getPhyOffset() + NSComponent.mbidHeader, nsc.getMbid());
-      myberryStore.updateBufferInt(
-          (int) nsc.getPhyOffset() + NSComponent.currentValueHeader, nsc.getCurrentValue());
-      myberryStore.incrMbid();
-      if (this.isAlwaysFlush()) {
-        myberryStore.save();
+      nsc.setCurrentValue(nsc.getCurrentValue() + stepSize);
+      end = nsc.getCurrentValue() - 1;
+
+      if (reset || nsc.getCurrentValue() > nsc.getReservedValue()) {
+        long reservedValue =
+            Math.min(
+                Integer.MAX_VALUE,
+                nsc.getCurrentValue() + (long) stepSize * (this.getReservationSize() - 1));
+        nsc.setReservedValue(reservedValue);
+
+        myberryStore.updateBufferLong(
+            nsc.getPhyOffset() + NSComponent.updateTimeHeader, nsc.getUpdateTime());
+        myberryStore.updateBufferLong(
+            nsc.getPhyOffset() + NSComponent.mbidHeader, nsc.getMbid());
+        myberryStore.updateBufferInt(
+            nsc.getPhyOffset() + NSComponent.currentValueHeader, (int) reservedValue);
+        // bumped after the writes, a flush covering this sequence covers the reservation
+        nsc.incrementReservationSequence();
       }
+      // read under the lock, a later puller may be writing its reservation once it is released
+      sequence = nsc.getReservationSequence();
+      myberryStore.incrMbid();
 
       myberryStore.setBeginTimeInLock(0);
-      return new PullIdResult(
-          ResponseCode.SUCCESS,
-          ProduceMode.NS.getProduceCode(),
-          start,
-          nsc.getCurrentValue() - 1,
-          myberryStore.getMySidFromDisk());
     } catch (Exception e) {
       myberryStore.setBeginTimeInLock(0);
-      log.error("getNewId() error: ", e.getMessage());
+      log.error("reserveNewId() error: ", e.getMessage());
       return new PullIdResult(
           RemotingSysResponseCode.SYSTEM_ERROR, RemotingHelper.exceptionSimpleDesc(e));
     } finally {
       nsc.getLock().unlock();
     }
+
+    PullIdResult result =
+        new PullIdResult(
+            ResponseCode.SUCCESS,
+            ProduceMode.NS.getProduceCode(),
+            start,
+            end,
+            myberryStore.getMySidFromDisk());
+    // flushed outside of the lock so that a group commit can batch pulls of this key
+    result.setReservation(
+        new Reservation(key, nsc.getPhyOffset(), sequence, sequence, nsc.getFlushedSequence()));
+    return result;
   }
 
   @Override
@@ -111,7 +131,6 @@ public class NSService extends MyberryService {
       NSComponent nsc = new NSComponent();
       nsc.setCreateTime(currentTime);
       nsc.setUpdateTime(currentTime);
-      nsc.setPhyOffset(myberryStore.getLastOffset());
       nsc.setStatus(ComponentStatus.OPEN.getStatus());
 
       for (int i = 0; i < obj.length; i++) {
@@ -157,19 +176,19 @@ public class NSService extends MyberryService {
 
   @Override
   public AdminManageResult queryComponentByKey(String key) {
-    if (!myberryStore.isExistKey(key)) {
+    NSComponent nsc = (NSComponent) myberryStore.getComponent(key);
+    if (nsc == null) {
       log.warn("invalid key: {}", key);
       return new AdminManageResult(ResponseCode.KEY_NOT_EXISTED);
     }
 
-    NSComponent nsc = (NSComponent) myberryStore.getComponentMap().get(key);
-
     NSComponentData nscd = new NSComponentData();
     nscd.setKey(key);
     nscd.setValue(nsc.getInitValue());
     nscd.setStepSize(nsc.getStepSize());
     nscd.setResetType(nsc.getResetType());
     nscd.setCode(NSComponentData.CODE);
+    nscd.setEffectiveStepSize(nsc.getEffectiveStepSize());
     return new AdminManageResult(ResponseCode.SUCCESS, nscd);
   }
 
@@ -183,26 +202,40 @@ public class NSService extends MyberryService {
     super.shutdown();
   }
 
-  public boolean isReset(NSComponent nsComponent) {
-    long currentTimeMillis = System.currentTimeMillis();
-
-    if (StrategyDate.NON_TIME == nsComponent.getResetType()) {
-      return false;
-    } else if (StrategyDate.TIME_DAY == nsComponent.getResetType()) {
-      return compare(currentTimeMillis, nsComponent.getUpdateTime(), StrategyDate.TIME_DAY);
-    } else if (StrategyDate.TIME_MONTH == nsComponent.getResetType()) {
-      return compare(currentTimeMillis, nsComponent.getUpdateTime(), StrategyDate.TIME_MONTH);
-    } else if (StrategyDate.TIME_YEAR == nsComponent.getResetType()) {
-      return compare(currentTimeMillis, nsComponent.getUpdateTime(), StrategyDate.TIME_YEAR);
-    } else {
-      return false;
+  /**
+   * Step size of the segment pulled at now. With adaptiveStepEnable the step doubles when the
+   * segments of the key are pulled faster than twice per period and halves when slower than once
+   * per two periods, between the configured step size and adaptiveStepMaxMultiple times it. Called
+   * under the lock of the component.
+   */
+  private int adaptStepSize(NSComponent nsc, long now) {
+    StoreConfig storeConfig = myberryStore.getStoreConfig();
+    if (!storeConfig.isAdaptiveStepEnable()) {
+      return nsc.getStepSize();
+    }
+
+    int stepSize = nsc.getEffectiveStepSize();
+    long lastSegmentTime = nsc.getLastSegmentTime();
+    nsc.setLastSegmentTime(now);
+    if (lastSegmentTime > 0) {
+      long interval = now - lastSegmentTime;
+      long period = storeConfig.getAdaptiveStepPeriodMills();
+      long maxStepSize =
+          Math.min(
+              Integer.MAX_VALUE,
+              (long) nsc.getStepSize() * Math.max(1, storeConfig.getAdaptiveStepMaxMultiple()));
+      if (interval < period / 2) {
+        stepSize = (int) Math.min(maxStepSize, stepSize * 2L);
+      } else if (interval > period * 2) {
+        stepSize = Math.max(nsc.getStepSize(), stepSize / 2);
+      }
     }
+    nsc.setEffectiveStepSize(stepSize);
+    return stepSize;
   }
 
-  private boolean compare(long currentTime, long updateTime, int type) {
-    return currentTime > updateTime
-        && !DateUtils.convertTime(type, currentTime)
-            .equals(DateUtils.convertTime(type, updateTime));
+  public boolean isReset(NSComponent nsComponent, long now) {
+    return calendarClock.isReset(nsComponent.getResetType(), now, nsComponent.getUpdateTime());
   }
 
   @Override
@@ -23,18 +23,23 @@
  */
 package org.myberry.server.impl;
 
+import java.util.List;
+
 public class PullIdResult {
 
   private int respCode;
   private int produceCode;
   private String remark;
 
-  private String newId;
+  private byte[] newId;
+  private List<byte[]> newIds;
 
   private int start;
   private int end;
   private int synergyId;
 
+  private MyberryService.Reservation reservation;
+
   public PullIdResult() {}
 
   public PullIdResult(int respCode, String remark) {
@@ -42,12 +47,18 @@ public class PullIdResult {
     this.remark = remark;
   }
 
-  public PullIdResult(int respCode, int produceCode, String newId) {
+  public PullIdResult(int respCode, int produceCode, byte[] newId) {
     this.respCode = respCode;
     this.produceCode = produceCode;
     this.newId = newId;
   }
 
+  public PullIdResult(int respCode, int produceCode, List<byte[]> newIds) {
+    this.respCode = respCode;
+    this.produceCode = produceCode;
+    this.newIds = newIds;
+  }
+
   public PullIdResult(int respCode, int produceCode, int start, int end, int synergyId) {
     this.respCode = respCode;
     this.produceCode = produceCode;
@@ -80,14 +91,24 @@ public class PullIdResult {
     this.remark = remark;
   }
 
-  public String getNewId() {
+  /** UTF-8 encoded ID of CR mode. */
+  public byte[] getNewId() {
     return newId;
   }
 
-  public void setNewId(String newId) {
+  public void setNewId(byte[] newId) {
     this.newId = newId;
   }
 
+  /** UTF-8 encoded IDs of a batch pull of CR mode. */
+  public List<byte[]> getNewIds() {
+    return newIds;
+  }
+
+  public void setNewIds(List<byte[]> newIds) {
+    this.newIds = newIds;
+  }
+
   public int getStart() {
     return start;
   }
@@ -111,4 +132,12 @@ public class PullIdResult {
   public void setSynergyId(int synergyId) {
     this.synergyId = synergyId;
   }
+
+  MyberryService.Reservation getReservation() {
+    return reservation;
+  }
+
+  void setReservation(MyberryService.Reservation reservation) {
+    this.reservation = reservation;
+  }
 }
@@ -24,6 +24,8 @@
 package org.myberry.server.processor;
 
 import io.netty.channel.ChannelHandlerContext;
+import java.io.File;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.Map;
@@ -40,12 +42,15 @@ import org.myberry.common.protocol.body.admin.ClusterListData.ClusterNode;
 import org.myberry.common.protocol.body.admin.ComponentKeyData;
 import org.myberry.common.protocol.body.admin.ComponentSizeData;
 import org.myberry.common.protocol.body.admin.NSComponentData;
+import org.myberry.common.protocol.body.admin.StoreSnapshotData;
 import org.myberry.common.protocol.header.admin.ManageComponentRequestHeader;
 import org.myberry.common.protocol.header.admin.ManageComponentResponseHeader;
 import org.myberry.remoting.netty.NettyRequestProcessor;
 import org.myberry.remoting.protocol.RemotingCommand;
 import org.myberry.server.ServerController;
 import org.myberry.server.impl.AdminManageResult;
+import org.myberry.store.SnapshotResult;
+import org.myberry.store.config.StorePathConfigHelper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -105,6 +110,16 @@ public class AdminRequestProcessor implements NettyRequestProcessor {
       case RequestCode.QUERY_CLUSTER_LIST:
         response = queryClusterList();
         break;
+      case RequestCode.SNAPSHOT_STORE:
+        StoreSnapshotData storeSnapshotData =
+            LightCodec.toObj(request.getBody(), StoreSnapshotData.class);
+        response = snapshotStore(storeSnapshotData);
+        break;
+      case RequestCode.REMOVE_COMPONENT:
+        ComponentKeyData removeKeyData =
+            LightCodec.toObj(request.getBody(), ComponentKeyData.class);
+        response = removeComponent(removeKeyData.getKey());
+        break;
       default:
         break;
     }
@@ -137,6 +152,11 @@ public class AdminRequestProcessor implements NettyRequestProcessor {
     return createResponseCommand(result.getRespCode(), nsComponentData.getKey());
   }
 
+  private RemotingCommand removeComponent(String key) {
+    AdminManageResult result = serverController.getMyberryService().removeComponent(key);
+    return createResponseCommand(result.getRespCode(), key);
+  }
+
   private RemotingCommand createResponseCommand(int code, String key) {
     ManageComponentResponseHeader responseHeader = new ManageComponentResponseHeader();
     responseHeader.setKey(key);
@@ -182,6 +202,42 @@ public class AdminRequestProcessor implements NettyRequestProcessor {
     return response;
   }
 
+  /**
+   * Copy the store of this node, into the snapshot dir of the store with the current time as name
+   * if no store path is requested.
+   */
+  private RemotingCommand snapshotStore(StoreSnapshotData storeSnapshotData) {
+    String storePath = storeSnapshotData == null ? null : storeSnapshotData.getStorePath();
+    if (storePath == null || storePath.isEmpty()) {
+      storePath =
+          StorePathConfigHelper.getSnapshotPath(
+                  serverController.getStoreConfig().getStoreRootDir())
+              + File.separator
+              + System.currentTimeMillis();
+    }
+
+    RemotingCommand response = RemotingCommand.createResponseCommand(null);
+    try {
+      SnapshotResult snapshotResult = serverController.getMyberryStore().snapshot(storePath);
+
+      StoreSnapshotData result = new StoreSnapshotData(snapshotResult.getStorePath());
+      result.setMbid(snapshotResult.getMbid());
+      result.setLastOffset(snapshotResult.getLastOffset());
+      result.setComponentCount(snapshotResult.getComponentCount());
+      result.setSize(snapshotResult.getSize());
+      result.setFenceMills(snapshotResult.getFenceMills());
+      result.setElapsedMills(snapshotResult.getElapsedMills());
+      response.setBody(LightCodec.toBytes(result));
+      response.setCode(ResponseCode.SUCCESS);
+      response.setRemark(null);
+    } catch (UncheckedIOException e) {
+      log.error("snapshot store to {} error: ", storePath, e);
+      response.setCode(ResponseCode.SYSTEM_ERROR);
+      response.setRemark(e.getCause().getMessage());
+    }
+    return response;
+  }
+
   private RemotingCommand queryClusterList() {
     ClusterListData clusterListData = new ClusterListData();
 
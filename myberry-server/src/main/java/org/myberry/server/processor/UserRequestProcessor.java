@@ -24,17 +24,29 @@
 package org.myberry.server.processor;
 
 import io.netty.channel.ChannelHandlerContext;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import org.myberry.common.ProduceMode;
 import org.myberry.common.codec.LightCodec;
 import org.myberry.common.codec.util.Maps;
 import org.myberry.common.constant.LoggerName;
+import org.myberry.common.protocol.RequestCode;
 import org.myberry.common.protocol.ResponseCode;
+import org.myberry.common.protocol.body.user.CRPullBatchResultData;
 import org.myberry.common.protocol.body.user.CRPullResultData;
 import org.myberry.common.protocol.body.user.NSPullResultData;
+import org.myberry.common.protocol.body.user.PullIdMultiRequestData;
+import org.myberry.common.protocol.body.user.PullIdMultiRequestData.PullIdEntry;
+import org.myberry.common.protocol.body.user.PullIdMultiResultData;
+import org.myberry.common.protocol.body.user.PullIdMultiResultData.PullIdEntryResult;
 import org.myberry.common.protocol.header.user.PullIdBackRequestHeader;
+import org.myberry.remoting.exception.RemotingCommandException;
 import org.myberry.remoting.netty.NettyRequestProcessor;
 import org.myberry.remoting.protocol.RemotingCommand;
 import org.myberry.server.ServerController;
+import org.myberry.server.impl.MyberryService;
 import org.myberry.server.impl.PullIdResult;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -51,6 +63,17 @@ public class UserRequestProcessor implements NettyRequestProcessor {
   @Override
   public RemotingCommand processRequest(ChannelHandlerContext ctx, RemotingCommand request)
       throws Exception {
+    switch (request.getCode()) {
+      case RequestCode.PULL_ID_BATCH:
+        return this.pullBatch(request);
+      case RequestCode.PULL_ID_MULTI:
+        return this.pullMulti(request);
+      default:
+        return this.pull(request);
+    }
+  }
+
+  private RemotingCommand pull(RemotingCommand request) throws RemotingCommandException {
     RemotingCommand response = RemotingCommand.createResponseCommand(PullIdBackRequestHeader.class);
     final PullIdBackRequestHeader responseHeader =
         (PullIdBackRequestHeader) response.readCustomHeader();
@@ -72,9 +95,7 @@ public class UserRequestProcessor implements NettyRequestProcessor {
       responseHeader.setKey(requestHeader.getKey());
       responseHeader.setProduceCode(result.getProduceCode());
       if (ProduceMode.CR.getProduceCode() == result.getProduceCode()) {
-        CRPullResultData crPullResultData = new CRPullResultData();
-        crPullResultData.setNewId(result.getNewId());
-        response.setBody(LightCodec.toBytes(crPullResultData));
+        response.setBody(CRPullResultData.encode(result.getNewId()));
       } else if (ProduceMode.NS.getProduceCode() == result.getProduceCode()) {
         NSPullResultData nsPullResultData = new NSPullResultData();
         nsPullResultData.setStart(result.getStart());
@@ -91,6 +112,118 @@ public class UserRequestProcessor implements NettyRequestProcessor {
     return response;
   }
 
+  private RemotingCommand pullBatch(RemotingCommand request) throws RemotingCommandException {
+    RemotingCommand response = RemotingCommand.createResponseCommand(PullIdBackRequestHeader.class);
+    final PullIdBackRequestHeader responseHeader =
+        (PullIdBackRequestHeader) response.readCustomHeader();
+
+    PullIdBackRequestHeader requestHeader =
+        (PullIdBackRequestHeader) request.decodeCommandCustomHeader(PullIdBackRequestHeader.class);
+    responseHeader.setKey(requestHeader.getKey());
+
+    int maxPullBatchSize = serverController.getServerConfig().getMaxPullBatchSize();
+    if (requestHeader.getCount() < 1 || requestHeader.getCount() > maxPullBatchSize) {
+      response.setCode(ResponseCode.COUNT_OUT_OF_RANGE);
+      response.setRemark(
+          String.format(
+              "count %d is out of range [1, %d]", requestHeader.getCount(), maxPullBatchSize));
+      return response;
+    }
+
+    PullIdResult result =
+        serverController
+            .getMyberryService()
+            .getNewIds(
+                requestHeader.getKey(),
+                requestHeader.getCount(),
+                Maps.deserialize(request.getBody()));
+
+    if (ResponseCode.SUCCESS == result.getRespCode()) {
+      response.setCode(ResponseCode.SUCCESS);
+      response.setRemark(null);
+      responseHeader.setProduceCode(result.getProduceCode());
+      response.setBody(CRPullBatchResultData.encode(result.getNewIds()));
+    } else {
+      response.setCode(result.getRespCode());
+      response.setRemark(result.getRemark());
+    }
+
+    return response;
+  }
+
+  /**
+   * Reserve the entries one after another, so a pull never holds the lock of one key while it
+   * waits for another, then wait for one flush covering all of them. A failed entry does not stop
+   * the others, its code and remark are in its result.
+   */
+  private RemotingCommand pullMulti(RemotingCommand request) throws RemotingCommandException {
+    RemotingCommand response = RemotingCommand.createResponseCommand(PullIdBackRequestHeader.class);
+    final PullIdBackRequestHeader responseHeader =
+        (PullIdBackRequestHeader) response.readCustomHeader();
+
+    PullIdBackRequestHeader requestHeader =
+        (PullIdBackRequestHeader) request.decodeCommandCustomHeader(PullIdBackRequestHeader.class);
+    responseHeader.setKey(requestHeader.getKey());
+
+    PullIdMultiRequestData requestData =
+        LightCodec.toObj(request.getBody(), PullIdMultiRequestData.class);
+    int maxPullBatchSize = serverController.getServerConfig().getMaxPullBatchSize();
+    long total = 0;
+    if (requestData != null && requestData.getEntries() != null) {
+      for (PullIdEntry entry : requestData.getEntries()) {
+        total += Math.max(1, entry.getCount());
+      }
+    }
+    if (total < 1 || total > maxPullBatchSize) {
+      response.setCode(ResponseCode.COUNT_OUT_OF_RANGE);
+      response.setRemark(
+          String.format("total count %d is out of range [1, %d]", total, maxPullBatchSize));
+      return response;
+    }
+
+    MyberryService myberryService = serverController.getMyberryService();
+    List<PullIdResult> pullResults = new ArrayList<>(requestData.getEntries().size());
+    for (PullIdEntry entry : requestData.getEntries()) {
+      pullResults.add(
+          entry.getCount() > 1
+              ? myberryService.reserveNewIds(
+                  entry.getKey(), entry.getCount(), entry.toAttachments())
+              : myberryService.reserveNewId(entry.getKey(), entry.toAttachments()));
+    }
+    myberryService.flush(pullResults);
+
+    List<PullIdEntryResult> results = new ArrayList<>(pullResults.size());
+    for (int i = 0; i < pullResults.size(); i++) {
+      PullIdResult result = pullResults.get(i);
+      PullIdEntryResult entryResult = new PullIdEntryResult();
+      entryResult.setKey(requestData.getEntries().get(i).getKey());
+      entryResult.setRespCode(result.getRespCode());
+      entryResult.setRemark(result.getRemark());
+      entryResult.setProduceCode(result.getProduceCode());
+      if (result.getNewIds() != null) {
+        List<String> newIds = new ArrayList<>(result.getNewIds().size());
+        for (byte[] newId : result.getNewIds()) {
+          newIds.add(new String(newId, StandardCharsets.UTF_8));
+        }
+        entryResult.setNewIds(newIds);
+      } else if (result.getNewId() != null) {
+        entryResult.setNewIds(
+            Collections.singletonList(new String(result.getNewId(), StandardCharsets.UTF_8)));
+      }
+      entryResult.setStart(result.getStart());
+      entryResult.setEnd(result.getEnd());
+      entryResult.setSynergyId(result.getSynergyId());
+      results.add(entryResult);
+    }
+
+    PullIdMultiResultData resultData = new PullIdMultiResultData();
+    resultData.setResults(results);
+    response.setCode(ResponseCode.SUCCESS);
+    response.setRemark(null);
+    response.setBody(LightCodec.toBytes(resultData));
+    return response;
+  }
+
   @Override
   public boolean rejectRequest() {
     return this.serverController.getMyberryStore().isOSPageCacheBusy();
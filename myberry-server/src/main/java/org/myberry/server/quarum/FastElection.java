@@ -115,8 +115,11 @@ public class FastElection {
               if (QuorumPeer.VERSION == byteBuf.getVersion()
                   && self.getServerConfig().getClusterName() != null
                   && self.getServerConfig().getClusterName().equals(byteBuf.getClusterName())
-                  && self.getMyberryStore().getProduceModeFromDisk() == byteBuf.getProduceMode()
-                  && self.getStoreConfig().getFileSize() == byteBuf.getFileSize()) {
+                  && self.getMyberryStore().getProduceModeFromDisk() == byteBuf.getProduceMode()) {
+                // the segment size is negotiated up to the largest one of the cluster
+                if (byteBuf.getFileSize() > self.getStoreConfig().getFileSize()) {
+                  self.getMyberryStore().growFileSize(byteBuf.getFileSize());
+                }
                 dispatcher(byteBuf);
               } else {
                 manager.disconnect(byteBuf.getConnId());
@@ -163,14 +163,32 @@ public class Leader {
     if (self.getMembers().containsKey(proposal.getSid())) {
       messageHandler.recvProposal(proposal.getSid(), proposal);
 
-      if (proposal.getOffset() < self.getMyberryStore().getLastOffset()) {
+      int lastOffset = self.getMyberryStore().getLastOffset();
+      if (proposal.getOffset() < self.getMyberryStore().getCompactedOffset()) {
+        // the records after the offset of the learner were compacted, it takes all components
         messageHandler.sendSync(
             proposal.getSid(),
             self.getRouteInfoManager().getLeaderInfo(),
             self.getRouteInfoManager().getLearnerTable(),
             self.getMembers(),
-            self.getMyberryStore().getLastOffset(),
-            self.getMyberryStore().getSyncByteBuffer(proposal.getOffset()));
+            lastOffset,
+            self.getMyberryStore().getSnapshotByteBuffer(lastOffset),
+            true);
+      } else if (proposal.getOffset() < lastOffset) {
+        // one chunk from the offset the learner reached, it asks for the next one
+        byte[] data =
+            self.getMyberryStore()
+                .getSyncByteBuffer(
+                    proposal.getOffset(), self.getServerConfig().getSyncChunkSize());
+        messageHandler.sendSync(
+            proposal.getSid(),
+            self.getRouteInfoManager().getLeaderInfo(),
+            self.getRouteInfoManager().getLearnerTable(),
+            self.getMembers(),
+            proposal.getOffset() + data.length,
+            data,
+            false,
+            Math.max(lastOffset, proposal.getOffset() + data.length));
       } else {
         messageHandler.sendSync(
             proposal.getSid(),
@@ -178,7 +196,8 @@ public class Leader {
             self.getRouteInfoManager().getLearnerTable(),
             self.getMembers(),
             self.getMyberryStore().getLastOffset(),
-            null);
+            null,
+            false);
       }
 
       // TO DO Monitor
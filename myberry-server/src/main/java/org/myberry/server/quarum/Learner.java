@@ -155,13 +155,25 @@ public class Learner {
         electionAlg.getManager().printAllTrigger();
       }
 
-      if (sync.getData() != null
+      if (sync.isSnapshot()) {
+        if (sync.getData() != null && self.getMyberryStore().getLastOffset() != sync.getOffset()) {
+          log.info(
+              "reset offset from {} to snapshot at {}",
+              self.getMyberryStore().getLastOffset(),
+              sync.getOffset());
+          self.getMyberryStore().resetSyncByteBuffer(sync.getData(), sync.getOffset());
+        }
+      } else if (sync.getData() != null
           && self.getMyberryStore().getLastOffset() + sync.getData().length == sync.getOffset()) {
         log.info(
             "update offset from {} to {}",
             self.getMyberryStore().getLastOffset(),
             sync.getOffset());
         self.getMyberryStore().setSyncByteBuffer(sync.getData());
+        if (sync.getOffset() < sync.getLastOffset()) {
+          // acknowledge the chunk with the offset reached, the leader sends the next one
+          messageHandler.sendProposal(self.getLeader());
+        }
       }
 
       /*Set<Integer> sids = self.getRouteInfoManager().getLearnerTable().keySet();
@@ -164,7 +164,21 @@ public class MessageHandler {
       Map<Integer, Invoker> invokers,
       Map<Integer, String> views,
       int offset,
-      byte[] data) {
+      byte[] data,
+      boolean snapshot) {
+    this.sendSync(connId, leaderInfo, invokers, views, offset, data, snapshot, offset);
+  }
+
+  /** @param lastOffset offset of the leader, greater than offset when more chunks follow */
+  public void sendSync(
+      int connId,
+      String leaderInfo,
+      Map<Integer, Invoker> invokers,
+      Map<Integer, String> views,
+      int offset,
+      byte[] data,
+      boolean snapshot,
+      int lastOffset) {
     ByteBuf byteBuf =
         ByteBuf.create(
             QuorumPeer.VERSION,
@@ -181,7 +195,9 @@ public class MessageHandler {
                 invokers,
                 views,
                 offset,
-                data));
+                data,
+                snapshot,
+                lastOffset));
     manager.sendMessage(connId, byteBuf, false, true);
     log.info("send sync to sid: {}, {}", connId, byteBuf);
   }
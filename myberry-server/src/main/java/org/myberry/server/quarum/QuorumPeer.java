@@ -41,8 +41,11 @@ public class QuorumPeer implements Quorum {
 
   private static final Logger log = LoggerFactory.getLogger(LoggerName.QUORUM_LOGGER_NAME);
 
-  /** algorithm version */
-  public static final int VERSION = 1;
+  /**
+   * algorithm version, 2: synced records carry their checksum after the 128 byte store header, a
+   * sync may be a snapshot and carries the last offset. Peers of another version are disconnected.
+   */
+  public static final int VERSION = 2;
 
   private final CountDownLatch2 waitElect = new CountDownLatch2(1);
   private final AtomicReference<QuorumVerifier> quorumVerifier = new AtomicReference<>();
@@ -36,6 +36,10 @@ public class Sync extends Message {
   private Map<Integer, String> views;
   private int offset;
   private byte[] data;
+  // data holds all the components instead of the records after the offset of the learner
+  private boolean snapshot;
+  // last offset of the leader, the learner asks for the next chunk until its offset reaches it
+  private int lastOffset;
 
   public static Sync create(
       int leader,
@@ -47,6 +51,56 @@ public class Sync extends Message {
       Map<Integer, String> views,
       int offset,
       byte[] data) {
+    return create(
+        leader,
+        leaderEpoch,
+        componentCount,
+        maxSid,
+        leaderInfo,
+        invokers,
+        views,
+        offset,
+        data,
+        false);
+  }
+
+  public static Sync create(
+      int leader,
+      long leaderEpoch,
+      int componentCount,
+      int maxSid,
+      String leaderInfo,
+      Map<Integer, Invoker> invokers,
+      Map<Integer, String> views,
+      int offset,
+      byte[] data,
+      boolean snapshot) {
+    return create(
+        leader,
+        leaderEpoch,
+        componentCount,
+        maxSid,
+        leaderInfo,
+        invokers,
+        views,
+        offset,
+        data,
+        snapshot,
+        offset);
+  }
+
+  public static Sync create(
+      int leader,
+      long leaderEpoch,
+      int componentCount,
+      int maxSid,
+      String leaderInfo,
+      Map<Integer, Invoker> invokers,
+      Map<Integer, String> views,
+      int offset,
+      byte[] data,
+      boolean snapshot,
+      int lastOffset) {
     Sync sync = new Sync();
     sync.setLeader(leader);
     sync.setLeaderEpoch(leaderEpoch);
@@ -57,6 +111,8 @@ public class Sync extends Message {
     sync.setViews(views);
     sync.setOffset(offset);
     sync.setData(data);
+    sync.setSnapshot(snapshot);
+    sync.setLastOffset(lastOffset);
     return sync;
   }
 
@@ -132,6 +188,22 @@ public class Sync extends Message {
     this.data = data;
   }
 
+  public boolean isSnapshot() {
+    return snapshot;
+  }
+
+  public void setSnapshot(boolean snapshot) {
+    this.snapshot = snapshot;
+  }
+
+  public int getLastOffset() {
+    return lastOffset;
+  }
+
+  public void setLastOffset(int lastOffset) {
+    this.lastOffset = lastOffset;
+  }
+
   @Override
   public int type() {
     return ByteBuf.SYNC;
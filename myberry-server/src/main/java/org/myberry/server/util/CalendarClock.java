@@ -0,0 +1,175 @@
+/*
+* MIT License
+*
+* Copyright (c) 2020 gaoyang
+*
+* Permission is hereby granted, free of charge, to any person obtaining a copy
+* of this software and associated documentation files (the "Software"), to deal
+* in the Software without restriction, including without limitation the rights
+* to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+* copies of the Software, and to permit persons to whom the Software is
+* furnished to do so, subject to the following conditions:
+
+* The above copyright notice and this permission notice shall be included in all
+* copies or substantial portions of the Software.
+
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+* IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+* AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+* LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+* OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+* SOFTWARE.
+*/
+package org.myberry.server.util;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import org.myberry.common.strategy.StrategyDate;
+import org.myberry.server.expression.handler.TimeHandler;
+
+/**
+ * Keeps the current day, month and year buckets of the system time zone. Each bucket holds its
+ * formatted string and the epoch millis of its beginning and of the next rollover, and is replaced
+ * lazily by CAS when a caller first observes a time past the rollover. Between rollovers the reset
+ * checks are a single long comparison and time placeholders are a cached lookup.
+ */
+public final class CalendarClock {
+
+  private static final DateTimeFormatter DAY_FORMATTER =
+      DateTimeFormatter.ofPattern(TimeHandler.DAY_PATTERN);
+  private static final DateTimeFormatter MONTH_FORMATTER =
+      DateTimeFormatter.ofPattern(TimeHandler.MONTH_PATTERN);
+  private static final DateTimeFormatter YEAR_FORMATTER =
+      DateTimeFormatter.ofPattern(TimeHandler.YEAR_PATTERN);
+
+  private final AtomicReferenceArray<Bucket> buckets =
+      new AtomicReferenceArray<>(StrategyDate.TIME_YEAR + 1);
+
+  private static class SingletonHolder {
+    private static final CalendarClock INSTANCE = new CalendarClock();
+  }
+
+  private CalendarClock() {}
+
+  public static CalendarClock getInstance() {
+    return SingletonHolder.INSTANCE;
+  }
+
+  /**
+   * Get the bucket which contains the time.
+   *
+   * @param type {@link StrategyDate#TIME_DAY}, {@link StrategyDate#TIME_MONTH} or {@link
+   *     StrategyDate#TIME_YEAR}
+   * @param time epoch millis
+   * @return the bucket
+   */
+  public Bucket getBucket(int type, long time) {
+    Bucket bucket = buckets.get(type);
+    if (bucket != null && bucket.contains(time)) {
+      return bucket;
+    }
+
+    Bucket newBucket = createBucket(type, time);
+    if (bucket == null || time >= bucket.getEnd()) {
+      // only move forward, a stale time must not replace the current bucket
+      buckets.compareAndSet(type, bucket, newBucket);
+    }
+    return newBucket;
+  }
+
+  /**
+   * Whether a counter last updated at {@code updateTime} has to be reset at {@code now}.
+   *
+   * @param type reset strategy of {@link StrategyDate}
+   * @param now current epoch millis
+   * @param updateTime epoch millis of the last update
+   * @return true if {@code updateTime} is before the bucket of {@code now}
+   */
+  public boolean isReset(int type, long now, long updateTime) {
+    if (type < StrategyDate.TIME_DAY || type > StrategyDate.TIME_YEAR) {
+      return false;
+    }
+    return now > updateTime && updateTime < getBucket(type, now).getBegin();
+  }
+
+  public String format(int type, long time) {
+    return getBucket(type, time).getFormatted();
+  }
+
+  private static Bucket createBucket(int type, long time) {
+    ZoneId zoneId = ZoneId.systemDefault();
+    LocalDate date = Instant.ofEpochMilli(time).atZone(zoneId).toLocalDate();
+
+    LocalDate begin;
+    LocalDate end;
+    DateTimeFormatter formatter;
+    switch (type) {
+      case StrategyDate.TIME_MONTH:
+        begin = date.withDayOfMonth(1);
+        end = begin.plusMonths(1);
+        formatter = MONTH_FORMATTER;
+        break;
+      case StrategyDate.TIME_YEAR:
+        begin = date.withDayOfYear(1);
+        end = begin.plusYears(1);
+        formatter = YEAR_FORMATTER;
+        break;
+      case StrategyDate.TIME_DAY:
+      default:
+        begin = date;
+        end = begin.plusDays(1);
+        formatter = DAY_FORMATTER;
+        break;
+    }
+
+    ZonedDateTime beginTime = begin.atStartOfDay(zoneId);
+    return new Bucket(
+        beginTime.toInstant().toEpochMilli(),
+        end.atStartOfDay(zoneId).toInstant().toEpochMilli(),
+        beginTime.format(formatter));
+  }
+
+  public static final class Bucket {
+
+    private final long begin;
+    private final long end;
+    private final String formatted;
+    private final byte[] formattedBytes;
+
+    Bucket(long begin, long end, String formatted) {
+      this.begin = begin;
+      this.end = end;
+      this.formatted = formatted;
+      this.formattedBytes = formatted.getBytes(StandardCharsets.UTF_8);
+    }
+
+    public boolean contains(long time) {
+      return time >= begin && time < end;
+    }
+
+    /** Epoch millis of the beginning of this bucket. */
+    public long getBegin() {
+      return begin;
+    }
+
+    /** Epoch millis of the next rollover. */
+    public long getEnd() {
+      return end;
+    }
+
+    public String getFormatted() {
+      return formatted;
+    }
+
+    /** UTF-8 bytes of the formatted string, must not be modified. */
+    public byte[] getFormattedBytes() {
+      return formattedBytes;
+    }
+  }
+}
@@ -23,12 +23,8 @@
 */
 package org.myberry.server.util;
 
-import java.time.Instant;
-import java.time.ZoneId;
-import java.time.format.DateTimeFormatter;
 import org.myberry.common.expression.parser.TimeParser;
 import org.myberry.common.strategy.StrategyDate;
-import org.myberry.server.expression.handler.TimeHandler;
 
 public class DateUtils {
 
@@ -52,28 +48,14 @@ public class DateUtils {
   }
 
   public static String convertTime(int type, long time) {
-
-    DateTimeFormatter format;
     switch (type) {
       case StrategyDate.TIME_DAY:
-        format = DateTimeFormatter.ofPattern(TimeHandler.DAY_PATTERN);
-        break;
-
       case StrategyDate.TIME_MONTH:
-        format = DateTimeFormatter.ofPattern(TimeHandler.MONTH_PATTERN);
-        break;
-
       case StrategyDate.TIME_YEAR:
-        format = DateTimeFormatter.ofPattern(TimeHandler.YEAR_PATTERN);
-        break;
+        return CalendarClock.getInstance().format(type, time);
 
       default:
         return "";
     }
-
-    return Instant.ofEpochMilli(time)
-        .atZone(ZoneId.of(ZoneId.systemDefault().getId()))
-        .toLocalDateTime()
-        .format(format);
   }
 }
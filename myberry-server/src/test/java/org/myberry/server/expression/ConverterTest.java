@@ -23,17 +23,22 @@
 */
 package org.myberry.server.expression;
 
+import java.util.Collections;
+import java.util.Map;
+import java.util.regex.Pattern;
 import org.junit.Assert;
 import org.junit.Test;
 import org.myberry.common.expression.impl.ExpressionObject;
 import org.myberry.common.expression.impl.ExpressionParser;
 import org.myberry.common.expression.impl.ExpressionString;
 import org.myberry.common.expression.impl.ParserManager;
+import org.myberry.common.strategy.StrategyDate;
 import org.myberry.server.expression.handler.DynamicHandler;
 import org.myberry.server.expression.handler.IncrHandler;
 import org.myberry.server.expression.handler.SidHandler;
 import org.myberry.server.expression.impl.BufferStructObject;
 import org.myberry.server.expression.impl.PlaceholderObject;
+import org.myberry.server.util.DateUtils;
 
 public class ConverterTest {
 
@@ -86,4 +91,90 @@ public class ConverterTest {
       Assert.assertNotNull(sb.toString());
     }
   }
+
+  @Test
+  public void testCompile() {
+    ConverterManager cm = ConverterManager.getInstance();
+    cm.registerDefaultConverter();
+
+    String expression = "[2 3 #sid(0) #sid(1) m z #incr(1) #incr(0)]";
+    BufferStructObject bufferStructObject = cm.getExpressionConverterFactory().compile(expression);
+
+    Assert.assertTrue(bufferStructObject.isCompiledFrom(expression));
+    Assert.assertFalse(bufferStructObject.isCompiledFrom("[2 3 #incr(0)]"));
+    Assert.assertEquals(
+        "2321mz34", bufferStructObject.getResult(12, 34, System.currentTimeMillis(), null));
+    Assert.assertEquals(
+        "2321mz04", bufferStructObject.getResult(12, 4, System.currentTimeMillis(), null));
+  }
+
+  @Test
+  public void testRender() throws Exception {
+    ConverterManager cm = ConverterManager.getInstance();
+    cm.registerDefaultConverter();
+
+    String expression =
+        "[a #sid(2) #sid(0) #incr(19) #incr(3) #incr(0) $dynamic(tenant) #rand(3) z]";
+    BufferStructObject bufferStructObject = cm.getExpressionConverterFactory().compile(expression);
+    Map<String, String> attachments = Collections.singletonMap("tenant", "中文");
+
+    long[] incrNumbers = {0, 7, 1234, Long.MAX_VALUE};
+    for (long incrNumber : incrNumbers) {
+      String incr = String.valueOf(incrNumber);
+      PlaceholderObject[] placeholderObjects = bufferStructObject.getPlaceholderObjects();
+      String expected =
+          "a"
+              + placeholderObjects[1].getPlaceholderHandler().get("5")
+              + placeholderObjects[2].getPlaceholderHandler().get("5")
+              + placeholderObjects[3].getPlaceholderHandler().get(incr)
+              + placeholderObjects[4].getPlaceholderHandler().get(incr)
+              + placeholderObjects[5].getPlaceholderHandler().get(incr)
+              + "中文";
+
+      long now = System.currentTimeMillis();
+      String result = bufferStructObject.getResult(5, incrNumber, now, attachments);
+      Assert.assertTrue(result, result.matches(Pattern.quote(expected) + "\\d{3}z"));
+      Assert.assertEquals(
+          expected.length() + 4,
+          new String(bufferStructObject.getResultBytes(5, incrNumber, now, attachments), "UTF-8")
+              .length());
+    }
+
+    Assert.assertTrue(
+        bufferStructObject
+            .getResult(5, 1, System.currentTimeMillis(), null)
+            .matches("a05001\\d{3}z"));
+  }
+
+  @Test
+  public void testTimeType() {
+    ConverterManager cm = ConverterManager.getInstance();
+    cm.registerDefaultConverter();
+
+    String[] expressions = {
+      "[#time(day) #incr(0) #time(month)]",
+      "[#time(month) #incr(0) #time(day)]",
+      "[#time(year) #time(month) #incr(0)]",
+      "[#time(month) #time(year) #incr(0)]",
+      "[#time(year) #incr(0)]",
+      "[#incr(0)]"
+    };
+    int[] timeTypes = {
+      StrategyDate.TIME_DAY,
+      StrategyDate.TIME_DAY,
+      StrategyDate.TIME_MONTH,
+      StrategyDate.TIME_MONTH,
+      StrategyDate.TIME_YEAR,
+      StrategyDate.NON_TIME
+    };
+    for (int i = 0; i < expressions.length; i++) {
+      BufferStructObject bufferStructObject =
+          cm.getExpressionConverterFactory().compile(expressions[i]);
+      Assert.assertEquals(expressions[i], timeTypes[i], bufferStructObject.getTimeType());
+      Assert.assertEquals(
+          expressions[i],
+          DateUtils.isIncludeTime(expressions[i]),
+          bufferStructObject.getTimeType());
+    }
+  }
 }
@@ -0,0 +1,164 @@
+/*
+* MIT License
+*
+* Copyright (c) 2020 gaoyang
+*
+* Permission is hereby granted, free of charge, to any person obtaining a copy
+* of this software and associated documentation files (the "Software"), to deal
+* in the Software without restriction, including without limitation the rights
+* to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+* copies of the Software, and to permit persons to whom the Software is
+* furnished to do so, subject to the following conditions:
+
+* The above copyright notice and this permission notice shall be included in all
+* copies or substantial portions of the Software.
+
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+* IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+* AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+* LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+* OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+* SOFTWARE.
+*/
+package org.myberry.server.expression;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.myberry.common.strategy.StrategyDate;
+import org.myberry.server.expression.handler.DynamicHandler;
+import org.myberry.server.expression.handler.IncrHandler;
+import org.myberry.server.expression.handler.SidHandler;
+import org.myberry.server.expression.handler.TimeHandler;
+import org.myberry.server.expression.impl.BufferStructObject;
+import org.myberry.server.expression.impl.PlaceholderObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares the previous instanceof based {@code BufferStructObject#getResult} with the segment
+ * renderer. The time placeholders of the previous one are formatted per ID as the handler used to,
+ * not through the cached buckets of {@code CalendarClock}. Run {@link #main(String[])} from the
+ * IDE, or with the test classpath.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class IdRendererBenchmark {
+
+  private static final String EXPRESSION =
+      "[#time(day) 2 3 #sid(0) #sid(1) m z #rand(4) #incr(5) #incr(4) #incr(3) #incr(2) #incr(1)"
+          + " #incr(0) $dynamic(tenant)]";
+
+  // the handler kept the formatter of its placeholder
+  private static final DateTimeFormatter DAY_FORMAT =
+      DateTimeFormatter.ofPattern(TimeHandler.DAY_PATTERN);
+  private static final DateTimeFormatter MONTH_FORMAT =
+      DateTimeFormatter.ofPattern(TimeHandler.MONTH_PATTERN);
+  private static final DateTimeFormatter YEAR_FORMAT =
+      DateTimeFormatter.ofPattern(TimeHandler.YEAR_PATTERN);
+
+  private BufferStructObject bufferStructObject;
+  private Map<String, String> attachments;
+  private int sid = 12;
+  private long incrNumber = 123456;
+
+  @Setup
+  public void setup() {
+    ConverterManager cm = ConverterManager.getInstance();
+    cm.registerDefaultConverter();
+    bufferStructObject = cm.getExpressionConverterFactory().compile(EXPRESSION);
+    attachments = Collections.singletonMap("tenant", "T01");
+  }
+
+  @Benchmark
+  public String legacyGetResult() {
+    return legacyGetResult(bufferStructObject.getPlaceholderObjects(), sid, incrNumber);
+  }
+
+  @Benchmark
+  public String render() {
+    return bufferStructObject.getResult(sid, incrNumber, System.currentTimeMillis(), attachments);
+  }
+
+  @Benchmark
+  public byte[] renderBytes() {
+    return bufferStructObject.getResultBytes(
+        sid, incrNumber, System.currentTimeMillis(), attachments);
+  }
+
+  @Benchmark
+  public byte[] legacyGetResultBytes() throws Exception {
+    return legacyGetResult(bufferStructObject.getPlaceholderObjects(), sid, incrNumber)
+        .getBytes("UTF-8");
+  }
+
+  private String legacyGetResult(PlaceholderObject[] placeholderObjects, int sid, long incr) {
+    StringBuilder result = new StringBuilder(placeholderObjects.length);
+    for (PlaceholderObject placeholderObject : placeholderObjects) {
+      if (placeholderObject.getPlaceholderHandler() instanceof IncrHandler) {
+        result.append(placeholderObject.getPlaceholderHandler().get(String.valueOf(incr)));
+      } else if (placeholderObject.getPlaceholderHandler() instanceof SidHandler) {
+        result.append(placeholderObject.getPlaceholderHandler().get(String.valueOf(sid)));
+      } else if (placeholderObject.getPlaceholderHandler() instanceof TimeHandler) {
+        result.append(
+            legacyFormatTime((TimeHandler) placeholderObject.getPlaceholderHandler()));
+      } else if (placeholderObject.getPlaceholderHandler() instanceof DynamicHandler) {
+        if (attachments != null
+            && attachments.get(placeholderObject.getPlaceholderHandler().get(null)) != null) {
+          result.append(attachments.get(placeholderObject.getPlaceholderHandler().get(null)));
+        }
+      } else {
+        result.append(placeholderObject.getPlaceholderHandler().get(null));
+      }
+    }
+    return result.toString();
+  }
+
+  /** The time placeholder as the handler formatted it before the cached buckets. */
+  private static String legacyFormatTime(TimeHandler timeHandler) {
+    DateTimeFormatter format;
+    switch (timeHandler.getType()) {
+      case StrategyDate.TIME_MONTH:
+        format = MONTH_FORMAT;
+        break;
+      case StrategyDate.TIME_YEAR:
+        format = YEAR_FORMAT;
+        break;
+      default:
+        format = DAY_FORMAT;
+        break;
+    }
+    return Instant.ofEpochMilli(System.currentTimeMillis())
+        .atZone(ZoneId.of(ZoneId.systemDefault().getId()))
+        .toLocalDateTime()
+        .format(format);
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    Options options =
+        new OptionsBuilder().include(IdRendererBenchmark.class.getSimpleName()).build();
+    new Runner(options).run();
+  }
+}
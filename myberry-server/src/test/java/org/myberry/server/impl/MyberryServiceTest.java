@@ -24,13 +24,24 @@
 package org.myberry.server.impl;
 
 import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
 import org.junit.AfterClass;
 import org.junit.Assert;
 import org.junit.BeforeClass;
 import org.junit.FixMethodOrder;
 import org.junit.Test;
 import org.junit.runners.MethodSorters;
+import org.myberry.common.protocol.ResponseCode;
+import org.myberry.common.protocol.body.admin.NSComponentData;
+import org.myberry.common.strategy.StrategyDate;
+import org.myberry.store.CRComponent;
 import org.myberry.store.DefaultMyberryStore;
+import org.myberry.store.NSComponent;
 import org.myberry.store.config.StoreConfig;
 
 @FixMethodOrder(MethodSorters.NAME_ASCENDING)
@@ -67,6 +78,162 @@ public class MyberryServiceTest {
     Assert.assertNotNull(result);
   }
 
+  @Test
+  public void test3() throws InterruptedException {
+    myberryService.addComponent(
+        "key3", "[c #incr(5) #incr(4) #incr(3) #incr(2) #incr(1) #incr(0)]");
+    CRComponent crc = (CRComponent) defaultMyberryStore.getComponentMap().get("key3");
+    long before = crc.getIncrNumber();
+
+    int threads = 8;
+    int pulls = 1000;
+    Set<String> ids = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    CountDownLatch latch = new CountDownLatch(threads);
+    for (int i = 0; i < threads; i++) {
+      new Thread(
+              () -> {
+                for (int j = 0; j < pulls; j++) {
+                  PullIdResult result = myberryService.getNewId("key3", null);
+                  ids.add(new String(result.getNewId(), StandardCharsets.UTF_8));
+                }
+                latch.countDown();
+              })
+          .start();
+    }
+    latch.await();
+
+    Assert.assertEquals(threads * pulls, ids.size());
+    Assert.assertEquals(before + threads * pulls, crc.getIncrNumber());
+  }
+
+  @Test
+  public void test4() {
+    storeConfig.setReservationSize(10);
+    myberryService.addComponent("key4", "[r #incr(1) #incr(0)]");
+    CRComponent crc = (CRComponent) defaultMyberryStore.getComponentMap().get("key4");
+    long before = crc.getIncrNumber();
+
+    for (int i = 0; i < 3; i++) {
+      myberryService.getNewId("key4", null);
+    }
+    storeConfig.setReservationSize(1);
+
+    Assert.assertEquals(before + 3, crc.getIncrNumber());
+    Assert.assertEquals(before + 10, crc.getCounter().getReservedNumber());
+    Assert.assertEquals(crc.getCounter().getSequence(), crc.getWrittenSequence().get());
+  }
+
+  @Test
+  public void test5() {
+    myberryService.addComponent(
+        "key5", "[b #incr(5) #incr(4) #incr(3) #incr(2) #incr(1) #incr(0)]");
+    CRComponent crc = (CRComponent) defaultMyberryStore.getComponentMap().get("key5");
+    long before = crc.getIncrNumber();
+
+    PullIdResult result = myberryService.getNewIds("key5", 100, null);
+    Assert.assertEquals(100, result.getNewIds().size());
+    for (int i = 0; i < 100; i++) {
+      Assert.assertEquals(
+          String.format("b%06d", before + i + 1),
+          new String(result.getNewIds().get(i), StandardCharsets.UTF_8));
+    }
+
+    PullIdResult next = myberryService.getNewId("key5", null);
+    Assert.assertEquals(
+        String.format("b%06d", before + 101), new String(next.getNewId(), StandardCharsets.UTF_8));
+    Assert.assertEquals(before + 101, crc.getIncrNumber());
+    Assert.assertTrue(crc.getCounter().getReservedNumber() >= crc.getIncrNumber());
+  }
+
+  @Test
+  public void test6() {
+    myberryService.addComponent("key6", "[d #incr(0)]");
+    Assert.assertNotNull(myberryService.getNewId("key6", null).getNewId());
+
+    Assert.assertEquals(
+        ResponseCode.SUCCESS, myberryService.removeComponent("key6").getRespCode());
+    Assert.assertEquals(
+        ResponseCode.KEY_NOT_EXISTED, myberryService.getNewId("key6", null).getRespCode());
+    Assert.assertEquals(
+        ResponseCode.KEY_NOT_EXISTED, myberryService.removeComponent("key6").getRespCode());
+  }
+
+  @Test
+  public void test7() throws Exception {
+    StoreConfig nsStoreConfig = new StoreConfig();
+    nsStoreConfig.setStorePath(
+        new File("target" + File.separator + "ns-service-test-" + System.nanoTime())
+            .getAbsolutePath());
+    nsStoreConfig.setProduceMode("ns");
+    nsStoreConfig.setAdaptiveStepEnable(true);
+    nsStoreConfig.setAdaptiveStepPeriodMills(400);
+    nsStoreConfig.setAdaptiveStepMaxMultiple(4);
+    nsStoreConfig.setReservationSize(3);
+    DefaultMyberryStore nsStore = new DefaultMyberryStore(nsStoreConfig);
+    NSService nsService = new NSService(nsStore);
+    nsStore.start();
+    try {
+      nsService.addComponent("key7", 0, 10, StrategyDate.NON_TIME);
+      NSComponent nsc = (NSComponent) nsStore.getComponent("key7");
+
+      // pulled faster than twice per period, the step doubles up to the max multiple
+      Assert.assertEquals(10, this.pullSegment(nsService, nsc));
+      Assert.assertEquals(20, this.pullSegment(nsService, nsc));
+      Assert.assertEquals(40, this.pullSegment(nsService, nsc));
+      Assert.assertEquals(40, this.pullSegment(nsService, nsc));
+      NSComponentData nscd =
+          (NSComponentData) nsService.queryComponentByKey("key7").getComponent();
+      Assert.assertEquals(10, nscd.getStepSize());
+      Assert.assertEquals(40, nscd.getEffectiveStepSize());
+
+      // pulled slower than once per two periods, the step halves back to the step size
+      Thread.sleep(1000);
+      Assert.assertEquals(20, this.pullSegment(nsService, nsc));
+      Thread.sleep(1000);
+      Assert.assertEquals(10, this.pullSegment(nsService, nsc));
+      Thread.sleep(1000);
+      Assert.assertEquals(10, this.pullSegment(nsService, nsc));
+      nscd = (NSComponentData) nsService.queryComponentByKey("key7").getComponent();
+      Assert.assertEquals(10, nscd.getEffectiveStepSize());
+    } finally {
+      nsStore.shutdown();
+    }
+  }
+
+  /** @return the size of the segment, which is covered by the reservation on disk */
+  private int pullSegment(NSService nsService, NSComponent nsc) {
+    PullIdResult result = nsService.getNewId(nsc.getKey(), null);
+    Assert.assertEquals(ResponseCode.SUCCESS, result.getRespCode());
+    Assert.assertEquals(result.getEnd() + 1, nsc.getCurrentValue());
+    Assert.assertTrue(nsc.getReservedValue() >= nsc.getCurrentValue());
+    return result.getEnd() - result.getStart() + 1;
+  }
+
+  @Test
+  public void test8() {
+    myberryService.addComponent("key8a", "[e #incr(0)]");
+    myberryService.addComponent("key8b", "[f #incr(0)]");
+    CRComponent crc = (CRComponent) defaultMyberryStore.getComponentMap().get("key8a");
+    long before = crc.getIncrNumber();
+
+    // the pulls of several keys are reserved first, one flush covers all of them
+    PullIdResult first = myberryService.reserveNewId("key8a", null);
+    PullIdResult second = myberryService.reserveNewIds("key8b", 3, null);
+    PullIdResult missing = myberryService.reserveNewId("key8c", null);
+    Assert.assertFalse(first.getReservation().isFlushed());
+    Assert.assertFalse(second.getReservation().isFlushed());
+    Assert.assertNull(missing.getReservation());
+
+    myberryService.flush(Arrays.asList(first, second, missing));
+    Assert.assertTrue(first.getReservation().isFlushed());
+    Assert.assertTrue(second.getReservation().isFlushed());
+    Assert.assertEquals(ResponseCode.SUCCESS, first.getRespCode());
+    Assert.assertEquals(
+        "e" + (before + 1) % 10, new String(first.getNewId(), StandardCharsets.UTF_8));
+    Assert.assertEquals(3, second.getNewIds().size());
+    Assert.assertEquals(ResponseCode.KEY_NOT_EXISTED, missing.getRespCode());
+  }
+
   @AfterClass
   public static void destory() {
     defaultMyberryStore.shutdown();
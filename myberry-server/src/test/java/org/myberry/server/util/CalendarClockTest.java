@@ -0,0 +1,60 @@
+/*
+* MIT License
+*
+* Copyright (c) 2020 gaoyang
+*
+* Permission is hereby granted, free of charge, to any person obtaining a copy
+* of this software and associated documentation files (the "Software"), to deal
+* in the Software without restriction, including without limitation the rights
+* to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+* copies of the Software, and to permit persons to whom the Software is
+* furnished to do so, subject to the following conditions:
+
+* The above copyright notice and this permission notice shall be included in all
+* copies or substantial portions of the Software.
+
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+* IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+* AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+* LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+* OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+* SOFTWARE.
+*/
+package org.myberry.server.util;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import org.junit.Assert;
+import org.junit.Test;
+import org.myberry.common.strategy.StrategyDate;
+
+public class CalendarClockTest {
+
+  private final CalendarClock calendarClock = CalendarClock.getInstance();
+
+  @Test
+  public void testFormat() {
+    long time = toMillis(LocalDateTime.of(2020, 3, 9, 13, 30));
+    Assert.assertEquals("20200309", calendarClock.format(StrategyDate.TIME_DAY, time));
+    Assert.assertEquals("202003", calendarClock.format(StrategyDate.TIME_MONTH, time));
+    Assert.assertEquals("2020", calendarClock.format(StrategyDate.TIME_YEAR, time));
+  }
+
+  @Test
+  public void testIsReset() {
+    long beforeMidnight = toMillis(LocalDateTime.of(2020, 12, 31, 23, 59, 59));
+    long afterMidnight = toMillis(LocalDateTime.of(2021, 1, 1, 0, 0, 0));
+    long noon = toMillis(LocalDateTime.of(2021, 1, 1, 12, 0, 0));
+
+    Assert.assertTrue(calendarClock.isReset(StrategyDate.TIME_DAY, afterMidnight, beforeMidnight));
+    Assert.assertTrue(calendarClock.isReset(StrategyDate.TIME_YEAR, afterMidnight, beforeMidnight));
+    Assert.assertFalse(calendarClock.isReset(StrategyDate.TIME_DAY, noon, afterMidnight));
+    Assert.assertFalse(calendarClock.isReset(StrategyDate.TIME_DAY, beforeMidnight, noon));
+    Assert.assertFalse(calendarClock.isReset(StrategyDate.NON_TIME, noon, beforeMidnight));
+  }
+
+  private static long toMillis(LocalDateTime localDateTime) {
+    return localDateTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+  }
+}
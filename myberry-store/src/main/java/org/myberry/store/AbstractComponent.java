@@ -25,7 +25,16 @@ package org.myberry.store;
 
 public abstract class AbstractComponent {
 
+  /** Status of a removed component and of its tombstone record, they are not loaded. */
+  public static final int STATUS_DELETED = 2;
+
   public abstract String getKey();
 
+  public abstract long getPhyOffset();
+
   public abstract void setPhyOffset(long phyOffset);
+
+  public abstract int getStatus();
+
+  public abstract void setStatus(int status);
 }
@@ -24,6 +24,7 @@
 package org.myberry.store;
 
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -40,17 +41,21 @@ public class CRComponent extends AbstractComponent {
   public static int incrNumberHeader = 24;
   public static int statusHeader = 32;
 
+  // updateTime and incrNumber are kept in counter, see CRComponentCodec for the store layout
   private long createTime;
-  private long updateTime;
   private long phyOffset;
-  private AtomicLong incrNumber = new AtomicLong();
   private int status;
   private int keyLength;
   private String key;
   private int expressionLength;
   private String expression;
 
-  private final Lock lock = new ReentrantLock();
+  private final AtomicReference<Counter> counter =
+      new AtomicReference<>(new Counter(0, 0, 0, 0));
+  // sequence of the latest reservation written to the store and flushed
+  private final Lock writeLock = new ReentrantLock();
+  private final AtomicLong writtenSequence = new AtomicLong();
+  private final AtomicLong flushedSequence = new AtomicLong();
 
   public long getCreateTime() {
     return createTime;
@@ -61,11 +66,20 @@ public class CRComponent extends AbstractComponent {
   }
 
   public long getUpdateTime() {
-    return updateTime;
+    return counter.get().getUpdateTime();
   }
 
   public void setUpdateTime(long updateTime) {
-    this.updateTime = updateTime;
+    Counter current;
+    do {
+      current = counter.get();
+    } while (!counter.compareAndSet(
+        current,
+        new Counter(
+            updateTime,
+            current.getIncrNumber(),
+            current.getReservedNumber(),
+            current.getSequence())));
   }
 
   public long getPhyOffset() {
@@ -77,11 +91,16 @@ public class CRComponent extends AbstractComponent {
   }
 
   public long getIncrNumber() {
-    return incrNumber.get();
+    return counter.get().getIncrNumber();
   }
 
   public void setIncrNumber(long incrNumber) {
-    this.incrNumber.set(incrNumber);
+    Counter current;
+    do {
+      current = counter.get();
+    } while (!counter.compareAndSet(
+        current,
+        new Counter(current.getUpdateTime(), incrNumber, incrNumber, current.getSequence())));
   }
 
   public int getStatus() {
@@ -124,16 +143,24 @@ public class CRComponent extends AbstractComponent {
     this.expression = expression;
   }
 
-  public Lock getLock() {
-    return lock;
+  public Counter getCounter() {
+    return counter.get();
   }
 
-  public long incrementAndGet() {
-    return incrNumber.incrementAndGet();
+  public boolean compareAndSetCounter(Counter expect, Counter update) {
+    return counter.compareAndSet(expect, update);
   }
 
-  public void resetIncrNumber() {
-    incrNumber.set(0);
+  public Lock getWriteLock() {
+    return writeLock;
+  }
+
+  public AtomicLong getWrittenSequence() {
+    return writtenSequence;
+  }
+
+  public AtomicLong getFlushedSequence() {
+    return flushedSequence;
   }
 
   @Override
@@ -143,11 +170,11 @@ public class CRComponent extends AbstractComponent {
         .append("createTime=") //
         .append(createTime) //
         .append(", updateTime=") //
-        .append(updateTime) //
+        .append(getUpdateTime()) //
         .append(", phyOffset=") //
         .append(phyOffset) //
         .append(", incrNumber=") //
-        .append(incrNumber) //
+        .append(getIncrNumber()) //
         .append(", status=") //
         .append(status) //
         .append(", keyLength=") //
@@ -163,4 +190,40 @@ public class CRComponent extends AbstractComponent {
         .append(']') //
         .toString();
   }
+
+  /**
+   * Update time and increment number of the component, replaced as a whole by CAS so that a reset
+   * on day, month or year rollover is atomic with the increment. The reserved number is the high
+   * water mark persisted in the store, and the sequence increases with every new reservation.
+   */
+  public static final class Counter {
+
+    private final long updateTime;
+    private final long incrNumber;
+    private final long reservedNumber;
+    private final long sequence;
+
+    public Counter(long updateTime, long incrNumber, long reservedNumber, long sequence) {
+      this.updateTime = updateTime;
+      this.incrNumber = incrNumber;
+      this.reservedNumber = reservedNumber;
+      this.sequence = sequence;
+    }
+
+    public long getUpdateTime() {
+      return updateTime;
+    }
+
+    public long getIncrNumber() {
+      return incrNumber;
+    }
+
+    public long getReservedNumber() {
+      return reservedNumber;
+    }
+
+    public long getSequence() {
+      return sequence;
+    }
+  }
 }
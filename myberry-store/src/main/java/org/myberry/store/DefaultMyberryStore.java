@@ -33,7 +33,11 @@ import org.myberry.common.SystemClock;
 import org.myberry.store.common.LoggerName;
 import org.myberry.store.config.StoreConfig;
 import org.myberry.store.config.StorePathConfigHelper;
+import org.myberry.store.impl.CompactService;
+import org.myberry.store.impl.CounterJournal;
 import org.myberry.store.impl.FileService;
+import org.myberry.store.impl.FlushService;
+import org.myberry.store.impl.MbidCheckpointService;
 import org.myberry.store.impl.MappedFile;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -45,7 +49,11 @@ public class DefaultMyberryStore implements MyberryStore {
   private volatile boolean shutdown = false;
 
   private final StoreConfig storeConfig;
-  private final FileService fileService;
+  protected final FileService fileService;
+  private final MbidCheckpointService mbidCheckpointService;
+  private final FlushService flushService;
+  private final CounterJournal counterJournal;
+  private final CompactService compactService;
   private RandomAccessFile lockFile;
 
   private FileLock lock;
@@ -54,9 +62,23 @@ public class DefaultMyberryStore implements MyberryStore {
   private volatile long beginTimeInLock = 0;
 
   public DefaultMyberryStore(final StoreConfig storeConfig) throws IOException {
+    this(storeConfig, true);
+  }
+
+  /** @param processLock lock the store directory, so only one process opens it */
+  protected DefaultMyberryStore(final StoreConfig storeConfig, final boolean processLock)
+      throws IOException {
     this.storeConfig = storeConfig;
     this.fileService = new FileService(this);
-    this.initProcessLock();
+    this.mbidCheckpointService = new MbidCheckpointService(this);
+    this.flushService = new FlushService(this);
+    this.counterJournal =
+        storeConfig.isJournalEnable() ? new CounterJournal(this, fileService) : null;
+    this.compactService =
+        storeConfig.isCompactEnable() ? new CompactService(this, fileService) : null;
+    if (processLock) {
+      this.initProcessLock();
+    }
   }
 
   @Override
@@ -65,7 +87,17 @@ public class DefaultMyberryStore implements MyberryStore {
   }
 
   @Override
-  public void removeComponent(String key) {}
+  public boolean removeComponent(String key) {
+    return fileService.removeComponent(key);
+  }
+
+  /**
+   * Rewrite the live components into new segments, it is done in the background when enough of
+   * the records are removed.
+   */
+  public boolean compact() {
+    return fileService.compact();
+  }
 
   @Override
   public long getMbidFromDisk() {
@@ -104,7 +136,17 @@ public class DefaultMyberryStore implements MyberryStore {
 
   @Override
   public ConcurrentMap<String, AbstractComponent> getComponentMap() {
-    return fileService.getBlockFile(0).getComponentMap();
+    return fileService.getComponentMap();
+  }
+
+  @Override
+  public AbstractComponent getComponent(String key) {
+    return fileService.getComponent(key);
+  }
+
+  @Override
+  public int getComponentCount() {
+    return fileService.getComponentCount();
   }
 
   @Override
@@ -114,27 +156,57 @@ public class DefaultMyberryStore implements MyberryStore {
 
   @Override
   public int getLastOffset() {
-    return fileService.getBlockFile(0).getLastOffset();
+    return fileService.getLastOffset();
+  }
+
+  @Override
+  public int getCompactedOffset() {
+    return fileService.getCompactedOffset();
   }
 
   @Override
   public boolean isWriteFull(int size) {
-    return fileService.getBlockFile(0).isWriteFull(size);
+    return fileService.isWriteFull(size);
+  }
+
+  @Override
+  public boolean growFileSize(int fileSize) {
+    return fileService.grow(fileSize);
+  }
+
+  @Override
+  public SnapshotResult snapshot(String storePath) {
+    return fileService.snapshot(storePath);
   }
 
   @Override
   public boolean isExistKey(String key) {
-    return fileService.getBlockFile(0).isExistKey(key);
+    return fileService.isExistKey(key);
   }
 
   @Override
   public byte[] getSyncByteBuffer(int offset) {
-    return fileService.getBlockFile(0).getComponentByteArray(offset);
+    return fileService.getComponentByteArray(offset);
+  }
+
+  @Override
+  public byte[] getSyncByteBuffer(int offset, int maxSize) {
+    return fileService.getComponentByteArray(offset, maxSize);
   }
 
   @Override
   public void setSyncByteBuffer(byte[] src) {
-    this.fileService.getBlockFile(0).setComponentByteBuffer(src);
+    this.fileService.setComponentByteBuffer(src);
+  }
+
+  @Override
+  public byte[] getSnapshotByteBuffer(int offset) {
+    return fileService.getSnapshotByteArray(offset);
+  }
+
+  @Override
+  public void resetSyncByteBuffer(byte[] src, int offset) {
+    this.fileService.resetComponentByteBuffer(src, offset);
   }
 
   @Override
@@ -142,6 +214,10 @@ public class DefaultMyberryStore implements MyberryStore {
     this.fileService.getBlockFile(0).incrMbid();
   }
 
+  public void checkpointMbid() {
+    this.fileService.getBlockFile(0).checkpointMbid();
+  }
+
   @Override
   public void setMySid(int mySid) {
     this.fileService.getBlockFile(0).setMySid(mySid);
@@ -164,29 +240,83 @@ public class DefaultMyberryStore implements MyberryStore {
 
   @Override
   public void save() {
-    this.fileService.getBlockFile(0).save();
+    this.fileService.save();
   }
 
   @Override
-  public void updateBufferLong(int index, long value) {
-    this.fileService.getBlockFile(0).updateBufferLong(index, value);
+  public boolean flush(long offset) {
+    return this.flushService.flush(offset);
+  }
+
+  /** Make the counter writes durable, by the journal if it is enabled. */
+  public void commit() {
+    if (counterJournal != null) {
+      this.counterJournal.commit();
+    } else {
+      this.fileService.save();
+    }
   }
 
   @Override
-  public void updateBufferInt(int index, int value) {
-    this.fileService.getBlockFile(0).updateBufferInt(index, value);
+  public void updateBufferLong(long phyOffset, long value) {
+    this.doUpdateBufferLong(phyOffset, value);
+    long mirrorOffset = fileService.getMirrorOffset(phyOffset);
+    if (mirrorOffset >= 0) {
+      this.doUpdateBufferLong(mirrorOffset, value);
+    }
+  }
+
+  private void doUpdateBufferLong(long phyOffset, long value) {
+    if (counterJournal != null) {
+      this.counterJournal.appendLong(phyOffset, value);
+    } else {
+      this.fileService.updateBufferLong(phyOffset, value);
+    }
+  }
+
+  @Override
+  public void updateBufferInt(long phyOffset, int value) {
+    this.doUpdateBufferInt(phyOffset, value);
+    long mirrorOffset = fileService.getMirrorOffset(phyOffset);
+    if (mirrorOffset >= 0) {
+      this.doUpdateBufferInt(mirrorOffset, value);
+    }
+  }
+
+  private void doUpdateBufferInt(long phyOffset, int value) {
+    if (counterJournal != null) {
+      this.counterJournal.appendInt(phyOffset, value);
+    } else {
+      this.fileService.updateBufferInt(phyOffset, value);
+    }
   }
 
   @Override
   public void start() throws Exception {
     this.startProcessLock();
-    this.fileService.load(storeConfig);
+    this.fileService.load(storeConfig, counterJournal);
+    this.mbidCheckpointService.start();
+    if (counterJournal != null) {
+      this.counterJournal.start();
+    }
+    this.flushService.start();
+    if (compactService != null) {
+      this.compactService.start();
+    }
   }
 
   @Override
   public void shutdown() {
     if (!this.shutdown) {
       this.shutdown = true;
+      if (compactService != null) {
+        this.compactService.shutdown();
+      }
+      this.flushService.shutdown();
+      this.mbidCheckpointService.shutdown();
+      if (counterJournal != null) {
+        this.counterJournal.shutdown();
+      }
       this.fileService.unload();
     }
 
@@ -207,6 +337,9 @@ public class DefaultMyberryStore implements MyberryStore {
   }
 
   private void startProcessLock() throws IOException {
+    if (lockFile == null) {
+      return;
+    }
     lock = lockFile.getChannel().tryLock(0, 1, false);
 
     if (lock == null || lock.isShared() || !lock.isValid()) {
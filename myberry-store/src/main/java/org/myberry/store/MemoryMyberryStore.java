@@ -0,0 +1,88 @@
+/*
+* MIT License
+*
+* Copyright (c) 2020 gaoyang
+*
+* Permission is hereby granted, free of charge, to any person obtaining a copy
+* of this software and associated documentation files (the "Software"), to deal
+* in the Software without restriction, including without limitation the rights
+* to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+* copies of the Software, and to permit persons to whom the Software is
+* furnished to do so, subject to the following conditions:
+
+* The above copyright notice and this permission notice shall be included in all
+* copies or substantial portions of the Software.
+
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+* IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+* AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+* LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+* OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+* SOFTWARE.
+*/
+package org.myberry.store;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import org.myberry.store.common.LoggerName;
+import org.myberry.store.config.StoreConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Store engine holding the segments in heap or direct buffers, the records and the sync are the
+ * same as of the file store. Nothing is written to disk, unless the segments are snapshot on
+ * shutdown, then they are restored from the store directory on the next start.
+ */
+public class MemoryMyberryStore extends DefaultMyberryStore {
+
+  private static final Logger log = LoggerFactory.getLogger(LoggerName.STORE_LOGGER_NAME);
+
+  private volatile boolean started = false;
+
+  public MemoryMyberryStore(final StoreConfig storeConfig) throws IOException {
+    super(memoryConfig(storeConfig), storeConfig.isMemorySnapshotEnable());
+  }
+
+  /**
+   * The journal and the compaction work on the store directory, they are disabled. A segment in
+   * memory is not grown, see MemoryFile#remap.
+   */
+  private static StoreConfig memoryConfig(final StoreConfig storeConfig) {
+    storeConfig.setStoreEngine(StoreConfig.STORE_ENGINE_MEMORY);
+    storeConfig.setJournalEnable(false);
+    storeConfig.setCompactEnable(false);
+    storeConfig.setMaxFileSize(storeConfig.getFileSize());
+    return storeConfig;
+  }
+
+  @Override
+  public void start() throws Exception {
+    super.start();
+    StoreConfig storeConfig = this.getStoreConfig();
+    // a node without a quorum gets its sid from the config too, so edge nodes do not overlap
+    if (this.getMySidFromDisk() == 0 && storeConfig.getMySid() != 0) {
+      this.setMySid(storeConfig.getMySid());
+    }
+    this.started = true;
+  }
+
+  @Override
+  public boolean compact() {
+    return false;
+  }
+
+  @Override
+  public void shutdown() {
+    if (started && !this.hasShutdown() && this.getStoreConfig().isMemorySnapshotEnable()) {
+      try {
+        SnapshotResult snapshotResult = fileService.persist();
+        log.info("snapshot memory store on shutdown: {}", snapshotResult);
+      } catch (UncheckedIOException e) {
+        log.error("snapshot memory store on shutdown error: ", e);
+      }
+    }
+    super.shutdown();
+  }
+}
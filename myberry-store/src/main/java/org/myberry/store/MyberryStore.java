@@ -45,8 +45,12 @@ public interface MyberryStore {
   /** Add a component into store. */
   void addComponent(AbstractComponent abstractComponent);
 
-  /** Remove a component into store. */
-  void removeComponent(String key);
+  /**
+   * Remove a component from store, its records are dropped by a later compaction.
+   *
+   * @return false if the key does not exist
+   */
+  boolean removeComponent(String key);
 
   /** Got persistent mbid. */
   long getMbidFromDisk();
@@ -70,12 +74,23 @@ public interface MyberryStore {
   StoreConfig getStoreConfig();
 
   /**
-   * Get component map.
+   * Get component map. With the key index enabled, it only holds the components looked up by
+   * {@link #getComponent(String)}.
    *
    * @return
    */
   ConcurrentMap<String, AbstractComponent> getComponentMap();
 
+  /**
+   * Get the component of the key with one lookup.
+   *
+   * @return null if the key does not exist
+   */
+  AbstractComponent getComponent(String key);
+
+  /** Number of components in the store. */
+  int getComponentCount();
+
   /**
    * Return the current timestamp of the store.
    *
@@ -86,9 +101,28 @@ public interface MyberryStore {
   /** * Get PhysicalFile last offset. */
   int getLastOffset();
 
+  /** Get the logical offset of the last compaction, the records before it are not in order. */
+  int getCompactedOffset();
+
   /** Data file write status. */
   boolean isWriteFull(int size);
 
+  /**
+   * Grow the size of the store segments online.
+   *
+   * @param fileSize new segment size
+   * @return false if the store is already as large or the grow failed
+   */
+  boolean growFileSize(int fileSize);
+
+  /**
+   * Copy the store at this point in time, appends are held off while the segments are copied.
+   *
+   * @param storePath store path of the copy, a new node can be started with it
+   * @throws java.io.UncheckedIOException if the copy failed or its store directory exists
+   */
+  SnapshotResult snapshot(String storePath);
+
   /** Index key existence status. */
   boolean isExistKey(String key);
 
@@ -100,6 +134,16 @@ public interface MyberryStore {
    */
   byte[] getSyncByteBuffer(int offset);
 
+  /**
+   * Get a chunk of the records after the offset for ha send data, the learner asks for the next
+   * chunk from the offset it reached.
+   *
+   * @param offset
+   * @param maxSize bytes of whole records at most, one record at least
+   * @return
+   */
+  byte[] getSyncByteBuffer(int offset, int maxSize);
+
   /**
    * * Set byteBuffer for ha receive data.
    *
@@ -107,6 +151,22 @@ public interface MyberryStore {
    */
   void setSyncByteBuffer(byte[] src);
 
+  /**
+   * Get all the live components for ha send data, to a learner behind the last compaction.
+   *
+   * @param offset last offset the snapshot is sent with
+   * @return null if the store is not at the offset any more
+   */
+  byte[] getSnapshotByteBuffer(int offset);
+
+  /**
+   * Replace all the components with a snapshot received for ha.
+   *
+   * @param src
+   * @param offset last offset of the snapshot
+   */
+  void resetSyncByteBuffer(byte[] src, int offset);
+
   /** Increase mbid. */
   void incrMbid();
 
@@ -125,21 +185,30 @@ public interface MyberryStore {
   /** Flush disk. */
   void save();
 
+  /**
+   * Flush the component dirtied at offset by the flush service. In sync mode waits until a batched
+   * flush covers it.
+   *
+   * @param offset
+   * @return false if the sync flush timed out
+   */
+  boolean flush(long offset);
+
   /**
    * Update long buffer
    *
-   * @param index
+   * @param phyOffset
    * @param value
    */
-  void updateBufferLong(int index, long value);
+  void updateBufferLong(long phyOffset, long value);
 
   /**
    * Update int buffer
    *
-   * @param index
+   * @param phyOffset
    * @param value
    */
-  void updateBufferInt(int index, int value);
+  void updateBufferInt(long phyOffset, int value);
 
   /**
    * Check if the operation system page cache is busy or not.
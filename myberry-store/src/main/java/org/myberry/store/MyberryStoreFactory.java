@@ -0,0 +1,50 @@
+/*
+* MIT License
+*
+* Copyright (c) 2020 gaoyang
+*
+* Permission is hereby granted, free of charge, to any person obtaining a copy
+* of this software and associated documentation files (the "Software"), to deal
+* in the Software without restriction, including without limitation the rights
+* to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+* copies of the Software, and to permit persons to whom the Software is
+* furnished to do so, subject to the following conditions:
+
+* The above copyright notice and this permission notice shall be included in all
+* copies or substantial portions of the Software.
+
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+* IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+* AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+* LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+* OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+* SOFTWARE.
+*/
+package org.myberry.store;
+
+import org.myberry.store.config.StoreConfig;
+
+public class MyberryStoreFactory {
+
+  /**
+   * Create the store of the engine in the config: the file store, the memory store or the class
+   * name of a third-party store with a public constructor taking the config.
+   *
+   * @throws Exception if the store can not be created
+   */
+  public static MyberryStore create(final StoreConfig storeConfig) throws Exception {
+    String storeEngine = storeConfig.getStoreEngine();
+    if (storeEngine == null || StoreConfig.STORE_ENGINE_FILE.equals(storeEngine)) {
+      return new DefaultMyberryStore(storeConfig);
+    } else if (StoreConfig.STORE_ENGINE_MEMORY.equals(storeEngine)) {
+      return new MemoryMyberryStore(storeConfig);
+    }
+
+    Class<?> clazz = Class.forName(storeEngine);
+    if (!MyberryStore.class.isAssignableFrom(clazz)) {
+      throw new IllegalArgumentException("not a MyberryStore: " + storeEngine);
+    }
+    return (MyberryStore) clazz.getConstructor(StoreConfig.class).newInstance(storeConfig);
+  }
+}
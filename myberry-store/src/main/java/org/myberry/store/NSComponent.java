@@ -59,6 +59,13 @@ public class NSComponent extends AbstractComponent {
   private String key;
 
   private final Lock lock = new ReentrantLock();
+  // high water mark of currentValue persisted in the store, guarded by lock
+  private final AtomicLong reservedValue = new AtomicLong(Long.MIN_VALUE);
+  private final AtomicLong reservationSequence = new AtomicLong();
+  private final AtomicLong flushedSequence = new AtomicLong();
+  // step size adapted to the pull rate of the key, not persisted, guarded by lock
+  private volatile int effectiveStepSize;
+  private long lastSegmentTime;
 
   public long getCreateTime() {
     return createTime;
@@ -160,6 +167,42 @@ public class NSComponent extends AbstractComponent {
     return lock;
   }
 
+  public long getReservedValue() {
+    return reservedValue.get();
+  }
+
+  public void setReservedValue(long reservedValue) {
+    this.reservedValue.set(reservedValue);
+  }
+
+  public long incrementReservationSequence() {
+    return reservationSequence.incrementAndGet();
+  }
+
+  public long getReservationSequence() {
+    return reservationSequence.get();
+  }
+
+  public AtomicLong getFlushedSequence() {
+    return flushedSequence;
+  }
+
+  public int getEffectiveStepSize() {
+    return effectiveStepSize > 0 ? effectiveStepSize : stepSize;
+  }
+
+  public void setEffectiveStepSize(int effectiveStepSize) {
+    this.effectiveStepSize = effectiveStepSize;
+  }
+
+  public long getLastSegmentTime() {
+    return lastSegmentTime;
+  }
+
+  public void setLastSegmentTime(long lastSegmentTime) {
+    this.lastSegmentTime = lastSegmentTime;
+  }
+
   @Override
   public String toString() {
     return new StringBuilder() //
@@ -0,0 +1,118 @@
+/*
+* MIT License
+*
+* Copyright (c) 2020 gaoyang
+*
+* Permission is hereby granted, free of charge, to any person obtaining a copy
+* of this software and associated documentation files (the "Software"), to deal
+* in the Software without restriction, including without limitation the rights
+* to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+* copies of the Software, and to permit persons to whom the Software is
+* furnished to do so, subject to the following conditions:
+
+* The above copyright notice and this permission notice shall be included in all
+* copies or substantial portions of the Software.
+
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+* IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+* AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+* LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+* OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+* SOFTWARE.
+*/
+package org.myberry.store;
+
+/** Point-in-time copy of the store, see {@link MyberryStore#snapshot(String)}. */
+public class SnapshotResult {
+
+  private String storePath;
+  private long mbid;
+  private int lastOffset;
+  private int componentCount;
+  // bytes copied
+  private long size;
+  // time appends were held off
+  private long fenceMills;
+  private long elapsedMills;
+
+  public String getStorePath() {
+    return storePath;
+  }
+
+  public void setStorePath(String storePath) {
+    this.storePath = storePath;
+  }
+
+  public long getMbid() {
+    return mbid;
+  }
+
+  public void setMbid(long mbid) {
+    this.mbid = mbid;
+  }
+
+  public int getLastOffset() {
+    return lastOffset;
+  }
+
+  public void setLastOffset(int lastOffset) {
+    this.lastOffset = lastOffset;
+  }
+
+  public int getComponentCount() {
+    return componentCount;
+  }
+
+  public void setComponentCount(int componentCount) {
+    this.componentCount = componentCount;
+  }
+
+  public long getSize() {
+    return size;
+  }
+
+  public void setSize(long size) {
+    this.size = size;
+  }
+
+  public long getFenceMills() {
+    return fenceMills;
+  }
+
+  public void setFenceMills(long fenceMills) {
+    this.fenceMills = fenceMills;
+  }
+
+  public long getElapsedMills() {
+    return elapsedMills;
+  }
+
+  public void setElapsedMills(long elapsedMills) {
+    this.elapsedMills = elapsedMills;
+  }
+
+  /** Copy throughput in bytes per second. */
+  public long getThroughput() {
+    return size * 1000L / Math.max(1, elapsedMills);
+  }
+
+  @Override
+  public String toString() {
+    return "SnapshotResult [storePath="
+        + storePath
+        + ", mbid="
+        + mbid
+        + ", lastOffset="
+        + lastOffset
+        + ", componentCount="
+        + componentCount
+        + ", size="
+        + size
+        + ", fenceMills="
+        + fenceMills
+        + ", elapsedMills="
+        + elapsedMills
+        + "]";
+  }
+}
@@ -23,22 +23,67 @@
 */
 package org.myberry.store.config;
 
-import java.io.File;
 import org.myberry.common.annotation.ImportantField;
 
 public class StoreConfig {
 
   public static final String MYBERRY_STORE_DEFAULT_CHARSET = "UTF-8";
   public static final String MYBERRY_STORE_FILE_NAME = "myberry";
+  public static final String STORE_ENGINE_FILE = "file";
+  public static final String STORE_ENGINE_MEMORY = "memory";
 
   @ImportantField private int mySid;
 
   @ImportantField private String produceMode;
 
   private boolean alwaysFlush;
+  // async or sync, alwaysFlush=true implies sync
+  private String flushDiskType = "async";
+  private long flushIntervalMills = 500;
+  private long groupCommitIntervalMills = 10;
+  private int groupCommitBatchSize = 32;
+  private long syncFlushTimeoutMills = 5000;
+  // numbers persisted ahead per store write, 1 writes every pull
+  private int reservationSize = 1;
+  // grow or shrink the NS step size of a key to pull a segment every adaptiveStepPeriodMills
+  private boolean adaptiveStepEnable = false;
+  private long adaptiveStepPeriodMills = 1000;
+  private int adaptiveStepMaxMultiple = 64;
   private long osPageCacheBusyTimeOutMills = 1000;
+  private long mbidCheckpointIntervalMills = 1000;
+  // a flush writes only the pages of a segment written since, by msync when JNA is available
+  private boolean flushDirtyPagesEnable = true;
 
-  private int fileSize = 1024 * 1024 * 8;
+  // append counter writes to a journal instead of forcing the mapped store on flush
+  private boolean journalEnable = false;
+  private long journalCheckpointIntervalMills = 10000;
+  private long journalFileSize = 1024 * 1024 * 64;
+
+  // grown online by FileService, read by the quorum handshake
+  private volatile int fileSize = 1024 * 1024 * 8;
+  // upper bound of growing fileSize online
+  private int maxFileSize = 1024 * 1024 * 1024;
+
+  private boolean preallocateSegment = true;
+  // rewrite the live components into new segments when enough of the records are removed
+  private boolean compactEnable = true;
+  private long compactIntervalMills = 1000 * 60;
+  private double compactGarbageRatio = 0.5;
+  private int compactMinGarbageSize = 1024 * 1024;
+  // index the keys off heap, only the pulled components are kept in the component map
+  private boolean keyIndexEnable = false;
+  private int keyIndexCapacity = 1024 * 64;
+  // touch the pages of a segment when it is mapped, optionally lock them in memory
+  private boolean warmMappedFileEnable = true;
+  private int warmMappedFileParallelism =
+      Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+  private boolean mlockMappedFileEnable = false;
+
+  // file, memory or the class name of a MyberryStore, see MyberryStoreFactory
+  private String storeEngine = STORE_ENGINE_FILE;
+  // segments of the memory engine off heap, snapshot them on shutdown and restore them on start
+  private boolean memoryDirectEnable = false;
+  private boolean memorySnapshotEnable = false;
 
   @ImportantField private String storePath = System.getProperty("user.home");
 
@@ -66,6 +111,82 @@ public class StoreConfig {
     this.alwaysFlush = alwaysFlush;
   }
 
+  public String getFlushDiskType() {
+    return flushDiskType;
+  }
+
+  public void setFlushDiskType(String flushDiskType) {
+    this.flushDiskType = flushDiskType;
+  }
+
+  public boolean isSyncFlush() {
+    return alwaysFlush || "sync".equalsIgnoreCase(flushDiskType);
+  }
+
+  public long getFlushIntervalMills() {
+    return flushIntervalMills;
+  }
+
+  public void setFlushIntervalMills(long flushIntervalMills) {
+    this.flushIntervalMills = flushIntervalMills;
+  }
+
+  public long getGroupCommitIntervalMills() {
+    return groupCommitIntervalMills;
+  }
+
+  public void setGroupCommitIntervalMills(long groupCommitIntervalMills) {
+    this.groupCommitIntervalMills = groupCommitIntervalMills;
+  }
+
+  public int getGroupCommitBatchSize() {
+    return groupCommitBatchSize;
+  }
+
+  public void setGroupCommitBatchSize(int groupCommitBatchSize) {
+    this.groupCommitBatchSize = groupCommitBatchSize;
+  }
+
+  public long getSyncFlushTimeoutMills() {
+    return syncFlushTimeoutMills;
+  }
+
+  public void setSyncFlushTimeoutMills(long syncFlushTimeoutMills) {
+    this.syncFlushTimeoutMills = syncFlushTimeoutMills;
+  }
+
+  public int getReservationSize() {
+    return reservationSize;
+  }
+
+  public void setReservationSize(int reservationSize) {
+    this.reservationSize = reservationSize;
+  }
+
+  public boolean isAdaptiveStepEnable() {
+    return adaptiveStepEnable;
+  }
+
+  public void setAdaptiveStepEnable(boolean adaptiveStepEnable) {
+    this.adaptiveStepEnable = adaptiveStepEnable;
+  }
+
+  public long getAdaptiveStepPeriodMills() {
+    return adaptiveStepPeriodMills;
+  }
+
+  public void setAdaptiveStepPeriodMills(long adaptiveStepPeriodMills) {
+    this.adaptiveStepPeriodMills = adaptiveStepPeriodMills;
+  }
+
+  public int getAdaptiveStepMaxMultiple() {
+    return adaptiveStepMaxMultiple;
+  }
+
+  public void setAdaptiveStepMaxMultiple(int adaptiveStepMaxMultiple) {
+    this.adaptiveStepMaxMultiple = adaptiveStepMaxMultiple;
+  }
+
   public long getOsPageCacheBusyTimeOutMills() {
     return osPageCacheBusyTimeOutMills;
   }
@@ -74,6 +195,70 @@ public class StoreConfig {
     this.osPageCacheBusyTimeOutMills = osPageCacheBusyTimeOutMills;
   }
 
+  public long getMbidCheckpointIntervalMills() {
+    return mbidCheckpointIntervalMills;
+  }
+
+  public void setMbidCheckpointIntervalMills(long mbidCheckpointIntervalMills) {
+    this.mbidCheckpointIntervalMills = mbidCheckpointIntervalMills;
+  }
+
+  public boolean isFlushDirtyPagesEnable() {
+    return flushDirtyPagesEnable;
+  }
+
+  public void setFlushDirtyPagesEnable(boolean flushDirtyPagesEnable) {
+    this.flushDirtyPagesEnable = flushDirtyPagesEnable;
+  }
+
+  public boolean isJournalEnable() {
+    return journalEnable;
+  }
+
+  public void setJournalEnable(boolean journalEnable) {
+    this.journalEnable = journalEnable;
+  }
+
+  public long getJournalCheckpointIntervalMills() {
+    return journalCheckpointIntervalMills;
+  }
+
+  public void setJournalCheckpointIntervalMills(long journalCheckpointIntervalMills) {
+    this.journalCheckpointIntervalMills = journalCheckpointIntervalMills;
+  }
+
+  public long getJournalFileSize() {
+    return journalFileSize;
+  }
+
+  public void setJournalFileSize(long journalFileSize) {
+    this.journalFileSize = journalFileSize;
+  }
+
+  public boolean isWarmMappedFileEnable() {
+    return warmMappedFileEnable;
+  }
+
+  public void setWarmMappedFileEnable(boolean warmMappedFileEnable) {
+    this.warmMappedFileEnable = warmMappedFileEnable;
+  }
+
+  public int getWarmMappedFileParallelism() {
+    return warmMappedFileParallelism;
+  }
+
+  public void setWarmMappedFileParallelism(int warmMappedFileParallelism) {
+    this.warmMappedFileParallelism = warmMappedFileParallelism;
+  }
+
+  public boolean isMlockMappedFileEnable() {
+    return mlockMappedFileEnable;
+  }
+
+  public void setMlockMappedFileEnable(boolean mlockMappedFileEnable) {
+    this.mlockMappedFileEnable = mlockMappedFileEnable;
+  }
+
   public String getStorePath() {
     return storePath;
   }
@@ -86,11 +271,103 @@ public class StoreConfig {
     this.fileSize = fileSize;
   }
 
+  public int getMaxFileSize() {
+    return maxFileSize;
+  }
+
+  public void setMaxFileSize(int maxFileSize) {
+    this.maxFileSize = maxFileSize;
+  }
+
+  public boolean isPreallocateSegment() {
+    return preallocateSegment;
+  }
+
+  public void setPreallocateSegment(boolean preallocateSegment) {
+    this.preallocateSegment = preallocateSegment;
+  }
+
+  public boolean isCompactEnable() {
+    return compactEnable;
+  }
+
+  public void setCompactEnable(boolean compactEnable) {
+    this.compactEnable = compactEnable;
+  }
+
+  public long getCompactIntervalMills() {
+    return compactIntervalMills;
+  }
+
+  public void setCompactIntervalMills(long compactIntervalMills) {
+    this.compactIntervalMills = compactIntervalMills;
+  }
+
+  public double getCompactGarbageRatio() {
+    return compactGarbageRatio;
+  }
+
+  public void setCompactGarbageRatio(double compactGarbageRatio) {
+    this.compactGarbageRatio = compactGarbageRatio;
+  }
+
+  public int getCompactMinGarbageSize() {
+    return compactMinGarbageSize;
+  }
+
+  public void setCompactMinGarbageSize(int compactMinGarbageSize) {
+    this.compactMinGarbageSize = compactMinGarbageSize;
+  }
+
+  public boolean isKeyIndexEnable() {
+    return keyIndexEnable;
+  }
+
+  public void setKeyIndexEnable(boolean keyIndexEnable) {
+    this.keyIndexEnable = keyIndexEnable;
+  }
+
+  public int getKeyIndexCapacity() {
+    return keyIndexCapacity;
+  }
+
+  public void setKeyIndexCapacity(int keyIndexCapacity) {
+    this.keyIndexCapacity = keyIndexCapacity;
+  }
+
+  public String getStoreEngine() {
+    return storeEngine;
+  }
+
+  public void setStoreEngine(String storeEngine) {
+    this.storeEngine = storeEngine;
+  }
+
+  public boolean isMemoryEngine() {
+    return STORE_ENGINE_MEMORY.equals(storeEngine);
+  }
+
+  public boolean isMemoryDirectEnable() {
+    return memoryDirectEnable;
+  }
+
+  public void setMemoryDirectEnable(boolean memoryDirectEnable) {
+    this.memoryDirectEnable = memoryDirectEnable;
+  }
+
+  public boolean isMemorySnapshotEnable() {
+    return memorySnapshotEnable;
+  }
+
+  public void setMemorySnapshotEnable(boolean memorySnapshotEnable) {
+    this.memorySnapshotEnable = memorySnapshotEnable;
+  }
+
   public void setStorePath(String storePath) {
     this.storePath = storePath;
   }
 
   public String getStoreRootDir() {
-    return storePath + File.separator + ".myberry";
+    return StorePathConfigHelper.getStoreRootDir(storePath);
   }
 }
@@ -27,11 +27,36 @@ import java.io.File;
 
 public class StorePathConfigHelper {
 
+  /** Root dir of the store under the store path, see {@link StoreConfig#getStoreRootDir()}. */
+  public static String getStoreRootDir(final String storePath) {
+    return storePath + File.separator + ".myberry";
+  }
+
+  public static String getSnapshotPath(final String rootDir) {
+    return rootDir + File.separator + "snapshot";
+  }
+
   public static String getLockFile(final String rootDir) {
     return rootDir + File.separator + "lock";
   }
 
+  public static String getJournalFile(final String rootDir) {
+    return rootDir + File.separator + "journal";
+  }
+
+  public static String getQuarantinePath(final String rootDir) {
+    return rootDir + File.separator + "quarantine";
+  }
+
   public static String getStoreFilePath(final String rootDir) {
     return rootDir + File.separator + "store";
   }
+
+  public static String getCompactFilePath(final String rootDir) {
+    return rootDir + File.separator + "store.compact";
+  }
+
+  public static String getRetiredFilePath(final String rootDir) {
+    return rootDir + File.separator + "store.retired";
+  }
 }
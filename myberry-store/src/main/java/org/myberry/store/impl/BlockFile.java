@@ -26,14 +26,11 @@ package org.myberry.store.impl;
 import java.io.File;
 import java.io.IOException;
 import java.nio.ByteBuffer;
-import java.nio.MappedByteBuffer;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.ConcurrentMap;
-import org.myberry.common.ProduceMode;
 import org.myberry.store.AbstractComponent;
 import org.myberry.store.CRComponent;
-import org.myberry.store.NSComponent;
 import org.myberry.store.common.LoggerName;
 import org.myberry.store.config.StoreConfig;
 import org.myberry.store.config.StorePathConfigHelper;
@@ -41,47 +38,152 @@ import org.myberry.store.util.MappingUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * One segment of the store. Every segment starts with a {@link StoreHeader} whose begin and end
+ * phyoffset bound its records, the other header fields are only used in the first segment. The
+ * phyOffset of a component is the generation of the segments in the high 16 bits, its segment
+ * index in the next 16 bits and its position in the low 32 bits, so the offsets of the first
+ * segment of a store which was never compacted are plain positions.
+ */
 public class BlockFile {
 
   private static final Logger log = LoggerFactory.getLogger(LoggerName.STORE_LOGGER_NAME);
 
   private final StoreConfig storeConfig;
+  private final int index;
   private final MappedFile mappedFile;
-  private final MappedByteBuffer mappedByteBuffer;
+  // replaced when the segment grows, see grow(int)
+  private volatile ByteBuffer mappedByteBuffer;
   private final StoreHeader storeHeader;
   private final StoreComponent storeComponent;
 
-  public BlockFile(final StoreConfig storeConfig) throws IOException {
-    String storeFileName =
-        StorePathConfigHelper.getStoreFilePath(storeConfig.getStoreRootDir())
-            + File.separator
-            + StoreConfig.MYBERRY_STORE_FILE_NAME;
+  // header written before layout version 2, the records have no checksum
+  private boolean legacy;
+  // header checksum mismatch, the end of the records is found by scanning them
+  private boolean recover;
+
+  public BlockFile(
+      final StoreConfig storeConfig, final int index, final StoreComponent storeComponent)
+      throws IOException {
+    this(
+        storeConfig,
+        StorePathConfigHelper.getStoreFilePath(storeConfig.getStoreRootDir()),
+        index,
+        storeComponent);
+  }
 
+  /**
+   * @param storePath directory of the segment, a compaction writes to another one
+   * @param storeComponent target of the loaded components, shared by the segments
+   */
+  public BlockFile(
+      final StoreConfig storeConfig,
+      final String storePath,
+      final int index,
+      final StoreComponent storeComponent)
+      throws IOException {
     this.storeConfig = storeConfig;
-    this.mappedFile = new MappedFile(storeFileName, storeConfig.getFileSize());
+    this.index = index;
+    String fileName = getFileName(storePath, index);
+    this.mappedFile =
+        storeConfig.isMemoryEngine()
+            ? new MemoryFile(
+                fileName,
+                storeConfig.getFileSize(),
+                storeConfig.isMemoryDirectEnable(),
+                storeConfig.isMemorySnapshotEnable())
+            : new MappedFile(
+                fileName, storeConfig.getFileSize(), storeConfig.isFlushDirtyPagesEnable());
     this.mappedByteBuffer = this.mappedFile.getMappedByteBuffer();
 
-    ByteBuffer byteBuffer = mappedByteBuffer.slice();
-    this.storeHeader = new StoreHeader(byteBuffer);
-    this.storeComponent = new StoreComponent(mappedByteBuffer);
+    this.storeHeader = new StoreHeader(mappedByteBuffer.duplicate());
+    this.storeComponent = storeComponent;
+  }
+
+  public static String getFileName(final StoreConfig storeConfig, int index) {
+    return getFileName(
+        StorePathConfigHelper.getStoreFilePath(storeConfig.getStoreRootDir()), index);
+  }
+
+  public static String getFileName(final String storePath, int index) {
+    String fileName = storePath + File.separator + StoreConfig.MYBERRY_STORE_FILE_NAME;
+    return index == 0 ? fileName : fileName + "." + index;
+  }
+
+  public static long toPhyOffset(int index, int position) {
+    return toPhyOffset(0, index, position);
+  }
+
+  public static long toPhyOffset(int generation, int index, int position) {
+    return ((long) (generation & 0xFFFF) << 48) | ((long) (index & 0xFFFF) << 32) | position;
+  }
+
+  public static int getGeneration(long phyOffset) {
+    return (int) (phyOffset >>> 48);
+  }
+
+  public static int getIndex(long phyOffset) {
+    return (int) (phyOffset >>> 32) & 0xFFFF;
+  }
+
+  public static int getPosition(long phyOffset) {
+    return (int) phyOffset;
   }
 
   public void addComponent(final AbstractComponent abstractComponent) {
-    abstractComponent.setPhyOffset(mappedByteBuffer.position());
-    storeComponent.write(abstractComponent);
+    this.addRecord(abstractComponent);
     storeComponent.addMap(abstractComponent);
+  }
+
+  /** Append the record of the component without adding it to the component map. */
+  public void addRecord(final AbstractComponent abstractComponent) {
+    abstractComponent.setPhyOffset(
+        toPhyOffset(this.getGeneration(), index, mappedByteBuffer.position()));
+    int position = mappedByteBuffer.position();
+    storeComponent.write(abstractComponent, mappedByteBuffer);
+    mappedFile.markDirty(position, mappedByteBuffer.position() - position);
 
     if (storeHeader.getBeginPhyoffset() == 0) {
       storeHeader.setBeginPhyoffset(StoreHeader.STORE_HEADER_SIZE);
     }
     storeHeader.setEndPhyoffset(mappedByteBuffer.position());
-    storeHeader.incrComponentCount();
+  }
 
-    mappedFile.flush();
+  /** Decode the record at the position, with the current values of its counters. */
+  public AbstractComponent getComponent(int position) {
+    ByteBuffer byteBuffer = mappedByteBuffer.duplicate();
+    byteBuffer.position(position);
+    return StoreComponent.decode(storeHeader.getProduceMode(), byteBuffer);
+  }
+
+  /** Length of the record at the position, with the checksum. */
+  public int getLength(int position) {
+    return StoreComponent.getLength(
+        StoreComponent.getCodec(storeHeader.getProduceMode()), mappedByteBuffer, position);
+  }
+
+  /** Whether the record at the position has the key, see {@link KeyIndex}. */
+  public boolean keyEquals(int position, byte[] key) {
+    return StoreComponent.keyEquals(
+        StoreComponent.getCodec(storeHeader.getProduceMode()), mappedByteBuffer, position, key);
+  }
+
+  /** Mark the record at the position removed, the status is not covered by the checksum. */
+  public void setDeleted(int position) {
+    StoreComponent.setStatus(mappedByteBuffer, position, AbstractComponent.STATUS_DELETED);
+    mappedFile.markDirty(position + CRComponent.statusHeader, 4);
   }
 
   public void loadHeader() {
     storeHeader.load();
+    if (!this.isEmpty()) {
+      if (storeHeader.getVersion() != StoreHeader.STORE_VERSION) {
+        this.legacy = true;
+      } else if (!storeHeader.isChecksumValid()) {
+        log.warn("myberry store {} header checksum mismatch, recover it from the records", index);
+        this.recover = true;
+      }
+    }
 
     long currentTimeMillis = System.currentTimeMillis();
     storeHeader.setBeginTimestamp(currentTimeMillis);
@@ -100,44 +202,151 @@ public class BlockFile {
       return;
     }
 
-    int position = this.mappedByteBuffer.position();
-    if (position < this.storeHeader.getBeginPhyoffset()) {
-      createNewComponent();
-      loadComponent();
-    } else if (position == this.storeHeader.getBeginPhyoffset()) {
-      createNewComponent();
-    } else {
-      log.warn(
-          "myberry store IndexOutOfBoundsException: mappedByteBuffer position={}, lastOffset={}",
-          position,
-          this.storeHeader.getEndPhyoffset());
-      System.exit(1);
+    int from = StoreHeader.STORE_HEADER_SIZE;
+    int to = recover ? mappedByteBuffer.capacity() : (int) this.storeHeader.getEndPhyoffset();
+    ComponentLoader componentLoader =
+        new ComponentLoader(
+            storeComponent, storeHeader.getProduceMode(), this.getGeneration(), index);
+    int end = componentLoader.load(mappedByteBuffer, from, to, recover);
+    if (end != to && !recover) {
+      log.warn("myberry store {} truncated: lastOffset={}, endPhyoffset={}", index, end, to);
+    }
+    storeHeader.setEndPhyoffset(end);
+    mappedByteBuffer.position(end);
+
+    for (int offset : componentLoader.getQuarantined()) {
+      this.quarantine(offset);
+    }
+  }
+
+  /** Copy a record with a bad checksum out of the store for inspection. */
+  private void quarantine(int offset) {
+    int length =
+        StoreComponent.getLength(
+            StoreComponent.getCodec(storeHeader.getProduceMode()), mappedByteBuffer, offset);
+    File file =
+        new File(
+            StorePathConfigHelper.getQuarantinePath(storeConfig.getStoreRootDir()),
+            new File(getFileName(storeConfig, index)).getName() + "." + offset);
+    try {
+      MappedFile.ensureDirOK(file.getParent());
+      Files.write(
+          file.toPath(), StoreComponent.get(mappedByteBuffer, offset, new byte[length]));
+    } catch (IOException e) {
+      log.error("quarantine {} error: ", file, e);
+    }
+  }
+
+  /** Decode the records of a legacy segment, they have no checksum. */
+  public List<AbstractComponent> loadLegacyComponents() {
+    List<AbstractComponent> list = new ArrayList<>();
+    ByteBuffer byteBuffer = mappedByteBuffer.duplicate();
+    byteBuffer.position((int) storeHeader.getBeginPhyoffset());
+    byteBuffer.limit((int) storeHeader.getEndPhyoffset());
+    try {
+      while (byteBuffer.hasRemaining()) {
+        list.add(StoreComponent.decodeBody(storeHeader.getProduceMode(), byteBuffer));
+      }
+    } catch (RuntimeException e) {
+      log.error("broken legacy component record at offset: {}", byteBuffer.position(), e);
+    }
+    return list;
+  }
+
+  public boolean isLegacy() {
+    return legacy;
+  }
+
+  /**
+   * Map the segment with a larger size. Appends must be held off by the caller, counter writes may
+   * go on through the previous mapping.
+   */
+  public void grow(int fileSize) throws IOException {
+    if (fileSize <= mappedByteBuffer.capacity()) {
+      return;
     }
+    int position = mappedByteBuffer.position();
+    ByteBuffer byteBuffer = mappedFile.remap(fileSize);
+    byteBuffer.position(position);
+    storeHeader.remap(byteBuffer.duplicate());
+    this.mappedByteBuffer = byteBuffer;
+  }
+
+  public int warm(int parallelism) {
+    return mappedFile.warm(parallelism);
   }
 
-  private void createNewComponent() {
-    AbstractComponent abstractComponent =
-        MappingUtils.getComponentMapping(storeHeader.getProduceMode());
+  public boolean mlock() {
+    return mappedFile.mlock();
+  }
 
+  /**
+   * Copy the records of the segment to the file. Appends must be held off by the caller, the
+   * counters of the live records at the positions are copied again afterwards, see {@link
+   * StoreComponent#copyFields}. The header of the copy is sealed, and the copy of the first
+   * segment is left without a sid, so a new node can be started from it.
+   *
+   * @return bytes copied
+   */
+  public long transferTo(final String fileName, long[] phyOffsets) throws IOException {
+    storeHeader.checkpointMbid();
+    MappedFile target = new MappedFile(fileName, mappedByteBuffer.capacity());
     try {
-      storeComponent.load(abstractComponent);
-      storeComponent.addMap(abstractComponent);
-      log.info("add cache success: key = {}", abstractComponent.getKey());
-    } catch (Exception e) {
-      log.error("createNewComponent error: ", e.getMessage());
+      long size = mappedFile.transferTo(mappedByteBuffer.position(), target.getFileChannel());
+      ComponentCodec<? extends AbstractComponent> codec =
+          StoreComponent.getCodec(storeHeader.getProduceMode());
+      ByteBuffer dest = target.getMappedByteBuffer();
+      for (long phyOffset : phyOffsets) {
+        if (getIndex(phyOffset) == index) {
+          StoreComponent.copyFields(codec, mappedByteBuffer, dest, getPosition(phyOffset));
+        }
+      }
+
+      StoreHeader header = new StoreHeader(dest);
+      if (index == 0) {
+        header.setMySid(0);
+      }
+      header.seal();
+      target.flush();
+      return size;
+    } finally {
+      target.destroy();
     }
-    log.debug("load: {}", abstractComponent);
+  }
+
+  public void flush() {
+    this.seal();
+    mappedFile.flush();
   }
 
   public void save() {
+    storeHeader.checkpointMbid();
+    this.seal();
     mappedFile.flush();
   }
 
   public void unload() {
+    storeHeader.checkpointMbid();
     storeHeader.setEndTimestamp(System.currentTimeMillis());
+    if (!legacy) {
+      // the version of a legacy header would be stamped over its record data
+      storeHeader.seal();
+    }
     mappedFile.destroy();
   }
 
+  /** Seal the header, its page is only written by a flush if a field changed since. */
+  private void seal() {
+    if (!legacy && storeHeader.seal()) {
+      mappedFile.markDirty(0, StoreHeader.STORE_HEADER_SIZE);
+    }
+  }
+
+  /** Number of pages the next flush writes, see {@link MappedFile#markDirty(int, int)}. */
+  public int getDirtyPageCount() {
+    return mappedFile.getDirtyPageCount();
+  }
+
   public boolean isWriteFull(int size) {
     if (mappedByteBuffer.capacity() - mappedByteBuffer.position() >= size) {
       return false;
@@ -146,12 +355,19 @@ public class BlockFile {
     }
   }
 
-  public void updateBufferLong(int index, long value) {
-    mappedByteBuffer.putLong(index, value);
+  /** Whether no component has ever been written to this segment. */
+  public boolean isEmpty() {
+    return storeHeader.getBeginPhyoffset() == 0;
+  }
+
+  public void updateBufferLong(int position, long value) {
+    mappedByteBuffer.putLong(position, value);
+    mappedFile.markDirty(position, 8);
   }
 
-  public void updateBufferInt(int index, int value) {
-    mappedByteBuffer.putInt(index, value);
+  public void updateBufferInt(int position, int value) {
+    mappedByteBuffer.putInt(position, value);
+    mappedFile.markDirty(position, 4);
   }
 
   public long getMbid() {
@@ -174,98 +390,110 @@ public class BlockFile {
     return storeHeader.getComponentCount();
   }
 
+  public int getFileSize() {
+    return storeHeader.getFileSize();
+  }
+
+  public void setFileSize(int fileSize) {
+    storeHeader.setFileSize(fileSize);
+  }
+
   public int getProduceMode() {
     return storeHeader.getProduceMode();
   }
 
-  public boolean isExistKey(String key) {
-    return storeComponent.isExistKey(key);
+  public void setProduceMode(int produceMode) {
+    storeHeader.setProduceMode(produceMode);
   }
 
   public void incrMbid() {
     storeHeader.incrMbid();
   }
 
-  public int getLastOffset() {
-    return mappedByteBuffer.position();
+  public void checkpointMbid() {
+    storeHeader.checkpointMbid();
   }
 
-  public ConcurrentMap<String, AbstractComponent> getComponentMap() {
-    return storeComponent.getComponentMap();
+  public void incrComponentCount() {
+    storeHeader.incrComponentCount();
   }
 
-  public byte[] getSyncByteBuffer(List<AbstractComponent> abstractComponents, int bufferSize) {
-    ByteBuffer byteBuffer = ByteBuffer.allocate(bufferSize);
-    for (AbstractComponent abstractComponent : abstractComponents) {
-      storeComponent.write(abstractComponent, byteBuffer);
-    }
-    return byteBuffer.array();
-  }
-
-  public byte[] getComponentByteArray(int offset) {
-    byte[] byteArray =
-        StoreComponent.get(
-            this.storeHeader.getByteBuffer(),
-            offset,
-            new byte[mappedByteBuffer.position() - offset]);
-    List<AbstractComponent> list = getComponentByteBuffer(byteArray);
-    for (AbstractComponent abstractComponent : list) {
-      if (getProduceMode() == ProduceMode.CR.getProduceCode()) {
-        ((CRComponent) abstractComponent).setIncrNumber(0);
-      } else if (getProduceMode() == ProduceMode.NS.getProduceCode()) {
-        NSComponent nsc = (NSComponent) abstractComponent;
-        nsc.setCurrentValue(nsc.getInitValue());
-      }
-    }
+  public void decrComponentCount() {
+    storeHeader.decrComponentCount();
+  }
 
-    return getSyncByteBuffer(list, byteArray.length);
+  public int getIndex() {
+    return index;
   }
 
-  public List<AbstractComponent> getComponentByteBuffer(byte[] src) {
-    try {
-      List<AbstractComponent> list = new ArrayList<>();
-      ByteBuffer byteBuffer = ByteBuffer.wrap(src);
-
-      do {
-        AbstractComponent abstractComponent =
-            MappingUtils.getComponentMapping(storeHeader.getProduceMode());
-        storeComponent.load(abstractComponent, byteBuffer);
-        list.add(abstractComponent);
-      } while (byteBuffer.position() != byteBuffer.limit());
-
-      return list;
-    } catch (Exception e) {
-      log.error("getComponentByteBuffer error: ", e.getMessage());
-    }
+  public int getGeneration() {
+    return storeHeader.getGeneration();
+  }
 
-    return null;
+  public void setGeneration(int generation) {
+    storeHeader.setGeneration(generation);
   }
 
-  public void setComponentByteBuffer(byte[] src) {
-    this.storeHeader.setBeginPhyoffset(mappedByteBuffer.position());
-    this.storeHeader.getByteBuffer().position(mappedByteBuffer.position());
-    StoreComponent.put(this.storeHeader.getByteBuffer(), this.getLastOffset(), src);
-    mappedFile.flush();
-    this.loadComponent();
+  public int getCompactedSize() {
+    return storeHeader.getCompactedSize();
+  }
+
+  public int getCompactedOffset() {
+    return storeHeader.getCompactedOffset();
+  }
+
+  /** Keep the records dropped by a compaction in the logical offset, see FileService. */
+  public void setCompacted(int compactedSize, int compactedOffset) {
+    storeHeader.setCompactedSize(compactedSize);
+    storeHeader.setCompactedOffset(compactedOffset);
+  }
+
+  /** Take the fields of the first segment of the store being rewritten. */
+  public void copyHeader(final BlockFile blockFile) {
+    blockFile.checkpointMbid();
+    storeHeader.setMbid(blockFile.getMbid());
+    storeHeader.setEpoch(blockFile.getEpoch());
+    storeHeader.setMaxSid(blockFile.getMaxSid());
+    storeHeader.setMySid(blockFile.getMySid());
+    storeHeader.setComponentCount(blockFile.getComponentCount());
+    storeHeader.setProduceMode(blockFile.getProduceMode());
+    storeHeader.setFileSize(blockFile.getFileSize());
+  }
+
+  public int getLastOffset() {
+    return mappedByteBuffer.position();
+  }
+
+  /** Bytes of the component records in this segment. */
+  public int getDataSize() {
+    return mappedByteBuffer.position() - StoreHeader.STORE_HEADER_SIZE;
+  }
+
+  /** Copy the bytes in [from, to) of the segment to the buffer in bulk. */
+  public void getBytes(int from, int to, ByteBuffer dest) {
+    ByteBuffer byteBuffer = mappedByteBuffer.duplicate();
+    byteBuffer.limit(to);
+    byteBuffer.position(from);
+    dest.put(byteBuffer);
   }
 
   public void setMySid(int mySid) {
     this.storeHeader.setMySid(mySid);
-    mappedFile.flush();
+    this.flush();
   }
 
   public void setMaxSid(int maxSid) {
     this.storeHeader.setMaxSid(maxSid);
-    mappedFile.flush();
+    this.flush();
   }
 
   public void setEpoch(long epoch) {
     this.storeHeader.setEpoch(epoch);
-    mappedFile.flush();
+    this.flush();
   }
 
   public void setComponentCount(int componentCount) {
     this.storeHeader.setComponentCount(componentCount);
-    mappedFile.flush();
+    this.flush();
   }
 }
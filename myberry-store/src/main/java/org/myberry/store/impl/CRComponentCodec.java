@@ -0,0 +1,115 @@
+/*
+* MIT License
+*
+* Copyright (c) 2020 gaoyang
+*
+* Permission is hereby granted, free of charge, to any person obtaining a copy
+* of this software and associated documentation files (the "Software"), to deal
+* in the Software without restriction, including without limitation the rights
+* to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+* copies of the Software, and to permit persons to whom the Software is
+* furnished to do so, subject to the following conditions:
+
+* The above copyright notice and this permission notice shall be included in all
+* copies or substantial portions of the Software.
+
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+* IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+* AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+* LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+* OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+* SOFTWARE.
+*/
+package org.myberry.store.impl;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+import org.myberry.store.CRComponent;
+
+/** Layout: createTime, updateTime, phyOffset, incrNumber, status, key, expression. */
+public class CRComponentCodec implements ComponentCodec<CRComponent> {
+
+  private static final int KEY_LENGTH_HEADER = CRComponent.statusHeader + 4;
+
+  @Override
+  public void decode(ByteBuffer byteBuffer, CRComponent component) {
+    component.setCreateTime(byteBuffer.getLong());
+    component.setUpdateTime(byteBuffer.getLong());
+    component.setPhyOffset(byteBuffer.getLong());
+    component.setIncrNumber(byteBuffer.getLong());
+    component.setStatus(byteBuffer.getInt());
+
+    int keyLength = byteBuffer.getInt();
+    component.setKeyLength(keyLength);
+    component.setKey(getString(byteBuffer, keyLength));
+
+    int expressionLength = byteBuffer.getInt();
+    component.setExpressionLength(expressionLength);
+    component.setExpression(getString(byteBuffer, expressionLength));
+  }
+
+  @Override
+  public void encode(CRComponent component, ByteBuffer byteBuffer) {
+    byteBuffer.putLong(component.getCreateTime());
+    byteBuffer.putLong(component.getUpdateTime());
+    byteBuffer.putLong(component.getPhyOffset());
+    byteBuffer.putLong(component.getIncrNumber());
+    byteBuffer.putInt(component.getStatus());
+    byteBuffer.putInt(component.getKeyLength());
+    byteBuffer.put(component.getKey().getBytes(StandardCharsets.UTF_8));
+    byteBuffer.putInt(component.getExpressionLength());
+    byteBuffer.put(component.getExpression().getBytes(StandardCharsets.UTF_8));
+  }
+
+  @Override
+  public int getLength(ByteBuffer byteBuffer, int offset) {
+    int keyLength = byteBuffer.getInt(offset + KEY_LENGTH_HEADER);
+    int expressionLength = byteBuffer.getInt(offset + KEY_LENGTH_HEADER + 4 + keyLength);
+    return CRComponent.FIXED_FIELD_SIZE + keyLength + expressionLength;
+  }
+
+  @Override
+  public void checksum(ByteBuffer byteBuffer, int offset, int length, CRC32 crc32) {
+    StoreComponent.update(
+        crc32,
+        byteBuffer,
+        offset + CRComponent.createTimeHeader,
+        offset + CRComponent.updateTimeHeader);
+    StoreComponent.update(
+        crc32,
+        byteBuffer,
+        offset + CRComponent.phyOffsetHeader,
+        offset + CRComponent.incrNumberHeader);
+    StoreComponent.update(crc32, byteBuffer, offset + KEY_LENGTH_HEADER, offset + length);
+  }
+
+  @Override
+  public int getLength(CRComponent component) {
+    return CRComponent.FIXED_FIELD_SIZE
+        + component.getKeyLength()
+        + component.getExpressionLength();
+  }
+
+  @Override
+  public int getKeyLengthHeader() {
+    return KEY_LENGTH_HEADER;
+  }
+
+  @Override
+  public void resetCounters(ByteBuffer byteBuffer, int offset) {
+    byteBuffer.putLong(offset + CRComponent.incrNumberHeader, 0L);
+  }
+
+  @Override
+  public CRComponent newComponent() {
+    return new CRComponent();
+  }
+
+  static String getString(ByteBuffer byteBuffer, int length) {
+    byte[] dest = new byte[length];
+    byteBuffer.get(dest);
+    return new String(dest, StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,80 @@
+/*
+* MIT License
+*
+* Copyright (c) 2020 gaoyang
+*
+* Permission is hereby granted, free of charge, to any person obtaining a copy
+* of this software and associated documentation files (the "Software"), to deal
+* in the Software without restriction, including without limitation the rights
+* to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+* copies of the Software, and to permit persons to whom the Software is
+* furnished to do so, subject to the following conditions:
+
+* The above copyright notice and this permission notice shall be included in all
+* copies or substantial portions of the Software.
+
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+* IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+* AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+* LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+* OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+* SOFTWARE.
+*/
+package org.myberry.store.impl;
+
+import org.myberry.common.ServiceThread;
+import org.myberry.store.DefaultMyberryStore;
+import org.myberry.store.common.LoggerName;
+import org.myberry.store.config.StoreConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Periodically compacts the store when the removed components and their tombstones take more than
+ * {@link StoreConfig#getCompactGarbageRatio()} of the record bytes.
+ */
+public class CompactService extends ServiceThread {
+
+  private static final Logger log = LoggerFactory.getLogger(LoggerName.STORE_LOGGER_NAME);
+
+  private final StoreConfig storeConfig;
+  private final FileService fileService;
+
+  public CompactService(final DefaultMyberryStore myberryStore, final FileService fileService) {
+    this.storeConfig = myberryStore.getStoreConfig();
+    this.fileService = fileService;
+  }
+
+  private void compactIfNeeded() {
+    long garbageSize = fileService.getGarbageSize();
+    if (garbageSize < storeConfig.getCompactMinGarbageSize()
+        || garbageSize < fileService.getDataSize() * storeConfig.getCompactGarbageRatio()) {
+      return;
+    }
+
+    log.info("compact store, garbage size: {}", garbageSize);
+    fileService.compact();
+  }
+
+  @Override
+  public void run() {
+    log.info("{} service started", this.getServiceName());
+
+    while (!this.isStopped()) {
+      this.waitForRunning(storeConfig.getCompactIntervalMills());
+      try {
+        this.compactIfNeeded();
+      } catch (Exception e) {
+        log.warn("{} service has exception. ", this.getServiceName(), e);
+      }
+    }
+
+    log.info("{} service end", this.getServiceName());
+  }
+
+  @Override
+  public String getServiceName() {
+    return CompactService.class.getSimpleName();
+  }
+}
@@ -0,0 +1,93 @@
+/*
+* MIT License
+*
+* Copyright (c) 2020 gaoyang
+*
+* Permission is hereby granted, free of charge, to any person obtaining a copy
+* of this software and associated documentation files (the "Software"), to deal
+* in the Software without restriction, including without limitation the rights
+* to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+* copies of the Software, and to permit persons to whom the Software is
+* furnished to do so, subject to the following conditions:
+
+* The above copyright notice and this permission notice shall be included in all
+* copies or substantial portions of the Software.
+
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+* IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+* AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+* LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+* OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+* SOFTWARE.
+*/
+package org.myberry.store.impl;
+
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32;
+import org.myberry.store.AbstractComponent;
+
+/**
+ * Reads and writes the fixed layout of one component type with bulk buffer operations.
+ *
+ * @param <T> component type
+ */
+public interface ComponentCodec<T extends AbstractComponent> {
+
+  /**
+   * Read a component from the current position of the buffer.
+   *
+   * @param byteBuffer source buffer, its position is advanced past the component
+   * @param component the component to fill
+   */
+  void decode(ByteBuffer byteBuffer, T component);
+
+  /**
+   * Write a component at the current position of the buffer.
+   *
+   * @param component the component
+   * @param byteBuffer target buffer, its position is advanced past the component
+   */
+  void encode(T component, ByteBuffer byteBuffer);
+
+  /**
+   * Length of the record at offset, read from its length fields.
+   *
+   * @param byteBuffer source buffer
+   * @param offset absolute offset of the record
+   * @return record length in bytes
+   */
+  int getLength(ByteBuffer byteBuffer, int offset);
+
+  /**
+   * Update the checksum with the fields of the record at offset that are not rewritten in place,
+   * the counters and the status are left out.
+   *
+   * @param byteBuffer source buffer
+   * @param offset absolute offset of the record
+   * @param length record length in bytes, without the checksum
+   * @param crc32 checksum to update
+   */
+  void checksum(ByteBuffer byteBuffer, int offset, int length, CRC32 crc32);
+
+  /**
+   * Length of the record of the component.
+   *
+   * @param component the component
+   * @return record length in bytes
+   */
+  int getLength(T component);
+
+  /** Offset of the key length field in a record, the key bytes follow it. */
+  int getKeyLengthHeader();
+
+  /**
+   * Reset the counters of the record at offset to their initial values, as a learner takes them.
+   *
+   * @param byteBuffer target buffer
+   * @param offset absolute offset of the record
+   */
+  void resetCounters(ByteBuffer byteBuffer, int offset);
+
+  T newComponent();
+}
@@ -0,0 +1,267 @@
+/*
+* MIT License
+*
+* Copyright (c) 2020 gaoyang
+*
+* Permission is hereby granted, free of charge, to any person obtaining a copy
+* of this software and associated documentation files (the "Software"), to deal
+* in the Software without restriction, including without limitation the rights
+* to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+* copies of the Software, and to permit persons to whom the Software is
+* furnished to do so, subject to the following conditions:
+
+* The above copyright notice and this permission notice shall be included in all
+* copies or substantial portions of the Software.
+
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+* IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+* AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+* LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+* OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+* SOFTWARE.
+*/
+package org.myberry.store.impl;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import org.myberry.store.AbstractComponent;
+import org.myberry.store.common.LoggerName;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Loads the component records of a range. Record boundaries are scanned iteratively from the
+ * length fields, then the checksums are verified and the records are decoded in parallel on the
+ * common fork-join pool and added to the component map in bulk. When the keys are indexed off
+ * heap, only the keys of the records are hashed into the {@link KeyIndex}, nothing is decoded.
+ *
+ * <p>Removed components and their tombstones are skipped. A record with a bad checksum is
+ * quarantined: it is left out of the component map and its offset is reported by {@link
+ * #getQuarantined()}. In recover mode, used when the header of the segment cannot be trusted, the
+ * range ends at the first bad record instead.
+ */
+public class ComponentLoader {
+
+  private static final Logger log = LoggerFactory.getLogger(LoggerName.STORE_LOGGER_NAME);
+
+  private static final int DECODE_THRESHOLD = 4096;
+
+  private final StoreComponent storeComponent;
+  private final int produceMode;
+  private final int generation;
+  private final int index;
+  private final ComponentCodec<? extends AbstractComponent> codec;
+  private final List<Integer> quarantined = new ArrayList<>();
+
+  /**
+   * @param storeComponent target of the loaded components
+   * @param produceMode produce mode of the store
+   * @param generation generation of the segments, see {@link BlockFile#toPhyOffset(int, int, int)}
+   * @param index index of the segment, the phyOffset of each component is set from it
+   */
+  public ComponentLoader(
+      final StoreComponent storeComponent, int produceMode, int generation, int index) {
+    this.storeComponent = storeComponent;
+    this.produceMode = produceMode;
+    this.generation = generation;
+    this.index = index;
+    this.codec = StoreComponent.getCodec(produceMode);
+  }
+
+  /**
+   * Load the records in [from, to) of the buffer.
+   *
+   * @param recover end the range at the first record which is not valid
+   * @return end offset of the last loaded record
+   */
+  public int load(final ByteBuffer byteBuffer, int from, int to, boolean recover) {
+    int[] offsets = new int[64];
+    int count = 0;
+    int offset = from;
+    while (offset < to) {
+      int length = getLength(byteBuffer, offset, to, recover);
+      if (length <= 0) {
+        if (!recover) {
+          log.error("broken component record at offset: {}, end offset: {}", offset, to);
+        }
+        break;
+      }
+      if (count == offsets.length) {
+        offsets = Arrays.copyOf(offsets, count << 1);
+      }
+      offsets[count++] = offset;
+      offset += length;
+    }
+    if (count == offsets.length) {
+      offsets = Arrays.copyOf(offsets, count + 1);
+    }
+    offsets[count] = offset;
+
+    long beginTime = System.currentTimeMillis();
+    boolean[] corrupt = new boolean[count];
+    if (count > 0) {
+      ForkJoinPool.commonPool().invoke(new VerifyTask(byteBuffer, offsets, corrupt, 0, count));
+    }
+    long elapsed = Math.max(1, System.currentTimeMillis() - beginTime);
+    log.info(
+        "verify {} records, {} bytes in {} ms, {} MB/s",
+        count,
+        offset - from,
+        elapsed,
+        (offset - from) * 1000L / elapsed / (1024 * 1024));
+
+    for (int i = 0; i < count; i++) {
+      if (!corrupt[i]) {
+        continue;
+      }
+      if (recover) {
+        log.warn("recover segment {} to the record at offset: {}", index, offsets[i]);
+        count = i;
+        offset = offsets[i];
+        break;
+      }
+      log.error("quarantine component record of segment {} at offset: {}", index, offsets[i]);
+      quarantined.add(offsets[i]);
+    }
+
+    beginTime = System.currentTimeMillis();
+    if (count > 0) {
+      ForkJoinPool.commonPool().invoke(new DecodeTask(byteBuffer, offsets, corrupt, 0, count));
+    }
+    elapsed = Math.max(1, System.currentTimeMillis() - beginTime);
+    log.info(
+        "load {} components, {} bytes in {} ms, {} components/s",
+        count - quarantined.size(),
+        offset - from,
+        elapsed,
+        count * 1000L / elapsed);
+    return offset;
+  }
+
+  /** Offsets of the records with a bad checksum, they are not loaded. */
+  public List<Integer> getQuarantined() {
+    return quarantined;
+  }
+
+  private int getLength(ByteBuffer byteBuffer, int offset, int to, boolean recover) {
+    try {
+      // without the end offset, zeros are taken as the unused part of the segment
+      if (recover && byteBuffer.getLong(offset) == 0) {
+        return -1;
+      }
+      int length = StoreComponent.getLength(codec, byteBuffer, offset);
+      return length > 0 && offset + length <= to ? length : -1;
+    } catch (IndexOutOfBoundsException e) {
+      return -1;
+    }
+  }
+
+  private class VerifyTask extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L;
+
+    private final ByteBuffer byteBuffer;
+    private final int[] offsets;
+    private final boolean[] corrupt;
+    private final int begin;
+    private final int end;
+
+    VerifyTask(ByteBuffer byteBuffer, int[] offsets, boolean[] corrupt, int begin, int end) {
+      this.byteBuffer = byteBuffer;
+      this.offsets = offsets;
+      this.corrupt = corrupt;
+      this.begin = begin;
+      this.end = end;
+    }
+
+    @Override
+    protected void compute() {
+      if (end - begin > DECODE_THRESHOLD) {
+        int middle = (begin + end) >>> 1;
+        invokeAll(
+            new VerifyTask(byteBuffer, offsets, corrupt, begin, middle),
+            new VerifyTask(byteBuffer, offsets, corrupt, middle, end));
+        return;
+      }
+
+      for (int i = begin; i < end; i++) {
+        corrupt[i] =
+            !StoreComponent.verify(codec, byteBuffer, offsets[i], offsets[i + 1] - offsets[i]);
+      }
+    }
+  }
+
+  private class DecodeTask extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L;
+
+    private final ByteBuffer byteBuffer;
+    private final int[] offsets;
+    private final boolean[] corrupt;
+    private final int begin;
+    private final int end;
+
+    DecodeTask(ByteBuffer byteBuffer, int[] offsets, boolean[] corrupt, int begin, int end) {
+      this.byteBuffer = byteBuffer;
+      this.offsets = offsets;
+      this.corrupt = corrupt;
+      this.begin = begin;
+      this.end = end;
+    }
+
+    @Override
+    protected void compute() {
+      if (end - begin > DECODE_THRESHOLD) {
+        int middle = (begin + end) >>> 1;
+        invokeAll(
+            new DecodeTask(byteBuffer, offsets, corrupt, begin, middle),
+            new DecodeTask(byteBuffer, offsets, corrupt, middle, end));
+        return;
+      }
+
+      if (storeComponent.getKeyIndex() != null) {
+        this.addIndex();
+        return;
+      }
+
+      ByteBuffer duplicate = byteBuffer.duplicate();
+      Map<String, AbstractComponent> components = new HashMap<>((end - begin) * 4 / 3 + 1);
+      for (int i = begin; i < end; i++) {
+        if (corrupt[i]
+            || StoreComponent.getStatus(byteBuffer, offsets[i])
+                == AbstractComponent.STATUS_DELETED) {
+          continue;
+        }
+        duplicate.position(offsets[i]);
+        AbstractComponent abstractComponent = StoreComponent.decode(produceMode, duplicate);
+        abstractComponent.setPhyOffset(BlockFile.toPhyOffset(generation, index, offsets[i]));
+        components.put(abstractComponent.getKey(), abstractComponent);
+        log.debug("load: {}", abstractComponent);
+      }
+      storeComponent.addAllMap(components);
+    }
+
+    private void addIndex() {
+      long[] hashes = new long[end - begin];
+      long[] phyOffsets = new long[end - begin];
+      int count = 0;
+      for (int i = begin; i < end; i++) {
+        if (corrupt[i]
+            || StoreComponent.getStatus(byteBuffer, offsets[i])
+                == AbstractComponent.STATUS_DELETED) {
+          continue;
+        }
+        hashes[count] = StoreComponent.hashKey(codec, byteBuffer, offsets[i]);
+        phyOffsets[count++] = BlockFile.toPhyOffset(generation, index, offsets[i]);
+      }
+      storeComponent.addAllIndex(hashes, phyOffsets, count);
+    }
+  }
+}
@@ -0,0 +1,432 @@
+/*
+* MIT License
+*
+* Copyright (c) 2020 gaoyang
+*
+* Permission is hereby granted, free of charge, to any person obtaining a copy
+* of this software and associated documentation files (the "Software"), to deal
+* in the Software without restriction, including without limitation the rights
+* to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+* copies of the Software, and to permit persons to whom the Software is
+* furnished to do so, subject to the following conditions:
+
+* The above copyright notice and this permission notice shall be included in all
+* copies or substantial portions of the Software.
+
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+* IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+* AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+* LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+* OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+* SOFTWARE.
+*/
+package org.myberry.store.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+import org.myberry.common.ServiceThread;
+import org.myberry.store.DefaultMyberryStore;
+import org.myberry.store.common.LoggerName;
+import org.myberry.store.config.StoreConfig;
+import org.myberry.store.config.StorePathConfigHelper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Append-only journal of the counter writes. Each write to a mapped component field is also
+ * appended as a fixed size record, a flush only forces the journal. The service thread
+ * checkpoints every {@link StoreConfig#getJournalCheckpointIntervalMills()}: the mapped segments
+ * are forced and the journal position is saved in its header, on restart the records after it are
+ * replayed into the segments before the components are loaded.
+ *
+ * <p>An append claims the slot of its record in the current block by a CAS and fills it, it takes
+ * no lock, so the pulls of different keys do not wait for each other. The blocks are written to the
+ * file by the commits and the checkpoints. The writes of a field are ordered by the lock of its
+ * component, and a record is claimed after its field is written, so the store forced after a
+ * checkpoint position is taken holds every record before it.
+ *
+ * <p>A record keeps the absolute value of the field, so replaying it more than once is harmless.
+ * When the journal grows over {@link StoreConfig#getJournalFileSize()} it is rotated to
+ * journal.1 at a checkpoint, journal.1 is replayed first if the rotation did not finish.
+ *
+ * <pre>
+ * header: checkpoint(8)
+ * record: phyOffset(8) + size(4) + value(8)
+ * </pre>
+ */
+public class CounterJournal extends ServiceThread {
+
+  private static final Logger log = LoggerFactory.getLogger(LoggerName.STORE_LOGGER_NAME);
+
+  public static final int JOURNAL_HEADER_SIZE = 8;
+  public static final int RECORD_SIZE = 20;
+
+  private static final int WRITE_BUFFER_SIZE = RECORD_SIZE * 4096;
+  // an append writes the blocks out itself when the commits fall this far behind
+  private static final long MAX_PENDING_BYTES = WRITE_BUFFER_SIZE * 64L;
+
+  private final DefaultMyberryStore myberryStore;
+  private final StoreConfig storeConfig;
+  private final FileService fileService;
+  private final String fileName;
+  // taken to write the blocks to the file, never by an append
+  private final ReentrantLock writeLock = new ReentrantLock();
+  // one checkpoint at a time, the store is forced outside of the write lock
+  private final Object checkpointLock = new Object();
+
+  // the block of the next claims
+  private final AtomicReference<Block> current = new AtomicReference<>();
+  // the oldest block not written out, guarded by the write lock
+  private Block head;
+  private volatile long writtenPosition;
+
+  private volatile RandomAccessFile raf;
+  private volatile FileChannel fileChannel;
+
+  public CounterJournal(final DefaultMyberryStore myberryStore, final FileService fileService) {
+    this.myberryStore = myberryStore;
+    this.storeConfig = myberryStore.getStoreConfig();
+    this.fileService = fileService;
+    this.fileName = StorePathConfigHelper.getJournalFile(storeConfig.getStoreRootDir());
+  }
+
+  /** Replay the records after the last checkpoint into the mapped segments. */
+  public void replay() throws IOException {
+    File rotated = new File(fileName + ".1");
+    if (rotated.exists()) {
+      try (RandomAccessFile rotatedRaf = new RandomAccessFile(rotated, "rw")) {
+        FileChannel channel = rotatedRaf.getChannel();
+        if (channel.size() >= JOURNAL_HEADER_SIZE) {
+          long checkpoint = this.readCheckpoint(channel);
+          long end = this.replay(channel, checkpoint);
+          if (end > checkpoint) {
+            // a rotation was cut before its checkpoint, the records are in the store from now on
+            fileService.save();
+            this.writeCheckpoint(channel, end);
+          }
+        }
+      }
+    }
+
+    this.open();
+    long size = fileChannel.size();
+    long end = this.replay(fileChannel, this.readCheckpoint(fileChannel));
+    if (end != size) {
+      log.warn("journal truncated: size={}, end={}", size, end);
+      fileChannel.truncate(end);
+    }
+    this.head = new Block(fileChannel, end);
+    this.current.set(head);
+    this.writtenPosition = end;
+  }
+
+  /** @return the end of the whole records */
+  private long replay(FileChannel channel, long checkpoint) throws IOException {
+    long size = channel.size();
+    long end = checkpoint + (size - checkpoint) / RECORD_SIZE * RECORD_SIZE;
+
+    ByteBuffer byteBuffer = ByteBuffer.allocate(WRITE_BUFFER_SIZE);
+    long position = checkpoint;
+    int count = 0;
+    while (position < end) {
+      byteBuffer.clear();
+      byteBuffer.limit((int) Math.min(byteBuffer.capacity(), end - position));
+      while (byteBuffer.hasRemaining()) {
+        channel.read(byteBuffer, position + byteBuffer.position());
+      }
+      byteBuffer.flip();
+      position += byteBuffer.limit();
+
+      while (byteBuffer.hasRemaining()) {
+        this.apply(byteBuffer.getLong(), byteBuffer.getInt(), byteBuffer.getLong());
+        count++;
+      }
+    }
+    log.info("journal replayed {} records from {}", count, checkpoint);
+    return end;
+  }
+
+  private void apply(long phyOffset, int size, long value) {
+    if (!fileService.containsOffset(phyOffset)) {
+      // also a record of the generation replaced by a compaction
+      log.debug("journal record out of store: phyOffset={}", phyOffset);
+    } else if (size == 8) {
+      fileService.updateBufferLong(phyOffset, value);
+    } else {
+      fileService.updateBufferInt(phyOffset, (int) value);
+    }
+  }
+
+  public void appendLong(long phyOffset, long value) {
+    fileService.updateBufferLong(phyOffset, value);
+    this.append(phyOffset, 8, value);
+  }
+
+  public void appendInt(long phyOffset, int value) {
+    fileService.updateBufferInt(phyOffset, value);
+    this.append(phyOffset, 4, value);
+  }
+
+  private void append(long phyOffset, int size, long value) {
+    for (; ; ) {
+      Block block = current.get();
+      int position = block.claimed.getAndAdd(RECORD_SIZE);
+      if (position >= 0 && position < WRITE_BUFFER_SIZE) {
+        block.put(position, phyOffset, size, value);
+        return;
+      }
+      if (position == WRITE_BUFFER_SIZE) {
+        // the first claim past the end links the next block, before it takes claims
+        Block next = new Block(block.channel, block.filePosition + WRITE_BUFFER_SIZE);
+        block.next = next;
+        if (current.compareAndSet(block, next)) {
+          this.writeOutIfBehind(next.filePosition);
+        }
+      } else {
+        while (current.get() == block) {
+          Thread.yield();
+        }
+      }
+    }
+  }
+
+  private void writeOutIfBehind(long position) {
+    if (position - writtenPosition > MAX_PENDING_BYTES && writeLock.tryLock()) {
+      try {
+        this.writeOut();
+      } catch (IOException e) {
+        log.warn("write journal error: ", e);
+      } finally {
+        writeLock.unlock();
+      }
+    }
+  }
+
+  /** Write the records claimed so far, called under the write lock. */
+  private void writeOut() throws IOException {
+    Block block = head;
+    for (; ; ) {
+      int end = Math.min(block.claimed.get(), block.limit);
+      block.write(end);
+      Block next = block.next;
+      if (end < block.limit || next == null) {
+        break;
+      }
+      block = next;
+    }
+    this.head = block;
+    this.writtenPosition = block.filePosition + block.written;
+  }
+
+  /** Make the records appended so far durable. */
+  public void commit() {
+    FileChannel channel;
+    writeLock.lock();
+    try {
+      this.writeOut();
+      channel = this.fileChannel;
+    } catch (IOException e) {
+      throw new IllegalStateException("write journal error", e);
+    } finally {
+      writeLock.unlock();
+    }
+    try {
+      channel.force(false);
+    } catch (ClosedChannelException e) {
+      // rotated by a checkpoint, which forced the segments
+    } catch (IOException e) {
+      throw new IllegalStateException("force journal error", e);
+    }
+  }
+
+  /**
+   * Force the mapped segments and move the checkpoint to the position of the journal taken before.
+   * Only the position is taken under the write lock, the pulls and the commits go on while the
+   * segments are forced.
+   */
+  public void checkpoint() throws IOException {
+    synchronized (checkpointLock) {
+      RandomAccessFile rotatedRaf = null;
+      FileChannel channel;
+      long position;
+      writeLock.lock();
+      try {
+        this.writeOut();
+        channel = this.fileChannel;
+        position = this.writtenPosition;
+        if (position > storeConfig.getJournalFileSize()) {
+          rotatedRaf = this.raf;
+          this.rotate();
+        }
+      } finally {
+        writeLock.unlock();
+      }
+
+      myberryStore.save();
+      this.writeCheckpoint(channel, position);
+      if (rotatedRaf != null) {
+        rotatedRaf.close();
+        log.info("journal rotated");
+      }
+    }
+  }
+
+  /**
+   * Move the journal to journal.1 and switch the appends to a new one, called under the write
+   * lock. The records of journal.1 are forced here, its checkpoint is moved once the segments are.
+   */
+  private void rotate() throws IOException {
+    FileChannel channel = this.fileChannel;
+    Files.move(
+        new File(fileName).toPath(),
+        new File(fileName + ".1").toPath(),
+        StandardCopyOption.REPLACE_EXISTING);
+    this.open();
+
+    Block block = new Block(fileChannel, JOURNAL_HEADER_SIZE);
+    Block sealed = current.getAndSet(block);
+    for (; ; ) {
+      int claimed = sealed.claimed.get();
+      if (claimed >= WRITE_BUFFER_SIZE) {
+        break;
+      }
+      if (sealed.claimed.compareAndSet(claimed, WRITE_BUFFER_SIZE)) {
+        sealed.limit = claimed;
+        break;
+      }
+    }
+    this.writeOut();
+    channel.force(false);
+
+    this.head = block;
+    this.writtenPosition = JOURNAL_HEADER_SIZE;
+  }
+
+  private void open() throws IOException {
+    File file = new File(fileName);
+    MappedFile.ensureDirOK(file.getParent());
+    this.raf = new RandomAccessFile(file, "rw");
+    this.fileChannel = raf.getChannel();
+    if (fileChannel.size() < JOURNAL_HEADER_SIZE) {
+      this.writeCheckpoint(fileChannel, JOURNAL_HEADER_SIZE);
+    }
+  }
+
+  private long readCheckpoint(FileChannel channel) throws IOException {
+    ByteBuffer headerBuffer = ByteBuffer.allocate(JOURNAL_HEADER_SIZE);
+    while (headerBuffer.hasRemaining()) {
+      channel.read(headerBuffer, headerBuffer.position());
+    }
+    headerBuffer.flip();
+    return headerBuffer.getLong();
+  }
+
+  private void writeCheckpoint(FileChannel channel, long checkpoint) throws IOException {
+    ByteBuffer headerBuffer = ByteBuffer.allocate(JOURNAL_HEADER_SIZE);
+    headerBuffer.putLong(checkpoint);
+    headerBuffer.flip();
+    while (headerBuffer.hasRemaining()) {
+      channel.write(headerBuffer, headerBuffer.position());
+    }
+    channel.force(false);
+  }
+
+  private void close() {
+    try {
+      if (fileChannel != null) {
+        fileChannel.close();
+      }
+      if (raf != null) {
+        raf.close();
+      }
+    } catch (IOException e) {
+      log.error("close journal Exception: ", e);
+    }
+  }
+
+  @Override
+  public void run() {
+    log.info("{} service started", this.getServiceName());
+
+    while (!this.isStopped()) {
+      this.waitForRunning(storeConfig.getJournalCheckpointIntervalMills());
+      try {
+        this.checkpoint();
+      } catch (Exception e) {
+        log.warn("{} service has exception. ", this.getServiceName(), e);
+      }
+    }
+
+    try {
+      this.checkpoint();
+    } catch (Exception e) {
+      log.error("{} checkpoint on shutdown error: ", this.getServiceName(), e);
+    }
+    this.close();
+
+    log.info("{} service end", this.getServiceName());
+  }
+
+  @Override
+  public String getServiceName() {
+    return CounterJournal.class.getSimpleName();
+  }
+
+  /** Records of the journal at a position of the file, the slots are claimed by a CAS. */
+  private static final class Block {
+
+    private final FileChannel channel;
+    private final long filePosition;
+    private final ByteBuffer buffer = ByteBuffer.allocate(WRITE_BUFFER_SIZE);
+    // one flag per slot, set once its record is filled
+    private final AtomicIntegerArray filled =
+        new AtomicIntegerArray(WRITE_BUFFER_SIZE / RECORD_SIZE);
+    private final AtomicInteger claimed = new AtomicInteger();
+    // lowered by a rotation to the slots claimed before it
+    private volatile int limit = WRITE_BUFFER_SIZE;
+    private volatile Block next;
+    // guarded by the write lock
+    private int written;
+
+    Block(FileChannel channel, long filePosition) {
+      this.channel = channel;
+      this.filePosition = filePosition;
+    }
+
+    void put(int position, long phyOffset, int size, long value) {
+      buffer.putLong(position, phyOffset);
+      buffer.putInt(position + 8, size);
+      buffer.putLong(position + 12, value);
+      filled.set(position / RECORD_SIZE, 1);
+    }
+
+    /** Write the records up to end, the slots claimed before end are filled in a moment. */
+    void write(int end) throws IOException {
+      if (end <= written) {
+        return;
+      }
+      for (int slot = written / RECORD_SIZE; slot < end / RECORD_SIZE; slot++) {
+        while (filled.get(slot) == 0) {
+          Thread.yield();
+        }
+      }
+      ByteBuffer byteBuffer = buffer.duplicate();
+      byteBuffer.limit(end).position(written);
+      while (byteBuffer.hasRemaining()) {
+        channel.write(byteBuffer, filePosition + byteBuffer.position());
+      }
+      written = end;
+    }
+  }
+}
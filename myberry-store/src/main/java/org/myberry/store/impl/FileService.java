@@ -23,53 +23,1111 @@
 */
 package org.myberry.store.impl;
 
+import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+import org.myberry.common.ProduceMode;
+import org.myberry.common.ThreadFactoryImpl;
 import org.myberry.store.AbstractComponent;
+import org.myberry.store.CRComponent;
 import org.myberry.store.DefaultMyberryStore;
+import org.myberry.store.NSComponent;
+import org.myberry.store.SnapshotResult;
 import org.myberry.store.common.LoggerName;
 import org.myberry.store.config.StoreConfig;
+import org.myberry.store.config.StorePathConfigHelper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Chain of {@link BlockFile} segments. Components are appended to the last segment, a new segment
+ * is mapped when it is full. The first segment keeps the store header and the next segment can be
+ * mapped ahead in the background.
+ *
+ * <p>The offset used by the quorum sync is logical: the header size plus the record bytes of all
+ * segments, as if the records were in one file. It does not depend on where the segments roll, and
+ * the bytes dropped by a compaction still count in it, so it never goes back.
+ *
+ * <p>With the key index enabled, the keys are kept in a {@link KeyIndex} off the heap and the
+ * component map only holds the components which were looked up, see {@link #getComponent(String)}.
+ * The index is only changed under the write lock, a lookup which reads it holds the read lock.
+ *
+ * <p>The appends, the removals and the other changes of the records hold the append lock, then the
+ * write lock. A compaction only holds the append lock while it moves the components, it takes the
+ * write lock for each index update and to swap the generations, so the lookups go on.
+ */
 public class FileService {
 
   private static final Logger log = LoggerFactory.getLogger(LoggerName.STORE_LOGGER_NAME);
 
   private final DefaultMyberryStore myberryStore;
-  private ArrayList<BlockFile> blockFileList = new ArrayList<>();
+  private final ConcurrentMap<String, AbstractComponent> componentMap = new ConcurrentHashMap<>();
+  private final KeyIndex keyIndex;
+  private final StoreComponent storeComponent;
+  private final Lock appendLock = new ReentrantLock();
   private final ReadWriteLock readWriteLock = new ReentrantReadWriteLock();
+  private final AtomicLong warmedPages = new AtomicLong();
+
+  private volatile List<BlockFile> blockFileList = new CopyOnWriteArrayList<>();
+  // segments by generation, a compaction maps the next generation beside the current one
+  private final ConcurrentMap<Integer, List<BlockFile>> generationMap = new ConcurrentHashMap<>();
+  // record of a component moved by the running compaction to its record in the current generation
+  private final ConcurrentSkipListMap<Long, Long> relocationMap = new ConcurrentSkipListMap<>();
+  private volatile int generation;
+
+  private CounterJournal counterJournal;
+  private ExecutorService allocateExecutor;
+  private CompletableFuture<BlockFile> nextBlockFile;
 
   public FileService(final DefaultMyberryStore store) {
     this.myberryStore = store;
+    StoreConfig storeConfig = store.getStoreConfig();
+    this.keyIndex =
+        storeConfig.isKeyIndexEnable()
+            ? new KeyIndex(storeConfig.getKeyIndexCapacity(), this::keyEquals)
+            : null;
+    this.storeComponent = new StoreComponent(null, componentMap, keyIndex);
   }
 
   public void addComponent(AbstractComponent abstractComponent) {
-    BlockFile blockFile = blockFileList.get(blockFileList.size() - 1);
-    blockFile.addComponent(abstractComponent);
+    try {
+      this.appendLock.lock();
+      this.readWriteLock.writeLock().lock();
+      BlockFile blockFile = this.allocate(this.getLength(abstractComponent));
+      blockFile.addComponent(abstractComponent);
+      this.index(abstractComponent);
+      this.getBlockFile(0).incrComponentCount();
+
+      blockFile.flush();
+      if (blockFile.getIndex() != 0) {
+        this.getBlockFile(0).flush();
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    } finally {
+      this.readWriteLock.writeLock().unlock();
+      this.appendLock.unlock();
+    }
+  }
+
+  /** Get the segment to append a record of the length to, it rolls and grows the store. */
+  private BlockFile allocate(int length) throws IOException {
+    StoreConfig storeConfig = myberryStore.getStoreConfig();
+    if (length > storeConfig.getFileSize() - StoreHeader.STORE_HEADER_SIZE) {
+      this.doGrow(growSize(length + StoreHeader.STORE_HEADER_SIZE));
+    }
+
+    BlockFile blockFile = this.getLastBlockFile();
+    if (blockFile.isWriteFull(length)) {
+      blockFile = this.takeNextBlockFile(blockFile.getIndex() + 1);
+      this.blockFileList.add(blockFile);
+      log.info("roll to store segment {}", blockFile.getIndex());
+      this.allocateNextBlockFile(blockFile.getIndex() + 1);
+    }
+    return blockFile;
+  }
+
+  private int getLength(AbstractComponent abstractComponent) {
+    return storeComponent.getLength(abstractComponent, myberryStore.getStoreConfig().getFileSize());
+  }
+
+  /**
+   * Remove the component. Its record is marked removed in place and a tombstone with its key is
+   * appended, so the removal reaches the learners by the sync. Both records are skipped on load
+   * and dropped by the next compaction.
+   *
+   * @return false if the key does not exist
+   */
+  public boolean removeComponent(String key) {
+    try {
+      this.appendLock.lock();
+      this.readWriteLock.writeLock().lock();
+      AbstractComponent abstractComponent = this.getComponent(key);
+      if (abstractComponent == null) {
+        return false;
+      }
+
+      BlockFile blockFile = this.delete(abstractComponent);
+      this.getBlockFile(0).decrComponentCount();
+
+      blockFile.flush();
+      if (blockFile.getIndex() != 0) {
+        this.getBlockFile(0).flush();
+      }
+      return true;
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    } finally {
+      this.readWriteLock.writeLock().unlock();
+      this.appendLock.unlock();
+    }
+  }
+
+  /** @return the segment of the tombstone */
+  private BlockFile delete(AbstractComponent abstractComponent) throws IOException {
+    long phyOffset = abstractComponent.getPhyOffset();
+    BlockFile blockFile = this.resolveBlockFile(phyOffset);
+    AbstractComponent tombstone = blockFile.getComponent(BlockFile.getPosition(phyOffset));
+    tombstone.setStatus(AbstractComponent.STATUS_DELETED);
+
+    blockFile.setDeleted(BlockFile.getPosition(phyOffset));
+    this.unindex(abstractComponent);
+    if (blockFile != this.getLastBlockFile()) {
+      blockFile.flush();
+    }
+
+    BlockFile last = this.allocate(this.getLength(tombstone));
+    last.addRecord(tombstone);
+    return last;
+  }
+
+  /** Mark the component removed and drop it from the map and the key index. */
+  private void unindex(AbstractComponent abstractComponent) {
+    abstractComponent.setStatus(AbstractComponent.STATUS_DELETED);
+    componentMap.remove(abstractComponent.getKey(), abstractComponent);
+    if (keyIndex != null) {
+      keyIndex.remove(KeyIndex.toBytes(abstractComponent.getKey()));
+    }
+  }
+
+  private void index(AbstractComponent abstractComponent) {
+    if (keyIndex != null) {
+      keyIndex.put(KeyIndex.toBytes(abstractComponent.getKey()), abstractComponent.getPhyOffset());
+    }
+  }
+
+  private boolean keyEquals(long phyOffset, byte[] key) {
+    BlockFile blockFile = this.resolveBlockFile(phyOffset);
+    return blockFile != null && blockFile.keyEquals(BlockFile.getPosition(phyOffset), key);
   }
 
-  public void removeComponent(String key) {}
+  /**
+   * Get the component of the key. With the key index, a component which is not in the map yet is
+   * read from its record and added to the map, so its counters are written through it from now on.
+   *
+   * @return null if the key does not exist
+   */
+  public AbstractComponent getComponent(String key) {
+    AbstractComponent abstractComponent = componentMap.get(key);
+    if (abstractComponent != null || keyIndex == null) {
+      return abstractComponent;
+    }
 
+    try {
+      this.readWriteLock.readLock().lock();
+      long phyOffset = keyIndex.get(KeyIndex.toBytes(key));
+      if (phyOffset < 0) {
+        return null;
+      }
+      AbstractComponent record =
+          this.resolveBlockFile(phyOffset).getComponent(BlockFile.getPosition(phyOffset));
+      record.setPhyOffset(phyOffset);
+      abstractComponent = componentMap.putIfAbsent(key, record);
+      return abstractComponent != null ? abstractComponent : record;
+    } finally {
+      this.readWriteLock.readLock().unlock();
+    }
+  }
+
+  /** Number of components, with the key index also the ones which were not looked up. */
+  public int getComponentCount() {
+    if (keyIndex == null) {
+      return componentMap.size();
+    }
+    try {
+      this.readWriteLock.readLock().lock();
+      return keyIndex.size();
+    } finally {
+      this.readWriteLock.readLock().unlock();
+    }
+  }
+
+  /** Components looked up so far when the keys are indexed, see {@link #getComponent(String)}. */
   public Collection<AbstractComponent> queryAllComponent() {
-    BlockFile blockFile = blockFileList.get(blockFileList.size() - 1);
-    return blockFile.getComponentMap().values();
+    return componentMap.values();
   }
 
   public BlockFile getBlockFile(int index) {
     return blockFileList.get(index);
   }
 
-  public boolean load(final StoreConfig storeConfig) {
+  public int getBlockFileCount() {
+    return blockFileList.size();
+  }
+
+  public BlockFile getLastBlockFile() {
+    List<BlockFile> list = this.blockFileList;
+    return list.get(list.size() - 1);
+  }
+
+  /** Segment of the phyOffset, null if its generation was replaced by a compaction. */
+  private BlockFile resolveBlockFile(long phyOffset) {
+    List<BlockFile> list = generationMap.get(BlockFile.getGeneration(phyOffset));
+    int index = BlockFile.getIndex(phyOffset);
+    return list == null || index >= list.size() ? null : list.get(index);
+  }
+
+  /** Whether the phyOffset points into a segment of this store. */
+  public boolean containsOffset(long phyOffset) {
+    return this.resolveBlockFile(phyOffset) != null;
+  }
+
+  public int getGeneration() {
+    return generation;
+  }
+
+  public ConcurrentMap<String, AbstractComponent> getComponentMap() {
+    return componentMap;
+  }
+
+  public boolean isExistKey(String key) {
+    if (componentMap.containsKey(key)) {
+      return true;
+    } else if (keyIndex == null) {
+      return false;
+    }
+    try {
+      this.readWriteLock.readLock().lock();
+      return keyIndex.get(KeyIndex.toBytes(key)) >= 0;
+    } finally {
+      this.readWriteLock.readLock().unlock();
+    }
+  }
+
+  /** A component is only rejected when it does not fit into an empty segment of the max size. */
+  public boolean isWriteFull(int size) {
+    return size + StoreComponent.CHECKSUM_SIZE
+        > myberryStore.getStoreConfig().getMaxFileSize() - StoreHeader.STORE_HEADER_SIZE;
+  }
+
+  /**
+   * Grow the segment size online. The last segment and the one mapped ahead are remapped with the
+   * new size while appends wait, the next segments are created with it. The size is kept in the
+   * header of the first segment, so it survives a restart with a smaller configured size.
+   *
+   * @return false if the store is already as large
+   */
+  public boolean grow(int fileSize) {
+    try {
+      this.appendLock.lock();
+      this.readWriteLock.writeLock().lock();
+      return this.doGrow(fileSize);
+    } catch (IOException e) {
+      log.error("grow store to {} error: ", fileSize, e);
+      return false;
+    } finally {
+      this.readWriteLock.writeLock().unlock();
+      this.appendLock.unlock();
+    }
+  }
+
+  private boolean doGrow(int fileSize) throws IOException {
+    StoreConfig storeConfig = myberryStore.getStoreConfig();
+    if (fileSize > storeConfig.getMaxFileSize()) {
+      log.warn("grow store to {} over maxFileSize {}", fileSize, storeConfig.getMaxFileSize());
+      fileSize = storeConfig.getMaxFileSize();
+    }
+    if (fileSize <= storeConfig.getFileSize()) {
+      return false;
+    }
+
+    long beginTime = System.currentTimeMillis();
+    int oldFileSize = storeConfig.getFileSize();
+    storeConfig.setFileSize(fileSize);
+    this.getLastBlockFile().grow(fileSize);
+    if (this.nextBlockFile != null) {
+      try {
+        this.nextBlockFile.join().grow(fileSize);
+      } catch (Exception e) {
+        log.warn("grow allocated store segment error: ", e);
+      }
+    }
+    this.getBlockFile(0).setFileSize(fileSize);
+    this.getBlockFile(0).flush();
+    log.info(
+        "grow store segments from {} to {} bytes in {} ms",
+        oldFileSize,
+        fileSize,
+        System.currentTimeMillis() - beginTime);
+    return true;
+  }
+
+  private int growSize(int size) {
+    int fileSize = myberryStore.getStoreConfig().getFileSize();
+    while (fileSize < size && fileSize <= Integer.MAX_VALUE >> 1) {
+      fileSize <<= 1;
+    }
+    return Math.min(Math.max(fileSize, size), myberryStore.getStoreConfig().getMaxFileSize());
+  }
+
+  public void updateBufferLong(long phyOffset, long value) {
+    BlockFile blockFile = this.resolveBlockFile(phyOffset);
+    if (blockFile != null) {
+      blockFile.updateBufferLong(BlockFile.getPosition(phyOffset), value);
+    }
+  }
+
+  public void updateBufferInt(long phyOffset, int value) {
+    BlockFile blockFile = this.resolveBlockFile(phyOffset);
+    if (blockFile != null) {
+      blockFile.updateBufferInt(BlockFile.getPosition(phyOffset), value);
+    }
+  }
+
+  /**
+   * Offset in the current generation of a field of a component moved by the running compaction.
+   * Writes to the field are mirrored there, so the current segments stay complete until the
+   * compaction commits.
+   *
+   * @return -1 if the offset is not in a moved component
+   */
+  public long getMirrorOffset(long phyOffset) {
+    if (relocationMap.isEmpty()) {
+      return -1;
+    }
+    Map.Entry<Long, Long> entry = relocationMap.floorEntry(phyOffset);
+    if (entry == null
+        || BlockFile.getGeneration(entry.getKey()) != BlockFile.getGeneration(phyOffset)) {
+      return -1;
+    }
+    return entry.getValue() + (phyOffset - entry.getKey());
+  }
+
+  public void save() {
+    for (List<BlockFile> list : generationMap.values()) {
+      for (BlockFile blockFile : list) {
+        blockFile.save();
+      }
+    }
+  }
+
+  public int getLastOffset() {
+    List<BlockFile> list = this.blockFileList;
+    if (list.isEmpty()) {
+      return StoreHeader.STORE_HEADER_SIZE;
+    }
+    int lastOffset = StoreHeader.STORE_HEADER_SIZE + list.get(0).getCompactedSize();
+    for (BlockFile blockFile : list) {
+      lastOffset += blockFile.getDataSize();
+    }
+    return lastOffset;
+  }
+
+  /** Logical offset of the last compaction, a learner behind it needs a snapshot. */
+  public int getCompactedOffset() {
+    return this.getBlockFile(0).getCompactedOffset();
+  }
+
+  /** Bytes of the records in the segments. */
+  public long getDataSize() {
+    long dataSize = 0;
+    for (BlockFile blockFile : blockFileList) {
+      dataSize += blockFile.getDataSize();
+    }
+    return dataSize;
+  }
+
+  /** Bytes of the records a compaction would drop: removed components and tombstones. */
+  public long getGarbageSize() {
+    long liveSize = 0;
+    if (keyIndex == null) {
+      for (AbstractComponent abstractComponent : componentMap.values()) {
+        liveSize += this.getLength(abstractComponent);
+      }
+      return this.getDataSize() - liveSize;
+    }
+
+    try {
+      this.readWriteLock.readLock().lock();
+      for (long phyOffset : keyIndex.getOffsets()) {
+        liveSize += this.resolveBlockFile(phyOffset).getLength(BlockFile.getPosition(phyOffset));
+      }
+      return this.getDataSize() - liveSize;
+    } finally {
+      this.readWriteLock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Get the records after the logical offset for a learner, with the counters of the leader reset.
+   */
+  public byte[] getComponentByteArray(int offset) {
+    return this.getComponentByteArray(offset, Integer.MAX_VALUE);
+  }
+
+  /**
+   * Get the whole records after the logical offset for a learner, a chunk of the sync. The records
+   * are copied in bulk and the counters of the leader are reset in the copy.
+   *
+   * @param maxSize bytes of the chunk at most, it has one record at least
+   */
+  public byte[] getComponentByteArray(int offset, int maxSize) {
+    try {
+      this.readWriteLock.readLock().lock();
+      BlockFile first = this.getBlockFile(0);
+      if (offset < first.getCompactedOffset()) {
+        // the records before the compaction are gone, see getSnapshotByteArray(int)
+        return new byte[0];
+      }
+      int lastOffset = this.getLastOffset() - first.getCompactedSize();
+      offset -= first.getCompactedSize();
+      if (offset >= lastOffset) {
+        return new byte[0];
+      }
+
+      // segment, from and to of the records in the chunk
+      List<int[]> ranges = new ArrayList<>();
+      int size = 0;
+      int base = StoreHeader.STORE_HEADER_SIZE;
+      for (int i = 0; i < blockFileList.size(); i++) {
+        BlockFile blockFile = blockFileList.get(i);
+        int from = StoreHeader.STORE_HEADER_SIZE + Math.max(offset - base, 0);
+        int to = StoreHeader.STORE_HEADER_SIZE + blockFile.getDataSize();
+        base += blockFile.getDataSize();
+
+        int end = from;
+        while (end < to) {
+          int length = blockFile.getLength(end);
+          if (size > 0 && size + length > maxSize) {
+            break;
+          }
+          end += length;
+          size += length;
+        }
+        if (end > from) {
+          ranges.add(new int[] {i, from, end});
+        }
+        if (end < to) {
+          break;
+        }
+      }
+
+      ByteBuffer byteBuffer = ByteBuffer.allocate(size);
+      for (int[] range : ranges) {
+        blockFileList.get(range[0]).getBytes(range[1], range[2], byteBuffer);
+      }
+      ComponentCodec<? extends AbstractComponent> codec =
+          StoreComponent.getCodec(first.getProduceMode());
+      for (int position = 0;
+          position < size;
+          position += StoreComponent.getLength(codec, byteBuffer, position)) {
+        codec.resetCounters(byteBuffer, position);
+      }
+      return byteBuffer.array();
+    } finally {
+      this.readWriteLock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Get the live components for a learner behind the last compaction, with the counters of the
+   * leader reset. The learner replaces its records with them, see {@link
+   * #resetComponentByteBuffer(byte[], int)}.
+   *
+   * @param offset logical offset the snapshot is sent with
+   * @return null if the store is not at the offset any more
+   */
+  public byte[] getSnapshotByteArray(int offset) {
+    try {
+      this.readWriteLock.readLock().lock();
+      if (this.getLastOffset() != offset) {
+        return null;
+      }
+
+      List<AbstractComponent> list = new ArrayList<>();
+      int length = 0;
+      for (long phyOffset : this.getLiveOffsets()) {
+        AbstractComponent record =
+            this.resolveBlockFile(phyOffset).getComponent(BlockFile.getPosition(phyOffset));
+        list.add(record);
+        length += this.getLength(record);
+      }
+      return this.toSyncByteArray(list, length);
+    } finally {
+      this.readWriteLock.readLock().unlock();
+    }
+  }
+
+  private byte[] toSyncByteArray(List<AbstractComponent> list, int length) {
+    int produceMode = this.getBlockFile(0).getProduceMode();
+    for (AbstractComponent abstractComponent : list) {
+      if (produceMode == ProduceMode.CR.getProduceCode()) {
+        ((CRComponent) abstractComponent).setIncrNumber(0);
+      } else if (produceMode == ProduceMode.NS.getProduceCode()) {
+        NSComponent nsc = (NSComponent) abstractComponent;
+        nsc.setCurrentValue(nsc.getInitValue());
+      }
+    }
+
+    ByteBuffer syncByteBuffer = ByteBuffer.allocate(length);
+    for (AbstractComponent abstractComponent : list) {
+      storeComponent.write(abstractComponent, syncByteBuffer);
+    }
+    return syncByteBuffer.array();
+  }
+
+  public List<AbstractComponent> getComponentByteBuffer(byte[] src) {
+    List<AbstractComponent> list = new ArrayList<>();
+    ByteBuffer byteBuffer = ByteBuffer.wrap(src);
+    int produceMode = this.getBlockFile(0).getProduceMode();
+    while (byteBuffer.hasRemaining()) {
+      list.add(StoreComponent.decode(produceMode, byteBuffer));
+    }
+    return list;
+  }
+
+  /**
+   * Append the records received from the leader, each one gets a phyOffset of this store. A
+   * removed record or a tombstone removes the component of its key.
+   */
+  public void setComponentByteBuffer(byte[] src) {
+    try {
+      this.appendLock.lock();
+      this.readWriteLock.writeLock().lock();
+      for (AbstractComponent abstractComponent : getComponentByteBuffer(src)) {
+        if (abstractComponent.getStatus() != AbstractComponent.STATUS_DELETED) {
+          BlockFile blockFile = this.allocate(this.getLength(abstractComponent));
+          if (keyIndex == null) {
+            blockFile.addComponent(abstractComponent);
+          } else {
+            // read from the record when it is pulled, like a loaded one
+            blockFile.addRecord(abstractComponent);
+            this.index(abstractComponent);
+          }
+          continue;
+        }
+
+        AbstractComponent current = this.getComponent(abstractComponent.getKey());
+        if (current != null) {
+          BlockFile blockFile = this.resolveBlockFile(current.getPhyOffset());
+          blockFile.setDeleted(BlockFile.getPosition(current.getPhyOffset()));
+          this.unindex(current);
+        }
+        this.allocate(this.getLength(abstractComponent)).addRecord(abstractComponent);
+      }
+      for (BlockFile blockFile : blockFileList) {
+        blockFile.flush();
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    } finally {
+      this.readWriteLock.writeLock().unlock();
+      this.appendLock.unlock();
+    }
+  }
+
+  /**
+   * Replace the records with a snapshot of the leader, for a learner behind the last compaction of
+   * the leader. The snapshot is written as the next generation of the segments, like a
+   * compaction.
+   *
+   * @param offset logical offset of the leader at the snapshot
+   */
+  public void resetComponentByteBuffer(byte[] src, int offset) {
+    try {
+      this.appendLock.lock();
+      this.readWriteLock.writeLock().lock();
+      long beginTime = System.currentTimeMillis();
+      this.discardNextBlockFile();
+      List<BlockFile> list = this.newGeneration();
+
+      Map<String, AbstractComponent> components = new HashMap<>();
+      try {
+        for (AbstractComponent abstractComponent : getComponentByteBuffer(src)) {
+          if (abstractComponent.getStatus() != AbstractComponent.STATUS_DELETED) {
+            this.allocate(list, this.getLength(abstractComponent)).addRecord(abstractComponent);
+            components.put(abstractComponent.getKey(), abstractComponent);
+          }
+        }
+      } catch (IOException | RuntimeException e) {
+        this.dropGeneration(list);
+        throw e;
+      }
+      this.commitGeneration(list, offset);
+
+      if (keyIndex == null) {
+        componentMap.putAll(components);
+        componentMap.keySet().retainAll(components.keySet());
+      } else {
+        componentMap.clear();
+        keyIndex.clear();
+        for (AbstractComponent abstractComponent : components.values()) {
+          this.index(abstractComponent);
+        }
+      }
+      log.info(
+          "reset store to a snapshot of {} components at offset {} in {} ms",
+          components.size(),
+          offset,
+          System.currentTimeMillis() - beginTime);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    } finally {
+      this.readWriteLock.writeLock().unlock();
+      this.appendLock.unlock();
+    }
+  }
+
+  /**
+   * Rewrite the live components into the next generation of the segments, in a directory beside
+   * the store, and replace the store directory with it. Appends wait, but each component is moved
+   * under its own counter lock, so pulls on the other keys go on, and the lookups only wait for
+   * the swap of the generations. Until the new segments replace the store, the counter writes to a
+   * moved component are mirrored into its old record, see {@link #getMirrorOffset(long)}, so a
+   * crash leaves one complete generation.
+   *
+   * @return false if the compaction failed, the store is left as it was
+   */
+  public boolean compact() {
+    try {
+      this.appendLock.lock();
+      long beginTime = System.currentTimeMillis();
+      int lastOffset = this.getLastOffset();
+      long dataSize = this.getDataSize();
+      this.discardNextBlockFile();
+      List<BlockFile> list = this.newGeneration();
+
+      try {
+        if (keyIndex == null) {
+          for (AbstractComponent abstractComponent : this.sortedComponents()) {
+            this.move(abstractComponent, list);
+          }
+        } else {
+          // the records are decoded one by one, the index only gives their offsets
+          for (long phyOffset : keyIndex.getOffsets()) {
+            this.move(phyOffset, list);
+          }
+        }
+      } catch (IOException | RuntimeException e) {
+        log.error("compact store error, move back {} components: ", relocationMap.size(), e);
+        for (long phyOffset : relocationMap.keySet()) {
+          this.moveBack(phyOffset);
+        }
+        this.dropGeneration(list);
+        return false;
+      }
+      int count = relocationMap.size();
+      this.commitGeneration(list, lastOffset);
+
+      log.info(
+          "compact {} components of {} store bytes to {} bytes in {} ms",
+          count,
+          dataSize,
+          this.getDataSize(),
+          System.currentTimeMillis() - beginTime);
+      return true;
+    } catch (IOException e) {
+      log.error("compact store error: ", e);
+      return false;
+    } finally {
+      this.appendLock.unlock();
+    }
+  }
+
+  /**
+   * Copy the store into the store directory under the store path, for a backup or to start a new
+   * node from: with the copy in its store path, the node only syncs the records appended since.
+   * Appends, removals and compactions wait while the segments are copied, lookups and counter
+   * writes go on, so the counters of the live records are copied again one by one, see {@link
+   * BlockFile#transferTo(String, long[])}.
+   *
+   * @param storePath store path of the copy, its store directory must not exist
+   */
+  public SnapshotResult snapshot(String storePath) {
+    long beginTime = System.currentTimeMillis();
+    String dir =
+        StorePathConfigHelper.getStoreFilePath(StorePathConfigHelper.getStoreRootDir(storePath));
+    if (new File(dir).exists()) {
+      throw new UncheckedIOException(new IOException("snapshot directory exists: " + dir));
+    }
+
+    SnapshotResult snapshotResult = new SnapshotResult();
+    snapshotResult.setStorePath(storePath);
+    try {
+      this.appendLock.lock();
+      long fenceTime = System.currentTimeMillis();
+      long[] phyOffsets = this.getLiveOffsets();
+      long size = 0;
+      for (BlockFile blockFile : blockFileList) {
+        size += blockFile.transferTo(BlockFile.getFileName(dir, blockFile.getIndex()), phyOffsets);
+      }
+      snapshotResult.setMbid(this.getBlockFile(0).getMbid());
+      snapshotResult.setLastOffset(this.getLastOffset());
+      snapshotResult.setComponentCount(phyOffsets.length);
+      snapshotResult.setSize(size);
+      snapshotResult.setFenceMills(System.currentTimeMillis() - fenceTime);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    } finally {
+      this.appendLock.unlock();
+    }
+
+    snapshotResult.setElapsedMills(System.currentTimeMillis() - beginTime);
+    log.info(
+        "snapshot store to {}: {} bytes in {} ms, {} MB/s, appends held off {} ms",
+        storePath,
+        snapshotResult.getSize(),
+        snapshotResult.getElapsedMills(),
+        snapshotResult.getThroughput() / (1024 * 1024),
+        snapshotResult.getFenceMills());
+    return snapshotResult;
+  }
+
+  /**
+   * Replace the store directory with a snapshot of the segments, the segments of the memory engine
+   * are restored from it on the next start.
+   */
+  public SnapshotResult persist() {
+    String rootDir = myberryStore.getStoreConfig().getStoreRootDir();
+    String snapshotPath =
+        StorePathConfigHelper.getSnapshotPath(rootDir) + File.separator + "memory";
+    try {
+      deleteDir(snapshotPath);
+      SnapshotResult snapshotResult = this.snapshot(snapshotPath);
+
+      Path storePath = new File(StorePathConfigHelper.getStoreFilePath(rootDir)).toPath();
+      Path retiredPath = new File(StorePathConfigHelper.getRetiredFilePath(rootDir)).toPath();
+      deleteDir(retiredPath.toString());
+      if (Files.exists(storePath)) {
+        Files.move(storePath, retiredPath);
+      }
+      String snapshotRootDir = StorePathConfigHelper.getStoreRootDir(snapshotPath);
+      Files.move(
+          new File(StorePathConfigHelper.getStoreFilePath(snapshotRootDir)).toPath(), storePath);
+      deleteDir(retiredPath.toString());
+      deleteDir(snapshotPath);
+      return snapshotResult;
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /** The phyOffsets of the live components in ascending order. */
+  private long[] getLiveOffsets() {
+    if (keyIndex != null) {
+      return keyIndex.getOffsets();
+    }
+    long[] phyOffsets =
+        componentMap.values().stream().mapToLong(AbstractComponent::getPhyOffset).toArray();
+    Arrays.sort(phyOffsets);
+    return phyOffsets;
+  }
+
+  /** The components in the order of their records, without the key index. */
+  private List<AbstractComponent> sortedComponents() {
+    List<AbstractComponent> list = new ArrayList<>(componentMap.values());
+    list.sort(Comparator.comparingLong(AbstractComponent::getPhyOffset));
+    return list;
+  }
+
+  /**
+   * Move the record at the phyOffset of the key index. A record whose component was not looked up
+   * is moved under the write lock, so a lookup does not add it with the old phyOffset.
+   */
+  private void move(long phyOffset, List<BlockFile> list) throws IOException {
+    AbstractComponent record =
+        this.resolveBlockFile(phyOffset).getComponent(BlockFile.getPosition(phyOffset));
+    record.setPhyOffset(phyOffset);
+    AbstractComponent abstractComponent = componentMap.get(record.getKey());
+    if (abstractComponent == null) {
+      try {
+        this.readWriteLock.writeLock().lock();
+        abstractComponent = componentMap.get(record.getKey());
+        if (abstractComponent == null) {
+          // nothing writes the counters of a record until it is looked up
+          this.move(record, list);
+          return;
+        }
+      } finally {
+        this.readWriteLock.writeLock().unlock();
+      }
+    }
+    this.move(abstractComponent, list);
+  }
+
+  private void move(AbstractComponent abstractComponent, List<BlockFile> list)
+      throws IOException {
+    Lock lock = getCounterLock(abstractComponent);
+    if (lock != null) {
+      lock.lock();
+    }
+    try {
+      long phyOffset = abstractComponent.getPhyOffset();
+      AbstractComponent record =
+          this.resolveBlockFile(phyOffset).getComponent(BlockFile.getPosition(phyOffset));
+      this.allocate(list, this.getLength(record)).addRecord(record);
+      relocationMap.put(record.getPhyOffset(), phyOffset);
+      abstractComponent.setPhyOffset(record.getPhyOffset());
+      this.reindex(abstractComponent);
+    } finally {
+      if (lock != null) {
+        lock.unlock();
+      }
+    }
+  }
+
+  /** Move the record at the phyOffset of the new generation back to its old record. */
+  private void moveBack(long phyOffset) {
+    AbstractComponent record =
+        this.resolveBlockFile(phyOffset).getComponent(BlockFile.getPosition(phyOffset));
+    record.setPhyOffset(phyOffset);
+    AbstractComponent abstractComponent = componentMap.get(record.getKey());
+    if (abstractComponent == null) {
+      try {
+        this.readWriteLock.writeLock().lock();
+        abstractComponent = componentMap.get(record.getKey());
+        if (abstractComponent == null) {
+          this.moveBack(record);
+          return;
+        }
+      } finally {
+        this.readWriteLock.writeLock().unlock();
+      }
+    }
+    this.moveBack(abstractComponent);
+  }
+
+  private void moveBack(AbstractComponent abstractComponent) {
+    Lock lock = getCounterLock(abstractComponent);
+    if (lock != null) {
+      lock.lock();
+    }
+    try {
+      long phyOffset = this.getMirrorOffset(abstractComponent.getPhyOffset());
+      if (phyOffset >= 0) {
+        abstractComponent.setPhyOffset(phyOffset);
+        this.reindex(abstractComponent);
+      }
+    } finally {
+      if (lock != null) {
+        lock.unlock();
+      }
+    }
+  }
+
+  /** Index the moved component, the compaction does not hold the write lock. */
+  private void reindex(AbstractComponent abstractComponent) {
+    if (keyIndex == null) {
+      return;
+    }
+    try {
+      this.readWriteLock.writeLock().lock();
+      this.index(abstractComponent);
+    } finally {
+      this.readWriteLock.writeLock().unlock();
+    }
+  }
+
+  /** The lock the services hold while they write the counters of the component. */
+  private static Lock getCounterLock(AbstractComponent abstractComponent) {
+    if (abstractComponent instanceof CRComponent) {
+      return ((CRComponent) abstractComponent).getWriteLock();
+    } else if (abstractComponent instanceof NSComponent) {
+      return ((NSComponent) abstractComponent).getLock();
+    } else {
+      return null;
+    }
+  }
+
+  private BlockFile allocate(List<BlockFile> list, int length) throws IOException {
+    BlockFile blockFile = list.get(list.size() - 1);
+    if (blockFile.isWriteFull(length)) {
+      blockFile =
+          this.createBlockFile(
+              this.getCompactFilePath(), blockFile.getIndex() + 1, blockFile.getGeneration());
+      list.add(blockFile);
+    }
+    return blockFile;
+  }
+
+  private List<BlockFile> newGeneration() throws IOException {
+    deleteDir(this.getCompactFilePath());
+    int next = (generation + 1) & 0xFFFF;
+    BlockFile blockFile = this.createBlockFile(this.getCompactFilePath(), 0, next);
+    blockFile.setGeneration(next);
+    blockFile.setProduceMode(this.getBlockFile(0).getProduceMode());
+
+    List<BlockFile> list = new CopyOnWriteArrayList<>();
+    list.add(blockFile);
+    generationMap.put(next, list);
+    return list;
+  }
+
+  private void dropGeneration(List<BlockFile> list) throws IOException {
+    generationMap.remove(list.get(0).getGeneration(), list);
+    relocationMap.clear();
+    for (BlockFile blockFile : list) {
+      blockFile.unload();
+    }
+    deleteDir(this.getCompactFilePath());
+    this.allocateNextBlockFile(this.getLastBlockFile().getIndex() + 1);
+  }
+
+  /**
+   * Replace the store directory with the one of the next generation. The directory is moved away
+   * first, see {@link #recoverCompaction()} for a crash between the moves. The new segments are
+   * forced before, only the swap holds the write lock.
+   *
+   * @param lastOffset logical offset of the records, it is kept by the new segments
+   */
+  private void commitGeneration(List<BlockFile> list, int lastOffset) throws IOException {
+    int dataSize = 0;
+    for (BlockFile blockFile : list) {
+      dataSize += blockFile.getDataSize();
+    }
+    BlockFile first = list.get(0);
+    first.copyHeader(this.getBlockFile(0));
+    first.setCompacted(lastOffset - StoreHeader.STORE_HEADER_SIZE - dataSize, lastOffset);
+    this.save();
+
+    try {
+      this.readWriteLock.writeLock().lock();
+      this.replaceStoreDir(list);
+      this.relocationMap.clear();
+    } finally {
+      this.readWriteLock.writeLock().unlock();
+    }
+
+    this.allocateNextBlockFile(this.getLastBlockFile().getIndex() + 1);
+    if (counterJournal != null) {
+      // the records of the retired generation are skipped by a replay
+      counterJournal.checkpoint();
+    }
+  }
+
+  /**
+   * Move the store directory away and the directory of the new segments in its place, then unload
+   * the replaced segments. The new segments must be forced before.
+   */
+  private void replaceStoreDir(List<BlockFile> list) throws IOException {
+    String rootDir = myberryStore.getStoreConfig().getStoreRootDir();
+    Path storePath = new File(StorePathConfigHelper.getStoreFilePath(rootDir)).toPath();
+    Path retiredPath = new File(StorePathConfigHelper.getRetiredFilePath(rootDir)).toPath();
+    Files.move(storePath, retiredPath);
+    Files.move(new File(this.getCompactFilePath()).toPath(), storePath);
+
+    List<BlockFile> retired = this.blockFileList;
+    this.blockFileList = list;
+    this.generation = list.get(0).getGeneration();
+    this.generationMap.remove(retired.get(0).getGeneration(), retired);
+    for (BlockFile blockFile : retired) {
+      blockFile.unload();
+    }
+    deleteDir(retiredPath.toString());
+  }
+
+  /**
+   * Finish or drop a compaction or a migration which was interrupted. The new directory is
+   * complete once the store directory was moved away, otherwise the store directory is still
+   * complete.
+   */
+  private void recoverCompaction() throws IOException {
+    String rootDir = myberryStore.getStoreConfig().getStoreRootDir();
+    File storeFile = new File(StorePathConfigHelper.getStoreFilePath(rootDir));
+    File compactFile = new File(this.getCompactFilePath());
+    if (compactFile.exists()) {
+      if (storeFile.exists()) {
+        log.warn("drop unfinished compaction: {}", compactFile);
+        deleteDir(compactFile.getPath());
+      } else {
+        log.warn("finish interrupted compaction: {}", compactFile);
+        Files.move(compactFile.toPath(), storeFile.toPath());
+      }
+    }
+    deleteDir(StorePathConfigHelper.getRetiredFilePath(rootDir));
+  }
+
+  private String getCompactFilePath() {
+    return StorePathConfigHelper.getCompactFilePath(
+        myberryStore.getStoreConfig().getStoreRootDir());
+  }
+
+  private static void deleteDir(String dirName) throws IOException {
+    File dir = new File(dirName);
+    if (!dir.exists()) {
+      return;
+    }
+    try (Stream<Path> paths = Files.walk(dir.toPath())) {
+      for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+        Files.delete(path);
+      }
+    }
+  }
+
+  public boolean load(final StoreConfig storeConfig, final CounterJournal counterJournal) {
     try {
-      BlockFile f = new BlockFile(storeConfig);
-      f.loadHeader();
-      f.loadComponent();
+      this.counterJournal = counterJournal;
+      if (!storeConfig.isMemoryEngine()) {
+        this.recoverCompaction();
+      }
+      for (int i = 0; i == 0 || this.isExistBlockFile(storeConfig, i); i++) {
+        BlockFile f = this.createBlockFile(i);
+        if (i == 0) {
+          // a legacy header has record data in place of the fields after the first 64 bytes
+          if (!f.isLegacy()) {
+            storeConfig.setFileSize(Math.max(storeConfig.getFileSize(), f.getFileSize()));
+            f.setFileSize(storeConfig.getFileSize());
+            this.generation = f.getGeneration();
+          }
+          this.generationMap.put(generation, blockFileList);
+        }
+        if (i > 0 && f.isEmpty()) {
+          // mapped ahead before the last shutdown
+          this.nextBlockFile = CompletableFuture.completedFuture(f);
+          break;
+        }
+        this.blockFileList.add(f);
+      }
+
+      if (counterJournal != null) {
+        counterJournal.replay();
+      }
+      if (this.getBlockFile(0).isLegacy()) {
+        this.migrate();
+        if (counterJournal != null) {
+          // the replayed records point into the legacy layout
+          counterJournal.checkpoint();
+        }
+      } else {
+        for (BlockFile f : this.blockFileList) {
+          f.loadComponent();
+        }
+      }
+
+      if (storeConfig.isWarmMappedFileEnable()) {
+        log.info("warmed {} pages of {} store segments", warmedPages.get(), blockFileList.size());
+      }
 
-      this.blockFileList.add(f);
+      if (storeConfig.isPreallocateSegment()) {
+        this.allocateExecutor =
+            Executors.newSingleThreadExecutor(new ThreadFactoryImpl("AllocateBlockFileThread_"));
+      }
+      if (this.nextBlockFile == null) {
+        this.allocateNextBlockFile(this.getLastBlockFile().getIndex() + 1);
+      }
     } catch (IOException e) {
       log.error("load file error", e);
       return false;
@@ -80,17 +1138,169 @@ public class FileService {
     return true;
   }
 
+  /** A segment is loaded by the memory engine only if it restores the snapshot. */
+  private boolean isExistBlockFile(final StoreConfig storeConfig, int index) {
+    if (storeConfig.isMemoryEngine() && !storeConfig.isMemorySnapshotEnable()) {
+      return false;
+    }
+    return new File(BlockFile.getFileName(storeConfig, index)).exists();
+  }
+
+  /**
+   * Upgrade a store written before layout version 2: the records are decoded and appended with the
+   * larger header and their checksums to new segments beside the store, which replace the store
+   * directory once they are forced, as by a compaction. A crash before leaves the legacy segments.
+   */
+  private void migrate() throws IOException {
+    long beginTime = System.currentTimeMillis();
+
+    List<AbstractComponent> components = new ArrayList<>();
+    for (BlockFile f : this.blockFileList) {
+      components.addAll(f.loadLegacyComponents());
+    }
+    this.discardNextBlockFile();
+
+    deleteDir(this.getCompactFilePath());
+    BlockFile first = this.createBlockFile(this.getCompactFilePath(), 0, 0);
+    first.copyHeader(this.getBlockFile(0));
+    first.setGeneration(0);
+    first.setFileSize(myberryStore.getStoreConfig().getFileSize());
+    List<BlockFile> list = new CopyOnWriteArrayList<>();
+    list.add(first);
+    generationMap.put(0, list);
+
+    try {
+      for (AbstractComponent abstractComponent : components) {
+        this.allocate(list, this.getLength(abstractComponent)).addComponent(abstractComponent);
+        this.index(abstractComponent);
+      }
+      for (BlockFile f : list) {
+        f.flush();
+      }
+    } catch (IOException | RuntimeException e) {
+      for (BlockFile f : list) {
+        f.unload();
+      }
+      deleteDir(this.getCompactFilePath());
+      throw e;
+    }
+    this.replaceStoreDir(list);
+
+    log.info(
+        "migrate {} components to store layout version 2 in {} ms",
+        components.size(),
+        System.currentTimeMillis() - beginTime);
+  }
+
+  private BlockFile createBlockFile(int index) throws IOException {
+    return this.createBlockFile(
+        StorePathConfigHelper.getStoreFilePath(myberryStore.getStoreConfig().getStoreRootDir()),
+        index,
+        generation);
+  }
+
+  private BlockFile createBlockFile(String storePath, int index, int generation)
+      throws IOException {
+    StoreConfig storeConfig = myberryStore.getStoreConfig();
+    BlockFile blockFile = new BlockFile(storeConfig, storePath, index, storeComponent);
+    blockFile.loadHeader();
+    if (index > 0 && !blockFile.isLegacy()) {
+      blockFile.setProduceMode(this.getBlockFile(0).getProduceMode());
+      blockFile.setGeneration(generation);
+    }
+
+    if (storeConfig.isWarmMappedFileEnable()) {
+      long beginTime = System.currentTimeMillis();
+      int pages = blockFile.warm(storeConfig.getWarmMappedFileParallelism());
+      this.warmedPages.addAndGet(pages);
+      log.info(
+          "warm store segment {}: {} pages in {} ms",
+          index,
+          pages,
+          System.currentTimeMillis() - beginTime);
+    }
+    if (storeConfig.isMlockMappedFileEnable()) {
+      blockFile.mlock();
+    }
+    return blockFile;
+  }
+
+  /** Number of pages touched by the warm-up of the mapped segments. */
+  public long getWarmedPages() {
+    return warmedPages.get();
+  }
+
+  private void allocateNextBlockFile(int index) {
+    if (allocateExecutor == null) {
+      this.nextBlockFile = null;
+      return;
+    }
+
+    this.nextBlockFile =
+        CompletableFuture.supplyAsync(
+            () -> {
+              try {
+                return this.createBlockFile(index);
+              } catch (IOException e) {
+                throw new UncheckedIOException(e);
+              }
+            },
+            allocateExecutor);
+  }
+
+  /** Unload the segment mapped ahead, a compaction replaces the store directory. */
+  private void discardNextBlockFile() {
+    if (this.nextBlockFile != null) {
+      try {
+        this.nextBlockFile.join().unload();
+      } catch (Exception e) {
+        log.warn("unload allocated store segment error: ", e);
+      }
+      this.nextBlockFile = null;
+    }
+  }
+
+  private BlockFile takeNextBlockFile(int index) throws IOException {
+    CompletableFuture<BlockFile> future = this.nextBlockFile;
+    this.nextBlockFile = null;
+    if (future != null) {
+      try {
+        BlockFile blockFile = future.join();
+        if (blockFile.getIndex() == index) {
+          return blockFile;
+        }
+        blockFile.unload();
+      } catch (Exception e) {
+        log.warn("allocate store segment {} error, map it now: ", index, e);
+      }
+    }
+    return this.createBlockFile(index);
+  }
+
   public void unload() {
     try {
+      this.appendLock.lock();
       this.readWriteLock.writeLock().lock();
+      this.discardNextBlockFile();
+      if (this.allocateExecutor != null) {
+        this.allocateExecutor.shutdown();
+      }
+
       for (BlockFile f : this.blockFileList) {
         f.unload();
       }
       this.blockFileList.clear();
+      this.generationMap.clear();
+      this.relocationMap.clear();
+      this.componentMap.clear();
+      if (this.keyIndex != null) {
+        this.keyIndex.clear();
+      }
     } catch (Exception e) {
       log.error("destroy exception", e);
     } finally {
       this.readWriteLock.writeLock().unlock();
+      this.appendLock.unlock();
     }
   }
 }
@@ -0,0 +1,179 @@
+/*
+* MIT License
+*
+* Copyright (c) 2020 gaoyang
+*
+* Permission is hereby granted, free of charge, to any person obtaining a copy
+* of this software and associated documentation files (the "Software"), to deal
+* in the Software without restriction, including without limitation the rights
+* to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+* copies of the Software, and to permit persons to whom the Software is
+* furnished to do so, subject to the following conditions:
+
+* The above copyright notice and this permission notice shall be included in all
+* copies or substantial portions of the Software.
+
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+* IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+* AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+* LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+* OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+* SOFTWARE.
+*/
+package org.myberry.store.impl;
+
+import java.util.LinkedList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.myberry.common.CountDownLatch2;
+import org.myberry.common.ServiceThread;
+import org.myberry.store.DefaultMyberryStore;
+import org.myberry.store.common.LoggerName;
+import org.myberry.store.config.StoreConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Flushes the mapped store in the background. In async mode the store is forced every {@link
+ * StoreConfig#getFlushIntervalMills()} when it is dirty. In sync mode pullers register the offset
+ * they dirtied and wait until the next batched force covers them, a batch is forced when {@link
+ * StoreConfig#getGroupCommitBatchSize()} requests are waiting or after {@link
+ * StoreConfig#getGroupCommitIntervalMills()}.
+ */
+public class FlushService extends ServiceThread {
+
+  private static final Logger log = LoggerFactory.getLogger(LoggerName.STORE_LOGGER_NAME);
+
+  private final DefaultMyberryStore myberryStore;
+  private final StoreConfig storeConfig;
+  private final AtomicBoolean dirty = new AtomicBoolean(false);
+
+  private volatile LinkedList<GroupCommitRequest> requestsWrite = new LinkedList<>();
+  private volatile LinkedList<GroupCommitRequest> requestsRead = new LinkedList<>();
+
+  public FlushService(final DefaultMyberryStore myberryStore) {
+    this.myberryStore = myberryStore;
+    this.storeConfig = myberryStore.getStoreConfig();
+  }
+
+  /**
+   * Register the offset dirtied by a puller.
+   *
+   * @param offset offset of the dirtied component
+   * @return false if sync mode and the flush did not complete within {@link
+   *     StoreConfig#getSyncFlushTimeoutMills()}
+   */
+  public boolean flush(long offset) {
+    if (!storeConfig.isSyncFlush()) {
+      dirty.set(true);
+      return true;
+    }
+
+    GroupCommitRequest request = new GroupCommitRequest(offset);
+    this.putRequest(request);
+    return request.waitForFlush(storeConfig.getSyncFlushTimeoutMills());
+  }
+
+  private synchronized void putRequest(final GroupCommitRequest request) {
+    this.requestsWrite.add(request);
+    if (this.requestsWrite.size() >= storeConfig.getGroupCommitBatchSize()) {
+      this.wakeup();
+    }
+  }
+
+  private synchronized void swapRequests() {
+    LinkedList<GroupCommitRequest> tmp = this.requestsWrite;
+    this.requestsWrite = this.requestsRead;
+    this.requestsRead = tmp;
+  }
+
+  private void doCommit() {
+    if (!this.requestsRead.isEmpty()) {
+      boolean flushOK = true;
+      try {
+        myberryStore.commit();
+      } catch (Exception e) {
+        flushOK = false;
+        log.error("{} flush error: ", this.getServiceName(), e);
+      }
+
+      for (GroupCommitRequest request : this.requestsRead) {
+        request.wakeupCustomer(flushOK);
+      }
+      this.requestsRead.clear();
+    }
+  }
+
+  private void doFlush() {
+    if (dirty.compareAndSet(true, false)) {
+      myberryStore.commit();
+    }
+  }
+
+  @Override
+  protected void onWaitEnd() {
+    this.swapRequests();
+  }
+
+  @Override
+  public void run() {
+    log.info("{} service started", this.getServiceName());
+
+    while (!this.isStopped()) {
+      try {
+        if (storeConfig.isSyncFlush()) {
+          this.waitForRunning(storeConfig.getGroupCommitIntervalMills());
+          this.doCommit();
+        } else {
+          this.waitForRunning(storeConfig.getFlushIntervalMills());
+          this.doFlush();
+        }
+      } catch (Exception e) {
+        log.warn("{} service has exception. ", this.getServiceName(), e);
+      }
+    }
+
+    // release the waiting pullers and flush what is left
+    this.swapRequests();
+    this.doCommit();
+    this.doFlush();
+
+    log.info("{} service end", this.getServiceName());
+  }
+
+  @Override
+  public String getServiceName() {
+    return FlushService.class.getSimpleName();
+  }
+
+  public static class GroupCommitRequest {
+
+    private final long offset;
+    private final CountDownLatch2 countDownLatch = new CountDownLatch2(1);
+    private volatile boolean flushOK = false;
+
+    public GroupCommitRequest(long offset) {
+      this.offset = offset;
+    }
+
+    public long getOffset() {
+      return offset;
+    }
+
+    public void wakeupCustomer(final boolean flushOK) {
+      this.flushOK = flushOK;
+      this.countDownLatch.countDown();
+    }
+
+    public boolean waitForFlush(long timeout) {
+      try {
+        this.countDownLatch.await(timeout, TimeUnit.MILLISECONDS);
+        return this.flushOK;
+      } catch (InterruptedException e) {
+        log.error("Interrupted", e);
+        return false;
+      }
+    }
+  }
+}
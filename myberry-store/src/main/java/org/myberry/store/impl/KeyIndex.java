@@ -0,0 +1,217 @@
+/*
+* MIT License
+*
+* Copyright (c) 2020 gaoyang
+*
+* Permission is hereby granted, free of charge, to any person obtaining a copy
+* of this software and associated documentation files (the "Software"), to deal
+* in the Software without restriction, including without limitation the rights
+* to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+* copies of the Software, and to permit persons to whom the Software is
+* furnished to do so, subject to the following conditions:
+
+* The above copyright notice and this permission notice shall be included in all
+* copies or substantial portions of the Software.
+
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+* IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+* AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+* LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+* OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+* SOFTWARE.
+*/
+package org.myberry.store.impl;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Open addressing table of key hash to the phyOffset of the record of the key. The slots are kept
+ * in a direct buffer, so a key costs 16 bytes off the heap instead of a component on it. A slot is
+ * probed linearly from the hash. Two keys may share a hash, so the key of the record in a slot is
+ * compared through the {@link KeyMatcher}. A removal shifts the following slots back instead of
+ * leaving a tombstone.
+ *
+ * <p>It is not thread safe, {@link FileService} guards it with its lock.
+ */
+public class KeyIndex {
+
+  private static final int SLOT_SIZE = 16;
+  // the slot addresses and the buffer size are ints, 1 << 26 slots take 1 GB
+  private static final int MAX_CAPACITY = 1 << 26;
+  private static final long EMPTY = 0;
+
+  /** Compares a key with the key of the record at a phyOffset. */
+  public interface KeyMatcher {
+
+    boolean matches(long phyOffset, byte[] key);
+  }
+
+  private final int initialCapacity;
+  private final KeyMatcher keyMatcher;
+  private ByteBuffer table;
+  private int mask;
+  private int size;
+
+  public KeyIndex(int initialCapacity, final KeyMatcher keyMatcher) {
+    this.initialCapacity = tableSizeFor(initialCapacity);
+    this.keyMatcher = keyMatcher;
+    this.allocate(this.initialCapacity);
+  }
+
+  /** Hash of the UTF-8 bytes of a key, never 0 which marks an empty slot. */
+  public static long hash(byte[] key) {
+    return hash(ByteBuffer.wrap(key), 0, key.length);
+  }
+
+  public static long hash(ByteBuffer byteBuffer, int offset, int length) {
+    // FNV-1a, then the finalizer of MurmurHash3 to spread the low bits used as the slot
+    long h = 0xcbf29ce484222325L;
+    for (int i = offset; i < offset + length; i++) {
+      h ^= byteBuffer.get(i) & 0xFF;
+      h *= 0x100000001b3L;
+    }
+    h ^= h >>> 33;
+    h *= 0xff51afd7ed558ccdL;
+    h ^= h >>> 33;
+    h *= 0xc4ceb9fe1a85ec53L;
+    h ^= h >>> 33;
+    return h == EMPTY ? 1 : h;
+  }
+
+  public static byte[] toBytes(String key) {
+    return key.getBytes(StandardCharsets.UTF_8);
+  }
+
+  /** @return phyOffset of the record of the key, -1 if the key is not in the index */
+  public long get(byte[] key) {
+    int slot = this.find(hash(key), key);
+    return slot < 0 ? -1 : table.getLong(slot * SLOT_SIZE + 8);
+  }
+
+  /** Add the key or move it to another record. */
+  public void put(byte[] key, long phyOffset) {
+    long hash = hash(key);
+    int slot = this.find(hash, key);
+    if (slot >= 0) {
+      table.putLong(slot * SLOT_SIZE + 8, phyOffset);
+    } else {
+      this.add(hash, phyOffset);
+    }
+  }
+
+  /**
+   * Add a key which is not in the index yet, the loader adds the keys of the records by their
+   * hash without reading them again.
+   */
+  public void add(long hash, long phyOffset) {
+    if (size + 1 > (mask + 1) / 4 * 3) {
+      this.resize((mask + 1) << 1);
+    }
+    insert(table, mask, hash, phyOffset);
+    size++;
+  }
+
+  /** @return false if the key is not in the index */
+  public boolean remove(byte[] key) {
+    int slot = this.find(hash(key), key);
+    if (slot < 0) {
+      return false;
+    }
+
+    int hole = slot;
+    for (int i = (hole + 1) & mask; ; i = (i + 1) & mask) {
+      long hash = table.getLong(i * SLOT_SIZE);
+      if (hash == EMPTY) {
+        break;
+      }
+      // an entry may fill the hole if its probe from its home slot passes the hole
+      int home = (int) hash & mask;
+      if (((i - home) & mask) >= ((i - hole) & mask)) {
+        table.putLong(hole * SLOT_SIZE, hash);
+        table.putLong(hole * SLOT_SIZE + 8, table.getLong(i * SLOT_SIZE + 8));
+        hole = i;
+      }
+    }
+    table.putLong(hole * SLOT_SIZE, EMPTY);
+    table.putLong(hole * SLOT_SIZE + 8, 0);
+    size--;
+    return true;
+  }
+
+  /** The phyOffsets of all keys in ascending order. */
+  public long[] getOffsets() {
+    long[] offsets = new long[size];
+    int count = 0;
+    for (int i = 0; i <= mask; i++) {
+      if (table.getLong(i * SLOT_SIZE) != EMPTY) {
+        offsets[count++] = table.getLong(i * SLOT_SIZE + 8);
+      }
+    }
+    Arrays.sort(offsets);
+    return offsets;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  /** Bytes of the table off the heap. */
+  public long getCapacityBytes() {
+    return (long) table.capacity();
+  }
+
+  public void clear() {
+    this.allocate(initialCapacity);
+  }
+
+  private int find(long hash, byte[] key) {
+    for (int i = (int) hash & mask; ; i = (i + 1) & mask) {
+      long h = table.getLong(i * SLOT_SIZE);
+      if (h == EMPTY) {
+        return -1;
+      }
+      if (h == hash && keyMatcher.matches(table.getLong(i * SLOT_SIZE + 8), key)) {
+        return i;
+      }
+    }
+  }
+
+  private void resize(int capacity) {
+    if (capacity > MAX_CAPACITY) {
+      throw new IllegalStateException("key index is full: " + size + " keys");
+    }
+    ByteBuffer old = this.table;
+    int oldMask = this.mask;
+    this.allocate(capacity);
+    for (int i = 0; i <= oldMask; i++) {
+      long hash = old.getLong(i * SLOT_SIZE);
+      if (hash != EMPTY) {
+        insert(table, mask, hash, old.getLong(i * SLOT_SIZE + 8));
+        size++;
+      }
+    }
+  }
+
+  private void allocate(int capacity) {
+    this.table = ByteBuffer.allocateDirect(capacity * SLOT_SIZE);
+    this.mask = capacity - 1;
+    this.size = 0;
+  }
+
+  private static void insert(ByteBuffer table, int mask, long hash, long phyOffset) {
+    int i = (int) hash & mask;
+    while (table.getLong(i * SLOT_SIZE) != EMPTY) {
+      i = (i + 1) & mask;
+    }
+    table.putLong(i * SLOT_SIZE + 8, phyOffset);
+    table.putLong(i * SLOT_SIZE, hash);
+  }
+
+  private static int tableSizeFor(int capacity) {
+    int n = Math.max(16, Math.min(capacity, MAX_CAPACITY));
+    return Integer.highestOneBit(n - 1) << 1;
+  }
+}
@@ -27,27 +27,58 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
 import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.channels.FileChannel.MapMode;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLongArray;
+import org.myberry.common.ThreadFactoryImpl;
 import org.myberry.store.common.LoggerName;
+import org.myberry.store.util.LibC;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 public class MappedFile {
 
+  public static final int OS_PAGE_SIZE = 4096;
+
   private static final Logger log = LoggerFactory.getLogger(LoggerName.STORE_LOGGER_NAME);
 
   protected RandomAccessFile raf;
 
   protected FileChannel fileChannel;
 
-  private MappedByteBuffer mappedByteBuffer;
+  // a MappedByteBuffer, a heap or direct buffer for a MemoryFile
+  protected volatile ByteBuffer mappedByteBuffer;
+
+  // sink of the touched bytes, so the reads are not eliminated
+  private volatile int touched;
+
+  // one bit per page written since the last flush, null if a flush forces the whole mapping
+  private volatile AtomicLongArray dirtyPages;
+
+  // bytes of the dirty pages written by the last flush
+  private volatile long flushedBytes;
 
   public MappedFile() {}
 
   public MappedFile(final String fileName, final int fileSize) throws IOException {
+    this(fileName, fileSize, false);
+  }
+
+  /** @param trackDirtyPages a flush writes only the pages marked by {@link #markDirty(int, int)} */
+  public MappedFile(final String fileName, final int fileSize, final boolean trackDirtyPages)
+      throws IOException {
     init(fileName, fileSize);
+    if (trackDirtyPages) {
+      this.dirtyPages = newDirtyPages(mappedByteBuffer.capacity(), false);
+    }
   }
 
   private void init(final String fileName, final int fileSize) throws IOException {
@@ -60,7 +91,9 @@ public class MappedFile {
 
       this.raf = new RandomAccessFile(file, "rw");
       this.fileChannel = this.raf.getChannel();
-      this.mappedByteBuffer = this.fileChannel.map(MapMode.READ_WRITE, 0, fileSize);
+      // a file grown online is mapped whole, even if the configured size is smaller
+      long size = Math.max(fileSize, this.fileChannel.size());
+      this.mappedByteBuffer = this.fileChannel.map(MapMode.READ_WRITE, 0, size);
       ok = true;
     } catch (FileNotFoundException e) {
       log.error("create file channel [{}] Failed. ", file.getAbsoluteFile(), e);
@@ -76,7 +109,193 @@ public class MappedFile {
   }
 
   public void flush() {
-    this.mappedByteBuffer.force();
+    AtomicLongArray pages = this.dirtyPages;
+    if (pages == null) {
+      this.force();
+      return;
+    }
+
+    // a page written while it is flushed is marked again for the next flush
+    long[] words = new long[pages.length()];
+    boolean dirty = false;
+    for (int i = 0; i < words.length; i++) {
+      if (pages.get(i) != 0) {
+        words[i] = pages.getAndSet(i, 0);
+        dirty = true;
+      }
+    }
+    if (!dirty) {
+      return;
+    }
+
+    int pageCount = words.length << 6;
+    int begin = -1;
+    boolean msync = true;
+    long bytes = 0;
+    for (int page = 0; page <= pageCount; page++) {
+      if (begin < 0 && page < pageCount && words[page >>> 6] == 0) {
+        page |= 63;
+        continue;
+      }
+      boolean set = page < pageCount && (words[page >>> 6] & (1L << page)) != 0;
+      if (set && begin < 0) {
+        begin = page;
+      } else if (!set && begin >= 0) {
+        long offset = (long) begin * OS_PAGE_SIZE;
+        long length = Math.min((long) page * OS_PAGE_SIZE, mappedByteBuffer.capacity()) - offset;
+        if (msync && !LibC.msync(mappedByteBuffer, offset, length)) {
+          msync = false;
+        }
+        if (!msync && !this.write((int) offset, (int) length)) {
+          this.force();
+          return;
+        }
+        bytes += length;
+        begin = -1;
+      }
+    }
+
+    if (!msync) {
+      try {
+        // the runs are in the page cache now, the metadata is not needed to read them back
+        fileChannel.force(false);
+      } catch (IOException e) {
+        log.warn("force file channel error, force the whole mapping: ", e);
+        this.force();
+        return;
+      }
+    }
+    this.flushedBytes = bytes;
+  }
+
+  /**
+   * Write a run of pages with positional writes of the channel, without JNA. The buffer maps the
+   * file from 0, so a byte is written at its own position.
+   */
+  private boolean write(int offset, int length) {
+    ByteBuffer run = mappedByteBuffer.duplicate();
+    run.limit(offset + length).position(offset);
+    try {
+      while (run.hasRemaining()) {
+        fileChannel.write(run, run.position());
+      }
+      return true;
+    } catch (IOException e) {
+      log.warn("write dirty pages error, force the whole mapping: ", e);
+      return false;
+    }
+  }
+
+  private void force() {
+    ((MappedByteBuffer) this.mappedByteBuffer).force();
+    this.flushedBytes = this.mappedByteBuffer.capacity();
+  }
+
+  /** Mark the pages of the bytes in [position, position + length) written. */
+  public void markDirty(int position, int length) {
+    AtomicLongArray pages = this.dirtyPages;
+    if (pages == null || length <= 0) {
+      return;
+    }
+    int last = (position + length - 1) / OS_PAGE_SIZE;
+    for (int page = position / OS_PAGE_SIZE; page <= last; page++) {
+      long bit = 1L << page;
+      if ((pages.get(page >>> 6) & bit) == 0) {
+        pages.getAndAccumulate(page >>> 6, bit, (word, b) -> word | b);
+      }
+    }
+  }
+
+  /** Number of pages a flush would write. */
+  public int getDirtyPageCount() {
+    AtomicLongArray pages = this.dirtyPages;
+    if (pages == null) {
+      return 0;
+    }
+    int count = 0;
+    for (int i = 0; i < pages.length(); i++) {
+      count += Long.bitCount(pages.get(i));
+    }
+    return count;
+  }
+
+  /** Bytes written by the last flush that wrote any, the whole mapping if it was forced. */
+  public long getFlushedBytes() {
+    return flushedBytes;
+  }
+
+  private static AtomicLongArray newDirtyPages(int capacity, boolean dirty) {
+    int pages = (capacity + OS_PAGE_SIZE - 1) / OS_PAGE_SIZE;
+    AtomicLongArray words = new AtomicLongArray((pages + 63) >>> 6);
+    for (int page = 0; dirty && page < pages; page++) {
+      words.set(page >>> 6, words.get(page >>> 6) | 1L << page);
+    }
+    return words;
+  }
+
+  /**
+   * Map a larger region of the file. The previous mapping stays valid until it is collected, it
+   * maps the same pages, so writes through it are not lost.
+   *
+   * @return the new mapping
+   */
+  public ByteBuffer remap(final int fileSize) throws IOException {
+    this.mappedByteBuffer = this.fileChannel.map(MapMode.READ_WRITE, 0, fileSize);
+    if (this.dirtyPages != null) {
+      // marks racing with the swap may be lost, so the next flush writes all the pages
+      this.dirtyPages = newDirtyPages(fileSize, true);
+    }
+    return this.mappedByteBuffer;
+  }
+
+  /**
+   * Touch every page of the mapping, so the first writes do not fault.
+   *
+   * @param parallelism number of threads touching the pages
+   * @return number of pages touched
+   */
+  public int warm(int parallelism) {
+    int pages = (mappedByteBuffer.capacity() + OS_PAGE_SIZE - 1) / OS_PAGE_SIZE;
+    int threads = Math.max(1, Math.min(parallelism, pages));
+    if (threads == 1) {
+      touch(0, pages);
+      return pages;
+    }
+
+    ExecutorService executor =
+        Executors.newFixedThreadPool(threads, new ThreadFactoryImpl("WarmMappedFileThread_"));
+    try {
+      List<Future<?>> futures = new ArrayList<>(threads);
+      int chunk = (pages + threads - 1) / threads;
+      for (int from = 0; from < pages; from += chunk) {
+        int begin = from;
+        int end = Math.min(pages, from + chunk);
+        futures.add(executor.submit(() -> touch(begin, end)));
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (ExecutionException e) {
+      log.warn("warm mapped file error: ", e);
+    } finally {
+      executor.shutdown();
+    }
+    return pages;
+  }
+
+  private void touch(int beginPage, int endPage) {
+    byte sum = 0;
+    for (int page = beginPage; page < endPage; page++) {
+      sum += mappedByteBuffer.get(page * OS_PAGE_SIZE);
+    }
+    touched += sum;
+  }
+
+  /** Lock the mapping in memory, best effort, see {@link LibC#mlock}. */
+  public boolean mlock() {
+    return LibC.mlock(mappedByteBuffer);
   }
 
   public static void ensureDirOK(final String dirName) {
@@ -114,11 +333,26 @@ public class MappedFile {
     }
   }
 
+  /**
+   * Copy the first bytes of the file to the target channel with {@link
+   * FileChannel#transferTo(long, long, java.nio.channels.WritableByteChannel)}, the bytes do not
+   * pass through the heap.
+   *
+   * @return bytes copied
+   */
+  public long transferTo(long length, final FileChannel target) throws IOException {
+    long count = 0;
+    while (count < length) {
+      count += this.fileChannel.transferTo(count, length - count, target);
+    }
+    return count;
+  }
+
   public FileChannel getFileChannel() {
     return fileChannel;
   }
 
-  public MappedByteBuffer getMappedByteBuffer() {
+  public ByteBuffer getMappedByteBuffer() {
     return mappedByteBuffer;
   }
 }
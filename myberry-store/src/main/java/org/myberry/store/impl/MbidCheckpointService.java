@@ -0,0 +1,63 @@
+/*
+* MIT License
+*
+* Copyright (c) 2020 gaoyang
+*
+* Permission is hereby granted, free of charge, to any person obtaining a copy
+* of this software and associated documentation files (the "Software"), to deal
+* in the Software without restriction, including without limitation the rights
+* to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+* copies of the Software, and to permit persons to whom the Software is
+* furnished to do so, subject to the following conditions:
+
+* The above copyright notice and this permission notice shall be included in all
+* copies or substantial portions of the Software.
+
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+* IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+* AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+* LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+* OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+* SOFTWARE.
+*/
+package org.myberry.store.impl;
+
+import org.myberry.common.ServiceThread;
+import org.myberry.store.DefaultMyberryStore;
+import org.myberry.store.common.LoggerName;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/** Periodically aggregates the striped mbid increments into the mapped store header. */
+public class MbidCheckpointService extends ServiceThread {
+
+  private static final Logger log = LoggerFactory.getLogger(LoggerName.STORE_LOGGER_NAME);
+
+  private final DefaultMyberryStore myberryStore;
+
+  public MbidCheckpointService(final DefaultMyberryStore myberryStore) {
+    this.myberryStore = myberryStore;
+  }
+
+  @Override
+  public void run() {
+    log.info("{} service started", this.getServiceName());
+
+    while (!this.isStopped()) {
+      this.waitForRunning(myberryStore.getStoreConfig().getMbidCheckpointIntervalMills());
+      try {
+        myberryStore.checkpointMbid();
+      } catch (Exception e) {
+        log.warn("{} service has exception. ", this.getServiceName(), e);
+      }
+    }
+
+    log.info("{} service end", this.getServiceName());
+  }
+
+  @Override
+  public String getServiceName() {
+    return MbidCheckpointService.class.getSimpleName();
+  }
+}
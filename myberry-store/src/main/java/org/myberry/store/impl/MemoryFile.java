@@ -0,0 +1,107 @@
+/*
+* MIT License
+*
+* Copyright (c) 2020 gaoyang
+*
+* Permission is hereby granted, free of charge, to any person obtaining a copy
+* of this software and associated documentation files (the "Software"), to deal
+* in the Software without restriction, including without limitation the rights
+* to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+* copies of the Software, and to permit persons to whom the Software is
+* furnished to do so, subject to the following conditions:
+
+* The above copyright notice and this permission notice shall be included in all
+* copies or substantial portions of the Software.
+
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+* IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+* AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+* LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+* OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+* SOFTWARE.
+*/
+package org.myberry.store.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import org.myberry.store.common.LoggerName;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A segment held in a heap or direct buffer instead of a mapped file. A flush does nothing, the
+ * segment is only written to disk by a snapshot.
+ */
+public class MemoryFile extends MappedFile {
+
+  private static final Logger log = LoggerFactory.getLogger(LoggerName.STORE_LOGGER_NAME);
+
+  private final boolean direct;
+
+  /**
+   * @param restore read the segment from the file if it exists, e.g. a snapshot taken on shutdown
+   */
+  public MemoryFile(
+      final String fileName, final int fileSize, final boolean direct, final boolean restore)
+      throws IOException {
+    this.direct = direct;
+
+    File file = new File(fileName);
+    long length = restore && file.exists() ? file.length() : 0;
+    this.mappedByteBuffer = allocate((int) Math.max(fileSize, length));
+    if (length > 0) {
+      try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+        ByteBuffer byteBuffer = mappedByteBuffer.duplicate();
+        byteBuffer.limit((int) length);
+        while (byteBuffer.hasRemaining()) {
+          if (raf.getChannel().read(byteBuffer) < 0) {
+            break;
+          }
+        }
+      }
+      log.info("restore store segment {}: {} bytes", fileName, length);
+    }
+  }
+
+  private ByteBuffer allocate(int capacity) {
+    return direct ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+  }
+
+  @Override
+  public void flush() {}
+
+  /**
+   * A segment in memory is not grown, the counter writes through the previous buffer would be
+   * lost. The memory store pins maxFileSize to fileSize, so this is not reached by a grow.
+   */
+  @Override
+  public ByteBuffer remap(final int fileSize) {
+    log.warn(
+        "memory store segment can not grow to {}, keep {}", fileSize, mappedByteBuffer.capacity());
+    return mappedByteBuffer;
+  }
+
+  @Override
+  public boolean mlock() {
+    return direct && super.mlock();
+  }
+
+  @Override
+  public long transferTo(long length, final FileChannel target) throws IOException {
+    ByteBuffer byteBuffer = mappedByteBuffer.duplicate();
+    byteBuffer.position(0);
+    byteBuffer.limit((int) length);
+    long count = 0;
+    while (byteBuffer.hasRemaining()) {
+      count += target.write(byteBuffer, count);
+    }
+    return count;
+  }
+
+  @Override
+  public void destroy() {}
+}
@@ -0,0 +1,112 @@
+/*
+* MIT License
+*
+* Copyright (c) 2020 gaoyang
+*
+* Permission is hereby granted, free of charge, to any person obtaining a copy
+* of this software and associated documentation files (the "Software"), to deal
+* in the Software without restriction, including without limitation the rights
+* to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+* copies of the Software, and to permit persons to whom the Software is
+* furnished to do so, subject to the following conditions:
+
+* The above copyright notice and this permission notice shall be included in all
+* copies or substantial portions of the Software.
+
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+* IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+* AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+* LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+* OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+* SOFTWARE.
+*/
+package org.myberry.store.impl;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+import org.myberry.store.NSComponent;
+
+/**
+ * Layout: createTime, updateTime, phyOffset, mbid, status, initValue, currentValue, stepSize,
+ * resetType, key.
+ */
+public class NSComponentCodec implements ComponentCodec<NSComponent> {
+
+  @Override
+  public void decode(ByteBuffer byteBuffer, NSComponent component) {
+    component.setCreateTime(byteBuffer.getLong());
+    component.setUpdateTime(byteBuffer.getLong());
+    component.setPhyOffset(byteBuffer.getLong());
+    component.setMbid(byteBuffer.getLong());
+    component.setStatus(byteBuffer.getInt());
+    component.setInitValue(byteBuffer.getInt());
+    component.setCurrentValue(byteBuffer.getInt());
+    component.setStepSize(byteBuffer.getInt());
+    component.setResetType(byteBuffer.getInt());
+
+    int keyLength = byteBuffer.getInt();
+    component.setKeyLength(keyLength);
+    component.setKey(CRComponentCodec.getString(byteBuffer, keyLength));
+  }
+
+  @Override
+  public void encode(NSComponent component, ByteBuffer byteBuffer) {
+    byteBuffer.putLong(component.getCreateTime());
+    byteBuffer.putLong(component.getUpdateTime());
+    byteBuffer.putLong(component.getPhyOffset());
+    byteBuffer.putLong(component.getMbid());
+    byteBuffer.putInt(component.getStatus());
+    byteBuffer.putInt(component.getInitValue());
+    byteBuffer.putInt(component.getCurrentValue());
+    byteBuffer.putInt(component.getStepSize());
+    byteBuffer.putInt(component.getResetType());
+    byteBuffer.putInt(component.getKeyLength());
+    byteBuffer.put(component.getKey().getBytes(StandardCharsets.UTF_8));
+  }
+
+  @Override
+  public int getLength(ByteBuffer byteBuffer, int offset) {
+    return NSComponent.FIXED_FIELD_SIZE + byteBuffer.getInt(offset + NSComponent.keyLengthHeader);
+  }
+
+  @Override
+  public void checksum(ByteBuffer byteBuffer, int offset, int length, CRC32 crc32) {
+    StoreComponent.update(
+        crc32,
+        byteBuffer,
+        offset + NSComponent.createTimeHeader,
+        offset + NSComponent.updateTimeHeader);
+    StoreComponent.update(
+        crc32, byteBuffer, offset + NSComponent.phyOffsetHeader, offset + NSComponent.mbidHeader);
+    StoreComponent.update(
+        crc32,
+        byteBuffer,
+        offset + NSComponent.initValueHeader,
+        offset + NSComponent.currentValueHeader);
+    StoreComponent.update(crc32, byteBuffer, offset + NSComponent.stepSizeHeader, offset + length);
+  }
+
+  @Override
+  public int getLength(NSComponent component) {
+    return NSComponent.FIXED_FIELD_SIZE + component.getKeyLength();
+  }
+
+  @Override
+  public int getKeyLengthHeader() {
+    return NSComponent.keyLengthHeader;
+  }
+
+  @Override
+  public void resetCounters(ByteBuffer byteBuffer, int offset) {
+    byteBuffer.putInt(
+        offset + NSComponent.currentValueHeader,
+        byteBuffer.getInt(offset + NSComponent.initValueHeader));
+  }
+
+  @Override
+  public NSComponent newComponent() {
+    return new NSComponent();
+  }
+}
@@ -30,29 +30,61 @@ import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.nio.ByteBuffer;
 import java.nio.MappedByteBuffer;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.zip.CRC32;
+import org.myberry.common.ProduceMode;
 import org.myberry.store.AbstractComponent;
+import org.myberry.store.CRComponent;
+import org.myberry.store.NSComponent;
 import org.myberry.store.common.LoggerName;
 import org.myberry.store.config.StoreConfig;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Reads and writes component records. A record is the encoded component followed by a checksum
+ * of its fields that are not rewritten in place, see {@link ComponentCodec#checksum}.
+ */
 public class StoreComponent {
 
   private static final Logger log = LoggerFactory.getLogger(LoggerName.STORE_LOGGER_NAME);
 
+  public static final int CHECKSUM_SIZE = 4;
+
+  private static final CRComponentCodec CR_COMPONENT_CODEC = new CRComponentCodec();
+  private static final NSComponentCodec NS_COMPONENT_CODEC = new NSComponentCodec();
+
   private final ConcurrentMap<
           String
           /** key */
           ,
           AbstractComponent>
-      componentMap = new ConcurrentHashMap<String, AbstractComponent>();
+      componentMap;
+
+  // null unless the keys are indexed off heap, the loaded records are then added to it instead
+  private final KeyIndex keyIndex;
 
   private final MappedByteBuffer mappedByteBuffer;
 
   public StoreComponent(final MappedByteBuffer mappedByteBuffer) {
+    this(mappedByteBuffer, new ConcurrentHashMap<String, AbstractComponent>());
+  }
+
+  public StoreComponent(
+      final MappedByteBuffer mappedByteBuffer,
+      final ConcurrentMap<String, AbstractComponent> componentMap) {
+    this(mappedByteBuffer, componentMap, null);
+  }
+
+  public StoreComponent(
+      final MappedByteBuffer mappedByteBuffer,
+      final ConcurrentMap<String, AbstractComponent> componentMap,
+      final KeyIndex keyIndex) {
     this.mappedByteBuffer = mappedByteBuffer;
+    this.componentMap = componentMap;
+    this.keyIndex = keyIndex;
   }
 
   public void load(final AbstractComponent abstractComponent)
@@ -60,8 +92,96 @@ public class StoreComponent {
     this.load(abstractComponent, mappedByteBuffer);
   }
 
+  /**
+   * Get the codec of the produce mode, CR is the default as in {@link
+   * org.myberry.store.util.MappingUtils#getComponentMapping(int)}.
+   */
+  public static ComponentCodec<? extends AbstractComponent> getCodec(int produceMode) {
+    if (ProduceMode.NS.getProduceCode() == produceMode) {
+      return NS_COMPONENT_CODEC;
+    } else {
+      return CR_COMPONENT_CODEC;
+    }
+  }
+
+  /** Decode the record at the position of the buffer with the codec of the produce mode. */
+  public static AbstractComponent decode(int produceMode, final ByteBuffer byteBuffer) {
+    AbstractComponent abstractComponent = decodeBody(produceMode, byteBuffer);
+    byteBuffer.position(byteBuffer.position() + CHECKSUM_SIZE);
+    return abstractComponent;
+  }
+
+  /** Decode a record without checksum, as written before layout version 2. */
+  public static AbstractComponent decodeBody(int produceMode, final ByteBuffer byteBuffer) {
+    return decode(getCodec(produceMode), byteBuffer);
+  }
+
+  /** Length of the record at offset, with the checksum. */
+  public static int getLength(
+      ComponentCodec<? extends AbstractComponent> codec, ByteBuffer byteBuffer, int offset) {
+    return codec.getLength(byteBuffer, offset) + CHECKSUM_SIZE;
+  }
+
+  /**
+   * Verify the checksum of the record at offset.
+   *
+   * @param length record length with the checksum
+   */
+  public static boolean verify(
+      ComponentCodec<? extends AbstractComponent> codec,
+      ByteBuffer byteBuffer,
+      int offset,
+      int length) {
+    int bodyLength = length - CHECKSUM_SIZE;
+    return byteBuffer.getInt(offset + bodyLength)
+        == checksum(codec, byteBuffer, offset, bodyLength);
+  }
+
+  private static int checksum(
+      ComponentCodec<? extends AbstractComponent> codec,
+      ByteBuffer byteBuffer,
+      int offset,
+      int length) {
+    CRC32 crc32 = new CRC32();
+    if (codec != null) {
+      codec.checksum(byteBuffer, offset, length, crc32);
+    } else {
+      update(crc32, byteBuffer, offset, offset + length);
+    }
+    return (int) crc32.getValue();
+  }
+
+  /** Update the checksum with the bytes in [from, to) of the buffer. */
+  public static void update(CRC32 crc32, ByteBuffer byteBuffer, int from, int to) {
+    ByteBuffer duplicate = byteBuffer.duplicate();
+    duplicate.limit(to);
+    duplicate.position(from);
+    crc32.update(duplicate);
+  }
+
+  private static <T extends AbstractComponent> T decode(
+      ComponentCodec<T> codec, final ByteBuffer byteBuffer) {
+    T component = codec.newComponent();
+    codec.decode(byteBuffer, component);
+    return component;
+  }
+
   public void load(final AbstractComponent abstractComponent, final ByteBuffer byteBuffer)
       throws IllegalAccessException, UnsupportedEncodingException {
+    if (abstractComponent instanceof CRComponent) {
+      CR_COMPONENT_CODEC.decode(byteBuffer, (CRComponent) abstractComponent);
+    } else if (abstractComponent instanceof NSComponent) {
+      NS_COMPONENT_CODEC.decode(byteBuffer, (NSComponent) abstractComponent);
+    } else {
+      loadByReflection(abstractComponent, byteBuffer);
+    }
+    byteBuffer.position(byteBuffer.position() + CHECKSUM_SIZE);
+  }
+
+  /** Field by field through setters, for component types without a codec. */
+  private void loadByReflection(
+      final AbstractComponent abstractComponent, final ByteBuffer byteBuffer)
+      throws IllegalAccessException, UnsupportedEncodingException {
     Field[] abstractComponentFields = getAbstractComponentFields(abstractComponent);
 
     int preValue = 0;
@@ -103,19 +223,51 @@ public class StoreComponent {
     }
   }
 
+  /** Length of the record of the component, with the checksum. */
+  public int getLength(final AbstractComponent abstractComponent, int maxLength) {
+    if (abstractComponent instanceof CRComponent) {
+      return CR_COMPONENT_CODEC.getLength((CRComponent) abstractComponent) + CHECKSUM_SIZE;
+    } else if (abstractComponent instanceof NSComponent) {
+      return NS_COMPONENT_CODEC.getLength((NSComponent) abstractComponent) + CHECKSUM_SIZE;
+    } else {
+      ByteBuffer byteBuffer = ByteBuffer.allocate(maxLength);
+      writeByReflection(abstractComponent, byteBuffer);
+      return byteBuffer.position() + CHECKSUM_SIZE;
+    }
+  }
+
   public void write(final AbstractComponent abstractComponent) {
     this.write(abstractComponent, mappedByteBuffer);
   }
 
   public void write(final AbstractComponent abstractComponent, final ByteBuffer byteBuffer) {
+    int offset = byteBuffer.position();
+    ComponentCodec<? extends AbstractComponent> codec = null;
+    if (abstractComponent instanceof CRComponent) {
+      CR_COMPONENT_CODEC.encode((CRComponent) abstractComponent, byteBuffer);
+      codec = CR_COMPONENT_CODEC;
+    } else if (abstractComponent instanceof NSComponent) {
+      NS_COMPONENT_CODEC.encode((NSComponent) abstractComponent, byteBuffer);
+      codec = NS_COMPONENT_CODEC;
+    } else {
+      writeByReflection(abstractComponent, byteBuffer);
+    }
+    byteBuffer.putInt(checksum(codec, byteBuffer, offset, byteBuffer.position() - offset));
+  }
+
+  /** Field by field through getters, for component types without a codec. */
+  private void writeByReflection(
+      final AbstractComponent abstractComponent, final ByteBuffer byteBuffer) {
     Field[] abstractComponentFields = getAbstractComponentFields(abstractComponent);
 
     for (Field field : abstractComponentFields) {
 
       if (!Modifier.isStatic(field.getModifiers()) && !Modifier.isFinal(field.getModifiers())) {
-        field.setAccessible(true);
+        String name = field.getName();
+        name = name.substring(0, 1).toUpperCase() + name.substring(1);
         try {
-          String value = field.get(abstractComponent).toString();
+          Method method = abstractComponent.getClass().getMethod("get" + name);
+          String value = method.invoke(abstractComponent).toString();
 
           String fieldTypeName = field.getType().getSimpleName();
           if (fieldTypeName.equals("String")) {
@@ -130,12 +282,14 @@ public class StoreComponent {
               || fieldTypeName.equals("LongAdder")) {
             byteBuffer.putLong(Long.parseLong(value));
           }
-        } catch (IllegalArgumentException e) {
-          log.error("load reflection exception: ", e);
+        } catch (NoSuchMethodException e) {
+          log.error("write reflection exception: ", e);
         } catch (IllegalAccessException e) {
-          log.error("load access exception: ", e);
+          log.error("write access exception: ", e);
+        } catch (InvocationTargetException e) {
+          log.error("write invocation exception: ", e);
         } catch (UnsupportedEncodingException e) {
-          log.error("load encoding exception: ", e);
+          log.error("write encoding exception: ", e);
         }
       }
     }
@@ -147,15 +301,67 @@ public class StoreComponent {
   }
 
   public static void put(ByteBuffer byteBuffer, int offset, byte[] src) {
-    for (int i = 0; i < src.length; i++) {
-      byteBuffer.put(offset + i, src[i]);
+    ByteBuffer duplicate = byteBuffer.duplicate();
+    duplicate.position(offset);
+    duplicate.put(src);
+  }
+
+  /** Status of the record at offset, it is at the same position in the records of each codec. */
+  public static int getStatus(ByteBuffer byteBuffer, int offset) {
+    return byteBuffer.getInt(offset + CRComponent.statusHeader);
+  }
+
+  public static void setStatus(ByteBuffer byteBuffer, int offset, int status) {
+    byteBuffer.putInt(offset + CRComponent.statusHeader, status);
+  }
+
+  /** Hash of the key of the record at offset, see {@link KeyIndex#hash(byte[])}. */
+  public static long hashKey(
+      ComponentCodec<? extends AbstractComponent> codec, ByteBuffer byteBuffer, int offset) {
+    int keyLengthOffset = offset + codec.getKeyLengthHeader();
+    return KeyIndex.hash(byteBuffer, keyLengthOffset + 4, byteBuffer.getInt(keyLengthOffset));
+  }
+
+  /** Whether the record at offset has the key, compared byte by byte. */
+  public static boolean keyEquals(
+      ComponentCodec<? extends AbstractComponent> codec,
+      ByteBuffer byteBuffer,
+      int offset,
+      byte[] key) {
+    int keyLengthOffset = offset + codec.getKeyLengthHeader();
+    if (byteBuffer.getInt(keyLengthOffset) != key.length) {
+      return false;
     }
+    for (int i = 0; i < key.length; i++) {
+      if (byteBuffer.get(keyLengthOffset + 4 + i) != key[i]) {
+        return false;
+      }
+    }
+    return true;
   }
 
-  public static byte[] get(ByteBuffer byteBuffer, int offset, byte[] dest) {
-    for (int i = 0; i < dest.length; i++) {
-      dest[i] = byteBuffer.get(offset + i);
+  /**
+   * Copy the fields of the record at offset which are rewritten in place, the times, the counters
+   * and the status. They are read one by one, so a concurrent counter write does not tear them.
+   */
+  public static void copyFields(
+      ComponentCodec<? extends AbstractComponent> codec,
+      ByteBuffer src,
+      ByteBuffer dest,
+      int offset) {
+    int position = 0;
+    for (; position < CRComponent.statusHeader; position += 8) {
+      dest.putLong(offset + position, src.getLong(offset + position));
+    }
+    for (; position < codec.getKeyLengthHeader(); position += 4) {
+      dest.putInt(offset + position, src.getInt(offset + position));
     }
+  }
+
+  public static byte[] get(ByteBuffer byteBuffer, int offset, byte[] dest) {
+    ByteBuffer duplicate = byteBuffer.duplicate();
+    duplicate.position(offset);
+    duplicate.get(dest);
     return dest;
   }
 
@@ -163,6 +369,23 @@ public class StoreComponent {
     componentMap.put(abstractComponent.getKey(), abstractComponent);
   }
 
+  public void addAllMap(final Map<String, AbstractComponent> components) {
+    componentMap.putAll(components);
+  }
+
+  /** Add the keys of loaded records to the key index by their hashes. */
+  public void addAllIndex(long[] hashes, long[] phyOffsets, int count) {
+    synchronized (keyIndex) {
+      for (int i = 0; i < count; i++) {
+        keyIndex.add(hashes[i], phyOffsets[i]);
+      }
+    }
+  }
+
+  public KeyIndex getKeyIndex() {
+    return keyIndex;
+  }
+
   public boolean isExistKey(String key) {
     return componentMap.containsKey(key);
   }
@@ -26,10 +26,20 @@ package org.myberry.store.impl;
 import java.nio.ByteBuffer;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
-
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.CRC32;
+
+/**
+ * Header of a store segment. Since layout version 2 the header is 128 bytes, the version and a
+ * checksum of the header follow the fields, then the grown segment size and the compaction state,
+ * the rest is reserved.
+ */
 public class StoreHeader {
 
-  public static final int STORE_HEADER_SIZE = 64;
+  public static final int STORE_HEADER_SIZE = 128;
+  public static final int LEGACY_STORE_HEADER_SIZE = 64;
+  // "MB" and the layout version, a legacy 64 byte header has record data here
+  public static final int STORE_VERSION = 0x4D420002;
   private static int beginTimestampHeader = 0;
   private static int endTimestampHeader = 8;
   private static int beginPhyoffsetHeader = 16;
@@ -40,14 +50,22 @@ public class StoreHeader {
   private static int mySidHeader = 52;
   private static int componentCountHeader = 56;
   private static int produceModeHeader = 60;
+  private static int versionHeader = 64;
+  private static int checksumHeader = 68;
+  private static int fileSizeHeader = 72;
+  private static int generationHeader = 76;
+  private static int compactedSizeHeader = 80;
+  private static int compactedOffsetHeader = 84;
 
-  private final ByteBuffer byteBuffer;
+  private volatile ByteBuffer byteBuffer;
 
   private AtomicLong beginTimestamp = new AtomicLong(0);
   private AtomicLong endTimestamp = new AtomicLong(0);
   private AtomicLong beginPhyoffset = new AtomicLong(0);
   private AtomicLong endPhyoffset = new AtomicLong(0);
   private AtomicLong mbid = new AtomicLong(0);
+  // increments not yet checkpointed into the header, striped so pulls on all keys do not contend
+  private final LongAdder pendingMbid = new LongAdder();
   private AtomicLong epoch = new AtomicLong(0);
 
   private AtomicInteger maxSid = new AtomicInteger();
@@ -108,11 +126,13 @@ public class StoreHeader {
     this.byteBuffer.putLong(endPhyoffsetHeader, endPhyoffset);
   }
 
-  public long getMbid() {
-    return mbid.get();
+  /** Synchronized with the checkpoint, which moves the pending increments into mbid. */
+  public synchronized long getMbid() {
+    return mbid.get() + pendingMbid.sum();
   }
 
-  public void setMbid(long mbid) {
+  public synchronized void setMbid(long mbid) {
+    this.pendingMbid.reset();
     this.mbid.set(mbid);
     this.byteBuffer.putLong(mbidHeader, mbid);
   }
@@ -162,15 +182,102 @@ public class StoreHeader {
     this.byteBuffer.putInt(produceModeHeader, produceMode);
   }
 
+  /** Segment size the store has grown to, 0 if it never grew. */
+  public int getFileSize() {
+    return byteBuffer.getInt(fileSizeHeader);
+  }
+
+  public void setFileSize(int fileSize) {
+    this.byteBuffer.putInt(fileSizeHeader, fileSize);
+  }
+
+  /** Incremented each time the segments are rewritten by a compaction. */
+  public int getGeneration() {
+    return byteBuffer.getInt(generationHeader);
+  }
+
+  public void setGeneration(int generation) {
+    this.byteBuffer.putInt(generationHeader, generation);
+  }
+
+  /** Record bytes dropped by the compactions, they still count in the logical offset. */
+  public int getCompactedSize() {
+    return byteBuffer.getInt(compactedSizeHeader);
+  }
+
+  public void setCompactedSize(int compactedSize) {
+    this.byteBuffer.putInt(compactedSizeHeader, compactedSize);
+  }
+
+  /** Logical offset of the last compaction, the records before it are not kept in order. */
+  public int getCompactedOffset() {
+    return byteBuffer.getInt(compactedOffsetHeader);
+  }
+
+  public void setCompactedOffset(int compactedOffset) {
+    this.byteBuffer.putInt(compactedOffsetHeader, compactedOffset);
+  }
+
+  public int getVersion() {
+    return byteBuffer.getInt(versionHeader);
+  }
+
+  public boolean isChecksumValid() {
+    return byteBuffer.getInt(checksumHeader) == this.checksum();
+  }
+
+  /**
+   * Stamp the version and the checksum, before the header is forced.
+   *
+   * @return false if the header is unchanged since it was sealed
+   */
+  public synchronized boolean seal() {
+    int checksum = this.checksum();
+    if (byteBuffer.getInt(versionHeader) == STORE_VERSION
+        && byteBuffer.getInt(checksumHeader) == checksum) {
+      return false;
+    }
+    this.byteBuffer.putInt(versionHeader, STORE_VERSION);
+    this.byteBuffer.putInt(checksumHeader, this.checksum());
+    return true;
+  }
+
+  private int checksum() {
+    CRC32 crc32 = new CRC32();
+    StoreComponent.update(crc32, byteBuffer, 0, checksumHeader);
+    StoreComponent.update(crc32, byteBuffer, checksumHeader + 4, STORE_HEADER_SIZE);
+    return (int) crc32.getValue();
+  }
+
+  /** Switch to the buffer of a larger mapping of the same file. */
+  public void remap(final ByteBuffer byteBuffer) {
+    this.byteBuffer = byteBuffer;
+  }
+
   public ByteBuffer getByteBuffer() {
     return byteBuffer;
   }
 
   public void incrMbid() {
-    this.byteBuffer.putLong(mbidHeader, mbid.incrementAndGet());
+    pendingMbid.increment();
+  }
+
+  /** Aggregate the pending increments into the mbid of the header. */
+  public synchronized void checkpointMbid() {
+    long delta = pendingMbid.sum();
+    if (delta == 0) {
+      return;
+    }
+    this.byteBuffer.putLong(mbidHeader, mbid.addAndGet(delta));
+    // subtract instead of sumThenReset, which could lose increments racing with it
+    pendingMbid.add(-delta);
   }
 
   public void incrComponentCount() {
     this.byteBuffer.putInt(componentCountHeader, componentCount.incrementAndGet());
   }
+
+  public void decrComponentCount() {
+    this.byteBuffer.putInt(componentCountHeader, componentCount.decrementAndGet());
+  }
 }
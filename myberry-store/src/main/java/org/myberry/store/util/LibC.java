@@ -0,0 +1,123 @@
+/*
+* MIT License
+*
+* Copyright (c) 2020 gaoyang
+*
+* Permission is hereby granted, free of charge, to any person obtaining a copy
+* of this software and associated documentation files (the "Software"), to deal
+* in the Software without restriction, including without limitation the rights
+* to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+* copies of the Software, and to permit persons to whom the Software is
+* furnished to do so, subject to the following conditions:
+
+* The above copyright notice and this permission notice shall be included in all
+* copies or substantial portions of the Software.
+
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+* IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+* AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+* LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+* OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+* SOFTWARE.
+*/
+package org.myberry.store.util;
+
+import java.lang.reflect.Field;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import org.myberry.store.common.LoggerName;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Best effort mlock and msync of mapped buffers without a JNI library of our own. The C functions
+ * are called through JNA when it is on the classpath, otherwise the pages are only pre-faulted and
+ * the operation system may evict them, and a range is written through the file channel instead.
+ */
+public class LibC {
+
+  private static final Logger log = LoggerFactory.getLogger(LoggerName.STORE_LOGGER_NAME);
+
+  private static final String JNA_FUNCTION = "com.sun.jna.Function";
+  private static final String JNA_POINTER = "com.sun.jna.Pointer";
+
+  // MS_SYNC of Linux
+  private static final int MS_SYNC = 4;
+
+  private static volatile Object msync;
+  private static volatile boolean msyncUnavailable = false;
+
+  private LibC() {}
+
+  /**
+   * Lock the pages of a direct buffer in memory.
+   *
+   * @return false if the pages could not be locked
+   */
+  public static boolean mlock(final ByteBuffer byteBuffer) {
+    try {
+      Class<?> function = Class.forName(JNA_FUNCTION);
+      Class<?> pointer = Class.forName(JNA_POINTER);
+      Object mlock =
+          function.getMethod("getFunction", String.class, String.class).invoke(null, "c", "mlock");
+      Object address = pointer.getConstructor(long.class).newInstance(address(byteBuffer));
+      Object[] args = new Object[] {address, (long) byteBuffer.capacity()};
+      int ret =
+          (Integer) function.getMethod("invokeInt", Object[].class).invoke(mlock, (Object) args);
+      if (ret != 0) {
+        log.warn("mlock failed: {}, check the RLIMIT_MEMLOCK of the process", ret);
+      }
+      return ret == 0;
+    } catch (ClassNotFoundException e) {
+      log.warn("mlock skipped, JNA is not on the classpath");
+    } catch (Exception e) {
+      log.warn("mlock error: ", e);
+    }
+    return false;
+  }
+
+  /**
+   * Write the pages in a range of a mapped buffer to the file.
+   *
+   * @param offset page aligned offset in the buffer
+   * @return false if the range was not written, the caller writes it another way
+   */
+  public static boolean msync(final ByteBuffer byteBuffer, long offset, long length) {
+    if (msyncUnavailable) {
+      return false;
+    }
+    try {
+      Class<?> function = Class.forName(JNA_FUNCTION);
+      Class<?> pointer = Class.forName(JNA_POINTER);
+      if (msync == null) {
+        msync =
+            function
+                .getMethod("getFunction", String.class, String.class)
+                .invoke(null, "c", "msync");
+      }
+      Object address =
+          pointer.getConstructor(long.class).newInstance(address(byteBuffer) + offset);
+      Object[] args = new Object[] {address, length, MS_SYNC};
+      int ret =
+          (Integer) function.getMethod("invokeInt", Object[].class).invoke(msync, (Object) args);
+      if (ret != 0) {
+        log.warn("msync failed: {}", ret);
+      }
+      return ret == 0;
+    } catch (ClassNotFoundException e) {
+      msyncUnavailable = true;
+      log.info("msync skipped, JNA is not on the classpath, the file channel writes the pages");
+    } catch (Exception e) {
+      msyncUnavailable = true;
+      log.warn("msync error, the file channel writes the pages from now on: ", e);
+    }
+    return false;
+  }
+
+  private static long address(final ByteBuffer byteBuffer) throws ReflectiveOperationException {
+    Field field = Buffer.class.getDeclaredField("address");
+    field.setAccessible(true);
+    return field.getLong(byteBuffer);
+  }
+}
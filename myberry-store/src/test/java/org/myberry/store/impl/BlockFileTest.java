@@ -0,0 +1,511 @@
+/*
+* MIT License
+*
+* Copyright (c) 2020 gaoyang
+*
+* Permission is hereby granted, free of charge, to any person obtaining a copy
+* of this software and associated documentation files (the "Software"), to deal
+* in the Software without restriction, including without limitation the rights
+* to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+* copies of the Software, and to permit persons to whom the Software is
+* furnished to do so, subject to the following conditions:
+
+* The above copyright notice and this permission notice shall be included in all
+* copies or substantial portions of the Software.
+
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+* IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+* AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+* LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+* OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+* SOFTWARE.
+*/
+package org.myberry.store.impl;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import org.junit.Assert;
+import org.junit.Test;
+import org.myberry.common.ProduceMode;
+import org.myberry.store.CRComponent;
+import org.myberry.store.DefaultMyberryStore;
+import org.myberry.store.SnapshotResult;
+import org.myberry.store.config.StoreConfig;
+import org.myberry.store.config.StorePathConfigHelper;
+
+public class BlockFileTest {
+
+  @Test
+  public void testLoadComponent() throws Exception {
+    StoreConfig storeConfig = newStoreConfig();
+
+    int count = 10000;
+    DefaultMyberryStore defaultMyberryStore = new DefaultMyberryStore(storeConfig);
+    defaultMyberryStore.start();
+    for (int i = 0; i < count; i++) {
+      CRComponent crc = new CRComponent();
+      crc.setKey("key" + i);
+      crc.setKeyLength(crc.getKey().getBytes(StandardCharsets.UTF_8).length);
+      crc.setExpression("[#incr(0)]");
+      crc.setExpressionLength(crc.getExpression().length());
+      crc.setIncrNumber(i);
+      defaultMyberryStore.addComponent(crc);
+    }
+    int lastOffset = defaultMyberryStore.getLastOffset();
+    defaultMyberryStore.shutdown();
+
+    defaultMyberryStore = new DefaultMyberryStore(storeConfig);
+    defaultMyberryStore.start();
+    try {
+      Assert.assertEquals(count, defaultMyberryStore.getComponentMap().size());
+      Assert.assertEquals(lastOffset, defaultMyberryStore.getLastOffset());
+      CRComponent crc = (CRComponent) defaultMyberryStore.getComponentMap().get("key9999");
+      Assert.assertEquals(9999, crc.getIncrNumber());
+      Assert.assertEquals("[#incr(0)]", crc.getExpression());
+    } finally {
+      defaultMyberryStore.shutdown();
+    }
+  }
+
+  @Test
+  public void testRollSegment() throws Exception {
+    StoreConfig storeConfig = newStoreConfig();
+    storeConfig.setFileSize(4096);
+
+    int count = 500;
+    DefaultMyberryStore defaultMyberryStore = new DefaultMyberryStore(storeConfig);
+    defaultMyberryStore.start();
+    for (int i = 0; i < count; i++) {
+      CRComponent crc = new CRComponent();
+      crc.setKey("key" + i);
+      crc.setKeyLength(crc.getKey().getBytes(StandardCharsets.UTF_8).length);
+      crc.setExpression("[#incr(0)]");
+      crc.setExpressionLength(crc.getExpression().length());
+      crc.setIncrNumber(i);
+      defaultMyberryStore.addComponent(crc);
+    }
+    int lastOffset = defaultMyberryStore.getLastOffset();
+    byte[] sync = defaultMyberryStore.getSyncByteBuffer(StoreHeader.STORE_HEADER_SIZE);
+    defaultMyberryStore.shutdown();
+
+    defaultMyberryStore = new DefaultMyberryStore(storeConfig);
+    defaultMyberryStore.start();
+    try {
+      Assert.assertEquals(count, defaultMyberryStore.getComponentCountFromDisk());
+      Assert.assertEquals(count, defaultMyberryStore.getComponentMap().size());
+      Assert.assertEquals(lastOffset, defaultMyberryStore.getLastOffset());
+      CRComponent crc = (CRComponent) defaultMyberryStore.getComponentMap().get("key499");
+      Assert.assertTrue(BlockFile.getIndex(crc.getPhyOffset()) > 0);
+      Assert.assertEquals(499, crc.getIncrNumber());
+
+      defaultMyberryStore.updateBufferLong(
+          crc.getPhyOffset() + CRComponent.incrNumberHeader, 1000L);
+      defaultMyberryStore.save();
+    } finally {
+      defaultMyberryStore.shutdown();
+    }
+
+    defaultMyberryStore = new DefaultMyberryStore(storeConfig);
+    defaultMyberryStore.start();
+    try {
+      CRComponent crc = (CRComponent) defaultMyberryStore.getComponentMap().get("key499");
+      Assert.assertEquals(1000L, crc.getIncrNumber());
+    } finally {
+      defaultMyberryStore.shutdown();
+    }
+
+    StoreConfig learnerConfig = newStoreConfig();
+    learnerConfig.setFileSize(8192);
+    DefaultMyberryStore learner = new DefaultMyberryStore(learnerConfig);
+    learner.start();
+    try {
+      learner.setSyncByteBuffer(sync);
+      Assert.assertEquals(lastOffset, learner.getLastOffset());
+      Assert.assertEquals(count, learner.getComponentMap().size());
+      CRComponent crc = (CRComponent) learner.getComponentMap().get("key499");
+      Assert.assertEquals(0, crc.getIncrNumber());
+    } finally {
+      learner.shutdown();
+    }
+  }
+
+  @Test
+  public void testQuarantine() throws Exception {
+    StoreConfig storeConfig = newStoreConfig();
+    DefaultMyberryStore defaultMyberryStore = new DefaultMyberryStore(storeConfig);
+    defaultMyberryStore.start();
+    for (int i = 0; i < 3; i++) {
+      CRComponent crc = newComponent("key" + i, i);
+      crc.setCreateTime(System.currentTimeMillis());
+      defaultMyberryStore.addComponent(crc);
+    }
+    long phyOffset =
+        ((CRComponent) defaultMyberryStore.getComponentMap().get("key1")).getPhyOffset();
+    defaultMyberryStore.shutdown();
+
+    try (RandomAccessFile raf = new RandomAccessFile(BlockFile.getFileName(storeConfig, 0), "rw")) {
+      // first byte of the key
+      raf.seek(phyOffset + CRComponent.statusHeader + 8);
+      raf.write('x');
+    }
+
+    defaultMyberryStore = new DefaultMyberryStore(storeConfig);
+    defaultMyberryStore.start();
+    try {
+      Assert.assertEquals(2, defaultMyberryStore.getComponentMap().size());
+      Assert.assertFalse(defaultMyberryStore.isExistKey("key1"));
+      Assert.assertNotNull(defaultMyberryStore.getComponentMap().get("key2"));
+      Assert.assertTrue(
+          new File(
+                  StorePathConfigHelper.getQuarantinePath(storeConfig.getStoreRootDir()),
+                  StoreConfig.MYBERRY_STORE_FILE_NAME + "." + phyOffset)
+              .exists());
+    } finally {
+      defaultMyberryStore.shutdown();
+    }
+  }
+
+  @Test
+  public void testMigrateLegacy() throws Exception {
+    StoreConfig storeConfig = newStoreConfig();
+    storeConfig.setFileSize(4096);
+
+    // layout before version 2: 64 byte header, records without checksum
+    int count = 66;
+    ByteBuffer byteBuffer = ByteBuffer.allocate(storeConfig.getFileSize());
+    byteBuffer.position(StoreHeader.LEGACY_STORE_HEADER_SIZE);
+    CRComponentCodec codec = new CRComponentCodec();
+    for (int i = 0; i < count; i++) {
+      CRComponent crc = newComponent("key" + i, i);
+      crc.setCreateTime(1L);
+      crc.setPhyOffset(byteBuffer.position());
+      codec.encode(crc, byteBuffer);
+    }
+    byteBuffer.putLong(16, StoreHeader.LEGACY_STORE_HEADER_SIZE);
+    byteBuffer.putLong(24, byteBuffer.position());
+    byteBuffer.putInt(56, count);
+    byteBuffer.putInt(60, ProduceMode.CR.getProduceCode());
+
+    File file = new File(BlockFile.getFileName(storeConfig, 0));
+    file.getParentFile().mkdirs();
+    Files.write(file.toPath(), byteBuffer.array());
+    // left by a migration which crashed before the new segments replaced the legacy ones
+    File compactFile =
+        new File(StorePathConfigHelper.getCompactFilePath(storeConfig.getStoreRootDir()));
+    compactFile.mkdirs();
+    Files.write(new File(compactFile, StoreConfig.MYBERRY_STORE_FILE_NAME).toPath(), new byte[64]);
+
+    DefaultMyberryStore defaultMyberryStore = new DefaultMyberryStore(storeConfig);
+    defaultMyberryStore.start();
+    try {
+      Assert.assertFalse(compactFile.exists());
+      Assert.assertFalse(
+          new File(StorePathConfigHelper.getRetiredFilePath(storeConfig.getStoreRootDir()))
+              .exists());
+      Assert.assertEquals(count, defaultMyberryStore.getComponentMap().size());
+      Assert.assertEquals(count, defaultMyberryStore.getComponentCountFromDisk());
+      CRComponent crc = (CRComponent) defaultMyberryStore.getComponentMap().get("key65");
+      Assert.assertEquals(65, crc.getIncrNumber());
+      // the records grew by the header and the checksums, some moved to the next segment
+      Assert.assertTrue(BlockFile.getIndex(crc.getPhyOffset()) > 0);
+    } finally {
+      defaultMyberryStore.shutdown();
+    }
+
+    defaultMyberryStore = new DefaultMyberryStore(storeConfig);
+    defaultMyberryStore.start();
+    try {
+      Assert.assertEquals(count, defaultMyberryStore.getComponentMap().size());
+      CRComponent crc = (CRComponent) defaultMyberryStore.getComponentMap().get("key0");
+      Assert.assertEquals(StoreHeader.STORE_HEADER_SIZE, crc.getPhyOffset());
+    } finally {
+      defaultMyberryStore.shutdown();
+    }
+  }
+
+  @Test
+  public void testGrow() throws Exception {
+    StoreConfig storeConfig = newStoreConfig();
+    storeConfig.setFileSize(4096);
+
+    DefaultMyberryStore defaultMyberryStore = new DefaultMyberryStore(storeConfig);
+    defaultMyberryStore.start();
+    try {
+      for (int i = 0; i < 10; i++) {
+        defaultMyberryStore.addComponent(newComponent("key" + i, i));
+      }
+      CRComponent crc = (CRComponent) defaultMyberryStore.getComponentMap().get("key0");
+      Assert.assertTrue(defaultMyberryStore.growFileSize(8192));
+      Assert.assertFalse(defaultMyberryStore.growFileSize(8192));
+      Assert.assertEquals(8192, storeConfig.getFileSize());
+
+      // counters written through the new mapping
+      defaultMyberryStore.updateBufferLong(crc.getPhyOffset() + CRComponent.incrNumberHeader, 100L);
+      for (int i = 10; i < 100; i++) {
+        defaultMyberryStore.addComponent(newComponent("key" + i, i));
+      }
+      // a component larger than a segment grows the store
+      CRComponent large = newComponent("large", 0);
+      char[] expression = new char[10000];
+      Arrays.fill(expression, 'a');
+      large.setExpression(new String(expression));
+      large.setExpressionLength(expression.length);
+      defaultMyberryStore.addComponent(large);
+      Assert.assertEquals(16384, storeConfig.getFileSize());
+    } finally {
+      defaultMyberryStore.shutdown();
+    }
+
+    storeConfig.setFileSize(4096);
+    defaultMyberryStore = new DefaultMyberryStore(storeConfig);
+    defaultMyberryStore.start();
+    try {
+      Assert.assertEquals(16384, storeConfig.getFileSize());
+      Assert.assertEquals(101, defaultMyberryStore.getComponentMap().size());
+      CRComponent crc = (CRComponent) defaultMyberryStore.getComponentMap().get("key0");
+      Assert.assertEquals(100L, crc.getIncrNumber());
+      crc = (CRComponent) defaultMyberryStore.getComponentMap().get("large");
+      Assert.assertEquals(10000, crc.getExpression().length());
+    } finally {
+      defaultMyberryStore.shutdown();
+    }
+  }
+
+  @Test
+  public void testRemoveAndCompact() throws Exception {
+    StoreConfig storeConfig = newStoreConfig();
+    storeConfig.setFileSize(4096);
+
+    int count = 100;
+    DefaultMyberryStore defaultMyberryStore = new DefaultMyberryStore(storeConfig);
+    defaultMyberryStore.start();
+    StoreConfig learnerConfig = newStoreConfig();
+    DefaultMyberryStore learner = new DefaultMyberryStore(learnerConfig);
+    learner.start();
+    int lastOffset;
+    try {
+      for (int i = 0; i < count; i++) {
+        defaultMyberryStore.addComponent(newComponent("key" + i, i));
+      }
+      learner.setSyncByteBuffer(
+          defaultMyberryStore.getSyncByteBuffer(StoreHeader.STORE_HEADER_SIZE));
+      int learnerOffset = learner.getLastOffset();
+
+      for (int i = 0; i < count; i += 2) {
+        Assert.assertTrue(defaultMyberryStore.removeComponent("key" + i));
+      }
+      Assert.assertFalse(defaultMyberryStore.removeComponent("key0"));
+      Assert.assertEquals(count / 2, defaultMyberryStore.getComponentMap().size());
+      Assert.assertEquals(count / 2, defaultMyberryStore.getComponentCountFromDisk());
+
+      // the tombstones remove the components from the learner
+      learner.setSyncByteBuffer(defaultMyberryStore.getSyncByteBuffer(learnerOffset));
+      Assert.assertEquals(defaultMyberryStore.getLastOffset(), learner.getLastOffset());
+      Assert.assertEquals(count / 2, learner.getComponentMap().size());
+      Assert.assertFalse(learner.isExistKey("key0"));
+
+      CRComponent crc = (CRComponent) defaultMyberryStore.getComponentMap().get("key1");
+      long phyOffset = crc.getPhyOffset();
+      defaultMyberryStore.updateBufferLong(phyOffset + CRComponent.incrNumberHeader, 1000L);
+
+      lastOffset = defaultMyberryStore.getLastOffset();
+      Assert.assertTrue(defaultMyberryStore.compact());
+      Assert.assertEquals(lastOffset, defaultMyberryStore.getLastOffset());
+      Assert.assertEquals(lastOffset, defaultMyberryStore.getCompactedOffset());
+      Assert.assertNotEquals(phyOffset, crc.getPhyOffset());
+      defaultMyberryStore.updateBufferLong(
+          crc.getPhyOffset() + CRComponent.incrNumberHeader, 1001L);
+
+      // a learner behind the compaction takes a snapshot
+      Assert.assertEquals(
+          0, defaultMyberryStore.getSyncByteBuffer(StoreHeader.STORE_HEADER_SIZE).length);
+      StoreConfig snapshotConfig = newStoreConfig();
+      DefaultMyberryStore snapshotLearner = new DefaultMyberryStore(snapshotConfig);
+      snapshotLearner.start();
+      try {
+        snapshotLearner.resetSyncByteBuffer(
+            defaultMyberryStore.getSnapshotByteBuffer(lastOffset), lastOffset);
+        Assert.assertEquals(lastOffset, snapshotLearner.getLastOffset());
+        Assert.assertEquals(count / 2, snapshotLearner.getComponentMap().size());
+      } finally {
+        snapshotLearner.shutdown();
+      }
+
+      // a learner after the compaction goes on with the records appended since
+      defaultMyberryStore.addComponent(newComponent("key0", 0));
+      learner.setSyncByteBuffer(defaultMyberryStore.getSyncByteBuffer(learner.getLastOffset()));
+      Assert.assertEquals(defaultMyberryStore.getLastOffset(), learner.getLastOffset());
+      Assert.assertTrue(learner.isExistKey("key0"));
+      lastOffset = defaultMyberryStore.getLastOffset();
+    } finally {
+      learner.shutdown();
+      defaultMyberryStore.shutdown();
+    }
+
+    defaultMyberryStore = new DefaultMyberryStore(storeConfig);
+    defaultMyberryStore.start();
+    try {
+      Assert.assertEquals(lastOffset, defaultMyberryStore.getLastOffset());
+      Assert.assertEquals(count / 2 + 1, defaultMyberryStore.getComponentMap().size());
+      Assert.assertFalse(defaultMyberryStore.isExistKey("key2"));
+      CRComponent crc = (CRComponent) defaultMyberryStore.getComponentMap().get("key1");
+      Assert.assertEquals(1001L, crc.getIncrNumber());
+      Assert.assertFalse(
+          new File(StorePathConfigHelper.getCompactFilePath(storeConfig.getStoreRootDir()))
+              .exists());
+    } finally {
+      defaultMyberryStore.shutdown();
+    }
+  }
+
+  @Test
+  public void testSnapshot() throws Exception {
+    StoreConfig storeConfig = newStoreConfig();
+    storeConfig.setFileSize(4096);
+
+    int count = 300;
+    StoreConfig snapshotConfig = newStoreConfig();
+    DefaultMyberryStore defaultMyberryStore = new DefaultMyberryStore(storeConfig);
+    defaultMyberryStore.start();
+    try {
+      defaultMyberryStore.setMySid(1);
+      for (int i = 0; i < count; i++) {
+        defaultMyberryStore.addComponent(newComponent("key" + i, i));
+      }
+      CRComponent crc = (CRComponent) defaultMyberryStore.getComponent("key299");
+      defaultMyberryStore.updateBufferLong(
+          crc.getPhyOffset() + CRComponent.incrNumberHeader, 1000L);
+      defaultMyberryStore.incrMbid();
+
+      SnapshotResult snapshotResult = defaultMyberryStore.snapshot(snapshotConfig.getStorePath());
+      Assert.assertEquals(count, snapshotResult.getComponentCount());
+      Assert.assertEquals(defaultMyberryStore.getLastOffset(), snapshotResult.getLastOffset());
+      Assert.assertEquals(1, snapshotResult.getMbid());
+      Assert.assertTrue(snapshotResult.getSize() >= snapshotResult.getLastOffset());
+      try {
+        defaultMyberryStore.snapshot(snapshotConfig.getStorePath());
+        Assert.fail();
+      } catch (UncheckedIOException e) {
+        // the copy is not overwritten
+      }
+      defaultMyberryStore.addComponent(newComponent("key" + count, count));
+
+      // a node started from the snapshot only syncs the records appended since
+      DefaultMyberryStore snapshotStore = new DefaultMyberryStore(snapshotConfig);
+      snapshotStore.start();
+      try {
+        Assert.assertEquals(snapshotResult.getLastOffset(), snapshotStore.getLastOffset());
+        Assert.assertEquals(count, snapshotStore.getComponentMap().size());
+        Assert.assertEquals(0, snapshotStore.getMySidFromDisk());
+        Assert.assertEquals(1, snapshotStore.getMbidFromDisk());
+        crc = (CRComponent) snapshotStore.getComponent("key299");
+        Assert.assertEquals(1000L, crc.getIncrNumber());
+
+        snapshotStore.setSyncByteBuffer(
+            defaultMyberryStore.getSyncByteBuffer(snapshotStore.getLastOffset()));
+        Assert.assertEquals(defaultMyberryStore.getLastOffset(), snapshotStore.getLastOffset());
+        Assert.assertTrue(snapshotStore.isExistKey("key" + count));
+      } finally {
+        snapshotStore.shutdown();
+      }
+    } finally {
+      defaultMyberryStore.shutdown();
+    }
+  }
+
+  @Test
+  public void testChunkedSync() throws Exception {
+    StoreConfig storeConfig = newStoreConfig();
+    storeConfig.setFileSize(4096);
+
+    StoreConfig learnerConfig = newStoreConfig();
+    learnerConfig.setFileSize(4096);
+
+    int count = 500;
+    DefaultMyberryStore defaultMyberryStore = new DefaultMyberryStore(storeConfig);
+    DefaultMyberryStore learner = new DefaultMyberryStore(learnerConfig);
+    defaultMyberryStore.start();
+    learner.start();
+    try {
+      for (int i = 0; i < count; i++) {
+        defaultMyberryStore.addComponent(newComponent("key" + i, i));
+      }
+
+      int chunks = 0;
+      while (learner.getLastOffset() < defaultMyberryStore.getLastOffset()) {
+        byte[] chunk = defaultMyberryStore.getSyncByteBuffer(learner.getLastOffset(), 1000);
+        Assert.assertTrue(chunk.length > 0 && chunk.length <= 1000);
+        learner.setSyncByteBuffer(chunk);
+        chunks++;
+      }
+      Assert.assertTrue(chunks > 1);
+      Assert.assertEquals(defaultMyberryStore.getLastOffset(), learner.getLastOffset());
+      Assert.assertEquals(count, learner.getComponentCount());
+      Assert.assertEquals(
+          499, ((CRComponent) defaultMyberryStore.getComponent("key499")).getIncrNumber());
+      CRComponent crc = (CRComponent) learner.getComponent("key499");
+      Assert.assertEquals(0, crc.getIncrNumber());
+      Assert.assertEquals("[#incr(0)]", crc.getExpression());
+    } finally {
+      learner.shutdown();
+      defaultMyberryStore.shutdown();
+    }
+  }
+
+  @Test
+  public void testDirtyPages() throws Exception {
+    StoreConfig storeConfig = newStoreConfig();
+    storeConfig.setFileSize(MappedFile.OS_PAGE_SIZE * 64);
+
+    BlockFile blockFile = new BlockFile(storeConfig, 0, new StoreComponent(null));
+    try {
+      blockFile.loadHeader();
+      blockFile.flush();
+      Assert.assertEquals(0, blockFile.getDirtyPageCount());
+
+      blockFile.updateBufferLong(MappedFile.OS_PAGE_SIZE * 3 + 16, 1L);
+      blockFile.updateBufferLong(MappedFile.OS_PAGE_SIZE * 5 - 4, 1L);
+      Assert.assertEquals(3, blockFile.getDirtyPageCount());
+      blockFile.flush();
+      Assert.assertEquals(0, blockFile.getDirtyPageCount());
+
+      // the header is unchanged, so it is not written again
+      blockFile.flush();
+      Assert.assertEquals(0, blockFile.getDirtyPageCount());
+      blockFile.setEpoch(2L);
+      Assert.assertEquals(0, blockFile.getDirtyPageCount());
+
+      blockFile.grow(MappedFile.OS_PAGE_SIZE * 128);
+      Assert.assertEquals(128, blockFile.getDirtyPageCount());
+      blockFile.flush();
+      Assert.assertEquals(0, blockFile.getDirtyPageCount());
+    } finally {
+      blockFile.unload();
+    }
+  }
+
+  static StoreConfig newStoreConfig() {
+    StoreConfig storeConfig = new StoreConfig();
+    storeConfig.setStorePath(
+        new File("target" + File.separator + "block-file-test-" + System.nanoTime())
+            .getAbsolutePath());
+    storeConfig.setProduceMode("cr");
+    return storeConfig;
+  }
+
+  static CRComponent newComponent(String key, long incrNumber) {
+    CRComponent crc = new CRComponent();
+    crc.setKey(key);
+    crc.setKeyLength(crc.getKey().getBytes(StandardCharsets.UTF_8).length);
+    crc.setExpression("[#incr(0)]");
+    crc.setExpressionLength(crc.getExpression().length());
+    crc.setIncrNumber(incrNumber);
+    return crc;
+  }
+}
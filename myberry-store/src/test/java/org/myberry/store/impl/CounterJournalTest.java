@@ -0,0 +1,174 @@
+/*
+* MIT License
+*
+* Copyright (c) 2020 gaoyang
+*
+* Permission is hereby granted, free of charge, to any person obtaining a copy
+* of this software and associated documentation files (the "Software"), to deal
+* in the Software without restriction, including without limitation the rights
+* to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+* copies of the Software, and to permit persons to whom the Software is
+* furnished to do so, subject to the following conditions:
+
+* The above copyright notice and this permission notice shall be included in all
+* copies or substantial portions of the Software.
+
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+* IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+* AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+* LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+* OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+* SOFTWARE.
+*/
+package org.myberry.store.impl;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import org.junit.Assert;
+import org.junit.Test;
+import org.myberry.store.CRComponent;
+import org.myberry.store.DefaultMyberryStore;
+import org.myberry.store.config.StoreConfig;
+import org.myberry.store.config.StorePathConfigHelper;
+
+public class CounterJournalTest {
+
+  @Test
+  public void testReplay() throws Exception {
+    StoreConfig storeConfig = new StoreConfig();
+    storeConfig.setStorePath(
+        new File("target" + File.separator + "counter-journal-test-" + System.nanoTime())
+            .getAbsolutePath());
+    storeConfig.setProduceMode("cr");
+    storeConfig.setJournalEnable(true);
+    storeConfig.setFlushDiskType("sync");
+
+    DefaultMyberryStore defaultMyberryStore = new DefaultMyberryStore(storeConfig);
+    defaultMyberryStore.start();
+    CRComponent crc = new CRComponent();
+    crc.setKey("key");
+    crc.setKeyLength(crc.getKey().getBytes(StandardCharsets.UTF_8).length);
+    crc.setExpression("[#incr(0)]");
+    crc.setExpressionLength(crc.getExpression().length());
+    defaultMyberryStore.addComponent(crc);
+    long phyOffset = crc.getPhyOffset() + CRComponent.incrNumberHeader;
+
+    defaultMyberryStore.updateBufferLong(phyOffset, 100L);
+    Assert.assertTrue(defaultMyberryStore.flush(crc.getPhyOffset()));
+    defaultMyberryStore.shutdown();
+
+    String journalFile = StorePathConfigHelper.getJournalFile(storeConfig.getStoreRootDir());
+    try (RandomAccessFile raf = new RandomAccessFile(journalFile, "rw")) {
+      // the shutdown checkpoint covers the whole journal
+      Assert.assertEquals(
+          CounterJournal.JOURNAL_HEADER_SIZE + CounterJournal.RECORD_SIZE, raf.readLong());
+
+      // a record after the checkpoint and a torn one, as left by a crash
+      raf.seek(raf.length());
+      raf.writeLong(phyOffset);
+      raf.writeInt(8);
+      raf.writeLong(200L);
+      raf.writeLong(phyOffset);
+    }
+
+    defaultMyberryStore = new DefaultMyberryStore(storeConfig);
+    defaultMyberryStore.start();
+    try {
+      crc = (CRComponent) defaultMyberryStore.getComponentMap().get("key");
+      Assert.assertEquals(200L, crc.getIncrNumber());
+    } finally {
+      defaultMyberryStore.shutdown();
+    }
+
+    Assert.assertEquals(
+        CounterJournal.JOURNAL_HEADER_SIZE + 2 * CounterJournal.RECORD_SIZE,
+        new File(journalFile).length());
+  }
+
+  @Test
+  public void testConcurrentAppend() throws Exception {
+    StoreConfig storeConfig = new StoreConfig();
+    storeConfig.setStorePath(
+        new File("target" + File.separator + "counter-journal-test-" + System.nanoTime())
+            .getAbsolutePath());
+    storeConfig.setProduceMode("cr");
+    storeConfig.setJournalEnable(true);
+    storeConfig.setFlushDiskType("sync");
+    // rotated by the checkpoints while the appends go on
+    storeConfig.setJournalCheckpointIntervalMills(1);
+    storeConfig.setJournalFileSize(CounterJournal.RECORD_SIZE * 1000);
+
+    int threads = 4;
+    int appends = 50000;
+    DefaultMyberryStore defaultMyberryStore = new DefaultMyberryStore(storeConfig);
+    defaultMyberryStore.start();
+    long[] phyOffsets = new long[threads];
+    for (int i = 0; i < threads; i++) {
+      CRComponent crc = new CRComponent();
+      crc.setKey("key" + i);
+      crc.setKeyLength(crc.getKey().getBytes(StandardCharsets.UTF_8).length);
+      crc.setExpression("[#incr(0)]");
+      crc.setExpressionLength(crc.getExpression().length());
+      defaultMyberryStore.addComponent(crc);
+      phyOffsets[i] = crc.getPhyOffset() + CRComponent.incrNumberHeader;
+    }
+
+    CountDownLatch latch = new CountDownLatch(threads);
+    for (int i = 0; i < threads; i++) {
+      long phyOffset = phyOffsets[i];
+      new Thread(
+              () -> {
+                for (long value = 1; value <= appends; value++) {
+                  defaultMyberryStore.updateBufferLong(phyOffset, value);
+                }
+                latch.countDown();
+              })
+          .start();
+    }
+    latch.await();
+    defaultMyberryStore.shutdown();
+
+    // the records of a field are in the order of its writes, across the rotations
+    String journalFile = StorePathConfigHelper.getJournalFile(storeConfig.getStoreRootDir());
+    long[] lastValues = new long[threads];
+    for (String fileName : new String[] {journalFile + ".1", journalFile}) {
+      File file = new File(fileName);
+      if (!file.exists()) {
+        continue;
+      }
+      try (DataInputStream in =
+          new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+        in.readLong();
+        for (long i = CounterJournal.JOURNAL_HEADER_SIZE;
+            i < file.length();
+            i += CounterJournal.RECORD_SIZE) {
+          long phyOffset = in.readLong();
+          Assert.assertEquals(8, in.readInt());
+          long value = in.readLong();
+          int thread = Arrays.binarySearch(phyOffsets, phyOffset);
+          Assert.assertTrue(thread >= 0);
+          Assert.assertTrue(value > lastValues[thread]);
+          lastValues[thread] = value;
+        }
+      }
+    }
+
+    DefaultMyberryStore restarted = new DefaultMyberryStore(storeConfig);
+    restarted.start();
+    try {
+      for (int i = 0; i < threads; i++) {
+        CRComponent crc = (CRComponent) restarted.getComponentMap().get("key" + i);
+        Assert.assertEquals(appends, crc.getIncrNumber());
+      }
+    } finally {
+      restarted.shutdown();
+    }
+  }
+}
@@ -0,0 +1,77 @@
+/*
+* MIT License
+*
+* Copyright (c) 2020 gaoyang
+*
+* Permission is hereby granted, free of charge, to any person obtaining a copy
+* of this software and associated documentation files (the "Software"), to deal
+* in the Software without restriction, including without limitation the rights
+* to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+* copies of the Software, and to permit persons to whom the Software is
+* furnished to do so, subject to the following conditions:
+
+* The above copyright notice and this permission notice shall be included in all
+* copies or substantial portions of the Software.
+
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+* IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+* AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+* LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+* OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+* SOFTWARE.
+*/
+package org.myberry.store.impl;
+
+import java.io.File;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.myberry.store.DefaultMyberryStore;
+import org.myberry.store.config.StoreConfig;
+
+public class FlushServiceTest {
+
+  private static DefaultMyberryStore defaultMyberryStore;
+
+  @BeforeClass
+  public static void init() throws Exception {
+    StoreConfig storeConfig = new StoreConfig();
+    storeConfig.setStorePath(new File("target").getAbsolutePath());
+    storeConfig.setProduceMode("cr");
+    storeConfig.setFlushDiskType("sync");
+    storeConfig.setGroupCommitBatchSize(4);
+    defaultMyberryStore = new DefaultMyberryStore(storeConfig);
+    defaultMyberryStore.start();
+  }
+
+  @Test
+  public void testGroupCommit() throws InterruptedException {
+    int threads = 8;
+    AtomicInteger flushed = new AtomicInteger();
+    CountDownLatch latch = new CountDownLatch(threads);
+    for (int i = 0; i < threads; i++) {
+      new Thread(
+              () -> {
+                for (int j = 0; j < 100; j++) {
+                  if (defaultMyberryStore.flush(StoreHeader.STORE_HEADER_SIZE)) {
+                    flushed.incrementAndGet();
+                  }
+                }
+                latch.countDown();
+              })
+          .start();
+    }
+    latch.await();
+
+    Assert.assertEquals(threads * 100, flushed.get());
+  }
+
+  @AfterClass
+  public static void destory() {
+    defaultMyberryStore.shutdown();
+  }
+}
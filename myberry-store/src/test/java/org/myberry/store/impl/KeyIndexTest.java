@@ -0,0 +1,159 @@
+/*
+* MIT License
+*
+* Copyright (c) 2020 gaoyang
+*
+* Permission is hereby granted, free of charge, to any person obtaining a copy
+* of this software and associated documentation files (the "Software"), to deal
+* in the Software without restriction, including without limitation the rights
+* to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+* copies of the Software, and to permit persons to whom the Software is
+* furnished to do so, subject to the following conditions:
+
+* The above copyright notice and this permission notice shall be included in all
+* copies or substantial portions of the Software.
+
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+* IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+* AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+* LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+* OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+* SOFTWARE.
+*/
+package org.myberry.store.impl;
+
+import static org.myberry.store.impl.BlockFileTest.newComponent;
+import static org.myberry.store.impl.BlockFileTest.newStoreConfig;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.myberry.store.CRComponent;
+import org.myberry.store.DefaultMyberryStore;
+import org.myberry.store.config.StoreConfig;
+
+public class KeyIndexTest {
+
+  @Test
+  public void testLazyLoad() throws Exception {
+    StoreConfig storeConfig = newStoreConfig();
+    storeConfig.setFileSize(4096);
+    storeConfig.setKeyIndexEnable(true);
+    storeConfig.setKeyIndexCapacity(16);
+
+    int count = 200;
+    DefaultMyberryStore defaultMyberryStore = new DefaultMyberryStore(storeConfig);
+    defaultMyberryStore.start();
+    try {
+      for (int i = 0; i < count; i++) {
+        defaultMyberryStore.addComponent(newComponent("key" + i, i));
+      }
+    } finally {
+      defaultMyberryStore.shutdown();
+    }
+
+    StoreConfig learnerConfig = newStoreConfig();
+    learnerConfig.setKeyIndexEnable(true);
+    DefaultMyberryStore learner = new DefaultMyberryStore(learnerConfig);
+    learner.start();
+    defaultMyberryStore = new DefaultMyberryStore(storeConfig);
+    defaultMyberryStore.start();
+    try {
+      // the components are read from their records when they are looked up
+      Assert.assertEquals(0, defaultMyberryStore.getComponentMap().size());
+      Assert.assertEquals(count, defaultMyberryStore.getComponentCount());
+      Assert.assertTrue(defaultMyberryStore.isExistKey("key150"));
+      Assert.assertFalse(defaultMyberryStore.isExistKey("key" + count));
+      Assert.assertNull(defaultMyberryStore.getComponent("key" + count));
+      CRComponent crc = (CRComponent) defaultMyberryStore.getComponent("key7");
+      Assert.assertEquals(7L, crc.getIncrNumber());
+      Assert.assertSame(crc, defaultMyberryStore.getComponent("key7"));
+      Assert.assertEquals(1, defaultMyberryStore.getComponentMap().size());
+
+      learner.setSyncByteBuffer(
+          defaultMyberryStore.getSyncByteBuffer(StoreHeader.STORE_HEADER_SIZE));
+      Assert.assertEquals(count, learner.getComponentCount());
+      int learnerOffset = learner.getLastOffset();
+
+      for (int i = 0; i < count; i += 2) {
+        Assert.assertTrue(defaultMyberryStore.removeComponent("key" + i));
+      }
+      Assert.assertFalse(defaultMyberryStore.removeComponent("key0"));
+      Assert.assertEquals(count / 2, defaultMyberryStore.getComponentCount());
+      learner.setSyncByteBuffer(defaultMyberryStore.getSyncByteBuffer(learnerOffset));
+      Assert.assertEquals(count / 2, learner.getComponentCount());
+      Assert.assertFalse(learner.isExistKey("key0"));
+
+      defaultMyberryStore.updateBufferLong(crc.getPhyOffset() + CRComponent.incrNumberHeader, 99L);
+      Assert.assertTrue(defaultMyberryStore.compact());
+      Assert.assertEquals(count / 2, defaultMyberryStore.getComponentCount());
+      Assert.assertEquals(
+          5L, ((CRComponent) defaultMyberryStore.getComponent("key5")).getIncrNumber());
+      defaultMyberryStore.updateBufferLong(
+          crc.getPhyOffset() + CRComponent.incrNumberHeader, 100L);
+    } finally {
+      learner.shutdown();
+      defaultMyberryStore.shutdown();
+    }
+
+    defaultMyberryStore = new DefaultMyberryStore(storeConfig);
+    defaultMyberryStore.start();
+    try {
+      Assert.assertEquals(count / 2, defaultMyberryStore.getComponentCount());
+      Assert.assertFalse(defaultMyberryStore.isExistKey("key2"));
+      Assert.assertEquals(
+          100L, ((CRComponent) defaultMyberryStore.getComponent("key7")).getIncrNumber());
+    } finally {
+      defaultMyberryStore.shutdown();
+    }
+  }
+
+  @Test
+  public void testLookupDuringCompaction() throws Exception {
+    StoreConfig storeConfig = newStoreConfig();
+    storeConfig.setKeyIndexEnable(true);
+
+    int count = 2000;
+    DefaultMyberryStore defaultMyberryStore = new DefaultMyberryStore(storeConfig);
+    defaultMyberryStore.start();
+    try {
+      for (int i = 0; i < count; i++) {
+        defaultMyberryStore.addComponent(newComponent("key" + i, i));
+      }
+
+      // the lookups and the counter writes go on while the components are moved
+      Thread puller =
+          new Thread(
+              () -> {
+                for (int i = 0; i < count; i++) {
+                  CRComponent crc = (CRComponent) defaultMyberryStore.getComponent("key" + i);
+                  crc.getWriteLock().lock();
+                  try {
+                    defaultMyberryStore.updateBufferLong(
+                        crc.getPhyOffset() + CRComponent.incrNumberHeader, i + count);
+                  } finally {
+                    crc.getWriteLock().unlock();
+                  }
+                }
+              });
+      puller.start();
+      Assert.assertTrue(defaultMyberryStore.compact());
+      puller.join();
+    } finally {
+      defaultMyberryStore.shutdown();
+    }
+
+    // each write reached the record of the new generation
+    DefaultMyberryStore restarted = new DefaultMyberryStore(storeConfig);
+    restarted.start();
+    try {
+      Assert.assertEquals(count, restarted.getComponentCount());
+      for (int i = 0; i < count; i++) {
+        CRComponent crc = (CRComponent) restarted.getComponent("key" + i);
+        Assert.assertEquals(i + count, crc.getIncrNumber());
+      }
+    } finally {
+      restarted.shutdown();
+    }
+  }
+}
@@ -0,0 +1,84 @@
+/*
+* MIT License
+*
+* Copyright (c) 2020 gaoyang
+*
+* Permission is hereby granted, free of charge, to any person obtaining a copy
+* of this software and associated documentation files (the "Software"), to deal
+* in the Software without restriction, including without limitation the rights
+* to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+* copies of the Software, and to permit persons to whom the Software is
+* furnished to do so, subject to the following conditions:
+
+* The above copyright notice and this permission notice shall be included in all
+* copies or substantial portions of the Software.
+
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+* IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+* AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+* LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+* OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+* SOFTWARE.
+*/
+package org.myberry.store.impl;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class MappedFileTest {
+
+  @Test
+  public void testWarm() throws Exception {
+    String fileName =
+        new File("target" + File.separator + "mapped-file-test-" + System.nanoTime())
+            .getAbsolutePath();
+    MappedFile mappedFile = new MappedFile(fileName, 1024 * 1024 + 1);
+    try {
+      Assert.assertEquals(257, mappedFile.warm(1));
+      Assert.assertEquals(257, mappedFile.warm(4));
+      // best effort, without JNA it only reports that the pages are not locked
+      mappedFile.mlock();
+    } finally {
+      mappedFile.destroy();
+    }
+  }
+
+  @Test
+  public void testFlushDirtyPages() throws Exception {
+    String fileName =
+        new File("target" + File.separator + "mapped-file-test-" + System.nanoTime())
+            .getAbsolutePath();
+    int fileSize = MappedFile.OS_PAGE_SIZE * 64 + 100;
+    MappedFile mappedFile = new MappedFile(fileName, fileSize, true);
+    try {
+      mappedFile.getMappedByteBuffer().putLong(MappedFile.OS_PAGE_SIZE * 3 + 16, 7L);
+      mappedFile.markDirty(MappedFile.OS_PAGE_SIZE * 3 + 16, 8);
+      mappedFile.getMappedByteBuffer().putLong(MappedFile.OS_PAGE_SIZE * 5 - 4, 8L);
+      mappedFile.markDirty(MappedFile.OS_PAGE_SIZE * 5 - 4, 8);
+      mappedFile.markDirty(MappedFile.OS_PAGE_SIZE * 9, 1);
+      Assert.assertEquals(4, mappedFile.getDirtyPageCount());
+      mappedFile.flush();
+      // pages 3 to 5 and page 9, not the whole mapping
+      Assert.assertEquals(MappedFile.OS_PAGE_SIZE * 4, mappedFile.getFlushedBytes());
+      Assert.assertEquals(0, mappedFile.getDirtyPageCount());
+
+      // the last page is partial
+      mappedFile.markDirty(fileSize - 1, 1);
+      mappedFile.flush();
+      Assert.assertEquals(100, mappedFile.getFlushedBytes());
+
+      try (RandomAccessFile raf = new RandomAccessFile(fileName, "r")) {
+        Assert.assertEquals(fileSize, raf.length());
+        raf.seek(MappedFile.OS_PAGE_SIZE * 3 + 16);
+        Assert.assertEquals(7L, raf.readLong());
+        raf.seek(MappedFile.OS_PAGE_SIZE * 5 - 4);
+        Assert.assertEquals(8L, raf.readLong());
+      }
+    } finally {
+      mappedFile.destroy();
+    }
+  }
+}
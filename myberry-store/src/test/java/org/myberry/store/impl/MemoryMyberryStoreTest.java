@@ -0,0 +1,91 @@
+/*
+* MIT License
+*
+* Copyright (c) 2020 gaoyang
+*
+* Permission is hereby granted, free of charge, to any person obtaining a copy
+* of this software and associated documentation files (the "Software"), to deal
+* in the Software without restriction, including without limitation the rights
+* to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+* copies of the Software, and to permit persons to whom the Software is
+* furnished to do so, subject to the following conditions:
+
+* The above copyright notice and this permission notice shall be included in all
+* copies or substantial portions of the Software.
+
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+* IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+* AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+* LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+* OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+* SOFTWARE.
+*/
+package org.myberry.store.impl;
+
+import static org.myberry.store.impl.BlockFileTest.newComponent;
+import static org.myberry.store.impl.BlockFileTest.newStoreConfig;
+
+import java.io.File;
+import org.junit.Assert;
+import org.junit.Test;
+import org.myberry.store.CRComponent;
+import org.myberry.store.MemoryMyberryStore;
+import org.myberry.store.MyberryStore;
+import org.myberry.store.MyberryStoreFactory;
+import org.myberry.store.config.StoreConfig;
+
+public class MemoryMyberryStoreTest {
+
+  @Test
+  public void testSnapshotRestore() throws Exception {
+    StoreConfig storeConfig = newStoreConfig();
+    storeConfig.setFileSize(4096);
+    storeConfig.setMySid(3);
+    storeConfig.setStoreEngine(StoreConfig.STORE_ENGINE_MEMORY);
+
+    int count = 500;
+    MyberryStore myberryStore = MyberryStoreFactory.create(storeConfig);
+    Assert.assertTrue(myberryStore instanceof MemoryMyberryStore);
+    // pinned before the segments are built
+    Assert.assertEquals(storeConfig.getFileSize(), storeConfig.getMaxFileSize());
+    myberryStore.start();
+    try {
+      for (int i = 0; i < count; i++) {
+        myberryStore.addComponent(newComponent("key" + i, i));
+      }
+      Assert.assertEquals(3, myberryStore.getMySidFromDisk());
+      Assert.assertEquals(count, myberryStore.getComponentCount());
+      Assert.assertFalse(myberryStore.growFileSize(8192));
+    } finally {
+      myberryStore.shutdown();
+    }
+    Assert.assertFalse(new File(storeConfig.getStoreRootDir()).exists());
+
+    storeConfig.setMemorySnapshotEnable(true);
+    storeConfig.setMemoryDirectEnable(true);
+    myberryStore = MyberryStoreFactory.create(storeConfig);
+    myberryStore.start();
+    try {
+      for (int i = 0; i < count; i++) {
+        myberryStore.addComponent(newComponent("key" + i, i));
+      }
+      CRComponent crc = (CRComponent) myberryStore.getComponent("key499");
+      myberryStore.updateBufferLong(crc.getPhyOffset() + CRComponent.incrNumberHeader, 1000L);
+    } finally {
+      myberryStore.shutdown();
+    }
+
+    myberryStore = MyberryStoreFactory.create(storeConfig);
+    myberryStore.start();
+    try {
+      Assert.assertEquals(3, myberryStore.getMySidFromDisk());
+      Assert.assertEquals(count, myberryStore.getComponentCount());
+      CRComponent crc = (CRComponent) myberryStore.getComponent("key499");
+      Assert.assertTrue(BlockFile.getIndex(crc.getPhyOffset()) > 0);
+      Assert.assertEquals(1000L, crc.getIncrNumber());
+    } finally {
+      myberryStore.shutdown();
+    }
+  }
+}
@@ -0,0 +1,128 @@
+/*
+* MIT License
+*
+* Copyright (c) 2020 gaoyang
+*
+* Permission is hereby granted, free of charge, to any person obtaining a copy
+* of this software and associated documentation files (the "Software"), to deal
+* in the Software without restriction, including without limitation the rights
+* to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+* copies of the Software, and to permit persons to whom the Software is
+* furnished to do so, subject to the following conditions:
+
+* The above copyright notice and this permission notice shall be included in all
+* copies or substantial portions of the Software.
+
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+* IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+* AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+* LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+* OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+* SOFTWARE.
+*/
+package org.myberry.store.impl;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import org.junit.Assert;
+import org.junit.Test;
+import org.myberry.store.CRComponent;
+import org.myberry.store.NSComponent;
+
+public class StoreComponentTest {
+
+  private final StoreComponent storeComponent = new StoreComponent(null);
+
+  @Test
+  public void testCRComponent() throws Exception {
+    String key = "key1";
+    String expression = "[#time(day) 2 3 #sid(0) #sid(1) m z #incr(0)]";
+
+    CRComponent crc = new CRComponent();
+    crc.setCreateTime(1L);
+    crc.setUpdateTime(2L);
+    crc.setPhyOffset(64L);
+    crc.setIncrNumber(7L);
+    crc.setStatus(1);
+    crc.setKeyLength(key.length());
+    crc.setKey(key);
+    crc.setExpressionLength(expression.length());
+    crc.setExpression(expression);
+
+    ByteBuffer byteBuffer = ByteBuffer.allocate(256);
+    storeComponent.write(crc, byteBuffer);
+
+    int length =
+        CRComponent.FIXED_FIELD_SIZE
+            + key.length()
+            + expression.length()
+            + StoreComponent.CHECKSUM_SIZE;
+    Assert.assertEquals(length, byteBuffer.position());
+    Assert.assertEquals(2L, byteBuffer.getLong(CRComponent.updateTimeHeader));
+    Assert.assertEquals(7L, byteBuffer.getLong(CRComponent.incrNumberHeader));
+    Assert.assertEquals(1, byteBuffer.getInt(CRComponent.statusHeader));
+    Assert.assertEquals(key.length(), byteBuffer.getInt(CRComponent.statusHeader + 4));
+    byte[] keyBytes = new byte[key.length()];
+    StoreComponent.get(byteBuffer, CRComponent.statusHeader + 8, keyBytes);
+    Assert.assertEquals(key, new String(keyBytes, StandardCharsets.UTF_8));
+
+    ComponentCodec<CRComponent> codec = new CRComponentCodec();
+    Assert.assertTrue(StoreComponent.verify(codec, byteBuffer, 0, length));
+    // counters are rewritten in place and are not covered
+    byteBuffer.putLong(CRComponent.incrNumberHeader, 8L);
+    Assert.assertTrue(StoreComponent.verify(codec, byteBuffer, 0, length));
+    byteBuffer.putLong(CRComponent.incrNumberHeader, 7L);
+    byteBuffer.put(CRComponent.statusHeader + 8, (byte) 'x');
+    Assert.assertFalse(StoreComponent.verify(codec, byteBuffer, 0, length));
+    byteBuffer.put(CRComponent.statusHeader + 8, (byte) 'k');
+
+    byteBuffer.flip();
+    CRComponent loaded = new CRComponent();
+    storeComponent.load(loaded, byteBuffer);
+    Assert.assertEquals(crc.toString(), loaded.toString());
+    Assert.assertEquals(byteBuffer.limit(), byteBuffer.position());
+  }
+
+  @Test
+  public void testNSComponent() throws Exception {
+    String key = "key2";
+
+    NSComponent nsc = new NSComponent();
+    nsc.setCreateTime(1L);
+    nsc.setUpdateTime(2L);
+    nsc.setPhyOffset(64L);
+    nsc.setMbid(3L);
+    nsc.setStatus(1);
+    nsc.setInitValue(100);
+    nsc.setCurrentValue(150);
+    nsc.setStepSize(50);
+    nsc.setResetType(1);
+    nsc.setKeyLength(key.length());
+    nsc.setKey(key);
+
+    ByteBuffer byteBuffer = ByteBuffer.allocate(256);
+    storeComponent.write(nsc, byteBuffer);
+
+    int length = NSComponent.FIXED_FIELD_SIZE + key.length() + StoreComponent.CHECKSUM_SIZE;
+    Assert.assertEquals(length, byteBuffer.position());
+    Assert.assertEquals(3L, byteBuffer.getLong(NSComponent.mbidHeader));
+    Assert.assertEquals(150, byteBuffer.getInt(NSComponent.currentValueHeader));
+    Assert.assertEquals(50, byteBuffer.getInt(NSComponent.stepSizeHeader));
+    Assert.assertEquals(key.length(), byteBuffer.getInt(NSComponent.keyLengthHeader));
+
+    ComponentCodec<NSComponent> codec = new NSComponentCodec();
+    Assert.assertTrue(StoreComponent.verify(codec, byteBuffer, 0, length));
+    byteBuffer.putInt(NSComponent.currentValueHeader, 200);
+    Assert.assertTrue(StoreComponent.verify(codec, byteBuffer, 0, length));
+    byteBuffer.putInt(NSComponent.currentValueHeader, 150);
+    byteBuffer.putInt(NSComponent.stepSizeHeader, 51);
+    Assert.assertFalse(StoreComponent.verify(codec, byteBuffer, 0, length));
+    byteBuffer.putInt(NSComponent.stepSizeHeader, 50);
+
+    byteBuffer.flip();
+    NSComponent loaded = new NSComponent();
+    storeComponent.load(loaded, byteBuffer);
+    Assert.assertEquals(nsc.toString(), loaded.toString());
+  }
+}
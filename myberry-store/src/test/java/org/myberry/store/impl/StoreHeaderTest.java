@@ -0,0 +1,63 @@
+/*
+* MIT License
+*
+* Copyright (c) 2020 gaoyang
+*
+* Permission is hereby granted, free of charge, to any person obtaining a copy
+* of this software and associated documentation files (the "Software"), to deal
+* in the Software without restriction, including without limitation the rights
+* to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+* copies of the Software, and to permit persons to whom the Software is
+* furnished to do so, subject to the following conditions:
+
+* The above copyright notice and this permission notice shall be included in all
+* copies or substantial portions of the Software.
+
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+* IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+* AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+* LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+* OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+* SOFTWARE.
+*/
+package org.myberry.store.impl;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.CountDownLatch;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class StoreHeaderTest {
+
+  @Test
+  public void testCheckpointMbid() throws InterruptedException {
+    ByteBuffer byteBuffer = ByteBuffer.allocate(StoreHeader.STORE_HEADER_SIZE);
+    StoreHeader storeHeader = new StoreHeader(byteBuffer);
+    storeHeader.setMbid(10);
+
+    int threads = 4;
+    int incrs = 10000;
+    CountDownLatch latch = new CountDownLatch(threads);
+    for (int i = 0; i < threads; i++) {
+      new Thread(
+              () -> {
+                for (int j = 0; j < incrs; j++) {
+                  storeHeader.incrMbid();
+                  if (j % 1000 == 0) {
+                    storeHeader.checkpointMbid();
+                  }
+                }
+                latch.countDown();
+              })
+          .start();
+    }
+    latch.await();
+
+    long expected = 10 + threads * incrs;
+    Assert.assertEquals(expected, storeHeader.getMbid());
+    storeHeader.checkpointMbid();
+    Assert.assertEquals(expected, byteBuffer.getLong(32));
+    Assert.assertEquals(expected, storeHeader.getMbid());
+  }
+}